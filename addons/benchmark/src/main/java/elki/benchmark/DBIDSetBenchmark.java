@@ -0,0 +1,124 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.*;
+
+/**
+ * Benchmark set operations on DBIDs.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBIDSetBenchmark {
+  /**
+   * Number of objects, each set contains about half of them.
+   */
+  @Param({ "1000", "100000" })
+  public int size;
+
+  /**
+   * Array representations of two overlapping sets.
+   */
+  private ArrayDBIDs array1, array2;
+
+  /**
+   * Hash set representations of two overlapping sets.
+   */
+  private SetDBIDs set1, set2;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    DBIDRange all = DBIDUtil.generateStaticDBIDRange(size << 1);
+    Random rnd = new Random(0L);
+    ArrayModifiableDBIDs a1 = DBIDUtil.newArray(size), a2 = DBIDUtil.newArray(size);
+    for(DBIDIter it = all.iter(); it.valid(); it.advance()) {
+      // Each object is in the first, the second, both, or neither set:
+      final int r = rnd.nextInt(4);
+      if(r != 3) {
+        (r == 0 ? a1 : a2).add(it);
+      }
+      if(r == 2) {
+        a1.add(it);
+      }
+    }
+    DBIDUtil.randomShuffle(a1, new Random(1L));
+    DBIDUtil.randomShuffle(a2, new Random(2L));
+    array1 = a1;
+    array2 = a2;
+    set1 = DBIDUtil.newHashSet(a1);
+    set2 = DBIDUtil.newHashSet(a2);
+  }
+
+  /**
+   * Intersection of two hash sets.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public DBIDs intersection() {
+    return DBIDUtil.intersection(set1, set2);
+  }
+
+  /**
+   * Size of the intersection of an array and a hash set.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public int intersectionSize() {
+    return DBIDUtil.intersectionSize(array1, set2);
+  }
+
+  /**
+   * Union of two hash sets.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public DBIDs union() {
+    return DBIDUtil.union(set1, set2);
+  }
+
+  /**
+   * Difference of an array and a hash set.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public DBIDs difference() {
+    return DBIDUtil.difference(array1, set2);
+  }
+}
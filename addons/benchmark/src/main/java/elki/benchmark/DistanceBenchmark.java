@@ -0,0 +1,116 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import elki.data.DoubleVector;
+import elki.data.HyperBoundingBox;
+import elki.distance.minkowski.EuclideanDistance;
+
+/**
+ * Benchmark the Euclidean distance and the minimum distance to a bounding box.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+  /**
+   * Number of vectors.
+   */
+  private static final int SIZE = 1024;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "10", "100" })
+  public int dim;
+
+  /**
+   * Data vectors.
+   */
+  private DoubleVector[] vecs;
+
+  /**
+   * Bounding boxes.
+   */
+  private HyperBoundingBox[] boxes;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    vecs = new DoubleVector[SIZE];
+    boxes = new HyperBoundingBox[SIZE];
+    for(int i = 0; i < SIZE; i++) {
+      double[] v = new double[dim], min = new double[dim], max = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        v[d] = rnd.nextDouble();
+        min[d] = rnd.nextDouble();
+        max[d] = min[d] + rnd.nextDouble() * .1;
+      }
+      vecs[i] = new DoubleVector(v);
+      boxes[i] = new HyperBoundingBox(min, max);
+    }
+  }
+
+  /**
+   * Euclidean distance of subsequent vectors.
+   *
+   * @param bh Blackhole
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void distance(Blackhole bh) {
+    final EuclideanDistance dist = EuclideanDistance.STATIC;
+    DoubleVector prev = vecs[SIZE - 1];
+    for(DoubleVector v : vecs) {
+      bh.consume(dist.distance(prev, v));
+      prev = v;
+    }
+  }
+
+  /**
+   * Minimum distance of vectors to boxes.
+   *
+   * @param bh Blackhole
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void minDist(Blackhole bh) {
+    final EuclideanDistance dist = EuclideanDistance.STATIC;
+    for(int i = 0; i < SIZE; i++) {
+      bh.consume(dist.minDist(vecs[i], boxes[i]));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.KNNHeap;
+
+/**
+ * Benchmark the insertion into kNN heaps.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KNNHeapBenchmark {
+  /**
+   * Number of insertions.
+   */
+  private static final int SIZE = 100000;
+
+  /**
+   * Heap size.
+   */
+  @Param({ "10", "100" })
+  public int k;
+
+  /**
+   * Distances to insert.
+   */
+  private double[] dists;
+
+  /**
+   * Object ids.
+   */
+  private DBIDRange ids;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    dists = new double[SIZE];
+    for(int i = 0; i < SIZE; i++) {
+      dists[i] = rnd.nextDouble();
+    }
+    ids = DBIDUtil.generateStaticDBIDRange(SIZE);
+  }
+
+  /**
+   * Insert all distances into a heap.
+   *
+   * @return kNN distance
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public double insert() {
+    KNNHeap heap = DBIDUtil.newHeap(k);
+    double max = Double.POSITIVE_INFINITY;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final double d = dists[it.getOffset()];
+      max = d <= max ? heap.insert(d, it) : max;
+    }
+    return max;
+  }
+}
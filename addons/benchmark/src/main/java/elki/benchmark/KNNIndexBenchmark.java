@@ -0,0 +1,211 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.index.IndexFactory;
+import elki.index.KNNIndex;
+import elki.index.laesa.LAESA;
+import elki.index.tree.metrical.covertree.CoverTree;
+import elki.index.tree.metrical.covertree.SimplifiedCoverTree;
+import elki.index.tree.metrical.vptree.GNAT;
+import elki.index.tree.metrical.vptree.VPTree;
+import elki.index.tree.spatial.kd.MemoryKDTree;
+import elki.index.tree.spatial.kd.MinimalisticMemoryKDTree;
+import elki.index.tree.spatial.kd.SmallMemoryKDTree;
+import elki.index.tree.spatial.rstarvariants.flat.FlatRStarTreeFactory;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.index.vafile.PartialVAFile;
+import elki.index.vafile.VAFile;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Benchmark kNN queries using the in-memory indexes.
+ * <p>
+ * The index construction is not included in the measurement.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KNNIndexBenchmark {
+  /**
+   * Data set size.
+   */
+  private static final int SIZE = 20000;
+
+  /**
+   * Number of queries per invocation.
+   */
+  private static final int QUERIES = 100;
+
+  /**
+   * Index to use.
+   */
+  @Param({ "linear", "kdtree", "smallkdtree", "minikdtree", "vptree", "gnat", //
+      "covertree", "simplifiedcovertree", "laesa", "vafile", "partialvafile", //
+      "rstartree", "flatrstartree" })
+  public String index;
+
+  /**
+   * Dimensionality.
+   */
+  @Param({ "2", "10" })
+  public int dim;
+
+  /**
+   * Number of neighbors.
+   */
+  @Param({ "10" })
+  public int k;
+
+  /**
+   * Query points.
+   */
+  private NumberVector[] queries;
+
+  /**
+   * kNN searcher.
+   */
+  private KNNSearcher<NumberVector> searcher;
+
+  /**
+   * Generate the data and build the index.
+   */
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[SIZE][dim];
+    for(double[] row : data) {
+      for(int d = 0; d < dim; d++) {
+        row[d] = rnd.nextDouble();
+      }
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), Collections.emptyList());
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DistanceQuery<NumberVector> dq = new QueryBuilder<>(rel, EuclideanDistance.STATIC).distanceQuery();
+    IndexFactory<NumberVector> factory = makeFactory(index);
+    if(factory == null) {
+      searcher = new QueryBuilder<>(dq).linearOnly().kNNByObject(k);
+    }
+    else {
+      KNNIndex<NumberVector> idx = (KNNIndex<NumberVector>) factory.instantiate(rel);
+      idx.initialize();
+      searcher = idx.kNNByObject(dq, k, 0);
+    }
+    if(searcher == null) {
+      throw new IllegalStateException("Index " + index + " does not support kNN queries.");
+    }
+    queries = new NumberVector[QUERIES];
+    for(int i = 0; i < QUERIES; i++) {
+      double[] q = new double[dim];
+      for(int d = 0; d < dim; d++) {
+        q[d] = rnd.nextDouble();
+      }
+      queries[i] = DoubleVector.wrap(q);
+    }
+  }
+
+  /**
+   * Build the index factory.
+   *
+   * @param name Index name
+   * @return Factory, {@code null} for a linear scan
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static IndexFactory<NumberVector> makeFactory(String name) {
+    switch(name){
+    case "linear":
+      return null;
+    case "kdtree":
+      return new ELKIBuilder<>(MemoryKDTree.Factory.class).build();
+    case "smallkdtree":
+      return new ELKIBuilder<>(SmallMemoryKDTree.Factory.class).build();
+    case "minikdtree":
+      return new ELKIBuilder<>(MinimalisticMemoryKDTree.Factory.class).build();
+    case "vptree":
+      return new ELKIBuilder<>(VPTree.Factory.class) //
+          .with(VPTree.Factory.Par.DISTANCE_FUNCTION_ID, EuclideanDistance.STATIC) //
+          .with(VPTree.Factory.Par.SEED_ID, 0L).build();
+    case "gnat":
+      return new ELKIBuilder<>(GNAT.Factory.class) //
+          .with(GNAT.Factory.Par.DISTANCE_FUNCTION_ID, EuclideanDistance.STATIC) //
+          .with(GNAT.Factory.Par.SEED_ID, 0L).build();
+    case "covertree":
+      return new ELKIBuilder<>(CoverTree.Factory.class) //
+          .with(CoverTree.Factory.Par.DISTANCE_FUNCTION_ID, EuclideanDistance.STATIC).build();
+    case "simplifiedcovertree":
+      return new ELKIBuilder<>(SimplifiedCoverTree.Factory.class) //
+          .with(SimplifiedCoverTree.Factory.Par.DISTANCE_FUNCTION_ID, EuclideanDistance.STATIC).build();
+    case "laesa":
+      return new ELKIBuilder<>(LAESA.Factory.class) //
+          .with(LAESA.Factory.Par.DISTANCE_FUNCTION_ID, EuclideanDistance.STATIC) //
+          .with(LAESA.Factory.Par.SEED_ID, 0L).build();
+    case "vafile":
+      return new ELKIBuilder<>(VAFile.Factory.class).with(VAFile.Factory.Par.PARTITIONS_ID, 16).build();
+    case "partialvafile":
+      return new ELKIBuilder<>(PartialVAFile.Factory.class).with(PartialVAFile.Factory.PARTITIONS_ID, 16).build();
+    case "rstartree":
+      return new ELKIBuilder<>(RStarTreeFactory.class).build();
+    case "flatrstartree":
+      return new ELKIBuilder<>(FlatRStarTreeFactory.class).build();
+    default:
+      throw new IllegalArgumentException("Unknown index: " + name);
+    }
+  }
+
+  /**
+   * Run the kNN queries.
+   *
+   * @param bh Blackhole
+   */
+  @Benchmark
+  @OperationsPerInvocation(QUERIES)
+  public void knn(Blackhole bh) {
+    for(NumberVector q : queries) {
+      bh.consume(searcher.getKNN(q, k));
+    }
+  }
+}
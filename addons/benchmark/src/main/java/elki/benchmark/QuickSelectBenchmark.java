@@ -0,0 +1,96 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.utilities.datastructures.QuickSelect;
+
+/**
+ * Benchmark median computation with QuickSelect.
+ * <p>
+ * The copying of the input is included in the measurement, as QuickSelect
+ * reorders the data; use {@link #copy} as baseline.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuickSelectBenchmark {
+  /**
+   * Data size.
+   */
+  @Param({ "1000", "100000" })
+  public int size;
+
+  /**
+   * Input data.
+   */
+  private double[] data;
+
+  /**
+   * Working copy.
+   */
+  private double[] work;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    data = new double[size];
+    for(int i = 0; i < size; i++) {
+      data[i] = rnd.nextDouble();
+    }
+    work = new double[size];
+  }
+
+  /**
+   * Baseline: copy the input only.
+   *
+   * @return Copy
+   */
+  @Benchmark
+  public double[] copy() {
+    System.arraycopy(data, 0, work, 0, size);
+    return work;
+  }
+
+  /**
+   * Compute the median.
+   *
+   * @return Median
+   */
+  @Benchmark
+  public double median() {
+    System.arraycopy(data, 0, work, 0, size);
+    return QuickSelect.median(work);
+  }
+}
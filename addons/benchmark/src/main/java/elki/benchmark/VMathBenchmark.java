@@ -0,0 +1,149 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import elki.math.linearalgebra.VMath;
+
+/**
+ * Benchmark common vector and matrix kernels.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VMathBenchmark {
+  /**
+   * Dimensionality.
+   */
+  @Param({ "10", "100" })
+  public int dim;
+
+  /**
+   * Vectors.
+   */
+  private double[] v1, v2;
+
+  /**
+   * Matrixes.
+   */
+  private double[][] m1, m2;
+
+  /**
+   * Generate the data.
+   */
+  @Setup
+  public void setup() {
+    Random rnd = new Random(0L);
+    v1 = random(rnd, dim);
+    v2 = random(rnd, dim);
+    m1 = new double[dim][];
+    m2 = new double[dim][];
+    for(int i = 0; i < dim; i++) {
+      m1[i] = random(rnd, dim);
+      m2[i] = random(rnd, dim);
+    }
+  }
+
+  /**
+   * Random vector.
+   *
+   * @param rnd Random generator
+   * @param dim Dimensionality
+   * @return Vector
+   */
+  private static double[] random(Random rnd, int dim) {
+    double[] v = new double[dim];
+    for(int i = 0; i < dim; i++) {
+      v[i] = rnd.nextDouble();
+    }
+    return v;
+  }
+
+  /**
+   * Dot product.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public double dot() {
+    return VMath.dot(v1, v2);
+  }
+
+  /**
+   * Vector addition with scaling.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public double[] plusTimes() {
+    return VMath.plusTimes(v1, v2, .5);
+  }
+
+  /**
+   * Matrix-vector product.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public double[] timesVector() {
+    return VMath.times(m1, v1);
+  }
+
+  /**
+   * Transposed matrix-vector product.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public double[] transposeTimesVector() {
+    return VMath.transposeTimes(m1, v1);
+  }
+
+  /**
+   * Matrix-matrix product.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public double[][] timesMatrix() {
+    return VMath.times(m1, m2);
+  }
+
+  /**
+   * Transposed matrix-matrix product.
+   *
+   * @return Result
+   */
+  @Benchmark
+  public double[][] transposeTimesMatrix() {
+    return VMath.transposeTimes(m1, m2);
+  }
+}
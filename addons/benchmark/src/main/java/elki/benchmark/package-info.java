@@ -0,0 +1,29 @@
+/**
+ * JMH microbenchmarks of performance critical primitives.
+ * <p>
+ * Contrary to the benchmark applications in {@code elki.application.benchmark},
+ * these use JMH for warmup and forking, to obtain reproducible numbers for
+ * detecting performance regressions. Run them with:
+ * {@code gradle :elki-benchmark:jmh -Pjmh="<regexp> <jmh options>"}
+ */
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.benchmark;
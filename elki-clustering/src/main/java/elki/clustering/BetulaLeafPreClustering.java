@@ -37,6 +37,7 @@ import elki.database.ids.DBIDs;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.Relation;
 import elki.database.relation.RelationUtil;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.index.tree.betula.CFTree;
 import elki.index.tree.betula.CFTree.LeafIterator;
 import elki.index.tree.betula.features.ClusterFeature;
@@ -141,6 +142,39 @@ public class BetulaLeafPreClustering implements ClusteringAlgorithm<Clustering<M
         ids.add(iter);
       }
     }
+    return wrapResult(tree, idmap, dim);
+  }
+
+  /**
+   * Run the clustering algorithm on a stream of vectors, in a single pass over
+   * the data.
+   * <p>
+   * The CF-tree is built directly from the stream (see
+   * {@link CFTree.Factory#newTree(BundleStreamSource)}). Because the objects
+   * are not stored, the resulting clusters contain no object ids, only the
+   * cluster models.
+   *
+   * @param source Data source
+   * @return Clustering
+   */
+  public Clustering<MeanModel> run(BundleStreamSource source) {
+    CFTree<?> tree = cffactory.newTree(source);
+    Map<ClusterFeature, DBIDs> idmap = new Reference2ObjectOpenHashMap<>(tree.numLeaves());
+    for(LeafIterator<?> it = tree.leafIterator(); it.valid(); it.advance()) {
+      idmap.put(it.get(), DBIDUtil.newArray(0));
+    }
+    return wrapResult(tree, idmap, tree.getRoot().getCF().getDimensionality());
+  }
+
+  /**
+   * Produce the clustering result, with one cluster per leaf.
+   *
+   * @param tree CF tree
+   * @param idmap Object ids of each leaf
+   * @param dim Dimensionality
+   * @return Clustering
+   */
+  private Clustering<MeanModel> wrapResult(CFTree<?> tree, Map<ClusterFeature, DBIDs> idmap, int dim) {
     Clustering<MeanModel> result = new Clustering<>();
     for(Map.Entry<ClusterFeature, DBIDs> ent : idmap.entrySet()) {
       ClusterFeature leaf = ent.getKey();
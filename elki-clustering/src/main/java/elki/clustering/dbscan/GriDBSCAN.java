@@ -20,7 +20,9 @@
  */
 package elki.clustering.dbscan;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import elki.Algorithm;
 import elki.clustering.ClusteringAlgorithm;
@@ -54,6 +56,7 @@ import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.LongStatistic;
 import elki.logging.statistics.StringStatistic;
+import elki.parallel.ParallelExecutor;
 import elki.result.Metadata;
 import elki.utilities.documentation.Reference;
 import elki.utilities.documentation.Title;
@@ -79,6 +82,9 @@ import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
  * <p>
  * Because of partitioning the data, this version does not make use of indexes.
  * <p>
+ * The grid cells are processed in parallel batches, and the results are merged
+ * in the same order as a sequential run.
+ * <p>
  * Reference:
  * <p>
  * S. Mahran, K. Mahar<br>
@@ -188,6 +194,11 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      */
     protected static final int NOISE = 1;
 
+    /**
+     * Number of grid cells processed in parallel before merging.
+     */
+    private static final int CELLBATCH = 256;
+
     /**
      * Distance function used.
      */
@@ -248,11 +259,6 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      */
     private WritableDataStore<Assignment> clusterids;
 
-    /**
-     * Temporary assignments of a single run.
-     */
-    private WritableIntegerDataStore temporary;
-
     /**
      * Indicates that the number of grid cells has overflown.
      */
@@ -302,48 +308,66 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
 
       // (Temporary) store the cluster ID assigned.
       clusterids = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_TEMP, Assignment.class);
-      temporary = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_TEMP, UNPROCESSED);
-      final ArrayModifiableDBIDs activeSet = DBIDUtil.newArray();
       // Reserve the first two cluster ids:
       int clusterid = NOISE + 1;
       this.cores = new Core[2];
       this.borders = new Border[2];
 
-      // Reused storage for neighbors:
-      ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList(minpts << 1);
-      // Run DBSCAN on each cell that has enough objects.
-      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Processing grid cells", mincells, LOG) : null;
+      // Cells that have enough objects to run DBSCAN on.
+      final List<ModifiableDBIDs> todo = new ArrayList<>(mincells);
       for(ModifiableDBIDs cellids : grid.values()) {
-        if(cellids.size() < minpts) {
-          continue; // Too few objects.
+        if(cellids.size() >= minpts) {
+          todo.add(cellids);
+        }
+      }
+      final WritableIntegerDataStore[] temporary = new WritableIntegerDataStore[CELLBATCH];
+      final int[] nclusters = new int[CELLBATCH];
+      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Processing grid cells", mincells, LOG) : null;
+      for(int b = 0; b < todo.size(); b += CELLBATCH) {
+        // Run DBSCAN on a batch of cells in parallel:
+        final int bstart = b;
+        ParallelExecutor.run(bstart, Math.min(bstart + CELLBATCH, todo.size()), 1, (start, end) -> {
+          for(int c = start; c < end; c++) {
+            final DBIDs cellids = todo.get(c);
+            temporary[c - bstart] = DataStoreUtil.makeIntegerStorage(cellids, DataStoreFactory.HINT_TEMP, UNPROCESSED);
+            nclusters[c - bstart] = runDBSCANOnCell(cellids, relation, temporary[c - bstart]);
+          }
+        });
+        // Merge the results in cell order:
+        for(int c = bstart, e = Math.min(bstart + CELLBATCH, todo.size()); c < e; c++) {
+          final int shift = clusterid - (NOISE + 1);
+          clusterid += nclusters[c - bstart];
+          // Post-process DBSCAN clustering result:
+          updateCoreBorderObjects(clusterid);
+          mergeClusterInformation(todo.get(c), temporary[c - bstart], shift, clusterids);
+          temporary[c - bstart].destroy();
+          temporary[c - bstart] = null;
+          LOG.incrementProcessed(cprog);
         }
-        clusterid += runDBSCANOnCell(cellids, relation, neighbors, activeSet, clusterid);
-        // Post-process DBSCAN clustering result:
-        updateCoreBorderObjects(clusterid);
-        mergeClusterInformation(cellids, temporary, clusterids);
-        LOG.incrementProcessed(cprog);
       }
       LOG.ensureCompleted(cprog);
-      temporary.destroy();
 
       return buildResult(ids, clusterid);
     }
 
     /**
-     * Run DBSCAN on a single cell
-     * 
+     * Run DBSCAN on a single cell, using cluster numbers starting at
+     * {@code NOISE + 1}.
+     * <p>
+     * This is called from multiple threads, and must only modify the cell
+     * assignment storage.
+     *
      * @param cellids objects in the cell
      * @param relation data relation
-     * @param neighbors neighbor output (recycled object)
-     * @param activeSet active set of cluster seeds
-     * @param clusterid cluster number
-     * @return next cluster id
+     * @param temporary cell assignment storage
+     * @return number of clusters found
      */
-    private int runDBSCANOnCell(DBIDs cellids, Relation<V> relation, ModifiableDoubleDBIDList neighbors, ArrayModifiableDBIDs activeSet, int clusterid) {
-      temporary.clear(); // Reset to "UNPROCESSED"
+    private int runDBSCANOnCell(DBIDs cellids, Relation<V> relation, WritableIntegerDataStore temporary) {
       ProxyView<V> rel = new ProxyView<>(cellids, relation);
       RangeSearcher<DBIDRef> rq = new QueryBuilder<>(rel, distance).rangeByDBID(epsilon);
-      FiniteProgress pprog = LOG.isVerbose() ? new FiniteProgress("Running DBSCAN", cellids.size(), LOG) : null;
+      ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList(minpts << 1);
+      ArrayModifiableDBIDs activeSet = DBIDUtil.newArray();
+      int clusterid = NOISE + 1;
       for(DBIDIter id = cellids.iter(); id.valid(); id.advance()) {
         // Skip already processed ids.
         if(temporary.intValue(id) != UNPROCESSED) {
@@ -351,16 +375,14 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
         }
         rq.getRange(id, epsilon, neighbors.clear());
         if(neighbors.size() >= minpts) {
-          expandCluster(id, clusterid, temporary, neighbors, activeSet, rq, pprog);
+          expandCluster(id, clusterid, temporary, neighbors, activeSet, rq, null);
           ++clusterid;
         }
         else {
           temporary.putInt(id, NOISE);
-          LOG.incrementProcessed(pprog);
         }
       }
-      LOG.ensureCompleted(pprog);
-      return clusterid;
+      return clusterid - (NOISE + 1);
     }
 
     /**
@@ -575,12 +597,14 @@ public class GriDBSCAN<V extends NumberVector> implements ClusteringAlgorithm<Cl
      *
      * @param cellids IDs in current cell
      * @param temporary Temporary assignments
+     * @param shift Offset of the cell cluster numbers
      * @param clusterids Merged cluster assignment
      */
-    protected void mergeClusterInformation(ModifiableDBIDs cellids, WritableIntegerDataStore temporary, WritableDataStore<Assignment> clusterids) {
+    protected void mergeClusterInformation(ModifiableDBIDs cellids, WritableIntegerDataStore temporary, int shift, WritableDataStore<Assignment> clusterids) {
       FiniteProgress mprog = LOG.isVerbose() ? new FiniteProgress("Collecting result", cellids.size(), LOG) : null;
       for(DBIDIter id = cellids.iter(); id.valid(); id.advance()) {
         int nclus = temporary.intValue(id);
+        nclus = nclus > NOISE ? nclus + shift : nclus < 0 ? nclus - shift : nclus;
         if(nclus > NOISE) { // Core point
           Core core = cores[nclus];
           assert (core.num > NOISE);
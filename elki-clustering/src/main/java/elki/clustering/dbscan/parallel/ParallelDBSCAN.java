@@ -0,0 +1,199 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.dbscan.parallel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import elki.clustering.dbscan.DBSCAN;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.model.ClusterModel;
+import elki.data.model.Model;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.logging.statistics.DoubleStatistic;
+import elki.parallel.ParallelExecutor;
+import elki.result.Metadata;
+import elki.utilities.datastructures.unionfind.ConcurrentUnionFind;
+import elki.utilities.datastructures.unionfind.UnionFindUtil;
+
+/**
+ * Parallel DBSCAN, for a distance and epsilon range query.
+ * <p>
+ * Instead of expanding one cluster at a time, this runs the range queries in
+ * parallel blocks: the first pass only determines the core points, the second
+ * pass queries the neighbors of the core points again, and joins neighboring
+ * core points in a concurrent union-find structure. Non-core points are assigned to the
+ * cluster of one of their core neighbors. Because this needs two range
+ * queries per core point, it is only beneficial with multiple cores, but it
+ * does not need to store the neighborhoods.
+ * <p>
+ * The result is the same as with {@link DBSCAN}, except that border points in
+ * the neighborhood of multiple clusters may be assigned to a different one of
+ * these clusters.
+ * <p>
+ * Range searchers are instantiated for each block, as index searchers need not
+ * be thread-safe.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> the type of Object the algorithm is applied to
+ */
+public class ParallelDBSCAN<O> extends DBSCAN<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelDBSCAN.class);
+
+  /**
+   * Minimum number of objects per parallel block.
+   */
+  private static final int BLOCKSIZE = 256;
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param distance Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts parameter
+   */
+  public ParallelDBSCAN(Distance<? super O> distance, double epsilon, int minpts) {
+    super(distance, epsilon, minpts);
+  }
+
+  @Override
+  public Clustering<Model> run(Relation<O> relation) {
+    final int size = relation.size();
+    if(size < minpts) {
+      Clustering<Model> result = new Clustering<>();
+      Metadata.of(result).setLongName("DBSCAN Clustering");
+      result.addToplevelCluster(new Cluster<Model>(relation.getDBIDs(), true, ClusterModel.CLUSTER));
+      return result;
+    }
+    final DBIDEnum ids = DBIDUtil.ensureEnum(relation.getDBIDs());
+    final boolean[] core = new boolean[size];
+    final LongAdder ncounter = new LongAdder();
+    // The first searcher may add an index, which is then used by all blocks.
+    final RangeSearcher<DBIDRef> rq0 = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+    // First pass: find the core points.
+    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Finding core points", size, LOG) : null;
+    ParallelExecutor.run(0, size, BLOCKSIZE, (start, end) -> {
+      RangeSearcher<DBIDRef> rq = start == 0 ? rq0 : new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+      ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList();
+      long n = 0;
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        rq.getRange(it, epsilon, neighbors.clear());
+        n += neighbors.size();
+        core[it.getOffset()] = neighbors.size() >= minpts;
+      }
+      ncounter.add(n);
+      LOG.incrementProcessed(cprog, end - start);
+    });
+    LOG.ensureCompleted(cprog);
+
+    double averagen = ncounter.sum() / (double) size;
+    LOG.statistics(new DoubleStatistic(ParallelDBSCAN.class.getName() + ".average-neighbors", averagen));
+    if(averagen < 1 + 0.1 * (minpts - 1)) {
+      LOG.warning("There are very few neighbors found. Epsilon may be too small.");
+    }
+    if(averagen > 100 * minpts) {
+      LOG.warning("There are very many neighbors found. Epsilon may be too large.");
+    }
+
+    // Second pass: connect the core points, and assign border points.
+    final int[] border = new int[size];
+    Arrays.fill(border, -1);
+    final ConcurrentUnionFind uf = UnionFindUtil.makeConcurrent(ids);
+    FiniteProgress eprog = LOG.isVerbose() ? new FiniteProgress("Connecting core points", size, LOG) : null;
+    ParallelExecutor.run(0, size, BLOCKSIZE, (start, end) -> {
+      RangeSearcher<DBIDRef> rq = start == 0 ? rq0 : new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+      ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList();
+      for(DBIDArrayIter it = ids.iter().seek(start); it.getOffset() < end; it.advance()) {
+        final int i = it.getOffset();
+        if(!core[i]) {
+          continue;
+        }
+        rq.getRange(it, epsilon, neighbors.clear());
+        for(DoubleDBIDListIter nit = neighbors.iter(); nit.valid(); nit.advance()) {
+          final int j = ids.index(nit);
+          if(core[j]) {
+            if(j < i) { // Each edge is found from both ends
+              uf.union(i, j);
+            }
+          }
+          else if(border[j] < 0) {
+            border[j] = i; // Any core neighbor is acceptable.
+          }
+        }
+      }
+      LOG.incrementProcessed(eprog, end - start);
+    });
+    LOG.ensureCompleted(eprog);
+
+    // Build the clusters from the components:
+    int[] cnum = new int[size];
+    Arrays.fill(cnum, -1);
+    List<ModifiableDBIDs> clusters = new ArrayList<>();
+    ModifiableDBIDs noise = DBIDUtil.newArray();
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int i = it.getOffset(), c = core[i] ? i : border[i];
+      if(c < 0) {
+        noise.add(it);
+        continue;
+      }
+      final int root = uf.find(c);
+      if(cnum[root] < 0) {
+        cnum[root] = clusters.size();
+        clusters.add(DBIDUtil.newArray());
+      }
+      clusters.get(cnum[root]).add(it);
+    }
+
+    Clustering<Model> result = new Clustering<>();
+    Metadata.of(result).setLongName("DBSCAN Clustering");
+    for(ModifiableDBIDs res : clusters) {
+      result.addToplevelCluster(new Cluster<Model>(res, ClusterModel.CLUSTER));
+    }
+    result.addToplevelCluster(new Cluster<Model>(noise, true, ClusterModel.CLUSTER));
+    return result;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public static class Par<O> extends DBSCAN.Par<O> {
+    @Override
+    public ParallelDBSCAN<O> make() {
+      return new ParallelDBSCAN<>(distance, epsilon, minpts);
+    }
+  }
+}
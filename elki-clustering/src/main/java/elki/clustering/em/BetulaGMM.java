@@ -43,6 +43,7 @@ import elki.database.ids.DBIDUtil;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.MaterializedRelation;
 import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.index.tree.betula.CFTree;
 import elki.index.tree.betula.features.ClusterFeature;
 import elki.logging.Logging;
@@ -182,7 +183,70 @@ public class BetulaGMM implements ClusteringAlgorithm<Clustering<EMModel>> {
     // generate Tree
     CFTree<?> tree = cffactory.newTree(relation.getDBIDs(), relation, false);
 
-    // Store clustering features:
+    List<? extends BetulaClusterModel> models = fit(tree);
+    Clustering<EMModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("EM Clustering");
+    if(tree.isModelOnly()) {
+      for(int i = 0; i < k; i++) {
+        result.addToplevelCluster(new Cluster<>(DBIDUtil.newArray(1), models.get(i).finalizeCluster()));
+      }
+    }
+    else {
+      // fill result with clusters and models
+      List<ModifiableDBIDs> hardClusters = new ArrayList<>(k);
+      for(int i = 0; i < k; i++) {
+        hardClusters.add(DBIDUtil.newArray());
+      }
+
+      WritableDataStore<double[]> finalClusterIGivenX = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
+      double loglikelihood = assignProbabilitiesToInstances(relation, models, finalClusterIGivenX);
+      LOG.statistics(new DoubleStatistic(this.getClass().getName() + ".loglikelihood", loglikelihood));
+
+      // provide a hard clustering
+      for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
+        hardClusters.get(argmax(finalClusterIGivenX.get(iditer))).add(iditer);
+      }
+      // provide models within the result
+      for(int i = 0; i < k; i++) {
+        result.addToplevelCluster(new Cluster<>(hardClusters.get(i), models.get(i).finalizeCluster()));
+      }
+      if(soft) {
+        Metadata.hierarchyOf(result).addChild(new MaterializedRelation<>("EM Cluster Probabilities", EM.SOFT_TYPE, relation.getDBIDs(), finalClusterIGivenX));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Run the clustering algorithm on a stream of vectors, in a single pass over
+   * the data.
+   * <p>
+   * The CF-tree is built directly from the stream (see
+   * {@link CFTree.Factory#newTree(BundleStreamSource)}), and EM is run on the
+   * leaf entries. Because the objects are not stored, the resulting clusters
+   * contain no object ids, only the cluster models.
+   *
+   * @param source Data source
+   * @return Clustering
+   */
+  public Clustering<EMModel> run(BundleStreamSource source) {
+    CFTree<?> tree = cffactory.newTree(source);
+    List<? extends BetulaClusterModel> models = fit(tree);
+    Clustering<EMModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("EM Clustering");
+    for(int i = 0; i < k; i++) {
+      result.addToplevelCluster(new Cluster<>(DBIDUtil.newArray(0), models.get(i).finalizeCluster()));
+    }
+    return result;
+  }
+
+  /**
+   * Fit the mixture models to the leaf entries of the tree.
+   *
+   * @param tree CF tree
+   * @return Cluster models
+   */
+  protected List<? extends BetulaClusterModel> fit(CFTree<?> tree) {
     Duration modeltime = LOG.newDuration(getClass().getName() + ".modeltime").begin();
     ArrayList<? extends ClusterFeature> cfs = tree.getLeaves();
     // Initialize EM Model
@@ -214,37 +278,7 @@ public class BetulaGMM implements ClusteringAlgorithm<Clustering<EMModel>> {
     }
     LOG.statistics(new LongStatistic(this.getClass().getName() + ".iterations", it));
     LOG.statistics(modeltime.end());
-    Clustering<EMModel> result = new Clustering<>();
-    Metadata.of(result).setLongName("EM Clustering");
-    if(tree.isModelOnly()) {
-      for(int i = 0; i < k; i++) {
-        result.addToplevelCluster(new Cluster<>(DBIDUtil.newArray(1), models.get(i).finalizeCluster()));
-      }
-    }
-    else {
-      // fill result with clusters and models
-      List<ModifiableDBIDs> hardClusters = new ArrayList<>(k);
-      for(int i = 0; i < k; i++) {
-        hardClusters.add(DBIDUtil.newArray());
-      }
-
-      WritableDataStore<double[]> finalClusterIGivenX = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
-      loglikelihood = assignProbabilitiesToInstances(relation, models, finalClusterIGivenX);
-      LOG.statistics(new DoubleStatistic(this.getClass().getName() + ".loglikelihood", loglikelihood));
-
-      // provide a hard clustering
-      for(DBIDIter iditer = relation.iterDBIDs(); iditer.valid(); iditer.advance()) {
-        hardClusters.get(argmax(finalClusterIGivenX.get(iditer))).add(iditer);
-      }
-      // provide models within the result
-      for(int i = 0; i < k; i++) {
-        result.addToplevelCluster(new Cluster<>(hardClusters.get(i), models.get(i).finalizeCluster()));
-      }
-      if(soft) {
-        Metadata.hierarchyOf(result).addChild(new MaterializedRelation<>("EM Cluster Probabilities", EM.SOFT_TYPE, relation.getDBIDs(), finalClusterIGivenX));
-      }
-    }
-    return result;
+    return models;
   }
 
   /**
@@ -222,7 +222,7 @@ public class EM<O, M extends MeanModel> implements ClusteringAlgorithm<Clusterin
     // initial models
     List<? extends EMClusterModel<? super O, M>> models = mfactory.buildInitialModels(relation, k);
     WritableDataStore<double[]> probClusterIGivenX = DataStoreUtil.makeStorage(relation.getDBIDs(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_SORTED, double[].class);
-    double loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX, null);
+    double loglikelihood = assignProbabilities(relation, models, probClusterIGivenX);
     DoubleStatistic likestat = new DoubleStatistic(this.getClass().getName() + ".loglikelihood");
     LOG.statistics(likestat.setDouble(loglikelihood));
 
@@ -231,14 +231,9 @@ public class EM<O, M extends MeanModel> implements ClusteringAlgorithm<Clusterin
     double bestloglikelihood = Double.NEGATIVE_INFINITY;
     for(++it; it < maxiter || maxiter < 0; it++) {
       final double oldloglikelihood = loglikelihood;
-      if(hard) {
-        recomputeModelsHard(relation, probClusterIGivenX, models, prior);
-      }
-      else {
-        recomputeModels(relation, probClusterIGivenX, models, prior);
-      }
+      updateModels(relation, probClusterIGivenX, models);
       // reassign probabilities
-      loglikelihood = assignProbabilitiesToInstances(relation, models, probClusterIGivenX, null);
+      loglikelihood = assignProbabilities(relation, models, probClusterIGivenX);
 
       LOG.statistics(likestat.setDouble(loglikelihood));
       if(loglikelihood - bestloglikelihood > delta) {
@@ -276,6 +271,34 @@ public class EM<O, M extends MeanModel> implements ClusteringAlgorithm<Clusterin
     return result;
   }
 
+  /**
+   * Recompute the cluster models, using soft or hard assignments.
+   *
+   * @param relation Vector data
+   * @param probClusterIGivenX Object probabilities
+   * @param models Cluster models to update
+   */
+  protected void updateModels(Relation<? extends O> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<? super O, M>> models) {
+    if(hard) {
+      recomputeModelsHard(relation, probClusterIGivenX, models, prior);
+    }
+    else {
+      recomputeModels(relation, probClusterIGivenX, models, prior);
+    }
+  }
+
+  /**
+   * Assign the cluster probabilities to the instances.
+   *
+   * @param relation Vector data
+   * @param models Cluster models
+   * @param probClusterIGivenX Output storage for cluster probabilities
+   * @return the expectation value of the current mixture of distributions
+   */
+  protected double assignProbabilities(Relation<? extends O> relation, List<? extends EMClusterModel<? super O, M>> models, WritableDataStore<double[]> probClusterIGivenX) {
+    return assignProbabilitiesToInstances(relation, models, probClusterIGivenX, null);
+  }
+
   /**
    * Recompute the cluster models (covariance matrixes).
    * 
@@ -0,0 +1,269 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.em;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import elki.clustering.em.models.EMClusterModel;
+import elki.clustering.em.models.EMClusterModelFactory;
+import elki.data.model.MeanModel;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.math.linearalgebra.VMath;
+import elki.parallel.ParallelExecutor;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of the EM clustering algorithm (Gaussian Mixture
+ * Modeling).
+ * <p>
+ * Both the computation of the cluster probabilities and the recomputation of
+ * the cluster models are parallelized over blocks of the data. For the model
+ * update, every block aggregates partial weighted means and scatter matrixes,
+ * which are then merged using the pairwise update formulas of Chan et al.
+ * (as in {@link elki.math.MeanVariance}), so the result matches the
+ * sequential version up to rounding.
+ * <p>
+ * The block boundaries only depend on the data size, and the partial results
+ * are merged in block order, so the result does not depend on the number of
+ * threads or the scheduling, and is reproducible.
+ * <p>
+ * Models that do not support partial aggregation (see
+ * {@link EMClusterModel#supportsPartial()}), such as the two-pass models, are
+ * updated sequentially.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> Object type
+ * @param <M> Model type
+ */
+public class ParallelEM<O, M extends MeanModel> extends EM<O, M> {
+  /**
+   * Minimum block size for parallel processing.
+   */
+  private static final int BLOCKSIZE = 256;
+
+  /**
+   * Maximum number of blocks, to bound the memory of the partial models.
+   */
+  private static final int MAX_BLOCKS = 256;
+
+  /**
+   * Constructor.
+   *
+   * @param mfactory EM cluster model factory
+   * @param k k parameter
+   * @param delta delta parameter
+   * @param miniter Minimum number of iterations
+   * @param maxiter Maximum number of iterations
+   * @param hard Use hard assignments during optimization
+   * @param soft Include soft assignments
+   * @param prior MAP prior
+   */
+  public ParallelEM(EMClusterModelFactory<? super O, M> mfactory, int k, double delta, int miniter, int maxiter, boolean hard, boolean soft, double prior) {
+    super(mfactory, k, delta, miniter, maxiter, hard, soft, prior);
+  }
+
+  @Override
+  protected void updateModels(Relation<? extends O> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<? super O, M>> models) {
+    recomputeModels(relation, probClusterIGivenX, models, prior, hard);
+  }
+
+  @Override
+  protected double assignProbabilities(Relation<? extends O> relation, List<? extends EMClusterModel<? super O, M>> models, WritableDataStore<double[]> probClusterIGivenX) {
+    return assignProbabilitiesToInstances(relation, models, probClusterIGivenX, null);
+  }
+
+  /**
+   * Recompute the cluster models (covariance matrixes) in parallel.
+   * <p>
+   * Falls back to the sequential version if the models do not support partial
+   * aggregation.
+   *
+   * @param <O> Object type
+   * @param relation Vector data
+   * @param probClusterIGivenX Object probabilities
+   * @param models Cluster models to update
+   * @param prior MAP prior (use 0 for MLE)
+   * @param hard Use hard assignments
+   */
+  public static <O> void recomputeModels(Relation<? extends O> relation, WritableDataStore<double[]> probClusterIGivenX, List<? extends EMClusterModel<? super O, ?>> models, double prior, boolean hard) {
+    final int k = models.size();
+    for(EMClusterModel<?, ?> m : models) {
+      if(m.needsTwoPass() || !m.supportsPartial()) {
+        if(hard) {
+          EM.recomputeModelsHard(relation, probClusterIGivenX, models, prior);
+        }
+        else {
+          EM.recomputeModels(relation, probClusterIGivenX, models, prior);
+        }
+        return;
+      }
+    }
+    for(EMClusterModel<?, ?> m : models) {
+      m.beginEStep();
+    }
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size(), blocksize = blockSize(size);
+    final int nblocks = (size + blocksize - 1) / blocksize;
+    @SuppressWarnings("unchecked")
+    final List<EMClusterModel<? super O, ?>>[] partials = new List[nblocks];
+    final double[][] pwsums = new double[nblocks][];
+    ParallelExecutor.run(0, nblocks, 1, (bstart, bend) -> {
+      DBIDArrayIter it = ids.iter();
+      for(int b = bstart; b < bend; b++) {
+        List<EMClusterModel<? super O, ?>> partial = new ArrayList<>(k);
+        for(EMClusterModel<? super O, ?> m : models) {
+          partial.add(m.newPartial());
+        }
+        double[] pwsum = new double[k];
+        for(int j = b * blocksize, end = Math.min(size, j + blocksize); j < end; j++) {
+          double[] clusterProbabilities = probClusterIGivenX.get(it.seek(j));
+          O instance = relation.get(it);
+          if(hard) {
+            final int argmax = VMath.argmax(clusterProbabilities);
+            partial.get(argmax).updateE(instance, 1.);
+            pwsum[argmax] += 1.;
+            continue;
+          }
+          for(int i = 0; i < k; i++) {
+            final double prob = clusterProbabilities[i];
+            if(prob > 1e-10) {
+              partial.get(i).updateE(instance, prob);
+            }
+            pwsum[i] += prob;
+          }
+        }
+        partials[b] = partial;
+        pwsums[b] = pwsum;
+      }
+    });
+    // Merge in block order, for reproducible results:
+    final double[] wsum = new double[k];
+    for(int b = 0; b < nblocks; b++) {
+      for(int i = 0; i < k; i++) {
+        models.get(i).mergePartial(partials[b].get(i));
+        wsum[i] += pwsums[b][i];
+      }
+      partials[b] = null;
+    }
+    for(int i = 0; i < k; i++) {
+      // MLE / MAP
+      final double weight = prior <= 0. ? wsum[i] / relation.size() : (wsum[i] + prior - 1) / (relation.size() + prior * k - k);
+      models.get(i).finalizeEStep(weight, prior);
+    }
+  }
+
+  /**
+   * Assigns the current probability values to the instances in the database and
+   * compute the expectation value of the current mixture of distributions, in
+   * parallel.
+   *
+   * @param relation the database used for assignment to instances
+   * @param models Cluster models
+   * @param probClusterIGivenX Output storage for cluster probabilities
+   * @param loglikelihoods Per-object log likelihood, for EM Outlier; may be
+   *        {@code null} if not used
+   * @param <O> Object type
+   * @return the expectation value of the current mixture of distributions
+   */
+  public static <O> double assignProbabilitiesToInstances(Relation<? extends O> relation, List<? extends EMClusterModel<? super O, ?>> models, WritableDataStore<double[]> probClusterIGivenX, WritableDoubleDataStore loglikelihoods) {
+    final int k = models.size();
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int size = ids.size();
+    // Data stores are not thread safe, so we read and write sequentially:
+    final double[][] allprobs = new double[size][];
+    final double[] logPs = loglikelihoods != null ? new double[size] : null;
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      allprobs[it.getOffset()] = probClusterIGivenX.get(it);
+    }
+    final int blocksize = blockSize(size), nblocks = (size + blocksize - 1) / blocksize;
+    final double[] sums = new double[nblocks];
+    ParallelExecutor.run(0, nblocks, 1, (bstart, bend) -> {
+      DBIDArrayIter it = ids.iter();
+      for(int b = bstart; b < bend; b++) {
+        double sum = 0.;
+        for(int j = b * blocksize, end = Math.min(size, j + blocksize); j < end; j++) {
+          O vec = relation.get(it.seek(j));
+          double[] probs = allprobs[j] != null ? allprobs[j] : (allprobs[j] = new double[k]);
+          for(int i = 0; i < k; i++) {
+            double v = models.get(i).estimateLogDensity(vec);
+            probs[i] = v > MIN_LOGLIKELIHOOD ? v : MIN_LOGLIKELIHOOD;
+          }
+          final double logP = logSumExp(probs);
+          for(int i = 0; i < k; i++) {
+            probs[i] = FastMath.exp(probs[i] - logP);
+          }
+          if(logPs != null) {
+            logPs[j] = logP;
+          }
+          sum += logP;
+        }
+        sums[b] = sum;
+      }
+    });
+    // Sum in block order, for reproducible results:
+    double emSum = 0.;
+    for(double sum : sums) {
+      emSum += sum;
+    }
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int j = it.getOffset();
+      probClusterIGivenX.put(it, allprobs[j]);
+      if(loglikelihoods != null) {
+        loglikelihoods.put(it, logPs[j]);
+      }
+    }
+    return emSum / size;
+  }
+
+  /**
+   * Choose the block size, depending on the data size only.
+   *
+   * @param size Data size
+   * @return Block size
+   */
+  private static int blockSize(int size) {
+    return Math.max(BLOCKSIZE, (size + MAX_BLOCKS - 1) / MAX_BLOCKS);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @param <O> Object type
+   * @param <M> Model type
+   */
+  public static class Par<O, M extends MeanModel> extends EM.Par<O, M> {
+    @Override
+    public ParallelEM<O, M> make() {
+      return new ParallelEM<>(mfactory, k, delta, miniter, maxiter, hard, soft, prior);
+    }
+  }
+}
@@ -143,6 +143,42 @@ public class DiagonalGaussianModel implements BetulaClusterModel {
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public boolean supportsPartial() {
+    return true;
+  }
+
+  @Override
+  public DiagonalGaussianModel newPartial() {
+    DiagonalGaussianModel partial = new DiagonalGaussianModel(weight, new double[mean.length]);
+    partial.beginEStep();
+    return partial;
+  }
+
+  @Override
+  public void mergePartial(EMClusterModel<?, ?> partial) {
+    final DiagonalGaussianModel other = (DiagonalGaussianModel) partial;
+    final double owsum = other.wsum;
+    if(!(owsum > 0)) {
+      return;
+    }
+    final double nwsum = wsum + owsum;
+    final double f = owsum / nwsum; // Do division only once
+    final double[] omean = other.mean;
+    // Compute new means
+    for(int i = 0; i < mean.length; i++) {
+      nmea[i] = mean[i] + (omean[i] - mean[i]) * f;
+    }
+    // Merge variances
+    for(int i = 0; i < mean.length; i++) {
+      final double vi = omean[i];
+      variances[i] += other.variances[i] + (vi - nmea[i]) * (vi - mean[i]) * owsum;
+    }
+    // Use new values.
+    wsum = nwsum;
+    System.arraycopy(nmea, 0, mean, 0, nmea.length);
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = variances.length;
@@ -75,6 +75,40 @@ public interface EMClusterModel<O, M extends Model> {
    */
   void updateE(O vec, double weight);
 
+  /**
+   * True, if the model supports the aggregation of partial models, see
+   * {@link #newPartial()} and {@link #mergePartial}.
+   *
+   * @return {@code true} if partial aggregation is supported
+   */
+  default boolean supportsPartial() {
+    return false;
+  }
+
+  /**
+   * Create an empty model of the same type, to aggregate the statistics of a
+   * subset of the data in parallel (see {@link #mergePartial}).
+   * <p>
+   * The partial model is already prepared for {@link #updateE}, but will only
+   * be used for aggregation, not for density estimation.
+   * By default, this is not supported (c.f. {@link #supportsPartial()}).
+   *
+   * @return Empty model for partial aggregation
+   */
+  default EMClusterModel<O, M> newPartial() {
+    throw new UnsupportedOperationException("Parallel aggregation is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Merge the statistics aggregated by a partial model (obtained via
+   * {@link #newPartial()}) into this model, before {@link #finalizeEStep}.
+   *
+   * @param partial Partial model
+   */
+  default void mergePartial(EMClusterModel<?, ?> partial) {
+    throw new UnsupportedOperationException("Parallel aggregation is not supported by " + getClass().getName());
+  }
+
   /**
    * Finalize the E step.
    * 
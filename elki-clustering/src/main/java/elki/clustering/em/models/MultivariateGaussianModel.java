@@ -149,6 +149,47 @@ public class MultivariateGaussianModel implements BetulaClusterModel {
     System.arraycopy(nmea, 0, mean, 0, nmea.length);
   }
 
+  @Override
+  public boolean supportsPartial() {
+    return true;
+  }
+
+  @Override
+  public MultivariateGaussianModel newPartial() {
+    MultivariateGaussianModel partial = new MultivariateGaussianModel(weight, new double[mean.length]);
+    partial.beginEStep();
+    return partial;
+  }
+
+  @Override
+  public void mergePartial(EMClusterModel<?, ?> partial) {
+    final MultivariateGaussianModel other = (MultivariateGaussianModel) partial;
+    final double owsum = other.wsum;
+    if(!(owsum > 0)) {
+      return;
+    }
+    final int dim = mean.length;
+    final double nwsum = wsum + owsum;
+    final double f = owsum / nwsum; // Do division only once
+    final double[] omean = other.mean;
+    // Compute new means
+    for(int i = 0; i < dim; i++) {
+      nmea[i] = mean[i] + (omean[i] - mean[i]) * f;
+    }
+    // Merge covariance matrixes (lower triangle only)
+    for(int i = 0; i < dim; i++) {
+      final double delta_i = (omean[i] - nmea[i]) * owsum;
+      final double[] cov_i = covariance[i], ocov_i = other.covariance[i];
+      for(int j = 0; j <= i; j++) {
+        // Same as in updateE: use the new mean once and the old mean once.
+        cov_i[j] += ocov_i[j] + delta_i * (omean[j] - mean[j]);
+      }
+    }
+    // Use new values.
+    wsum = nwsum;
+    System.arraycopy(nmea, 0, mean, 0, nmea.length);
+  }
+
   @Override
   public void finalizeEStep(double weight, double prior) {
     final int dim = covariance.length;
@@ -38,11 +38,13 @@ import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.Alias;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -57,6 +59,9 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * This implementation uses the pointer-based representation used by SLINK, so
  * that the extraction algorithms we have can be used with either of them.
  * <p>
+ * The distance matrix is computed in parallel, and on large data sets the
+ * search for the closest pair and the matrix updates use multiple threads.
+ * <p>
  * The algorithm is believed to be first published (for single-linkage) by:
  * <p>
  * P. H. Sneath<br>
@@ -123,6 +128,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    */
   protected Linkage linkage = WardLinkage.STATIC;
 
+  /**
+   * Store the distance matrix with single precision only.
+   */
+  protected boolean floatPrecision;
+
+  /**
+   * Minimum number of rows per block when computing the distance matrix.
+   */
+  protected static final int MATRIX_BLOCKSIZE = 64;
+
+  /**
+   * Minimum number of matrix positions per block when updating the matrix.
+   */
+  protected static final int UPDATE_BLOCKSIZE = 16384;
+
   /**
    * Constructor.
    *
@@ -130,9 +150,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @param linkage Linkage method
    */
   public AGNES(Distance<? super O> distance, Linkage linkage) {
+    this(distance, linkage, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param floatPrecision Store the distance matrix with single precision only
+   */
+  public AGNES(Distance<? super O> distance, Linkage linkage, boolean floatPrecision) {
     super();
     this.distance = distance;
     this.linkage = linkage;
+    this.floatPrecision = floatPrecision;
   }
 
   /**
@@ -148,7 +180,7 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     // Compute the initial (lower triangular) distance matrix.
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
-    ClusterDistanceMatrix mat = initializeDistanceMatrix(ids, dq, linkage);
+    ClusterDistanceMatrix mat = initializeDistanceMatrix(ids, dq, linkage, floatPrecision);
     return new Instance(linkage).run(mat, new ClusterMergeHistoryBuilder(ids, distance.isSquared()));
   }
 
@@ -161,26 +193,36 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
    * @return cluster distance matrix
    */
   protected static ClusterDistanceMatrix initializeDistanceMatrix(ArrayDBIDs ids, DistanceQuery<?> dq, Linkage linkage) {
-    ClusterDistanceMatrix mat = new ClusterDistanceMatrix(ids.size());
-    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
-    final double[] matrix = mat.matrix;
+    return initializeDistanceMatrix(ids, dq, linkage, false);
+  }
+
+  /**
+   * Initialize a distance matrix, in parallel.
+   *
+   * @param ids Object ids
+   * @param dq Distance query
+   * @param linkage Linkage method
+   * @param floatPrecision Store with single precision only
+   * @return cluster distance matrix
+   */
+  protected static ClusterDistanceMatrix initializeDistanceMatrix(ArrayDBIDs ids, DistanceQuery<?> dq, Linkage linkage, boolean floatPrecision) {
+    ClusterDistanceMatrix mat = new ClusterDistanceMatrix(ids.size(), floatPrecision);
     final boolean issquare = dq.getDistance().isSquared();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", matrix.length, LOG) : null;
-    int pos = 0;
-    for(ix.seek(1); ix.valid(); ix.advance()) {
-      final int x = ix.getOffset();
-      assert pos == ClusterDistanceMatrix.triangleSize(x);
-      for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        matrix[pos++] = linkage.initial(dq.distance(ix, iy), issquare);
-      }
-      if(prog != null) {
-        prog.setProcessed(pos, LOG);
-      }
-    }
-    // Avoid logging errors in case scratch space was too large:
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Distance matrix computation", ids.size(), LOG) : null;
     if(prog != null) {
-      prog.setProcessed(matrix.length, LOG);
+      prog.incrementProcessed(LOG); // Row 0 is empty
     }
+    ParallelExecutor.run(1, ids.size(), MATRIX_BLOCKSIZE, (start, end) -> {
+      DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      for(int x = start; x < end; x++) {
+        long pos = ClusterDistanceMatrix.triangleSize(x);
+        ix.seek(x);
+        for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
+          mat.set(pos++, linkage.initial(dq.distance(ix, iy), issquare));
+        }
+      }
+      LOG.incrementProcessed(prog, end - start);
+    });
     LOG.ensureCompleted(prog);
     return mat;
   }
@@ -211,6 +253,16 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     protected int end;
 
+    /**
+     * Best distance per row, for finding the merge in parallel.
+     */
+    private double[] rowd;
+
+    /**
+     * Best index per row, for finding the merge in parallel.
+     */
+    private int[] rowi;
+
     /**
      * Constructor.
      *
@@ -250,31 +302,59 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     protected int findMerge() {
       assert end > 0;
-      final double[] matrix = mat.matrix;
+      if(rowd == null) {
+        rowd = new double[mat.size];
+        rowi = new int[mat.size];
+      }
+      // Find the minimum of each row, in parallel:
+      ParallelExecutor.run(1, end, Math.max(1, UPDATE_BLOCKSIZE / end), this::findRowMinima);
       double mindist = Double.POSITIVE_INFINITY;
       int x = -1, y = -1;
-      // Find minimum:
-      for(int ox = 0, xbase = 0; ox < end; xbase += ox++) {
+      for(int ox = 1; ox < end; ox++) {
+        // Skip if object has already joined a cluster:
+        if(rowi[ox] < 0) {
+          continue;
+        }
+        final double dist = rowd[ox];
+        if(dist <= mindist) { // Prefer later on ==, to truncate more often.
+          mindist = dist;
+          x = ox;
+          y = rowi[ox];
+        }
+      }
+      merge(mindist, x, y);
+      return x;
+    }
+
+    /**
+     * Find the minimum in a range of rows.
+     *
+     * @param start First row
+     * @param stop End row (exclusive)
+     */
+    private void findRowMinima(int start, int stop) {
+      final ClusterDistanceMatrix mat = this.mat;
+      for(int ox = start; ox < stop; ox++) {
+        rowi[ox] = -1;
         // Skip if object has already joined a cluster:
         if(mat.clustermap[ox] < 0) {
           continue;
         }
-        assert (xbase == ClusterDistanceMatrix.triangleSize(ox));
+        double mindist = Double.POSITIVE_INFINITY;
+        long xbase = ClusterDistanceMatrix.triangleSize(ox);
         for(int oy = 0; oy < ox; oy++) {
           // Skip if object has already joined a cluster:
           if(mat.clustermap[oy] < 0) {
             continue;
           }
-          final double dist = matrix[xbase + oy];
+          final double dist = mat.get(xbase + oy);
           if(dist <= mindist) { // Prefer later on ==, to truncate more often.
             mindist = dist;
-            x = ox;
-            y = oy;
+            rowi[ox] = oy;
           }
         }
+        rowd[ox] = mindist;
       }
-      merge(mindist, x, y);
-      return x;
     }
 
     /**
@@ -307,34 +387,52 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      * @param sizey Old size of second cluster
      */
     protected void updateMatrix(double mindist, int x, int y, final int sizex, final int sizey) {
-      final int xbase = ClusterDistanceMatrix.triangleSize(x);
-      final int ybase = ClusterDistanceMatrix.triangleSize(y);
-      double[] scratch = mat.matrix;
+      ParallelExecutor.run(0, end, UPDATE_BLOCKSIZE, (start, stop) -> updateMatrix(mindist, x, y, sizex, sizey, start, stop));
+    }
+
+    /**
+     * Update a part of the scratch distance matrix.
+     *
+     * @param mindist Minimum distance
+     * @param x First matrix position
+     * @param y Second matrix position
+     * @param sizex Old size of first cluster
+     * @param sizey Old size of second cluster
+     * @param start First object to update
+     * @param stop End object (exclusive)
+     */
+    protected void updateMatrix(double mindist, int x, int y, final int sizex, final int sizey, int start, int stop) {
+      final long xbase = ClusterDistanceMatrix.triangleSize(x);
+      final long ybase = ClusterDistanceMatrix.triangleSize(y);
+      final ClusterDistanceMatrix mat = this.mat;
 
       // Write to (y, j), with j < y
-      int j = 0;
-      for(; j < y; j++) {
+      int j = start;
+      for(final int e = Math.min(y, stop); j < e; j++) {
         if(mat.clustermap[j] >= 0) {
           assert j < y; // Otherwise, ybase + j is the wrong position!
-          final int yb = ybase + j;
-          scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], builder.getSize(mat.clustermap[j]), mindist);
+          final long yb = ybase + j;
+          mat.set(yb, linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(yb), builder.getSize(mat.clustermap[j]), mindist));
         }
       }
-      j++; // Skip y
+      j = Math.max(j, y + 1); // Skip y
       // Write to (j, y), with y < j < x
-      int jbase = ClusterDistanceMatrix.triangleSize(j);
-      for(; j < x; jbase += j++) {
+      long jbase = ClusterDistanceMatrix.triangleSize(j);
+      for(final int e = Math.min(x, stop); j < e; jbase += j++) {
         if(mat.clustermap[j] >= 0) {
-          final int jb = jbase + y;
-          scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], builder.getSize(mat.clustermap[j]), mindist);
+          final long jb = jbase + y;
+          mat.set(jb, linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(jb), builder.getSize(mat.clustermap[j]), mindist));
         }
       }
-      jbase += j++; // Skip x
+      if(j <= x) {
+        j = x + 1; // Skip x
+        jbase = ClusterDistanceMatrix.triangleSize(j);
+      }
       // Write to (j, y), with y < x < j
-      for(; j < end; jbase += j++) {
+      for(; j < stop; jbase += j++) {
         if(mat.clustermap[j] >= 0) {
-          final int jb = jbase + y;
-          scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], builder.getSize(mat.clustermap[j]), mindist);
+          final long jb = jbase + y;
+          mat.set(jb, linkage.combine(sizex, mat.get(jbase + x), sizey, mat.get(jb), builder.getSize(mat.clustermap[j]), mindist));
         }
       }
     }
@@ -379,11 +477,21 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
      */
     public static final OptionID LINKAGE_ID = new OptionID("hierarchical.linkage", "Linkage method to use (e.g., Ward, Single-Link)");
 
+    /**
+     * Option ID for single precision distance matrixes.
+     */
+    public static final OptionID FLOAT_ID = new OptionID("hierarchical.float", "Store the distance matrix with single precision only, to reduce memory usage by half.");
+
     /**
      * Current linkage in use.
      */
     protected Linkage linkage;
 
+    /**
+     * Store the distance matrix with single precision only.
+     */
+    protected boolean floatPrecision;
+
     /**
      * The distance function to use.
      */
@@ -398,11 +506,12 @@ public class AGNES<O> implements HierarchicalClusteringAlgorithm {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(FLOAT_ID).grab(config, x -> floatPrecision = x);
     }
 
     @Override
     public AGNES<O> make() {
-      return new AGNES<>(distance, linkage);
+      return new AGNES<>(distance, linkage, floatPrecision);
     }
   }
 }
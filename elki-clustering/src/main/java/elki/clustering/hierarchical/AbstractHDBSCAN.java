@@ -28,14 +28,17 @@ import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.DoubleDataStore;
 import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.Relation;
 import elki.distance.Distance;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.math.MathUtil;
 import elki.math.geometry.PrimsMinimumSpanningTree;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.datastructures.heap.DoubleLongHeap;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
@@ -68,6 +71,11 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
     url = "https://doi.org/10.1007/978-3-642-37456-2_14", //
     bibkey = "DBLP:conf/pakdd/CampelloMS13")
 public abstract class AbstractHDBSCAN<O> implements Algorithm {
+  /**
+   * Minimum number of objects per parallel block.
+   */
+  private static final int BLOCKSIZE = 256;
+
   /**
    * MinPts parameter.
    */
@@ -110,6 +118,38 @@ public abstract class AbstractHDBSCAN<O> implements Algorithm {
     return coredists;
   }
 
+  /**
+   * Compute the core distances for all objects, in parallel blocks.
+   * <p>
+   * As searchers need not be thread-safe, each block uses its own searcher.
+   *
+   * @param relation Data relation
+   * @param ids Objects
+   * @param minPts Minimum neighborhood size
+   * @return Data store with core distances
+   */
+  protected WritableDoubleDataStore computeCoreDists(Relation<? extends O> relation, ArrayDBIDs ids, int minPts) {
+    final Logging LOG = getLogger();
+    // The first searcher may add an index, which is then used by all blocks.
+    final KNNSearcher<DBIDRef> knnQ = new QueryBuilder<>(relation, distance).kNNByDBID(minPts);
+    final double[] cd = new double[ids.size()];
+    FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Computing core sizes", ids.size(), LOG) : null;
+    ParallelExecutor.run(0, ids.size(), BLOCKSIZE, (start, end) -> {
+      KNNSearcher<DBIDRef> q = start == 0 ? knnQ : new QueryBuilder<>(relation, distance).kNNByDBID(minPts);
+      for(DBIDArrayIter iter = ids.iter().seek(start); iter.getOffset() < end; iter.advance()) {
+        cd[iter.getOffset()] = q.getKNN(iter, minPts).getKNNDistance();
+      }
+      LOG.incrementProcessed(cprog, end - start);
+    });
+    LOG.ensureCompleted(cprog);
+    // Store sequentially, as the storage need not be thread-safe.
+    final WritableDoubleDataStore coredists = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB);
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      coredists.putDouble(iter, cd[iter.getOffset()]);
+    }
+    return coredists;
+  }
+
   /**
    * Class for processing the HDBSCAN G_mpts graph.
    *
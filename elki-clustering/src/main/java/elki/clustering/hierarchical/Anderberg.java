@@ -39,10 +39,12 @@ import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.Priority;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -94,6 +96,17 @@ public class Anderberg<O> extends AGNES<O> {
     super(distance, linkage);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function to use
+   * @param linkage Linkage method
+   * @param floatPrecision Store the distance matrix with single precision only
+   */
+  public Anderberg(Distance<? super O> distance, Linkage linkage, boolean floatPrecision) {
+    super(distance, linkage, floatPrecision);
+  }
+
   @Override
   public ClusterMergeHistory run(Relation<O> relation) {
     if(SingleLinkage.class.isInstance(linkage)) {
@@ -101,7 +114,7 @@ public class Anderberg<O> extends AGNES<O> {
     }
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
-    ClusterDistanceMatrix mat = AGNES.initializeDistanceMatrix(ids, dq, linkage);
+    ClusterDistanceMatrix mat = AGNES.initializeDistanceMatrix(ids, dq, linkage, floatPrecision);
     return new Instance(linkage).run(mat, new ClusterMergeHistoryBuilder(ids, distance.isSquared()));
   }
 
@@ -138,7 +151,7 @@ public class Anderberg<O> extends AGNES<O> {
       this.end = size;
       this.bestd = new double[size];
       this.besti = new int[size];
-      initializeNNCache(mat.matrix, bestd, besti);
+      initializeNNCache(mat, bestd, besti);
 
       // Repeat until everything merged into 1 cluster
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Agglomerative clustering", size - 1, LOG) : null;
@@ -153,30 +166,32 @@ public class Anderberg<O> extends AGNES<O> {
     /**
      * Initialize the NN cache.
      *
-     * @param scratch Scratch space
+     * @param mat Cluster distance matrix
      * @param bestd Best distance
      * @param besti Best index
      */
-    protected static void initializeNNCache(double[] scratch, double[] bestd, int[] besti) {
+    protected static void initializeNNCache(ClusterDistanceMatrix mat, double[] bestd, int[] besti) {
       final int size = bestd.length;
       Arrays.fill(bestd, Double.POSITIVE_INFINITY);
       Arrays.fill(besti, -1);
       besti[0] = Integer.MAX_VALUE; // invalid, but not deactivated
-      for(int x = 1, p = 0; x < size; x++) {
-        assert p == ClusterDistanceMatrix.triangleSize(x);
-        double bestdx = Double.POSITIVE_INFINITY;
-        int bestix = -1;
-        for(int y = 0; y < x; y++) {
-          final double v = scratch[p++];
-          if(v < bestdx) {
-            bestdx = v;
-            bestix = y;
+      ParallelExecutor.run(1, size, Math.max(1, UPDATE_BLOCKSIZE / size), (start, end) -> {
+        for(int x = start; x < end; x++) {
+          long p = ClusterDistanceMatrix.triangleSize(x);
+          double bestdx = Double.POSITIVE_INFINITY;
+          int bestix = -1;
+          for(int y = 0; y < x; y++) {
+            final double v = mat.get(p++);
+            if(v < bestdx) {
+              bestdx = v;
+              bestix = y;
+            }
           }
+          assert 0 <= bestix && bestix < x;
+          bestd[x] = bestdx;
+          besti[x] = bestix;
         }
-        assert 0 <= bestix && bestix < x;
-        bestd[x] = bestdx;
-        besti[x] = bestix;
-      }
+      });
     }
 
     /**
@@ -220,56 +235,67 @@ public class Anderberg<O> extends AGNES<O> {
       mat.clustermap[x] = besti[x] = -1; // Deactivate removed cluster.
       updateMatrix(mindist, x, y, sizex, sizey);
       if(y > 0) {
-        findBest(mat.matrix, bestd, besti, y);
+        findBest(mat, bestd, besti, y);
       }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Also updates the nearest neighbor cache of each updated object.
+     */
     @Override
-    protected void updateMatrix(double mindist, int x, int y, int sizex, int sizey) {
-      final int xbase = ClusterDistanceMatrix.triangleSize(x);
-      final int ybase = ClusterDistanceMatrix.triangleSize(y);
-      double[] scratch = mat.matrix;
+    protected void updateMatrix(double mindist, int x, int y, int sizex, int sizey, int start, int stop) {
+      final long xbase = ClusterDistanceMatrix.triangleSize(x);
+      final long ybase = ClusterDistanceMatrix.triangleSize(y);
+      final ClusterDistanceMatrix mat = this.mat;
 
       // Write to (y, j), with j < y
-      int j = 0;
-      for(; j < y; j++) {
+      int j = start;
+      for(final int e = Math.min(y, stop); j < e; j++) {
         if(mat.clustermap[j] < 0) {
           continue;
         }
         final int sizej = builder.getSize(mat.clustermap[j]);
-        final int yb = ybase + j;
-        final double d = scratch[yb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[yb], sizej, mindist);
-        updateCache(scratch, bestd, besti, x, y, j, d);
+        final long yb = ybase + j;
+        final double d = linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(yb), sizej, mindist);
+        mat.set(yb, d);
+        updateCache(mat, bestd, besti, x, y, j, d);
       }
-      j++; // Skip y
+      j = Math.max(j, y + 1); // Skip y
       // Write to (j, y), with y < j < x
-      int jbase = ClusterDistanceMatrix.triangleSize(j);
-      for(; j < x; jbase += j++) {
+      long jbase = ClusterDistanceMatrix.triangleSize(j);
+      for(final int e = Math.min(x, stop); j < e; jbase += j++) {
         if(mat.clustermap[j] < 0) {
           continue;
         }
         final int sizej = builder.getSize(mat.clustermap[j]);
-        final int jb = jbase + y;
-        final double d = scratch[jb] = linkage.combine(sizex, scratch[xbase + j], sizey, scratch[jb], sizej, mindist);
-        updateCache(scratch, bestd, besti, x, y, j, d);
+        final long jb = jbase + y;
+        final double d = linkage.combine(sizex, mat.get(xbase + j), sizey, mat.get(jb), sizej, mindist);
+        mat.set(jb, d);
+        updateCache(mat, bestd, besti, x, y, j, d);
+      }
+      if(j <= x) {
+        j = x + 1; // Skip x
+        jbase = ClusterDistanceMatrix.triangleSize(j);
       }
-      jbase += j++; // Skip x
       // Write to (j, y), with y < x < j
-      for(; j < end; jbase += j++) {
+      for(; j < stop; jbase += j++) {
         if(mat.clustermap[j] < 0) {
           continue;
         }
         final int sizej = builder.getSize(mat.clustermap[j]);
-        final int jb = jbase + y;
-        final double d = scratch[jb] = linkage.combine(sizex, scratch[jbase + x], sizey, scratch[jb], sizej, mindist);
-        updateCache(scratch, bestd, besti, x, y, j, d);
+        final long jb = jbase + y;
+        final double d = linkage.combine(sizex, mat.get(jbase + x), sizey, mat.get(jb), sizej, mindist);
+        mat.set(jb, d);
+        updateCache(mat, bestd, besti, x, y, j, d);
       }
     }
 
     /**
      * Update the cache.
      *
-     * @param scratch Scratch matrix
+     * @param mat Cluster distance matrix
      * @param bestd Best distance
      * @param besti Best index
      * @param x First cluster
@@ -277,7 +303,7 @@ public class Anderberg<O> extends AGNES<O> {
      * @param j Updated value d(y, j)
      * @param d New distance
      */
-    protected static void updateCache(double[] scratch, double[] bestd, int[] besti, int x, int y, int j, double d) {
+    protected static void updateCache(ClusterDistanceMatrix mat, double[] bestd, int[] besti, int x, int y, int j, double d) {
       assert y < x;
       // New best
       if(y < j && d <= bestd[j]) {
@@ -287,28 +313,28 @@ public class Anderberg<O> extends AGNES<O> {
       }
       // Needs slow update.
       if(besti[j] == x || besti[j] == y) {
-        findBest(scratch, bestd, besti, j);
+        findBest(mat, bestd, besti, j);
       }
     }
 
     /**
      * Find the best in a row of the triangular matrix.
      *
-     * @param scratch Scratch matrix
+     * @param mat Cluster distance matrix
      * @param bestd Best distances cache
      * @param besti Best indexes cache
      * @param j Row to update
      */
-    protected static void findBest(double[] scratch, double[] bestd, int[] besti, int j) {
+    protected static void findBest(ClusterDistanceMatrix mat, double[] bestd, int[] besti, int j) {
       // The distance has increased, we may no longer be the best merge.
       double bestdj = Double.POSITIVE_INFINITY;
       int bestij = -1;
-      for(int i = 0,
-          o = ClusterDistanceMatrix.triangleSize(j); i < j; i++, o++) {
+      long o = ClusterDistanceMatrix.triangleSize(j);
+      for(int i = 0; i < j; i++, o++) {
         if(besti[i] < 0) {
           continue;
         }
-        final double dist = scratch[o];
+        final double dist = mat.get(o);
         if(dist <= bestdj) {
           bestdj = dist;
           bestij = i;
@@ -345,6 +371,11 @@ public class Anderberg<O> extends AGNES<O> {
      */
     protected Distance<? super O> distance;
 
+    /**
+     * Store the distance matrix with single precision only.
+     */
+    protected boolean floatPrecision;
+
     @Override
     public void configure(Parameterization config) {
       new ObjectParameter<Linkage>(AGNES.Par.LINKAGE_ID, Linkage.class) //
@@ -354,11 +385,12 @@ public class Anderberg<O> extends AGNES<O> {
           ? SquaredEuclideanDistance.class : EuclideanDistance.class;
       new ObjectParameter<Distance<? super O>>(Algorithm.Utils.DISTANCE_FUNCTION_ID, Distance.class, defaultD) //
           .grab(config, x -> distance = x);
+      new Flag(AGNES.Par.FLOAT_ID).grab(config, x -> floatPrecision = x);
     }
 
     @Override
     public Anderberg<O> make() {
-      return new Anderberg<>(distance, linkage);
+      return new Anderberg<>(distance, linkage, floatPrecision);
     }
   }
 }
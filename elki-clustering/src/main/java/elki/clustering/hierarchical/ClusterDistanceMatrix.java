@@ -21,7 +21,6 @@
 package elki.clustering.hierarchical;
 
 import elki.math.MathUtil;
-import elki.utilities.exceptions.AbortException;
 
 /**
  * Shared code for algorithms that work on a pairwise cluster distance matrix.
@@ -33,15 +32,35 @@ import elki.utilities.exceptions.AbortException;
  * <p>
  * While this will usually store (merge-) distances when clustering, it can
  * store arbitrary doubles.
+ * <p>
+ * The lower triangle matrix is stored in a linear memory layout, using long
+ * positions. Because Java arrays are limited to 31 bit indexes, the values are
+ * stored in segments of \(2^{27}\) values each. Optionally, the values can be
+ * stored with single precision only, to halve the memory requirements.
  *
  * @author Erich Schubert
  * @since 0.7.5
  */
 public class ClusterDistanceMatrix {
   /**
-   * Distance matrix (<b>modifiable</b>).
+   * Number of bits for addressing within a segment.
+   */
+  static final int SEGMENT_SHIFT = 27;
+
+  /**
+   * Mask for addressing within a segment.
    */
-  public final double[] matrix;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+  /**
+   * Distance matrix segments (<b>modifiable</b>), with double precision.
+   */
+  private final double[][] matrix;
+
+  /**
+   * Distance matrix segments (<b>modifiable</b>), with single precision.
+   */
+  private final float[][] fmatrix;
 
   /**
    * Mapping from positions to cluster numbers
@@ -59,13 +78,33 @@ public class ClusterDistanceMatrix {
    * @param size Size
    */
   public ClusterDistanceMatrix(int size) {
+    this(size, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param size Size
+   * @param floatPrecision Store values with single precision only
+   */
+  public ClusterDistanceMatrix(int size, boolean floatPrecision) {
     this.size = size;
-    if(size > 0x10000) {
-      throw new AbortException("This implementation does not scale to data sets larger than " + //
-          0x10000 // = 65535
-          + " instances (~16 GB RAM), at which point the Java maximum array size is reached.");
+    final long msize = triangleSize(size);
+    final int nseg = (int) ((msize + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    if(floatPrecision) {
+      matrix = null;
+      fmatrix = new float[nseg][];
+      for(int i = 0; i < nseg; i++) {
+        fmatrix[i] = new float[(int) Math.min(msize - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT)];
+      }
+    }
+    else {
+      fmatrix = null;
+      matrix = new double[nseg][];
+      for(int i = 0; i < nseg; i++) {
+        matrix[i] = new double[(int) Math.min(msize - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT)];
+      }
     }
-    matrix = new double[triangleSize(size)];
     clustermap = MathUtil.sequence(0, size);
   }
 
@@ -75,8 +114,8 @@ public class ClusterDistanceMatrix {
    * @param x Offset
    * @return Size of complete triangle
    */
-  public static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  public static long triangleSize(int x) {
+    return ((long) x * (x - 1)) >>> 1;
   }
 
   /**
@@ -90,6 +129,35 @@ public class ClusterDistanceMatrix {
    * @return Distance
    */
   public double get(int x, int y) {
-    return x == y ? 0 : x < y ? matrix[triangleSize(y) + x] : matrix[triangleSize(x) + y];
+    return x == y ? 0 : x < y ? get(triangleSize(y) + x) : get(triangleSize(x) + y);
+  }
+
+  /**
+   * Get the value at a position of the linear memory layout, i.e.,
+   * {@code triangleSize(x) + y} for {@code y < x}.
+   *
+   * @param pos Position
+   * @return Value
+   */
+  public double get(long pos) {
+    final int seg = (int) (pos >>> SEGMENT_SHIFT), off = (int) (pos & SEGMENT_MASK);
+    return matrix != null ? matrix[seg][off] : fmatrix[seg][off];
+  }
+
+  /**
+   * Set the value at a position of the linear memory layout, i.e.,
+   * {@code triangleSize(x) + y} for {@code y < x}.
+   *
+   * @param pos Position
+   * @param value New value
+   */
+  public void set(long pos, double value) {
+    final int seg = (int) (pos >>> SEGMENT_SHIFT), off = (int) (pos & SEGMENT_MASK);
+    if(matrix != null) {
+      matrix[seg][off] = value;
+    }
+    else {
+      fmatrix[seg][off] = (float) value;
+    }
   }
 }
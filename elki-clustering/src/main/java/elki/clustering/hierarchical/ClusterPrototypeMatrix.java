@@ -0,0 +1,124 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import elki.database.ids.ArrayModifiableDBIDs;
+import elki.database.ids.DBIDArrayMIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+
+/**
+ * Storage for one prototype per pair of clusters, using the same linear memory
+ * layout as the {@link ClusterDistanceMatrix}.
+ * <p>
+ * The prototypes are addressed using long positions. Because Java arrays are
+ * limited to 31 bit indexes, they are stored in segments of \(2^{27}\) DBIDs
+ * each.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ClusterPrototypeMatrix {
+  /**
+   * Number of bits for addressing within a segment.
+   */
+  private final int shift;
+
+  /**
+   * Mask for addressing within a segment.
+   */
+  private final long mask;
+
+  /**
+   * Prototype segments.
+   */
+  private final ArrayModifiableDBIDs[] segments;
+
+  /**
+   * Iterators into the segments.
+   */
+  private final DBIDArrayMIter[] iters;
+
+  /**
+   * Number of prototypes added.
+   */
+  private long size;
+
+  /**
+   * Constructor.
+   *
+   * @param size Number of objects
+   */
+  public ClusterPrototypeMatrix(int size) {
+    this(size, ClusterDistanceMatrix.SEGMENT_SHIFT);
+  }
+
+  /**
+   * Constructor with a custom segment size, for testing.
+   *
+   * @param size Number of objects
+   * @param shift Number of bits for addressing within a segment
+   */
+  ClusterPrototypeMatrix(int size, int shift) {
+    this.shift = shift;
+    this.mask = (1L << shift) - 1;
+    final long msize = ClusterDistanceMatrix.triangleSize(size);
+    final int nseg = (int) ((msize + mask) >>> shift);
+    segments = new ArrayModifiableDBIDs[nseg];
+    iters = new DBIDArrayMIter[nseg];
+    for(int i = 0; i < nseg; i++) {
+      segments[i] = DBIDUtil.newArray((int) Math.min(msize - ((long) i << shift), 1L << shift));
+      iters[i] = segments[i].iter();
+    }
+  }
+
+  /**
+   * Append a prototype.
+   *
+   * @param id Prototype
+   */
+  public void add(DBIDRef id) {
+    segments[(int) (size >>> shift)].add(id);
+    ++size;
+  }
+
+  /**
+   * Get the number of prototypes stored.
+   *
+   * @return Size
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Get an iterator positioned at the prototype of a position of the linear
+   * memory layout, i.e., {@code triangleSize(x) + y} for {@code y < x}.
+   * <p>
+   * The iterators are shared, so this is not thread-safe.
+   *
+   * @param pos Position
+   * @return Iterator, to get or set the prototype
+   */
+  public DBIDArrayMIter seek(long pos) {
+    return iters[(int) (pos >>> shift)].seek((int) (pos & mask));
+  }
+}
@@ -119,9 +119,9 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
   public ClusterPrototypeMergeHistory run(Relation<O> relation) {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(ClusterDistanceMatrix.triangleSize(ids.size()));
+    ClusterPrototypeMatrix prots = new ClusterPrototypeMatrix(ids.size());
     ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq);
-    return new Instance(variant).run(ids, mat, new ClusterMergeHistoryBuilder(ids, dq.getDistance().isSquared()), dq, prots.iter());
+    return new Instance(variant).run(ids, mat, new ClusterMergeHistoryBuilder(ids, dq.getDistance().isSquared()), dq, prots);
   }
 
   /**
@@ -151,9 +151,9 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
     protected DistanceQuery<?> dq;
 
     /**
-     * Iterator into the prototypes
+     * Prototype storage
      */
-    protected DBIDArrayMIter prots;
+    protected ClusterPrototypeMatrix prots;
 
     /**
      * Iterators into the object ids.
@@ -182,10 +182,10 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
      * @param mat Distance matrix
      * @param builder Result builder
      * @param dq Distance query
-     * @param prots Iterator into prototypes
+     * @param prots Prototype storage
      * @return Cluster merge history
      */
-    public ClusterPrototypeMergeHistory run(ArrayDBIDs ids, ClusterDistanceMatrix mat, ClusterMergeHistoryBuilder builder, DistanceQuery<?> dq, DBIDArrayMIter prots) {
+    public ClusterPrototypeMergeHistory run(ArrayDBIDs ids, ClusterDistanceMatrix mat, ClusterMergeHistoryBuilder builder, DistanceQuery<?> dq, ClusterPrototypeMatrix prots) {
       final int size = mat.size;
       this.mat = mat;
       this.builder = builder;
@@ -200,7 +200,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
       // Anderberg optimization
       this.bestd = new double[size];
       this.besti = new int[size];
-      initializeNNCache(mat.matrix, bestd, besti);
+      initializeNNCache(mat, bestd, besti);
 
       // Repeat until everything merged into 1 cluster
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("HACAM clustering", size - 1, LOG) : null;
@@ -250,8 +250,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
     protected void merge(int x, int y) {
       assert x >= 0 && y >= 0;
       assert y < x; // We could swap otherwise, but this shouldn't arise.
-      final double[] distances = mat.matrix;
-      final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
+      final long offset = ClusterDistanceMatrix.triangleSize(x) + y;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
       // Keep y
       if(cy == null) {
@@ -267,21 +266,21 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
       }
       clusters.put(y, cy);
       if(tds != null) { // min-sum-increase variant
-        tds[y] = distances[offset] + tds[x] + tds[y];
+        tds[y] = mat.get(offset) + tds[x] + tds[y];
       }
 
       // parent of x is set to y
       final int xx = mat.clustermap[x], yy = mat.clustermap[y];
       final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
       // Since y < x, prefer keeping y, dropping x.
-      int zz = builder.strictAdd(xx, distances[offset], yy, prots.seek(offset));
+      int zz = builder.strictAdd(xx, mat.get(offset), yy, prots.seek(offset));
       assert builder.getSize(zz) == sizex + sizey;
       mat.clustermap[y] = zz;
       mat.clustermap[x] = -1; // Deactivate removed cluster
       besti[x] = -1; // Deactivate x in cache
       updateMatrices(x, y);
       if(y > 0) {
-        findBest(distances, bestd, besti, y);
+        findBest(mat, bestd, besti, y);
       }
     }
 
@@ -293,18 +292,17 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
      * @param y second cluster to merge, with {@code y < x}
      */
     private void updateMatrices(int x, int y) {
-      final double[] distances = mat.matrix;
       // Update entries (at (a,b) with a > b) in the matrix where a = y or b = y
       // Update entries at (y,b) with b < y
       int a = y, b = 0;
-      final int yoffset = ClusterDistanceMatrix.triangleSize(y);
+      final long yoffset = ClusterDistanceMatrix.triangleSize(y);
       for(; b < a; b++) {
         // Skip entry if already merged
         if(mat.clustermap[b] < 0) {
           continue;
         }
         updateEntry(a, b);
-        updateCache(distances, bestd, besti, x, y, b, distances[yoffset + b]);
+        updateCache(mat, bestd, besti, x, y, b, mat.get(yoffset + b));
       }
       // Update entries at (a,y) with a > y
       a = y + 1;
@@ -315,7 +313,7 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
           continue;
         }
         updateEntry(a, b);
-        updateCache(distances, bestd, besti, x, y, a, distances[ClusterDistanceMatrix.triangleSize(a) + y]);
+        updateCache(mat, bestd, besti, x, y, a, mat.get(ClusterDistanceMatrix.triangleSize(a) + y));
       }
     }
 
@@ -327,7 +325,6 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
      */
     protected void updateEntry(int x, int y) {
       assert y < x;
-      final double[] distances = mat.matrix;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
 
       DBIDVar prototype = DBIDUtil.newVar(ix.seek(x)); // Default prototype
@@ -353,8 +350,8 @@ public class HACAM<O> implements HierarchicalClusteringAlgorithm {
         minMaxDist -= tds[x] + tds[y];
       }
 
-      final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
-      distances[offset] = minMaxDist;
+      final long offset = ClusterDistanceMatrix.triangleSize(x) + y;
+      mat.set(offset, minMaxDist);
       prots.seek(offset).setDBID(prototype);
     }
 
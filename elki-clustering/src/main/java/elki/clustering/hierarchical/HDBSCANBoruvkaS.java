@@ -20,9 +20,6 @@
  */
 package elki.clustering.hierarchical;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
 import elki.database.ids.*;
@@ -36,11 +33,8 @@ import elki.distance.Distance;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.math.MathUtil;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.Alias;
-import elki.utilities.datastructures.arrays.ArrayUtil;
-import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
-import elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
-import elki.utilities.datastructures.unionfind.WeightedQuickUnionInteger;
 import elki.utilities.documentation.Reference;
 
 /**
@@ -48,6 +42,8 @@ import elki.utilities.documentation.Reference;
  * strategy. This is more memory intensive than the restarting search approach,
  * but will need fewer distance computations.
  * <p>
+ * The searches run in parallel, see {@link ParallelBoruvka}.
+ * <p>
  * Reference:
  * <p>
  * Erich Schubert<br>
@@ -112,83 +108,18 @@ public class HDBSCANBoruvkaS<O> implements HierarchicalClusteringAlgorithm {
     if(pq instanceof LinearScanPrioritySearcher || pq instanceof LinearScanEuclideanPrioritySearcher) {
       throw new UnsupportedOperationException("No index acceleration available. This will be very slow.");
     }
-    new Instance(ids, builder).run(relation);
+    new Instance(ids, builder).run(relation, distance);
     assert builder.mergecount == ids.size() - 1;
     builder.optimizeOrder();
     return builder.complete();
   }
 
-  /**
-   * Edges found in Boruvka step.
-   * 
-   * @author Erich Schubert
-   */
-  protected static class Edge implements Comparable<Edge> {
-    /**
-     * First node
-     */
-    int a;
-
-    /**
-     * Other node
-     */
-    int b;
-
-    /**
-     * Distance
-     */
-    double d;
-
-    /**
-     * Constructor.
-     *
-     * @param a first node
-     * @param b second node
-     * @param d distance
-     */
-    public Edge(int a, int b, double d) {
-      this.a = a;
-      this.b = b;
-      this.d = d;
-    }
-
-    @Override
-    public int compareTo(Edge o) {
-      return Double.compare(d, o.d);
-    }
-  }
-
   /**
    * Instance for a single run.
    * 
    * @author Erich Schubert
    */
-  protected class Instance {
-    /**
-     * Object IDs
-     */
-    protected DBIDEnum ids;
-
-    /**
-     * Cluster merge helper
-     */
-    protected ClusterMergeHistoryBuilder builder;
-
-    /**
-     * Union-Find used during MST phase
-     */
-    protected WeightedQuickUnionInteger uf;
-
-    /**
-     * Priority searchers.
-     */
-    protected PrioritySearcher<DBIDRef>[] pqs;
-
-    /**
-     * Auxiliary heaps.
-     */
-    private DoubleIntegerMinHeap[] heaps;
-
+  protected class Instance extends ParallelBoruvka<O> {
     /**
      * Core distances of each point
      */
@@ -201,239 +132,50 @@ public class HDBSCANBoruvkaS<O> implements HierarchicalClusteringAlgorithm {
      * @param builder Merge helper
      */
     public Instance(DBIDEnum ids, ClusterMergeHistoryBuilder builder) {
-      this.ids = ids;
-      this.builder = builder;
-      this.uf = new WeightedQuickUnionInteger().fullInit(ids.size());
+      super(ids, builder);
     }
 
-    /**
-     * Run the main algorithm
-     */
-    public void run(Relation<? extends O> relation) {
-      final int size = ids.size();
+    @Override
+    public void run(Relation<? extends O> relation, Distance<? super O> distance) {
       initializeCoreDists(relation);
-      initializeHeap(relation);
-      FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Clustering", size, LOG) : null;
-      if(cprog != null) {
-        cprog.setProcessed(builder.mergecount + 1, LOG);
-      }
-      // Boruvka-like step to find the MST edges
-      final int maxmerges = size - builder.mergecount - 1;
-      ArrayList<Edge> edges = new ArrayList<>(maxmerges);
-      int[] best = new int[size];
-      double[] bestd = new double[size];
-      outer: while(true) {
-        final int l = findMerges(best, bestd);
-        assert l > 0;
-        // Perform best merge of each cluster:
-        for(int i = 0; i < l; i++) {
-          int a = best[i];
-          double curd = bestd[i];
-          DoubleIntegerMinHeap nn = heaps[a];
-          assert curd == nn.peekKey();
-          final int b = nn.peekValue();
-          nn.poll();
-          int ca = uf.find(a), cb = uf.find(b);
-          if(ca != cb) {
-            uf.union(a, b);
-            edges.add(new Edge(a, b, curd));
-            LOG.incrementProcessed(cprog);
-            if(edges.size() == maxmerges) {
-              break outer;
-            }
-          }
-        }
-        pollSearchers();
-      }
-      LOG.ensureCompleted(cprog);
-      // Add remaining edges to the dendrogram
-      edgesToBuilder(edges, Double.POSITIVE_INFINITY);
+      super.run(relation, distance);
     }
 
     /**
      * We do this separately, with a kNN query as this tends to be faster.
+     * <p>
+     * The queries run in parallel blocks, with one searcher per block.
      * 
      * @param relation data relation
      */
     private void initializeCoreDists(Relation<? extends O> relation) {
-      KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, distance).kNNByDBID(minPts);
-
+      // The first searcher may add an index, which is then used by all blocks.
+      final KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, distance).kNNByDBID(minPts);
       FiniteProgress cprog = LOG.isVerbose() ? new FiniteProgress("Core distances", ids.size(), LOG) : null;
       this.coredist = new double[ids.size()];
-      Arrays.fill(coredist, Double.NaN);
-      for(DBIDArrayIter ita = ids.iter(); ita.valid(); ita.advance(), LOG.incrementProcessed(cprog)) {
-        int a = ita.getOffset();
-        if(coredist[a] != coredist[a]) { // not yet set
-          KNNList knn = knnq.getKNN(ita, minPts);
-          coredist[a] = knn.getKNNDistance();
-          // Mark duplicates
-          for(int i = 0; i < knn.size() && knn.doubleValue(i) == 0.; i++) {
-            coredist[ids.index(knn.iter().seek(i))] = knn.getKNNDistance();
-          }
+      ParallelExecutor.run(0, ids.size(), BLOCKSIZE, (start, end) -> {
+        KNNSearcher<DBIDRef> q = start == 0 ? knnq : new QueryBuilder<>(relation, distance).kNNByDBID(minPts);
+        for(DBIDArrayIter ita = ids.iter().seek(start); ita.getOffset() < end; ita.advance()) {
+          coredist[ita.getOffset()] = q.getKNN(ita, minPts).getKNNDistance();
         }
-      }
+        LOG.incrementProcessed(cprog, end - start);
+      });
       LOG.ensureCompleted(cprog);
     }
 
-    /**
-     * Build the initial heap.
-     * 
-     * @param relation data relation
-     */
-    private void initializeHeap(Relation<? extends O> relation) {
-      FiniteProgress iprog = LOG.isVerbose() ? new FiniteProgress("Heap initialization", ids.size(), LOG) : null;
-      @SuppressWarnings("unchecked")
-      PrioritySearcher<DBIDRef>[] pqs = (PrioritySearcher<DBIDRef>[]) new PrioritySearcher<?>[ids.size()];
-      this.pqs = pqs;
-      this.heaps = new DoubleIntegerMinHeap[ids.size()];
-      for(DBIDArrayIter ita = ids.iter(); ita.valid(); ita.advance(), LOG.incrementProcessed(iprog)) {
-        int a = ita.getOffset(), ca = builder.get(a);
-        if(builder.getSize(ca) > 1) {
-          continue; // duplicate
-        }
-        double cd = coredist[a];
-        DoubleIntegerMinHeap h = heaps[a] = new DoubleIntegerMinHeap();
-        PrioritySearcher<DBIDRef> pq = this.pqs[a] = new QueryBuilder<>(relation, distance).priorityByDBID();
-        // Initial search to get an initial priority
-        double thres = Double.POSITIVE_INFINITY;
-        for(pq.search(DBIDUtil.deref(ita)); pq.valid() && pq.allLowerBound() < thres; pq.advance()) {
-          final int b = ids.index(pq);
-          if(a == b) {
-            continue;
-          }
-          final double d = pq.computeExactDistance();
-          if(d == 0.) { // duplicate, merge immediately
-            int cb = builder.get(b);
-            if(ca != cb) {
-              ca = builder.add(ca, cd, cb);
-            }
-            continue;
-          }
-          double rd = MathUtil.max(cd, d, coredist[b]);
-          h.add(rd, b);
-          thres = h.peekKey();
-          // do not use pq.decreaseCutoff, as we continue later
-        }
-      }
-      LOG.ensureCompleted(iprog);
-      if(LOG.isDebugging()) {
-        LOG.debug("Performed " + builder.mergecount + " merges of duplicates (may involve more objects) during initialization.");
-      }
-    }
-
-    private int findMerges(int[] best, double[] bestd) {
-      // Determine the best merge for each cluster:
-      Arrays.fill(bestd, Double.NaN);
-      double min = Double.POSITIVE_INFINITY;
-      for(int a = 0; a < best.length; a++) {
-        int ca = uf.find(a);
-        DoubleIntegerMinHeap nn = heaps[a];
-        if(nn != null && !nn.isEmpty()) {
-          double d = nn.peekKey();
-          // Note: bestd may be NaN
-          if(!(d >= bestd[ca])) {
-            bestd[ca] = d;
-            best[ca] = a;
-            min = d < min ? d : min;
-          }
-        }
-      }
-      return sortWithNaNs(bestd, best);
-    }
-
-    /**
-     * Sort the list, but put all NaNs to the end.
-     *
-     * @param bestd Distances
-     * @param best Keys
-     * @return Number of valid entries
-     */
-    private int sortWithNaNs(double[] bestd, int[] best) {
-      int i = 0, l = bestd.length - 1;
-      // Pivot all NaNs to the end
-      while(i < l) {
-        while(i < l && Double.isNaN(bestd[l])) {
-          l--;
-        }
-        while(i < l && !Double.isNaN(bestd[i])) {
-          i++;
-        }
-        if(i < l) {
-          ArrayUtil.swap(bestd, i, l);
-          ArrayUtil.swap(best, i, l);
-          i++;
-          l--;
-        }
-      }
-      DoubleIntegerArrayQuickSort.sort(bestd, best, i);
-      return i;
-    }
-
-    /**
-     * Transfer edges to the builder.
-     *
-     * @param edges Edges list
-     * @param threshold Stopping threshold
-     */
-    private void edgesToBuilder(ArrayList<Edge> edges, double threshold) {
-      edges.sort(null);
-      int trim = 0;
-      while(trim < edges.size()) {
-        Edge e = edges.get(trim);
-        if(e.d > threshold) {
-          break;
-        }
-        builder.add(e.a, e.d, e.b);
-        trim++;
-      }
-      edges.subList(0, trim).clear();
+    @Override
+    protected double edgeWeight(int a, double d, int b) {
+      return MathUtil.max(coredist[a], d, coredist[b]);
     }
 
-    /**
-     * Refill all searchers.
-     */
-    private void pollSearchers() {
-      // Refill all searchers
-      for(int a = 0; a < heaps.length; a++) {
-        DoubleIntegerMinHeap nn = heaps[a];
-        if(nn == null) {
-          continue;
-        }
-        if(!nn.isEmpty()) {
-          int ca = uf.find(a);
-          // Poll any known neighbor that is already merged now.
-          while(!nn.isEmpty() && ca == uf.find(nn.peekValue())) {
-            nn.poll();
-          }
-        }
-        if(nn.isEmpty() || nn.peekKey() > pqs[a].allLowerBound()) {
-          refillNeighbors(a, uf.find(a));
-        }
-      }
+    @Override
+    protected double duplicateHeight(int a) {
+      return coredist[a];
     }
 
-    /**
-     * Refill the nearest neighbors.
-     * 
-     * @param a Query object number
-     * @param ca Cluster id of the query object
-     */
-    private void refillNeighbors(int a, int ca) {
-      PrioritySearcher<DBIDRef> pq = pqs[a];
-      DoubleIntegerMinHeap h = heaps[a];
-      double thres = h.isEmpty() ? Double.POSITIVE_INFINITY : h.peekKey();
-      double cd = coredist[a];
-      for(; pq.valid() && pq.allLowerBound() < thres; pq.advance()) {
-        final int b = ids.index(pq);
-        if(a == b || uf.find(b) == ca) {
-          continue;
-        }
-        double d = pq.computeExactDistance();
-        double rd = MathUtil.max(cd, d, coredist[b]);
-        h.add(rd, b);
-        thres = h.peekKey();
-        // do not use pq.decreaseCutoff, as we continue with the searcher
-      }
+    @Override
+    protected Logging getLogger() {
+      return LOG;
     }
   }
 
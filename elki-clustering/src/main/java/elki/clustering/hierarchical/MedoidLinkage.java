@@ -181,7 +181,6 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
 
     @Override
     protected int findMerge() {
-      final double[] distances = mat.matrix;
       double mindist = Double.POSITIVE_INFINITY;
       int x = -1, y = -1;
       for(int dx = 0; dx < end; dx++) {
@@ -189,7 +188,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
         if(mat.clustermap[dx] < 0) {
           continue;
         }
-        final int xoffset = ClusterDistanceMatrix.triangleSize(dx);
+        final long xoffset = ClusterDistanceMatrix.triangleSize(dx);
 
         for(int dy = 0; dy < dx; dy++) {
           // Skip if object is already linked
@@ -197,7 +196,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
             continue;
           }
 
-          double dist = distances[xoffset + dy];
+          double dist = mat.get(xoffset + dy);
           if(dist < mindist) {
             mindist = dist;
             x = dx;
@@ -218,8 +217,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
     protected void merge(int x, int y) {
       assert x >= 0 && y >= 0;
       assert y < x; // We could swap otherwise, but this shouldn't arise.
-      final double[] distances = mat.matrix;
-      final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
+      final long offset = ClusterDistanceMatrix.triangleSize(x) + y;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
       // Keep y
       if(cy == null) {
@@ -240,7 +238,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
       // parent of x is set to y
       final int xx = mat.clustermap[x], yy = mat.clustermap[y];
       final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
-      int zz = builder.strictAdd(xx, distances[offset], yy, mj);
+      int zz = builder.strictAdd(xx, mat.get(offset), yy, mj);
       assert builder.getSize(zz) == sizex + sizey;
       mat.clustermap[y] = zz;
       mat.clustermap[x] = -1; // deactivate
@@ -290,8 +288,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
      */
     protected void updateMatrix(int x, int y) {
       // Update distance matrix. Note: y < x
-      final int ybase = ClusterDistanceMatrix.triangleSize(y);
-      double[] scratch = mat.matrix;
+      final long ybase = ClusterDistanceMatrix.triangleSize(y);
 
       // Write to (y, j), with j < y
       int j = 0;
@@ -301,16 +298,16 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
           continue;
         }
         assert j < y; // Otherwise, ybase + j is the wrong position!
-        scratch[ybase + j] = dq.distance(mi, mj.seek(j));
+        mat.set(ybase + j, dq.distance(mi, mj.seek(j)));
       }
       j++; // Skip y
       // Write to (j, y), with y < j < x
-      int jbase = ClusterDistanceMatrix.triangleSize(j);
+      long jbase = ClusterDistanceMatrix.triangleSize(j);
       for(; j < x; jbase += j++) {
         if(mat.clustermap[j] < 0) {
           continue;
         }
-        scratch[jbase + y] = dq.distance(mi, mj.seek(j));
+        mat.set(jbase + y, dq.distance(mi, mj.seek(j)));
       }
       jbase += j++; // Skip x
       // Write to (j, y), with y < x < j
@@ -318,7 +315,7 @@ public class MedoidLinkage<O> implements HierarchicalClusteringAlgorithm {
         if(mat.clustermap[j] < 0) {
           continue;
         }
-        scratch[jbase + y] = dq.distance(mi, mj.seek(j));
+        mat.set(jbase + y, dq.distance(mi, mj.seek(j)));
       }
     }
   }
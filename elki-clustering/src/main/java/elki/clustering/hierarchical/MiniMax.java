@@ -104,9 +104,9 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
   public ClusterPrototypeMergeHistory run(Relation<O> relation) {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(ClusterDistanceMatrix.triangleSize(ids.size()));
+    ClusterPrototypeMatrix prots = new ClusterPrototypeMatrix(ids.size());
     ClusterDistanceMatrix mat = initializeMatrices(ids, prots, dq);
-    return new Instance().run(ids, mat, new ClusterMergeHistoryBuilder(ids, dq.getDistance().isSquared()), dq, prots.iter());
+    return new Instance().run(ids, mat, new ClusterMergeHistoryBuilder(ids, dq.getDistance().isSquared()), dq, prots);
   }
 
   /**
@@ -118,16 +118,15 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
    * @param dq The distance query
    * @return mat Cluster distance matrix
    */
-  protected static <O> ClusterDistanceMatrix initializeMatrices(ArrayDBIDs ids, ArrayModifiableDBIDs prots, DistanceQuery<O> dq) {
+  protected static <O> ClusterDistanceMatrix initializeMatrices(ArrayDBIDs ids, ClusterPrototypeMatrix prots, DistanceQuery<O> dq) {
     ClusterDistanceMatrix mat = new ClusterDistanceMatrix(ids.size());
     final DBIDArrayIter ix = ids.iter(), iy = ids.iter();
-    final double[] distances = mat.matrix;
-    int pos = 0;
+    long pos = 0;
     for(ix.seek(1); ix.valid(); ix.advance()) {
       final int x = ix.getOffset();
       assert pos == ClusterDistanceMatrix.triangleSize(x);
       for(iy.seek(0); iy.getOffset() < x; iy.advance()) {
-        distances[pos++] = dq.distance(ix, iy);
+        mat.set(pos++, dq.distance(ix, iy));
         prots.add(iy);
       }
     }
@@ -147,9 +146,9 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
     protected Int2ObjectOpenHashMap<ModifiableDBIDs> clusters;
 
     /**
-     * Iterator into prototype cache
+     * Prototype storage
      */
-    protected DBIDArrayMIter protiter;
+    protected ClusterPrototypeMatrix prots;
 
     /**
      * Distance query function
@@ -183,13 +182,13 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
      * @param prots Prototype storage
      * @return Cluster merge history
      */
-    public ClusterPrototypeMergeHistory run(ArrayDBIDs ids, ClusterDistanceMatrix mat, ClusterMergeHistoryBuilder builder, DistanceQuery<?> dq, DBIDArrayMIter prots) {
+    public ClusterPrototypeMergeHistory run(ArrayDBIDs ids, ClusterDistanceMatrix mat, ClusterMergeHistoryBuilder builder, DistanceQuery<?> dq, ClusterPrototypeMatrix prots) {
       final int size = mat.size;
       this.mat = mat;
       this.builder = builder;
       this.end = size;
       this.clusters = new Int2ObjectOpenHashMap<>(size);
-      this.protiter = prots;
+      this.prots = prots;
       this.dq = dq;
       this.ix = ids.iter();
       this.iy = ids.iter();
@@ -204,7 +203,6 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
 
     @Override
     protected int findMerge() {
-      final double[] distances = mat.matrix;
       double mindist = Double.POSITIVE_INFINITY;
       int x = -1, y = -1;
 
@@ -213,7 +211,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
         if(mat.clustermap[dx] < 0) {
           continue;
         }
-        final int xoffset = ClusterDistanceMatrix.triangleSize(dx);
+        final long xoffset = ClusterDistanceMatrix.triangleSize(dx);
 
         for(int dy = 0; dy < dx; dy++) {
           // Skip if object is already linked
@@ -221,7 +219,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
             continue;
           }
 
-          double dist = distances[xoffset + dy];
+          double dist = mat.get(xoffset + dy);
           if(dist < mindist) {
             mindist = dist;
             x = dx;
@@ -243,8 +241,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
     protected void merge(int x, int y) {
       assert x >= 0 && y >= 0;
       assert y < x;
-      final double[] distances = mat.matrix;
-      final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
+      final long offset = ClusterDistanceMatrix.triangleSize(x) + y;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
       // Keep y
       if(cy == null) {
@@ -263,7 +260,7 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
       // parent of x is set to y
       final int xx = mat.clustermap[x], yy = mat.clustermap[y];
       final int sizex = builder.getSize(xx), sizey = builder.getSize(yy);
-      int zz = builder.strictAdd(xx, distances[offset], yy, protiter.seek(offset));
+      int zz = builder.strictAdd(xx, mat.get(offset), yy, prots.seek(offset));
       assert builder.getSize(zz) == sizex + sizey;
       mat.clustermap[y] = zz;
       mat.clustermap[x] = -1; // Deactivate removed cluster.
@@ -301,7 +298,6 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
      */
     protected void updateEntry(int x, int y) {
       assert y < x;
-      final double[] distances = mat.matrix;
       ModifiableDBIDs cx = clusters.get(x), cy = clusters.get(y);
 
       DBIDVar prototype = DBIDUtil.newVar(ix.seek(x)); // Default prototype
@@ -321,9 +317,9 @@ public class MiniMax<O> implements HierarchicalClusteringAlgorithm {
         prototype.set(ix);
       }
 
-      final int offset = ClusterDistanceMatrix.triangleSize(x) + y;
-      distances[offset] = minMaxDist;
-      protiter.seek(offset).setDBID(prototype);
+      final long offset = ClusterDistanceMatrix.triangleSize(x) + y;
+      mat.set(offset, minMaxDist);
+      prots.seek(offset).setDBID(prototype);
     }
 
     /**
@@ -23,8 +23,6 @@ package elki.clustering.hierarchical;
 import elki.data.type.TypeInformation;
 import elki.data.type.TypeUtil;
 import elki.database.ids.ArrayDBIDs;
-import elki.database.ids.ArrayModifiableDBIDs;
-import elki.database.ids.DBIDArrayMIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
@@ -93,10 +91,10 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
   public ClusterPrototypeMergeHistory run(Relation<O> relation) {
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).precomputed().distanceQuery();
     ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
-    ArrayModifiableDBIDs prots = DBIDUtil.newArray(ClusterDistanceMatrix.triangleSize(ids.size()));
+    ClusterPrototypeMatrix prots = new ClusterPrototypeMatrix(ids.size());
     ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq);
     ClusterMergeHistoryBuilder builder = new ClusterMergeHistoryBuilder(ids, distance.isSquared());
-    return new Instance().run(ids, mat, builder, dq, prots.iter());
+    return new Instance().run(ids, mat, builder, dq, prots);
   }
 
   /**
@@ -106,13 +104,13 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
    */
   public static class Instance extends MiniMax.Instance {
     @Override
-    public ClusterPrototypeMergeHistory run(ArrayDBIDs ids, ClusterDistanceMatrix mat, ClusterMergeHistoryBuilder builder, DistanceQuery<?> dq, DBIDArrayMIter prots) {
+    public ClusterPrototypeMergeHistory run(ArrayDBIDs ids, ClusterDistanceMatrix mat, ClusterMergeHistoryBuilder builder, DistanceQuery<?> dq, ClusterPrototypeMatrix prots) {
       final int size = mat.size;
       this.mat = mat;
       this.builder = builder;
       this.end = size;
       this.clusters = new Int2ObjectOpenHashMap<>(size);
-      this.protiter = prots;
+      this.prots = prots;
       this.dq = dq;
       this.ix = ids.iter();
       this.iy = ids.iter();
@@ -127,7 +125,6 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
      */
     private void nnChainCore() {
       final int size = mat.size;
-      final double[] distances = mat.matrix;
       final int[] clustermap = mat.clustermap;
       // The maximum chain size = number of ids + 1, but usually much less
       IntegerArray chain = new IntegerArray(size << 1);
@@ -154,10 +151,10 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
         double minDist = mat.get(a, b);
         do {
           int c = b;
-          final int ta = ClusterDistanceMatrix.triangleSize(a);
+          final long ta = ClusterDistanceMatrix.triangleSize(a);
           for(int i = 0; i < a; i++) {
             if(i != b && clustermap[i] >= 0) {
-              double dist = distances[ta + i];
+              double dist = mat.get(ta + i);
               if(dist < minDist) {
                 minDist = dist;
                 c = i;
@@ -166,7 +163,7 @@ public class MiniMaxNNChain<O> extends MiniMax<O> {
           }
           for(int i = a + 1; i < end; i++) {
             if(i != b && clustermap[i] >= 0) {
-              double dist = distances[ClusterDistanceMatrix.triangleSize(i) + a];
+              double dist = mat.get(ClusterDistanceMatrix.triangleSize(i) + a);
               if(dist < minDist) {
                 minDist = dist;
                 c = i;
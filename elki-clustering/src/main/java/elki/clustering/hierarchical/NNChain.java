@@ -77,6 +77,17 @@ public class NNChain<O> extends AGNES<O> {
     super(distance, linkage);
   }
 
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param linkage Linkage strategy
+   * @param floatPrecision Store the distance matrix with single precision only
+   */
+  public NNChain(Distance<? super O> distance, Linkage linkage, boolean floatPrecision) {
+    super(distance, linkage, floatPrecision);
+  }
+
   @Override
   public ClusterMergeHistory run(Relation<O> relation) {
     if(SingleLinkage.class.isInstance(linkage)) {
@@ -84,7 +95,7 @@ public class NNChain<O> extends AGNES<O> {
     }
     DistanceQuery<O> dq = new QueryBuilder<>(relation, distance).distanceQuery();
     ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
-    ClusterDistanceMatrix mat = initializeDistanceMatrix(ids, dq, linkage);
+    ClusterDistanceMatrix mat = initializeDistanceMatrix(ids, dq, linkage, floatPrecision);
     return new Instance(linkage).run(mat, new ClusterMergeHistoryBuilder(ids, distance.isSquared()));
   }
 
@@ -120,7 +131,6 @@ public class NNChain<O> extends AGNES<O> {
     private void nnChainCore() {
       final int size = mat.size;
       boolean warnedIrreducible = false;
-      final double[] distances = mat.matrix;
       final int[] clustermap = mat.clustermap;
       // The maximum chain size = number of ids + 1, but usually much less
       IntegerArray chain = new IntegerArray(size >> 2);
@@ -157,10 +167,10 @@ public class NNChain<O> extends AGNES<O> {
         double minDist = mat.get(a, b);
         do {
           int c = b;
-          final int ta = ClusterDistanceMatrix.triangleSize(a);
+          final long ta = ClusterDistanceMatrix.triangleSize(a);
           for(int i = 0; i < a; i++) {
             if(i != b && clustermap[i] >= 0) {
-              double dist = distances[ta + i];
+              double dist = mat.get(ta + i);
               if(dist < minDist) {
                 minDist = dist;
                 c = i;
@@ -169,7 +179,7 @@ public class NNChain<O> extends AGNES<O> {
           }
           for(int i = a + 1; i < end; i++) {
             if(i != b && clustermap[i] >= 0) {
-              double dist = distances[ClusterDistanceMatrix.triangleSize(i) + a];
+              double dist = mat.get(ClusterDistanceMatrix.triangleSize(i) + a);
               if(dist < minDist) {
                 minDist = dist;
                 c = i;
@@ -229,7 +239,7 @@ public class NNChain<O> extends AGNES<O> {
   public static class Par<O> extends AGNES.Par<O> {
     @Override
     public NNChain<O> make() {
-      return new NNChain<>(distance, linkage);
+      return new NNChain<>(distance, linkage, floatPrecision);
     }
   }
 }
@@ -0,0 +1,398 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.hierarchical;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDEnum;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.PrioritySearcher;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.parallel.ParallelExecutor;
+import elki.utilities.datastructures.arrays.ArrayUtil;
+import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
+import elki.utilities.datastructures.heap.DoubleIntegerMinHeap;
+import elki.utilities.datastructures.unionfind.ConcurrentUnionFind;
+import elki.utilities.datastructures.unionfind.UnionFindUtil;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Parallel Boruvka engine using a heap of priority searchers, shared by
+ * {@link BoruvkaSearchersSingleLink} and {@link HDBSCANBoruvkaS}.
+ * <p>
+ * Every object keeps its own priority searcher and a heap of candidate
+ * neighbors. The searches for the initial candidates and the refilling of the
+ * heaps after each Boruvka round are independent for each object, and run in
+ * parallel; the union-find used for the component tests supports concurrent
+ * use. Choosing the best outgoing edge of each component and merging are cheap,
+ * and are done sequentially, in the same order as in a sequential run.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> Object type
+ */
+public abstract class ParallelBoruvka<O> {
+  /**
+   * Minimum number of objects per parallel block.
+   */
+  protected static final int BLOCKSIZE = 256;
+
+  /**
+   * Object IDs
+   */
+  protected DBIDEnum ids;
+
+  /**
+   * Cluster merge helper
+   */
+  protected ClusterMergeHistoryBuilder builder;
+
+  /**
+   * Union-Find used during MST phase
+   */
+  protected ConcurrentUnionFind uf;
+
+  /**
+   * Priority searchers.
+   */
+  protected PrioritySearcher<DBIDRef>[] pqs;
+
+  /**
+   * Auxiliary heaps.
+   */
+  protected DoubleIntegerMinHeap[] heaps;
+
+  /**
+   * Constructor for a single run.
+   *
+   * @param ids IDs
+   * @param builder Merge helper
+   */
+  public ParallelBoruvka(DBIDEnum ids, ClusterMergeHistoryBuilder builder) {
+    this.ids = ids;
+    this.builder = builder;
+    this.uf = UnionFindUtil.makeConcurrent(ids);
+  }
+
+  /**
+   * Distance used for the minimum spanning tree.
+   *
+   * @param a First object
+   * @param d Distance of the objects
+   * @param b Second object
+   * @return Edge weight
+   */
+  protected abstract double edgeWeight(int a, double d, int b);
+
+  /**
+   * Height at which duplicates of an object are merged.
+   *
+   * @param a Object
+   * @return Merge height
+   */
+  protected abstract double duplicateHeight(int a);
+
+  /**
+   * Get the class logger.
+   *
+   * @return Logger
+   */
+  protected abstract Logging getLogger();
+
+  /**
+   * Run the main algorithm.
+   *
+   * @param relation Data relation
+   * @param distance Distance function
+   */
+  public void run(Relation<? extends O> relation, Distance<? super O> distance) {
+    final Logging log = getLogger();
+    final int size = ids.size();
+    initializeHeap(relation, distance);
+    FiniteProgress cprog = log.isVerbose() ? new FiniteProgress("Finding the minimum spanning tree", size, log) : null;
+    if(cprog != null) {
+      cprog.setProcessed(builder.mergecount + 1, log);
+    }
+    // Boruvka-like step to find the MST edges
+    final int maxmerges = size - builder.mergecount - 1;
+    ArrayList<Edge> edges = new ArrayList<>(maxmerges);
+    int[] best = new int[size];
+    double[] bestd = new double[size];
+    outer: while(maxmerges > 0) {
+      final int l = findMerges(best, bestd);
+      assert l > 0;
+      // Perform best merge of each cluster:
+      for(int i = 0; i < l; i++) {
+        int a = best[i];
+        double curd = bestd[i];
+        DoubleIntegerMinHeap nn = heaps[a];
+        assert curd == nn.peekKey();
+        final int b = nn.peekValue();
+        nn.poll();
+        if(uf.find(a) != uf.find(b)) {
+          uf.union(a, b);
+          edges.add(new Edge(a, b, curd));
+          log.incrementProcessed(cprog);
+          if(edges.size() == maxmerges) {
+            break outer;
+          }
+        }
+      }
+      pollSearchers();
+    }
+    log.ensureCompleted(cprog);
+    // Add remaining edges to the dendrogram
+    edgesToBuilder(edges);
+  }
+
+  /**
+   * Build the initial heaps, in parallel.
+   * 
+   * @param relation Data relation
+   * @param distance Distance function
+   */
+  private void initializeHeap(Relation<? extends O> relation, Distance<? super O> distance) {
+    final Logging log = getLogger();
+    final int size = ids.size();
+    FiniteProgress iprog = log.isVerbose() ? new FiniteProgress("Heap initialization", size, log) : null;
+    @SuppressWarnings("unchecked")
+    PrioritySearcher<DBIDRef>[] pqs = (PrioritySearcher<DBIDRef>[]) new PrioritySearcher<?>[size];
+    this.pqs = pqs;
+    this.heaps = new DoubleIntegerMinHeap[size];
+    // Duplicates found by each object:
+    final int[][] duplicates = new int[size][];
+    ParallelExecutor.run(0, size, BLOCKSIZE, (start, end) -> {
+      IntArrayList dups = new IntArrayList();
+      DBIDArrayIter ita = ids.iter();
+      for(int a = start; a < end; a++) {
+        DoubleIntegerMinHeap h = new DoubleIntegerMinHeap();
+        PrioritySearcher<DBIDRef> pq = new QueryBuilder<>(relation, distance).priorityByDBID();
+        // Initial search to get an initial priority
+        double thres = Double.POSITIVE_INFINITY;
+        for(pq.search(DBIDUtil.deref(ita.seek(a))); pq.valid() && pq.allLowerBound() < thres; pq.advance()) {
+          final int b = ids.index(pq);
+          if(a == b) {
+            continue;
+          }
+          final double d = pq.computeExactDistance();
+          if(d == 0.) { // duplicate, merged below
+            dups.add(b);
+            continue;
+          }
+          h.add(edgeWeight(a, d, b), b);
+          thres = h.peekKey();
+          // do not use pq.decreaseCutoff, as we continue later
+        }
+        heaps[a] = h;
+        pqs[a] = pq;
+        duplicates[a] = dups.isEmpty() ? null : dups.toIntArray();
+        dups.clear();
+      }
+      log.incrementProcessed(iprog, end - start);
+    });
+    log.ensureCompleted(iprog);
+    // Merge duplicates in object order, as sequentially:
+    for(int a = 0; a < size; a++) {
+      int ca = builder.get(a);
+      if(builder.getSize(ca) > 1) { // duplicate of an earlier object
+        heaps[a] = null;
+        pqs[a] = null;
+        continue;
+      }
+      if(duplicates[a] != null) {
+        for(int b : duplicates[a]) {
+          uf.union(a, b); // update both union-find and builder
+          int cb = builder.get(b);
+          if(ca != cb) {
+            ca = builder.add(ca, duplicateHeight(a), cb);
+          }
+        }
+      }
+    }
+    if(log.isDebugging()) {
+      log.debug("Performed " + builder.mergecount + " merges of duplicates (may involve more objects) during initialization.");
+    }
+  }
+
+  /**
+   * Determine the best merge for each cluster.
+   *
+   * @param best Output of best objects
+   * @param bestd Output of best distances
+   * @return Number of valid entries
+   */
+  private int findMerges(int[] best, double[] bestd) {
+    Arrays.fill(bestd, Double.NaN);
+    for(int a = 0; a < best.length; a++) {
+      DoubleIntegerMinHeap nn = heaps[a];
+      if(nn != null && !nn.isEmpty()) {
+        final int ca = uf.find(a);
+        double d = nn.peekKey();
+        // Note: bestd may be NaN
+        if(!(d >= bestd[ca])) {
+          bestd[ca] = d;
+          best[ca] = a;
+        }
+      }
+    }
+    return sortWithNaNs(bestd, best);
+  }
+
+  /**
+   * Sort the list, but put all NaNs to the end.
+   *
+   * @param bestd Distances
+   * @param best Keys
+   * @return Number of valid entries
+   */
+  private static int sortWithNaNs(double[] bestd, int[] best) {
+    int i = 0, l = bestd.length - 1;
+    // Pivot all NaNs to the end
+    while(i < l) {
+      while(i < l && Double.isNaN(bestd[l])) {
+        l--;
+      }
+      while(i < l && !Double.isNaN(bestd[i])) {
+        i++;
+      }
+      if(i < l) {
+        ArrayUtil.swap(bestd, i, l);
+        ArrayUtil.swap(best, i, l);
+        i++;
+        l--;
+      }
+    }
+    // Include the last position when it is valid:
+    i = i < bestd.length && !Double.isNaN(bestd[i]) ? i + 1 : i;
+    DoubleIntegerArrayQuickSort.sort(bestd, best, i);
+    return i;
+  }
+
+  /**
+   * Transfer edges to the builder.
+   *
+   * @param edges Edges list
+   */
+  private void edgesToBuilder(ArrayList<Edge> edges) {
+    edges.sort(null);
+    for(Edge e : edges) {
+      builder.add(e.a, e.d, e.b);
+    }
+  }
+
+  /**
+   * Refill all searchers, in parallel.
+   */
+  private void pollSearchers() {
+    ParallelExecutor.run(0, heaps.length, BLOCKSIZE, (start, end) -> {
+      for(int a = start; a < end; a++) {
+        DoubleIntegerMinHeap nn = heaps[a];
+        if(nn == null) {
+          continue;
+        }
+        if(!nn.isEmpty()) {
+          int ca = uf.find(a);
+          // Poll any known neighbor that is already merged now.
+          while(!nn.isEmpty() && ca == uf.find(nn.peekValue())) {
+            nn.poll();
+          }
+        }
+        if(nn.isEmpty() || nn.peekKey() > pqs[a].allLowerBound()) {
+          refillNeighbors(a, uf.find(a));
+        }
+      }
+    });
+  }
+
+  /**
+   * Refill the nearest neighbors.
+   * 
+   * @param a Query object number
+   * @param ca Cluster id of the query object
+   */
+  private void refillNeighbors(int a, int ca) {
+    PrioritySearcher<DBIDRef> pq = pqs[a];
+    DoubleIntegerMinHeap h = heaps[a];
+    double thres = h.isEmpty() ? Double.POSITIVE_INFINITY : h.peekKey();
+    for(; pq.valid() && pq.allLowerBound() < thres; pq.advance()) {
+      final int b = ids.index(pq);
+      if(a == b || uf.find(b) == ca) {
+        continue;
+      }
+      h.add(edgeWeight(a, pq.computeExactDistance(), b), b);
+      thres = h.peekKey();
+      // do not use pq.decreaseCutoff, as we continue with the searcher
+    }
+    if(h.isEmpty()) {
+      heaps[a] = null;
+      pqs[a] = null;
+    }
+  }
+
+  /**
+   * Edges found in Boruvka step.
+   * 
+   * @author agent
+   */
+  protected static class Edge implements Comparable<Edge> {
+    /**
+     * First node
+     */
+    int a;
+
+    /**
+     * Other node
+     */
+    int b;
+
+    /**
+     * Distance
+     */
+    double d;
+
+    /**
+     * Constructor.
+     *
+     * @param a first node
+     * @param b second node
+     * @param d distance
+     */
+    public Edge(int a, int b, double d) {
+      this.a = a;
+      this.b = b;
+      this.d = d;
+    }
+
+    @Override
+    public int compareTo(Edge o) {
+      return Double.compare(d, o.d);
+    }
+  }
+}
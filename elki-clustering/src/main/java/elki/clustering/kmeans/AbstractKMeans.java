@@ -199,6 +199,9 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
     if(vec instanceof SparseNumberVector) {
       sparsePlusEquals(sum, (SparseNumberVector) vec);
     }
+    else if(vec instanceof DoubleBlockVector) {
+      blockPlusEquals(sum, (DoubleBlockVector) vec);
+    }
     else {
       densePlusEquals(sum, vec);
     }
@@ -216,6 +219,19 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
     }
   }
 
+  /**
+   * Similar to VMath.plusEquals, but reads from a contiguous block directly.
+   *
+   * @param sum Aggregation array
+   * @param vec Vector to add
+   */
+  private static void blockPlusEquals(double[] sum, DoubleBlockVector vec) {
+    final double[] block = vec.getBlock();
+    for(int d = 0, o = vec.getOffset(); d < sum.length; d++, o++) {
+      sum[d] += block[o];
+    }
+  }
+
   /**
    * Similar to VMath.plusEquals, but for sparse number vectors.
    *
@@ -235,8 +251,16 @@ public abstract class AbstractKMeans<V extends NumberVector, M extends Model> im
    * @param vec Vector to subtract
    */
   public static void minusEquals(double[] sum, NumberVector vec) {
-    for(int d = 0; d < sum.length; d++) {
-      sum[d] -= vec.doubleValue(d);
+    if(vec instanceof DoubleBlockVector) {
+      final double[] block = ((DoubleBlockVector) vec).getBlock();
+      for(int d = 0, o = ((DoubleBlockVector) vec).getOffset(); d < sum.length; d++, o++) {
+        sum[d] -= block[o];
+      }
+    }
+    else {
+      for(int d = 0; d < sum.length; d++) {
+        sum[d] -= vec.doubleValue(d);
+      }
     }
   }
 
@@ -35,6 +35,7 @@ import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.ModifiableDBIDs;
 import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleStreamSource;
 import elki.index.tree.betula.CFTree;
 import elki.index.tree.betula.features.ClusterFeature;
 import elki.logging.Logging;
@@ -188,6 +189,49 @@ public class BetulaLloydKMeans extends AbstractKMeans<NumberVector, KMeansModel>
     return result;
   }
 
+  /**
+   * Run the clustering algorithm on a stream of vectors, in a single pass over
+   * the data.
+   * <p>
+   * The CF-tree is built directly from the stream (see
+   * {@link CFTree.Factory#newTree(BundleStreamSource)}), and k-means is run on
+   * the leaf entries. Because the objects are not stored, the resulting
+   * clusters contain no object ids, only the cluster models.
+   *
+   * @param source Data source
+   * @return Clustering
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    CFTree<?> tree = cffactory.newTree(source);
+    ArrayList<? extends ClusterFeature> cfs = tree.getLeaves();
+
+    Duration modeltime = LOG.newDuration(getClass().getName() + ".modeltime").begin();
+    int[] assignment = new int[cfs.size()], weights = new int[k];
+    Arrays.fill(assignment, -1);
+    double[][] means = kmeans(cfs, assignment, weights, tree);
+    LOG.statistics(modeltime.end());
+    double[] varsum = new double[k];
+    for(int i = 0; i < assignment.length; i++) {
+      ClusterFeature cfsi = cfs.get(i);
+      final double[] mean = means[assignment[i]];
+      double s = cfsi.sumdev();
+      for(int d = 0; d < mean.length; d++) {
+        final double dx = cfsi.centroid(d) - mean[d];
+        s += cfsi.getWeight() * dx * dx;
+      }
+      varsum[assignment[i]] += s;
+    }
+    LOG.statistics(new LongStatistic(getClass().getName() + ".distance-computations", diststat));
+    LOG.statistics(new DoubleStatistic(getClass().getName() + ".variance-sum", VMath.sum(varsum)));
+    Clustering<KMeansModel> result = new Clustering<>();
+    for(int i = 0; i < k; i++) {
+      KMeansModel model = new KMeansModel(means[i], weights[i], varsum[i]);
+      result.addToplevelCluster(new Cluster<>(DBIDUtil.newArray(0), model));
+    }
+    Metadata.of(result).setLongName("BIRCH k-Means Clustering");
+    return result;
+  }
+
   /**
    * Perform k-means clustering.
    *
@@ -75,12 +75,12 @@ public class YinYangKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
   /**
    * Use only up to 5 iterations of kmeans for grouping initial centers.
    */
-  private static final int GROUP_KMEANS_MAXITER = 5;
+  protected static final int GROUP_KMEANS_MAXITER = 5;
 
   /**
    * Number of cluster center groups t
    */
-  private int t;
+  protected int t;
 
   /**
    * Constructor.
@@ -203,6 +203,10 @@ public class YinYangKMeans<V extends NumberVector> extends AbstractKMeans<V, KMe
           }
         }
       }
+      // Clear the sums, used as scratch space above
+      for(int i = 0; i < t; i++) {
+        Arrays.fill(sums[i], 0);
+      }
       if(getLogger().isStatistics()) {
         getLogger().statistics(new LongStatistic(key + ".yinyang-grouping.distance-computations", diststat - before));
       }
@@ -0,0 +1,236 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.initialization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+
+import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.database.ids.ArrayModifiableDBIDs;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDVar;
+import elki.database.ids.DBIDs;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.datasource.parser.CSVReaderFormat;
+import elki.distance.NumberVectorDistance;
+import elki.distance.PrimitiveDistance;
+import elki.logging.Logging;
+import elki.result.ClusterPrototypeDumper;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.io.FileUtil;
+import elki.utilities.io.TokenizedReader;
+import elki.utilities.io.Tokenizer;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.ObjectParameter;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+
+/**
+ * Warm-start k-means or k-medoids from the prototypes of a previous run.
+ * <p>
+ * The prototypes are read from a file with one whitespace or comma separated
+ * vector per line, as written by {@link ClusterPrototypeDumper}. For
+ * k-medoids, the object closest to each stored prototype is chosen. When the
+ * file does not exist yet, e.g., on the very first run of a recurring job, the
+ * fallback initialization is used instead.
+ * <p>
+ * When the data changed only little since the previous run, the algorithms
+ * usually converge within very few iterations.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> Object type for k-medoids
+ */
+public class WarmStart<O extends NumberVector> implements KMeansInitialization, KMedoidsInitialization<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(WarmStart.class);
+
+  /**
+   * File with the previous prototypes.
+   */
+  private URI file;
+
+  /**
+   * Initialization to use if the file does not exist.
+   */
+  private KMeansInitialization fallback;
+
+  /**
+   * Constructor.
+   *
+   * @param file File with the previous prototypes
+   * @param fallback Initialization to use if the file does not exist
+   */
+  public WarmStart(URI file, KMeansInitialization fallback) {
+    super();
+    this.file = file;
+    this.fallback = fallback;
+  }
+
+  @Override
+  public double[][] chooseInitialMeans(Relation<? extends NumberVector> relation, int k, NumberVectorDistance<?> distance) {
+    if(!FileUtil.exists(file)) {
+      LOG.verbose("No previous prototypes found, using fallback initialization.");
+      return fallback.chooseInitialMeans(relation, k, distance);
+    }
+    double[][] means = loadPrototypes(k);
+    final int dim = RelationUtil.dimensionality(relation);
+    for(double[] mean : means) {
+      if(mean.length != dim) {
+        throw new AbortException("Previous prototypes have dimensionality " + mean.length + ", but the data has dimensionality " + dim);
+      }
+    }
+    return means;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public DBIDs chooseInitialMedoids(int k, DBIDs ids, DistanceQuery<? super O> distQ) {
+    if(!FileUtil.exists(file)) {
+      if(!(fallback instanceof KMedoidsInitialization)) {
+        throw new AbortException("The fallback initialization " + fallback.getClass().getSimpleName() + " does not support k-medoids.");
+      }
+      LOG.verbose("No previous prototypes found, using fallback initialization.");
+      return ((KMedoidsInitialization<O>) fallback).chooseInitialMedoids(k, ids, distQ);
+    }
+    // The distance query may be precomputed, so use the distance function.
+    if(!(distQ.getDistance() instanceof PrimitiveDistance)) {
+      throw new AbortException("Warm-starting k-medoids requires a distance function defined on vectors.");
+    }
+    final PrimitiveDistance<? super O> df = (PrimitiveDistance<? super O>) distQ.getDistance();
+    final Relation<? extends O> relation = (Relation<? extends O>) distQ.getRelation();
+    double[][] protos = loadPrototypes(k);
+    ArrayModifiableDBIDs medoids = DBIDUtil.newArray(k);
+    DBIDVar best = DBIDUtil.newVar();
+    for(double[] proto : protos) {
+      // Ugly cast, but the distance is defined on number vectors.
+      final O vec = (O) DoubleVector.wrap(proto);
+      double mindist = Double.POSITIVE_INFINITY;
+      best.unset();
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        final double d = df.distance(vec, relation.get(iter));
+        if(d < mindist && !medoids.contains(iter)) {
+          mindist = d;
+          best.set(iter);
+        }
+      }
+      if(!best.isSet()) {
+        throw new AbortException("Not enough objects to choose " + k + " medoids.");
+      }
+      medoids.add(best);
+    }
+    return medoids;
+  }
+
+  /**
+   * Load the previous prototypes.
+   *
+   * @param k Number of prototypes expected
+   * @return Prototypes
+   */
+  private double[][] loadPrototypes(int k) {
+    ArrayList<double[]> protos = new ArrayList<>(k);
+    try (InputStream in = FileUtil.open(file); //
+        TokenizedReader reader = CSVReaderFormat.DEFAULT_FORMAT.makeReader()) {
+      Tokenizer tokenizer = reader.getTokenizer();
+      reader.reset(in);
+      DoubleArrayList buf = new DoubleArrayList();
+      while(reader.nextLineExceptComments()) {
+        buf.clear();
+        for(/* initialized by nextLineExceptComments */; tokenizer.valid(); tokenizer.advance()) {
+          try {
+            buf.add(tokenizer.getDouble());
+          }
+          catch(NumberFormatException e) {
+            // Ignore labels.
+          }
+        }
+        if(!buf.isEmpty()) {
+          protos.add(buf.toDoubleArray());
+        }
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not load previous prototypes: " + e.getMessage() + " when loading " + file, e);
+    }
+    if(protos.size() != k) {
+      throw new AbortException("Previous prototypes contained " + protos.size() //
+          + " prototypes, algorithm requested " + k + " instead.");
+    }
+    return protos.toArray(new double[k][]);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @param <O> Object type for k-medoids
+   */
+  public static class Par<O extends NumberVector> implements Parameterizer {
+    /**
+     * File with the prototypes of the previous run.
+     */
+    public static final OptionID FILE_ID = new OptionID("kmeans.warmstart.file", "File with the prototypes of a previous run, one per line. If it does not exist, the fallback initialization is used.");
+
+    /**
+     * Initialization to use if the file does not exist.
+     */
+    public static final OptionID FALLBACK_ID = new OptionID("kmeans.warmstart.fallback", "Initialization to use if no previous prototypes are available.");
+
+    /**
+     * File with the previous prototypes.
+     */
+    protected URI file;
+
+    /**
+     * Initialization to use if the file does not exist.
+     */
+    protected KMeansInitialization fallback;
+
+    @Override
+    public void configure(Parameterization config) {
+      // The file need not exist yet, hence not an input file.
+      new FileParameter(FILE_ID, FileParameter.FileType.OUTPUT_FILE) //
+          .grab(config, x -> file = x);
+      new ObjectParameter<KMeansInitialization>(FALLBACK_ID, KMeansInitialization.class, RandomlyChosen.class) //
+          .grab(config, x -> fallback = x);
+    }
+
+    @Override
+    public WarmStart<O> make() {
+      return new WarmStart<>(file, fallback);
+    }
+  }
+}
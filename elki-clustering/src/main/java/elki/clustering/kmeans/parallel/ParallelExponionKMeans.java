@@ -0,0 +1,167 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.ExponionKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+
+/**
+ * Parallel version of the Exponion k-means algorithm.
+ * <p>
+ * Each thread updates the bounds of a block of objects, the cluster sums are
+ * then updated in the same order as in {@link ExponionKMeans}, hence the
+ * result is identical to the sequential algorithm.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelExponionKMeans<V extends NumberVector> extends ExponionKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelExponionKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelExponionKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author agent
+   */
+  protected static class Instance extends ParallelHamerlyKMeans.Instance {
+    /**
+     * Sorted neighbors
+     */
+    int[][] cnum;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Data relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      cnum = new int[k][k - 1];
+    }
+
+    @Override
+    protected void prepareIteration() {
+      super.prepareIteration();
+      nearestMeans(cdist, cnum);
+    }
+
+    @Override
+    protected int reassign(Block b, DBIDArrayIter it, int orig) {
+      final int off = it.getOffset();
+      // Update the bounds:
+      double u = upper[off] += move[orig];
+      final double z = lower[off] -= orig == most ? delta2 : delta;
+      final double sa = sep[orig];
+      if(u <= z || u <= sa) {
+        return orig;
+      }
+      // Update the upper bound
+      NumberVector fv = relation.get(it);
+      double curd2 = b.distance(fv, means[orig]);
+      upper[off] = u = isSquared ? Math.sqrt(curd2) : curd2;
+      if(u <= z || u <= sa) {
+        return orig;
+      }
+      double rhalf = u + sa; // Our cdist are scaled 0.5
+      // Find closest center, and distance to two closest centers
+      double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+      int cur = orig;
+      for(int i = 0; i < k - 1; i++) {
+        final int c = cnum[orig][i]; // Optimized ordering
+        if(cdist[orig][c] > rhalf) {
+          break;
+        }
+        double dist = b.distance(fv, means[c]);
+        if(dist < min1) {
+          cur = c;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          min2 = dist;
+        }
+      }
+      if(cur != orig) {
+        upper[off] = min1 == curd2 ? u : isSquared ? Math.sqrt(min1) : min1;
+      }
+      lower[off] = min2 == curd2 ? u : isSquared ? Math.sqrt(min2) : min2;
+      return cur;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public static class Par<V extends NumberVector> extends ExponionKMeans.Par<V> {
+    @Override
+    public ParallelExponionKMeans<V> make() {
+      return new ParallelExponionKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
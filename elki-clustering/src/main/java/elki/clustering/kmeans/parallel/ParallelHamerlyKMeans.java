@@ -0,0 +1,245 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import elki.clustering.kmeans.HamerlyKMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+
+/**
+ * Parallel version of Hamerly's fast k-means by exploiting the triangle
+ * inequality.
+ * <p>
+ * Each thread updates the bounds of a block of objects, the cluster sums are
+ * then updated in the same order as in {@link HamerlyKMeans}, hence the
+ * result is identical to the sequential algorithm.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @navassoc - - - KMeansModel
+ *
+ * @param <V> vector datatype
+ */
+public class ParallelHamerlyKMeans<V extends NumberVector> extends HamerlyKMeans<V> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelHamerlyKMeans.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance distance function
+   * @param k k parameter
+   * @param maxiter Maxiter parameter
+   * @param initializer Initialization method
+   * @param varstat Compute the variance statistic
+   */
+  public ParallelHamerlyKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, boolean varstat) {
+    super(distance, k, maxiter, initializer, varstat);
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance(relation, distance, initialMeans(relation));
+    instance.run(maxiter);
+    return instance.buildResult(varstat, relation);
+  }
+
+  /**
+   * Inner instance, storing state for a single data set.
+   *
+   * @author agent
+   */
+  protected static class Instance extends ParallelKMeansInstance {
+    /**
+     * Upper bounds
+     */
+    double[] upper;
+
+    /**
+     * Lower bounds
+     */
+    double[] lower;
+
+    /**
+     * Cluster center distances.
+     */
+    double[][] cdist;
+
+    /**
+     * Separation of means.
+     */
+    double[] sep;
+
+    /**
+     * Center that moved the most.
+     */
+    int most;
+
+    /**
+     * Largest and second largest movement of centers.
+     */
+    double delta, delta2;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation
+     * @param df Distance function
+     * @param means Initial means
+     */
+    public Instance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+      super(relation, df, means);
+      upper = new double[ids.size()];
+      lower = new double[ids.size()];
+      cdist = new double[k][k];
+      sep = new double[k];
+    }
+
+    @Override
+    protected void prepareInitial() {
+      centerDistances(cdist, true);
+    }
+
+    @Override
+    protected int initialAssign(Block b, DBIDArrayIter it) {
+      NumberVector fv = relation.get(it);
+      // Find closest center, and distance to two closest centers:
+      double min1 = b.distance(fv, means[0]);
+      double min2 = k > 1 ? b.distance(fv, means[1]) : min1;
+      int minIndex = 0;
+      if(min2 < min1) {
+        double tmp = min1;
+        min1 = min2;
+        min2 = tmp;
+        minIndex = 1;
+      }
+      for(int i = 2; i < k; i++) {
+        if(min2 > cdist[minIndex][i]) {
+          double dist = b.distance(fv, means[i]);
+          if(dist < min1) {
+            minIndex = i;
+            min2 = min1;
+            min1 = dist;
+          }
+          else if(dist < min2) {
+            min2 = dist;
+          }
+        }
+      }
+      final int off = it.getOffset();
+      upper[off] = isSquared ? Math.sqrt(min1) : min1;
+      lower[off] = isSquared ? Math.sqrt(min2) : min2;
+      return minIndex;
+    }
+
+    @Override
+    protected void prepareIteration() {
+      // Find the maximum and second largest movement.
+      most = 0;
+      delta = move[0];
+      delta2 = 0;
+      for(int i = 1; i < move.length; i++) {
+        final double m = move[i];
+        if(m > delta) {
+          delta2 = delta;
+          delta = move[most = i];
+        }
+        else if(m > delta2) {
+          delta2 = m;
+        }
+      }
+      centerDistances(cdist, false);
+      separation(sep, cdist);
+    }
+
+    @Override
+    protected int reassign(Block b, DBIDArrayIter it, int orig) {
+      final int off = it.getOffset();
+      // Update the bounds:
+      double u = upper[off] += move[orig];
+      final double l = lower[off] -= orig == most ? delta2 : delta;
+      final double sa = sep[orig];
+      if(u <= l || u <= sa) {
+        return orig;
+      }
+      // Update the upper bound
+      NumberVector fv = relation.get(it);
+      double curd2 = b.distance(fv, means[orig]);
+      upper[off] = u = isSquared ? Math.sqrt(curd2) : curd2;
+      if(u <= l || u <= sa) {
+        return orig;
+      }
+      // Find closest center, and distance to the second closest center
+      double min1 = curd2, min2 = Double.POSITIVE_INFINITY;
+      int cur = orig;
+      for(int i = 0; i < k; i++) {
+        if(i == orig) {
+          continue;
+        }
+        double dist = b.distance(fv, means[i]);
+        if(dist < min1) {
+          cur = i;
+          min2 = min1;
+          min1 = dist;
+        }
+        else if(dist < min2) {
+          min2 = dist;
+        }
+      }
+      if(cur != orig) {
+        upper[off] = min1 == curd2 ? u : isSquared ? Math.sqrt(min1) : min1;
+      }
+      lower[off] = min2 == curd2 ? u : isSquared ? Math.sqrt(min2) : min2;
+      return cur;
+    }
+
+    @Override
+    protected Logging getLogger() {
+      return LOG;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public static class Par<V extends NumberVector> extends HamerlyKMeans.Par<V> {
+    @Override
+    public ParallelHamerlyKMeans<V> make() {
+      return new ParallelHamerlyKMeans<>(distance, k, maxiter, initializer, varstat);
+    }
+  }
+}
@@ -0,0 +1,398 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import java.util.Arrays;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.math.linearalgebra.VMath;
+import elki.parallel.ParallelExecutor;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * Base class for parallel k-means instances that keep bounds for each object.
+ * <p>
+ * The objects are split into fixed blocks, and each block owns its slice of
+ * the assignment and bound arrays. Blocks are processed in parallel, but only
+ * record which objects changed their cluster. The cluster sums are then
+ * updated sequentially in block order, i.e., in the same order as the
+ * sequential algorithms, which hence produce exactly the same result.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - Block
+ */
+public abstract class ParallelKMeansInstance extends AbstractKMeans.Instance {
+  /**
+   * Number of objects in each block.
+   */
+  protected static final int BLOCKSIZE = 256;
+
+  /**
+   * Minimum number of rows to compute in parallel for the distances of
+   * cluster centers.
+   */
+  private static final int CENTER_BLOCKSIZE = 16;
+
+  /**
+   * Object ids, in processing order.
+   */
+  protected ArrayDBIDs ids;
+
+  /**
+   * Distance function.
+   */
+  protected NumberVectorDistance<?> df;
+
+  /**
+   * Cluster assignment, by offset.
+   */
+  protected int[] assign;
+
+  /**
+   * Cluster sizes.
+   */
+  protected int[] sizes;
+
+  /**
+   * Sum aggregate for the new mean.
+   */
+  protected double[][] sums;
+
+  /**
+   * Scratch space for new means.
+   */
+  protected double[][] newmeans;
+
+  /**
+   * Distance moved by each center.
+   */
+  protected double[] move;
+
+  /**
+   * Blocks of objects.
+   */
+  protected Block[] blocks;
+
+  /**
+   * Constructor.
+   *
+   * @param relation Relation
+   * @param df Distance function
+   * @param means Initial means
+   */
+  public ParallelKMeansInstance(Relation<? extends NumberVector> relation, NumberVectorDistance<?> df, double[][] means) {
+    super(relation, df, means);
+    this.df = df;
+    this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final int n = ids.size(), dim = means[0].length;
+    assign = new int[n];
+    sizes = new int[k];
+    sums = new double[k][dim];
+    newmeans = new double[k][dim];
+    move = new double[k];
+    blocks = new Block[(n + BLOCKSIZE - 1) / BLOCKSIZE];
+    for(int b = 0; b < blocks.length; b++) {
+      blocks[b] = new Block(b * BLOCKSIZE, Math.min(n, (b + 1) * BLOCKSIZE));
+    }
+  }
+
+  @Override
+  public void run(int maxiter) {
+    super.run(maxiter);
+    // Materialize the final clusters:
+    for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+      final int c = assign[it.getOffset()];
+      clusters.get(c).add(it);
+      assignment.putInt(it, c);
+    }
+  }
+
+  @Override
+  protected int iterate(int iteration) {
+    if(iteration == 1) {
+      prepareInitial();
+      return processBlocks(true);
+    }
+    meansFromSums(newmeans, sums, means);
+    movedDistance(means, newmeans, move);
+    copyMeans(newmeans, means);
+    prepareIteration();
+    return processBlocks(false);
+  }
+
+  @Override
+  protected void meansFromSums(double[][] dst, double[][] sums, double[][] prev) {
+    for(int i = 0; i < k; i++) {
+      if(sizes[i] == 0) {
+        System.arraycopy(prev[i], 0, dst[i], 0, prev[i].length);
+        continue;
+      }
+      VMath.overwriteTimes(dst[i], sums[i], 1. / sizes[i]);
+    }
+  }
+
+  /**
+   * Prepare the initial assignment, e.g., by computing center distances.
+   */
+  protected void prepareInitial() {
+    // Nothing to do by default.
+  }
+
+  /**
+   * Prepare an iteration, after the means have been updated.
+   */
+  protected void prepareIteration() {
+    // Nothing to do by default.
+  }
+
+  /**
+   * Initial assignment of a single object.
+   *
+   * @param b Block (for counting distance computations)
+   * @param it Object iterator, positioned at the object
+   * @return Cluster number
+   */
+  protected abstract int initialAssign(Block b, DBIDArrayIter it);
+
+  /**
+   * Update the bounds of a single object, and reassign it if necessary.
+   *
+   * @param b Block (for counting distance computations)
+   * @param it Object iterator, positioned at the object
+   * @param orig Current cluster number
+   * @return New cluster number
+   */
+  protected abstract int reassign(Block b, DBIDArrayIter it, int orig);
+
+  /**
+   * Process all blocks in parallel, then update the cluster sums.
+   *
+   * @param initial Initial assignment
+   * @return Number of reassigned objects
+   */
+  protected int processBlocks(boolean initial) {
+    ParallelExecutor.run(0, blocks.length, 1, (start, end) -> {
+      for(int b = start; b < end; b++) {
+        blocks[b].process(initial);
+      }
+    });
+    int changed = 0;
+    DBIDArrayIter it = ids.iter();
+    for(Block b : blocks) {
+      diststat += b.diststat;
+      b.diststat = 0;
+      if(initial) {
+        for(int i = b.start; i < b.end; i++) {
+          final int c = assign[i];
+          AbstractKMeans.plusEquals(sums[c], relation.get(it.seek(i)));
+          ++sizes[c];
+        }
+        continue;
+      }
+      final IntArrayList ch = b.changes;
+      for(int j = 0; j < ch.size(); j += 2) {
+        final int i = ch.getInt(j), orig = ch.getInt(j + 1), cur = assign[i];
+        AbstractKMeans.plusMinusEquals(sums[cur], sums[orig], relation.get(it.seek(i)));
+        --sizes[orig];
+        ++sizes[cur];
+      }
+      changed += ch.size() >> 1;
+      ch.clear();
+    }
+    return initial ? ids.size() : changed;
+  }
+
+  /**
+   * Compute the pairwise distances of the cluster centers in parallel.
+   *
+   * @param cdist Output distances
+   * @param squared Store squared distances divided by 4 instead of half the
+   *        distances
+   */
+  protected void centerDistances(double[][] cdist, boolean squared) {
+    ParallelExecutor.run(1, k, CENTER_BLOCKSIZE, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        final double[] mi = means[i];
+        for(int j = 0; j < i; j++) {
+          final double d = distance(df, mi, means[j]);
+          cdist[i][j] = cdist[j][i] = squared ? d * 0.25 : //
+              .5 * (isSquared ? Math.sqrt(d) : d);
+        }
+      }
+    });
+    diststat += (k * (long) (k - 1)) >>> 1;
+  }
+
+  /**
+   * Separation of each center from its nearest neighbor center.
+   *
+   * @param sep Output separation
+   * @param cdist Center distances
+   */
+  protected void separation(double[] sep, double[][] cdist) {
+    Arrays.fill(sep, Double.POSITIVE_INFINITY);
+    for(int i = 1; i < k; i++) {
+      final double[] ci = cdist[i];
+      for(int j = 0; j < i; j++) {
+        final double d = ci[j];
+        sep[i] = (d < sep[i]) ? d : sep[i];
+        sep[j] = (d < sep[j]) ? d : sep[j];
+      }
+    }
+  }
+
+  /**
+   * Compute a distance, without counting.
+   *
+   * @param df Distance function
+   * @param x First object
+   * @param y Second object
+   * @return Distance
+   */
+  private static double distance(NumberVectorDistance<?> df, NumberVector x, double[] y) {
+    if(df.getClass() == SquaredEuclideanDistance.class) {
+      if(y.length != x.getDimensionality()) {
+        throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+      }
+      double v = 0;
+      for(int i = 0; i < y.length; i++) {
+        double d = x.doubleValue(i) - y[i];
+        v += d * d;
+      }
+      return v;
+    }
+    return df.distance(x, DoubleVector.wrap(y));
+  }
+
+  /**
+   * Compute a distance, without counting.
+   *
+   * @param df Distance function
+   * @param x First object
+   * @param y Second object
+   * @return Distance
+   */
+  private static double distance(NumberVectorDistance<?> df, double[] x, double[] y) {
+    if(df.getClass() == SquaredEuclideanDistance.class) {
+      if(y.length != x.length) {
+        throw new IllegalArgumentException("Objects do not have the same dimensionality.");
+      }
+      double v = 0;
+      for(int i = 0; i < x.length; i++) {
+        double d = x[i] - y[i];
+        v += d * d;
+      }
+      return v;
+    }
+    return df.distance(DoubleVector.wrap(x), DoubleVector.wrap(y));
+  }
+
+  /**
+   * Block of objects, processed by a single thread at a time.
+   *
+   * @author agent
+   */
+  protected class Block {
+    /**
+     * Range of object offsets.
+     */
+    final int start, end;
+
+    /**
+     * Objects reassigned, as pairs of offset and previous cluster.
+     */
+    final IntArrayList changes = new IntArrayList();
+
+    /**
+     * Number of distance computations.
+     */
+    long diststat = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param start First offset
+     * @param end End offset (exclusive)
+     */
+    protected Block(int start, int end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    /**
+     * Process the objects of this block.
+     *
+     * @param initial Initial assignment
+     */
+    protected void process(boolean initial) {
+      DBIDArrayIter it = ids.iter();
+      for(int i = start; i < end; i++) {
+        it.seek(i);
+        if(initial) {
+          assign[i] = initialAssign(this, it);
+          continue;
+        }
+        final int orig = assign[i], cur = reassign(this, it, orig);
+        if(cur != orig) {
+          assign[i] = cur;
+          changes.add(i);
+          changes.add(orig);
+        }
+      }
+    }
+
+    /**
+     * Compute the distance (and count the distance computations).
+     *
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    public double distance(NumberVector x, double[] y) {
+      ++diststat;
+      return ParallelKMeansInstance.distance(df, x, y);
+    }
+
+    /**
+     * Compute the distance (and count the distance computations).
+     * If the distance is squared, also compute the square root.
+     *
+     * @param x First object
+     * @param y Second object
+     * @return Distance
+     */
+    public double sqrtdistance(NumberVector x, double[] y) {
+      final double d = distance(x, y);
+      return isSquared ? Math.sqrt(d) : d;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import elki.clustering.kmeans.AbstractKMeans;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.ModifiableDBIDs;
+import elki.database.relation.MaterializedRelation;
+import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.datasource.bundle.BundleStreamUtil;
+import elki.distance.NumberVectorDistance;
+import elki.logging.statistics.DoubleStatistic;
+import elki.logging.statistics.Duration;
+import elki.math.linearalgebra.VMath;
+import elki.result.Metadata;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.ChainedParameterization;
+import elki.utilities.optionhandling.parameterization.ListParameterization;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Abstract base class for k-means variants that can process a stream of
+ * vectors with bounded memory.
+ * <p>
+ * The initial means are chosen by a regular {@link KMeansInitialization},
+ * applied to a small sample of the data only.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - StreamInstance
+ *
+ * @param <V> Vector type
+ */
+public abstract class AbstractStreamingKMeans<V extends NumberVector> extends AbstractKMeans<V, KMeansModel> {
+  /**
+   * Size of the sample used for initialization.
+   */
+  protected int samplesize;
+
+  /**
+   * Random generator for sampling.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Number of clusters
+   * @param maxiter Maximum number of iterations
+   * @param initializer Initialization method
+   * @param samplesize Sample size for initialization
+   * @param rnd Random generator for sampling
+   */
+  public AbstractStreamingKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, int samplesize, RandomFactory rnd) {
+    super(distance, k, maxiter, initializer);
+    this.samplesize = samplesize;
+    this.rnd = rnd;
+  }
+
+  /**
+   * Run k-means on a stream of vectors, in a single pass.
+   * <p>
+   * The stream must contain exactly one number vector column, other columns
+   * (such as labels) are ignored. Because the objects are not stored, the
+   * resulting clusters contain no object ids, only the cluster models.
+   * <p>
+   * This is only available in the Java API; the command line and GUI tools
+   * always run the algorithm on a database relation.
+   *
+   * @param source Data source
+   * @return Clustering result
+   */
+  public Clustering<KMeansModel> run(BundleStreamSource source) {
+    StreamInstance instance = newInstance();
+    BundleStreamUtil.forEachNumberVector(source, instance::add);
+    double[][] means = instance.finish();
+    Clustering<KMeansModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("k-Means Clustering");
+    for(int i = 0; i < means.length; i++) {
+      ModifiableDBIDs ids = DBIDUtil.newArray(0);
+      result.addToplevelCluster(new Cluster<>(ids, new KMeansModel(means[i], instance.weights[i], instance.varsum[i])));
+    }
+    return result;
+  }
+
+  /**
+   * Make a new instance for processing a stream.
+   *
+   * @return Instance
+   */
+  protected abstract StreamInstance newInstance();
+
+  /**
+   * Choose the initial means from a sample.
+   *
+   * @param sample Sample of the data
+   * @return Initial means
+   */
+  protected double[][] initialMeans(List<? extends NumberVector> sample) {
+    if(sample.size() < k) {
+      throw new AbortException("Not enough data for k=" + k + " clusters: " + sample.size());
+    }
+    Duration inittime = getLogger().newDuration(initializer.getClass().getName() + ".time").begin();
+    final int dim = sample.get(0).getDimensionality();
+    DBIDRange ids = DBIDUtil.generateStaticDBIDRange(sample.size());
+    try {
+      MaterializedRelation<DoubleVector> rel = new MaterializedRelation<>(new VectorFieldTypeInformation<>(DoubleVector.FACTORY, dim), ids);
+      int i = 0;
+      for(DBIDIter it = ids.iter(); it.valid(); it.advance(), i++) {
+        rel.insert(it, DoubleVector.wrap(sample.get(i).toArray()));
+      }
+      return initializer.chooseInitialMeans(rel, k, distance);
+    }
+    finally {
+      DBIDUtil.deallocateDBIDRange(ids);
+      getLogger().statistics(inittime.end());
+    }
+  }
+
+  /**
+   * Assign each object of a relation to the nearest mean, and build the final
+   * clustering.
+   *
+   * @param relation Data relation
+   * @param means Cluster means
+   * @return Clustering result
+   */
+  protected Clustering<KMeansModel> assignRelation(Relation<V> relation, double[][] means) {
+    List<ModifiableDBIDs> clusters = new ArrayList<>(k);
+    for(int i = 0; i < k; i++) {
+      clusters.add(DBIDUtil.newArray(relation.size() / k + 2));
+    }
+    double[] varsum = new double[k];
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      final NumberVector fv = relation.get(it);
+      double mindist = distance.distance(fv, DoubleVector.wrap(means[0]));
+      int minIndex = 0;
+      for(int i = 1; i < k; i++) {
+        final double dist = distance.distance(fv, DoubleVector.wrap(means[i]));
+        if(dist < mindist) {
+          minIndex = i;
+          mindist = dist;
+        }
+      }
+      varsum[minIndex] += distance.isSquared() ? mindist : mindist * mindist;
+      clusters.get(minIndex).add(it);
+    }
+    getLogger().statistics(new DoubleStatistic(getClass().getName() + ".variance-sum", VMath.sum(varsum)));
+    Clustering<KMeansModel> result = new Clustering<>();
+    Metadata.of(result).setLongName("k-Means Clustering");
+    for(int i = 0; i < k; i++) {
+      result.addToplevelCluster(new Cluster<>(clusters.get(i), new KMeansModel(means[i], clusters.get(i).size(), varsum[i])));
+    }
+    return result;
+  }
+
+  /**
+   * Processing state for a single stream.
+   *
+   * @author agent
+   */
+  protected abstract static class StreamInstance {
+    /**
+     * Cluster weights, available after {@link #finish()}.
+     */
+    protected double[] weights;
+
+    /**
+     * Cluster variance sums, available after {@link #finish()}.
+     */
+    protected double[] varsum;
+
+    /**
+     * Process the next vector.
+     *
+     * @param vec Vector
+     */
+    protected abstract void add(NumberVector vec);
+
+    /**
+     * Finish processing the stream.
+     *
+     * @return Final cluster means
+     */
+    protected abstract double[][] finish();
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public abstract static class Par<V extends NumberVector> extends AbstractKMeans.Par<V> {
+    /**
+     * Size of the sample used for initialization.
+     */
+    public static final OptionID SAMPLESIZE_ID = new OptionID("kmeans.stream.samplesize", "Size of the sample used for choosing the initial means.");
+
+    /**
+     * Size of the sample used for initialization.
+     */
+    protected int samplesize;
+
+    /**
+     * Random generator for sampling.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(SAMPLESIZE_ID, 10000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> samplesize = x);
+    }
+
+    @Override
+    protected void getParameterInitialization(Parameterization config) {
+      // The random seed is shared by the sampling and the initialization:
+      new RandomParameter(KMeans.SEED_ID).grab(config, x -> rnd = x);
+      ChainedParameterization chain = new ChainedParameterization(new ListParameterization().addParameter(KMeans.SEED_ID, rnd), config);
+      chain.errorsTo(config);
+      super.getParameterInitialization(chain);
+    }
+  }
+}
@@ -0,0 +1,355 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.stream;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayModifiableDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.ProxyView;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.logging.progress.IndefiniteProgress;
+import elki.logging.statistics.LongStatistic;
+import elki.utilities.documentation.Reference;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Mini-batch k-means, which updates the means after each small batch of
+ * objects, using a per-center learning rate.
+ * <p>
+ * On a relation, the data is shuffled and processed in batches, for several
+ * epochs until no object changes its nearest center. On a stream, the data is
+ * processed in a single pass. The first objects of the stream are buffered as
+ * a warm-up, and the initial means are chosen from a uniform reservoir sample
+ * of the warm-up. The warm-up is then processed in random order, and
+ * afterwards only one batch is held in memory.
+ * <p>
+ * Reference:
+ * <p>
+ * D. Sculley<br>
+ * Web-scale k-means clustering<br>
+ * Proc. 19th Int. Conf. on World Wide Web (WWW 2010)
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "D. Sculley", //
+    title = "Web-scale k-means clustering", //
+    booktitle = "Proc. 19th Int. Conf. on World Wide Web (WWW 2010)", //
+    url = "https://doi.org/10.1145/1772690.1772862", //
+    bibkey = "DBLP:conf/www/Sculley10")
+public class MiniBatchKMeans<V extends NumberVector> extends AbstractStreamingKMeans<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(MiniBatchKMeans.class);
+
+  /**
+   * Number of objects in each batch.
+   */
+  protected int batchsize;
+
+  /**
+   * Number of objects buffered at the beginning of a stream.
+   */
+  protected int warmup;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Number of clusters
+   * @param maxiter Maximum number of epochs
+   * @param initializer Initialization method
+   * @param samplesize Sample size for initialization
+   * @param batchsize Batch size
+   * @param warmup Number of objects buffered at the beginning of a stream
+   * @param rnd Random generator for sampling
+   */
+  public MiniBatchKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, int samplesize, int batchsize, int warmup, RandomFactory rnd) {
+    super(distance, k, maxiter, initializer, samplesize, rnd);
+    this.batchsize = batchsize;
+    this.warmup = warmup;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Random random = rnd.getSingleThreadedRandom();
+    double[][] means = relation.size() <= samplesize ? initialMeans(relation) : //
+        initialMeans(new ProxyView<>(DBIDUtil.randomSample(relation.getDBIDs(), samplesize, random), relation));
+    WritableIntegerDataStore assignment = DataStoreUtil.makeIntegerStorage(relation.getDBIDs(), DataStoreFactory.HINT_TEMP | DataStoreFactory.HINT_HOT, -1);
+    ArrayModifiableDBIDs order = DBIDUtil.newArray(relation.getDBIDs());
+    List<NumberVector> batch = new ArrayList<>(batchsize);
+    int[] nearest = new int[batchsize];
+    double[] counts = new double[k];
+    final String key = getClass().getName();
+    IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Epoch", LOG) : null;
+    int iteration = 0;
+    while(++iteration <= maxiter) {
+      LOG.incrementProcessed(prog);
+      DBIDUtil.randomShuffle(order, random);
+      int changed = 0;
+      for(DBIDArrayIter it = order.iter(); it.valid();) {
+        batch.clear();
+        for(; batch.size() < batchsize && it.valid(); it.advance()) {
+          final NumberVector fv = relation.get(it);
+          final int c = nearest[batch.size()] = nearest(means, fv);
+          changed += assignment.putInt(it, c) != c ? 1 : 0;
+          batch.add(fv);
+        }
+        update(means, counts, batch, nearest);
+      }
+      LOG.statistics(new LongStatistic(key + "." + iteration + ".reassignments", changed));
+      if(changed == 0) {
+        break;
+      }
+    }
+    LOG.setCompleted(prog);
+    LOG.statistics(new LongStatistic(key + ".iterations", iteration));
+    return assignRelation(relation, means);
+  }
+
+  /**
+   * Find the nearest mean.
+   *
+   * @param means Cluster means
+   * @param fv Vector
+   * @return Index of the nearest mean
+   */
+  protected int nearest(double[][] means, NumberVector fv) {
+    double mindist = distance.distance(fv, DoubleVector.wrap(means[0]));
+    int minIndex = 0;
+    for(int i = 1; i < means.length; i++) {
+      final double dist = distance.distance(fv, DoubleVector.wrap(means[i]));
+      if(dist < mindist) {
+        minIndex = i;
+        mindist = dist;
+      }
+    }
+    return minIndex;
+  }
+
+  /**
+   * Update the means with a batch, using a per-center learning rate.
+   *
+   * @param means Cluster means
+   * @param counts Number of objects seen by each center
+   * @param batch Batch of vectors
+   * @param nearest Nearest center of each vector
+   */
+  protected static void update(double[][] means, double[] counts, List<? extends NumberVector> batch, int[] nearest) {
+    for(int i = 0; i < batch.size(); i++) {
+      final int c = nearest[i];
+      final NumberVector fv = batch.get(i);
+      final double[] mean = means[c];
+      final double eta = 1. / ++counts[c];
+      for(int d = 0; d < mean.length; d++) {
+        mean[d] += eta * (fv.doubleValue(d) - mean[d]);
+      }
+    }
+  }
+
+  @Override
+  protected StreamInstance newInstance() {
+    return new Instance();
+  }
+
+  /**
+   * Instance for processing a single stream.
+   * <p>
+   * The variance sums are estimated from the distances at the time each
+   * object was assigned.
+   *
+   * @author agent
+   */
+  protected class Instance extends StreamInstance {
+    /**
+     * Random generator.
+     */
+    Random random = rnd.getSingleThreadedRandom();
+
+    /**
+     * Reservoir sample for initialization.
+     */
+    List<NumberVector> reservoir = new ArrayList<>();
+
+    /**
+     * Number of objects seen.
+     */
+    long seen = 0;
+
+    /**
+     * Buffered objects.
+     */
+    List<NumberVector> buffer = new ArrayList<>();
+
+    /**
+     * Current batch.
+     */
+    List<NumberVector> batch = new ArrayList<>(batchsize);
+
+    /**
+     * Nearest center of each object in the batch.
+     */
+    int[] nearest = new int[batchsize];
+
+    /**
+     * Current means, {@code null} until initialized.
+     */
+    double[][] means;
+
+    /**
+     * Constructor.
+     */
+    protected Instance() {
+      weights = new double[k];
+      varsum = new double[k];
+    }
+
+    @Override
+    protected void add(NumberVector vec) {
+      if(means == null) {
+        // Reservoir sampling ("Algorithm R") during the warm-up:
+        if(reservoir.size() < samplesize) {
+          reservoir.add(vec);
+        }
+        else {
+          final long r = (long) (random.nextDouble() * (seen + 1));
+          if(r < samplesize) {
+            reservoir.set((int) r, vec);
+          }
+        }
+        ++seen;
+      }
+      buffer.add(vec);
+      if(buffer.size() >= (means == null ? warmup : batchsize)) {
+        flush();
+      }
+    }
+
+    /**
+     * Process the buffered objects.
+     */
+    private void flush() {
+      if(means == null) {
+        means = initialMeans(reservoir);
+        reservoir = null;
+        // The warm-up may be sorted, so process it in random order:
+        Collections.shuffle(buffer, random);
+      }
+      for(int start = 0; start < buffer.size(); start += batchsize) {
+        batch.clear();
+        for(int i = start, end = Math.min(start + batchsize, buffer.size()); i < end; i++) {
+          final NumberVector fv = buffer.get(i);
+          final int c = nearest[batch.size()] = nearest(means, fv);
+          final double d = distance.distance(fv, DoubleVector.wrap(means[c]));
+          varsum[c] += distance.isSquared() ? d : d * d;
+          batch.add(fv);
+        }
+        update(means, weights, batch, nearest);
+      }
+      buffer.clear();
+    }
+
+    @Override
+    protected double[][] finish() {
+      if(means == null || !buffer.isEmpty()) {
+        flush();
+      }
+      return means;
+    }
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public static class Par<V extends NumberVector> extends AbstractStreamingKMeans.Par<V> {
+    /**
+     * Number of objects in each batch.
+     */
+    public static final OptionID BATCHSIZE_ID = new OptionID("kmeans.minibatch.batchsize", "Number of objects in each mini-batch.");
+
+    /**
+     * Number of objects buffered at the beginning of a stream.
+     */
+    public static final OptionID WARMUP_ID = new OptionID("kmeans.minibatch.warmup", "Number of objects buffered at the beginning of a stream, from which the initial means are sampled.");
+
+    /**
+     * Number of objects in each batch.
+     */
+    protected int batchsize;
+
+    /**
+     * Number of objects buffered at the beginning of a stream.
+     */
+    protected int warmup;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(BATCHSIZE_ID, 1000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> batchsize = x);
+      new IntParameter(WARMUP_ID, 100000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> warmup = x);
+    }
+
+    @Override
+    protected void getParameterMaxIter(Parameterization config) {
+      new IntParameter(MAXITER_ID, 100) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> maxiter = x);
+    }
+
+    @Override
+    public MiniBatchKMeans<V> make() {
+      return new MiniBatchKMeans<>(distance, k, maxiter, initializer, samplesize, batchsize, warmup, rnd);
+    }
+  }
+}
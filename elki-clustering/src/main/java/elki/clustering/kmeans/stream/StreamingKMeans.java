@@ -0,0 +1,514 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.stream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import elki.clustering.kmeans.initialization.KMeansInitialization;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.model.KMeansModel;
+import elki.database.ids.DBIDIter;
+import elki.database.relation.Relation;
+import elki.distance.NumberVectorDistance;
+import elki.logging.Logging;
+import elki.logging.statistics.LongStatistic;
+import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.WrongParameterValueException;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.IntParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Single-pass streaming k-means, using a merge-and-reduce hierarchy of
+ * weighted summaries.
+ * <p>
+ * The stream is read in buffers, and each buffer is reduced to a small set of
+ * weighted representatives with a weighted k-means. Whenever two summaries of
+ * the same level exist, they are merged and reduced again, so that only a
+ * logarithmic number of summaries is kept. Each representative also keeps the
+ * sum of squared deviations of the objects it summarizes. At the end of the
+ * stream, a weighted k-means is run on all representatives, starting from the
+ * means chosen by the initialization method on a uniform reservoir sample of
+ * the stream.
+ * <p>
+ * Reference:
+ * <p>
+ * S. Guha, A. Meyerson, N. Mishra, R. Motwani, L. O'Callaghan<br>
+ * Clustering Data Streams: Theory and Practice<br>
+ * IEEE Trans. Knowl. Data Eng. 15(3)
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <V> Vector type
+ */
+@Reference(authors = "S. Guha, A. Meyerson, N. Mishra, R. Motwani, L. O'Callaghan", //
+    title = "Clustering Data Streams: Theory and Practice", //
+    booktitle = "IEEE Trans. Knowl. Data Eng. 15(3)", //
+    url = "https://doi.org/10.1109/TKDE.2003.1198387", //
+    bibkey = "DBLP:journals/tkde/GuhaMMMO03")
+public class StreamingKMeans<V extends NumberVector> extends AbstractStreamingKMeans<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(StreamingKMeans.class);
+
+  /**
+   * Maximum number of iterations when reducing a summary.
+   */
+  private static final int REDUCE_MAXITER = 10;
+
+  /**
+   * Number of objects to buffer before reducing.
+   */
+  protected int buffersize;
+
+  /**
+   * Number of representatives in each summary.
+   */
+  protected int coresize;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Number of clusters
+   * @param maxiter Maximum number of iterations
+   * @param initializer Initialization method
+   * @param samplesize Sample size for initialization
+   * @param buffersize Number of objects to buffer before reducing
+   * @param coresize Number of representatives in each summary
+   * @param rnd Random generator for sampling
+   */
+  public StreamingKMeans(NumberVectorDistance<? super V> distance, int k, int maxiter, KMeansInitialization initializer, int samplesize, int buffersize, int coresize, RandomFactory rnd) {
+    super(distance, k, maxiter, initializer, samplesize, rnd);
+    this.buffersize = buffersize;
+    this.coresize = coresize;
+  }
+
+  @Override
+  public Clustering<KMeansModel> run(Relation<V> relation) {
+    Instance instance = new Instance();
+    for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+      instance.add(relation.get(it));
+    }
+    return assignRelation(relation, instance.finish());
+  }
+
+  @Override
+  protected StreamInstance newInstance() {
+    return new Instance();
+  }
+
+  /**
+   * Weighted set of representatives.
+   *
+   * @author agent
+   */
+  protected static class Summary {
+    /**
+     * Representative vectors.
+     */
+    double[][] x;
+
+    /**
+     * Weights.
+     */
+    double[] w;
+
+    /**
+     * Sum of squared deviations of the summarized objects.
+     */
+    double[] ssd;
+
+    /**
+     * Constructor.
+     *
+     * @param x Representatives
+     * @param w Weights
+     * @param ssd Sum of squared deviations
+     */
+    protected Summary(double[][] x, double[] w, double[] ssd) {
+      this.x = x;
+      this.w = w;
+      this.ssd = ssd;
+    }
+
+    /**
+     * Summary of unweighted objects.
+     *
+     * @param vecs Objects
+     * @return Summary
+     */
+    protected static Summary of(List<double[]> vecs) {
+      final int n = vecs.size();
+      double[] w = new double[n];
+      Arrays.fill(w, 1.);
+      return new Summary(vecs.toArray(new double[n][]), w, new double[n]);
+    }
+
+    /**
+     * Concatenate summaries.
+     *
+     * @param parts Summaries
+     * @return Combined summary
+     */
+    protected static Summary concat(List<Summary> parts) {
+      int n = 0;
+      for(Summary s : parts) {
+        n += s.w.length;
+      }
+      Summary r = new Summary(new double[n][], new double[n], new double[n]);
+      int p = 0;
+      for(Summary s : parts) {
+        final int l = s.w.length;
+        System.arraycopy(s.x, 0, r.x, p, l);
+        System.arraycopy(s.w, 0, r.w, p, l);
+        System.arraycopy(s.ssd, 0, r.ssd, p, l);
+        p += l;
+      }
+      return r;
+    }
+
+    /**
+     * Size of the summary.
+     *
+     * @return Number of representatives
+     */
+    protected int size() {
+      return w.length;
+    }
+  }
+
+  /**
+   * Instance for processing a single stream.
+   *
+   * @author agent
+   */
+  protected class Instance extends StreamInstance {
+    /**
+     * Random generator.
+     */
+    Random random = rnd.getSingleThreadedRandom();
+
+    /**
+     * Reservoir sample for initialization.
+     */
+    List<NumberVector> reservoir = new ArrayList<>();
+
+    /**
+     * Number of objects seen.
+     */
+    long seen = 0;
+
+    /**
+     * Buffered objects.
+     */
+    List<double[]> buffer = new ArrayList<>();
+
+    /**
+     * Summaries of each level, {@code null} for empty levels.
+     */
+    List<Summary> levels = new ArrayList<>();
+
+    /**
+     * Number of reductions performed.
+     */
+    long reductions = 0;
+
+    @Override
+    protected void add(NumberVector vec) {
+      // Reservoir sampling ("Algorithm R"):
+      if(reservoir.size() < samplesize) {
+        reservoir.add(vec);
+      }
+      else {
+        final long r = (long) (random.nextDouble() * (seen + 1));
+        if(r < samplesize) {
+          reservoir.set((int) r, vec);
+        }
+      }
+      ++seen;
+      buffer.add(vec.toArray());
+      if(buffer.size() >= buffersize) {
+        Summary s = reduce(Summary.of(buffer), coresize);
+        buffer.clear();
+        // Merge with summaries of the same level, like a binary counter:
+        int level = 0;
+        for(; level < levels.size() && levels.get(level) != null; level++) {
+          s = reduce(Summary.concat(Arrays.asList(levels.get(level), s)), coresize);
+          levels.set(level, null);
+        }
+        if(level == levels.size()) {
+          levels.add(s);
+        }
+        else {
+          levels.set(level, s);
+        }
+      }
+    }
+
+    @Override
+    protected double[][] finish() {
+      List<Summary> parts = new ArrayList<>(levels.size() + 1);
+      for(Summary s : levels) {
+        if(s != null) {
+          parts.add(s);
+        }
+      }
+      parts.add(Summary.of(buffer));
+      buffer.clear();
+      Summary all = Summary.concat(parts);
+      if(all.size() < k) {
+        throw new AbortException("Not enough data for k=" + k + " clusters: " + all.size());
+      }
+      LOG.statistics(new LongStatistic(StreamingKMeans.class.getName() + ".reductions", reductions));
+      LOG.statistics(new LongStatistic(StreamingKMeans.class.getName() + ".representatives", all.size()));
+      double[][] means = initialMeans(reservoir);
+      reservoir = null;
+      weights = new double[k];
+      varsum = new double[k];
+      weightedKMeans(all, means, maxiter, weights, varsum);
+      return means;
+    }
+
+    /**
+     * Reduce a summary to fewer representatives.
+     *
+     * @param s Summary
+     * @param c Number of representatives
+     * @return Reduced summary
+     */
+    protected Summary reduce(Summary s, int c) {
+      if(s.size() <= c) {
+        return s;
+      }
+      ++reductions;
+      double[][] means = seed(s, c);
+      double[] w = new double[c], ssd = new double[c];
+      weightedKMeans(s, means, REDUCE_MAXITER, w, ssd);
+      // Remove empty representatives:
+      int p = 0;
+      for(int i = 0; i < c; i++) {
+        if(w[i] > 0) {
+          means[p] = means[i];
+          w[p] = w[i];
+          ssd[p++] = ssd[i];
+        }
+      }
+      return new Summary(Arrays.copyOf(means, p), Arrays.copyOf(w, p), Arrays.copyOf(ssd, p));
+    }
+
+    /**
+     * Weighted k-means++ seeding.
+     *
+     * @param s Summary
+     * @param c Number of centers
+     * @return Initial centers
+     */
+    protected double[][] seed(Summary s, int c) {
+      final int n = s.size();
+      double[][] means = new double[c][];
+      double[] d2 = new double[n];
+      double total = 0;
+      for(int i = 0; i < n; i++) {
+        total += s.w[i];
+      }
+      int pick = choose(s.w, total, random.nextDouble());
+      for(int j = 0; j < c; j++) {
+        means[j] = s.x[pick].clone();
+        total = 0;
+        for(int i = 0; i < n; i++) {
+          final double d = sqdistance(s.x[i], means[j]) * s.w[i];
+          d2[i] = j == 0 || d < d2[i] ? d : d2[i];
+          total += d2[i];
+        }
+        pick = total > 0 ? choose(d2, total, random.nextDouble()) : random.nextInt(n);
+      }
+      return means;
+    }
+
+    /**
+     * Choose an index with probability proportional to its weight.
+     *
+     * @param w Weights
+     * @param total Sum of weights
+     * @param r Random value in [0;1)
+     * @return Chosen index
+     */
+    private int choose(double[] w, double total, double r) {
+      r *= total;
+      int i = 0;
+      while(i < w.length - 1 && (r -= w[i]) >= 0) {
+        ++i;
+      }
+      return i;
+    }
+  }
+
+  /**
+   * Weighted k-means on a summary.
+   *
+   * @param s Summary
+   * @param means Initial means, will be modified
+   * @param maxiter Maximum number of iterations
+   * @param w Output weights
+   * @param ssd Output sum of squared deviations
+   */
+  protected void weightedKMeans(Summary s, double[][] means, int maxiter, double[] w, double[] ssd) {
+    final int n = s.size(), c = means.length, dim = means[0].length;
+    int[] assign = new int[n];
+    Arrays.fill(assign, -1);
+    double[][] sums = new double[c][dim];
+    for(int iter = 0; iter < maxiter; iter++) {
+      int changed = 0;
+      for(int i = 0; i < n; i++) {
+        final double[] xi = s.x[i];
+        double mindist = distance(xi, means[0]);
+        int minIndex = 0;
+        for(int j = 1; j < c; j++) {
+          final double dist = distance(xi, means[j]);
+          if(dist < mindist) {
+            minIndex = j;
+            mindist = dist;
+          }
+        }
+        if(assign[i] != minIndex) {
+          assign[i] = minIndex;
+          ++changed;
+        }
+      }
+      if(changed == 0) {
+        break;
+      }
+      // Recompute the weighted means:
+      Arrays.fill(w, 0.);
+      for(double[] sum : sums) {
+        Arrays.fill(sum, 0.);
+      }
+      for(int i = 0; i < n; i++) {
+        final double[] xi = s.x[i], sum = sums[assign[i]];
+        final double wi = s.w[i];
+        for(int d = 0; d < dim; d++) {
+          sum[d] += wi * xi[d];
+        }
+        w[assign[i]] += wi;
+      }
+      for(int j = 0; j < c; j++) {
+        if(w[j] > 0) {
+          for(int d = 0; d < dim; d++) {
+            means[j][d] = sums[j][d] / w[j];
+          }
+        }
+      }
+    }
+    // Final weights and squared deviations:
+    Arrays.fill(w, 0.);
+    Arrays.fill(ssd, 0.);
+    for(int i = 0; i < n; i++) {
+      final int a = assign[i];
+      w[a] += s.w[i];
+      ssd[a] += s.ssd[i] + s.w[i] * sqdistance(s.x[i], means[a]);
+    }
+  }
+
+  /**
+   * Distance of two vectors.
+   *
+   * @param x First vector
+   * @param y Second vector
+   * @return Distance
+   */
+  private double distance(double[] x, double[] y) {
+    return distance.distance(DoubleVector.wrap(x), DoubleVector.wrap(y));
+  }
+
+  /**
+   * Squared distance of two vectors, for the sums of squared deviations.
+   *
+   * @param x First vector
+   * @param y Second vector
+   * @return Squared distance
+   */
+  private double sqdistance(double[] x, double[] y) {
+    final double d = distance(x, y);
+    return distance.isSquared() ? d : d * d;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public static class Par<V extends NumberVector> extends AbstractStreamingKMeans.Par<V> {
+    /**
+     * Number of objects to buffer before reducing.
+     */
+    public static final OptionID BUFFERSIZE_ID = new OptionID("kmeans.stream.buffersize", "Number of objects to buffer before summarizing them.");
+
+    /**
+     * Number of representatives in each summary.
+     */
+    public static final OptionID CORESIZE_ID = new OptionID("kmeans.stream.coresize", "Number of weighted representatives in each summary.");
+
+    /**
+     * Number of objects to buffer before reducing.
+     */
+    protected int buffersize;
+
+    /**
+     * Number of representatives in each summary.
+     */
+    protected int coresize;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new IntParameter(BUFFERSIZE_ID, 10000) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT) //
+          .grab(config, x -> buffersize = x);
+      IntParameter coresizeP = new IntParameter(CORESIZE_ID, 200) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ONE_INT);
+      coresizeP.grab(config, x -> coresize = x);
+      if(coresize > 0 && coresize < k) {
+        config.reportError(new WrongParameterValueException(coresizeP, String.valueOf(coresize), "must be at least k."));
+      }
+    }
+
+    @Override
+    public StreamingKMeans<V> make() {
+      return new StreamingKMeans<>(distance, k, maxiter, initializer, samplesize, buffersize, coresize, rnd);
+    }
+  }
+}
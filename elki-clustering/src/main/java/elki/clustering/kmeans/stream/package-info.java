@@ -0,0 +1,31 @@
+/**
+ * Streaming and mini-batch k-means variants, which process the data in a
+ * single pass (or in small batches) with bounded memory.
+ * <p>
+ * These algorithms can be run on a regular relation, but also directly on a
+ * {@link elki.datasource.bundle.BundleStreamSource} such as a streaming
+ * parser, without materializing the data in a database. Running on a stream
+ * is only available in the Java API, the command line and GUI tools always use
+ * a database relation.
+ */
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.stream;
@@ -21,6 +21,7 @@
 package elki.clustering.kmedoids;
 
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
 import elki.data.Clustering;
@@ -247,6 +248,9 @@ public class CLARA<V> extends PAM<V> {
 
   /**
    * Cached distance query.
+   * <p>
+   * The cache is synchronized, as the k-medoids swap search may query
+   * distances concurrently.
    *
    * @author Erich Schubert
    *
@@ -266,7 +270,7 @@ public class CLARA<V> extends PAM<V> {
     /**
      * Number of uncacheable queries
      */
-    int bad;
+    AtomicInteger bad = new AtomicInteger();
 
     /**
      * Constructor.
@@ -286,15 +290,17 @@ public class CLARA<V> extends PAM<V> {
      * @return True if uncached distances were used
      */
     public boolean hasUncachedQueries() {
-      return bad > 0;
+      return bad.get() > 0;
     }
 
     /**
      * Clear the distance cache.
      */
     public void clear() {
-      cache.clear();
-      bad = 0;
+      synchronized(cache) {
+        cache.clear();
+      }
+      bad.set(0);
     }
 
     @Override
@@ -307,28 +313,34 @@ public class CLARA<V> extends PAM<V> {
       }
       int i = id1.internalGetIndex(), j = id2.internalGetIndex();
       long idx = (((long) i) << 32) | j;
-      double v = cache.get(idx);
+      double v;
+      synchronized(cache) {
+        v = cache.get(idx);
+      }
       if(Double.isNaN(v)) {
-        cache.put(idx, v = inner.distance(id1, id2));
+        v = inner.distance(id1, id2);
+        synchronized(cache) {
+          cache.put(idx, v);
+        }
       }
       return v;
     }
 
     @Override
     public double distance(V o1, DBIDRef id2) {
-      ++bad;
+      bad.incrementAndGet();
       return inner.distance(o1, id2);
     }
 
     @Override
     public double distance(DBIDRef id1, V o2) {
-      ++bad;
+      bad.incrementAndGet();
       return inner.distance(id1, o2);
     }
 
     @Override
     public double distance(V o1, V o2) {
-      ++bad;
+      bad.incrementAndGet();
       return inner.distance(o1, o2);
     }
 
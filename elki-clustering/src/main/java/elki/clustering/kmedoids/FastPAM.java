@@ -39,6 +39,7 @@ import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
 import elki.math.linearalgebra.VMath;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.Priority;
 import elki.utilities.documentation.Reference;
 import elki.utilities.optionhandling.OptionID;
@@ -148,6 +149,11 @@ public class FastPAM<O> extends FastPAM1<O> {
      */
     protected double fastswap = 0.;
 
+    /**
+     * Minimum number of swap candidates per parallel block.
+     */
+    private static final int SWAP_BLOCKSIZE = 16;
+
     /**
      * Constructor.
      *
@@ -240,6 +246,9 @@ public class FastPAM<O> extends FastPAM1<O> {
 
     /**
      * Find the best swaps.
+     * <p>
+     * The candidates are evaluated in parallel blocks; ties are resolved in
+     * favor of the earlier candidate, as in a sequential scan.
      *
      * @param m Medoids
      * @param bestids Storage for best non-medois
@@ -250,22 +259,52 @@ public class FastPAM<O> extends FastPAM1<O> {
     protected void findBestSwaps(DBIDArrayIter m, ArrayModifiableDBIDs bestids, double[] best, double[] cost, double[] pcost) {
       updatePriorCost(pcost);
       Arrays.fill(best, Double.POSITIVE_INFINITY);
-      // Iterate over all non-medoids:
-      for(DBIDIter h = ids.iter(); h.valid(); h.advance()) {
-        // Compare object to its own medoid.
-        if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
-          continue; // This is a medoid.
+      final int k = best.length;
+      final ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
+      // Copy of the medoids, as iterators are not thread safe:
+      final ArrayModifiableDBIDs meds = DBIDUtil.newArray(k);
+      for(m.seek(0); m.valid(); m.advance()) {
+        meds.add(m);
+      }
+      final int[] bestoff = new int[k];
+      // Small data sets are processed as a single block:
+      final int minblock = aids.size() < ParallelSwapSearch.MIN_PARALLEL_SIZE ? aids.size() : SWAP_BLOCKSIZE;
+      ParallelExecutor.run(0, aids.size(), minblock, (start, end) -> {
+        DBIDArrayIter h = aids.iter(), mi = meds.iter();
+        double[] bcost = start == 0 ? cost : new double[k], bbest = new double[k];
+        int[] bbestoff = new int[k];
+        Arrays.fill(bbest, Double.POSITIVE_INFINITY);
+        // Iterate over all non-medoids:
+        for(int off = start; off < end; off++) {
+          // Compare object to its own medoid.
+          if(DBIDUtil.equal(mi.seek(assignment.intValue(h.seek(off)) & 0x7FFF), h)) {
+            continue; // This is a medoid.
+          }
+          System.arraycopy(pcost, 0, bcost, 0, pcost.length);
+          double acc = computeReassignmentCost(h, bcost);
+          // Find the best possible swap for each medoid:
+          for(int i = 0; i < k; i++) {
+            final double costi = bcost[i] + acc;
+            if(costi < bbest[i]) {
+              bbest[i] = costi;
+              bbestoff[i] = off;
+            }
+          }
         }
-        System.arraycopy(pcost, 0, cost, 0, pcost.length);
-        double acc = computeReassignmentCost(h, cost);
-        // Find the best possible swap for each medoid:
-        for(int i = 0; i < cost.length; i++) {
-          final double costi = cost[i] + acc;
-          if(costi < best[i]) {
-            best[i] = costi;
-            bestids.set(i, h);
+        synchronized(best) {
+          for(int i = 0; i < k; i++) {
+            if(bbest[i] < best[i] || (bbest[i] == best[i] && bbest[i] < Double.POSITIVE_INFINITY && bbestoff[i] < bestoff[i])) {
+              best[i] = bbest[i];
+              bestoff[i] = bbestoff[i];
+            }
           }
         }
+      });
+      DBIDArrayIter h = aids.iter();
+      for(int i = 0; i < k; i++) {
+        if(best[i] < Double.POSITIVE_INFINITY) {
+          bestids.set(i, h.seek(bestoff[i]));
+        }
       }
     }
 
@@ -139,45 +139,46 @@ public class FasterPAM<O> extends FastPAM<O> {
 
       // Swap phase
       IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("FasterPAM iteration", LOG) : null;
-      double[] cost = new double[k], pcost = new double[k];
+      double[] pcost = new double[k];
       // Compute costs of reassigning to the second closest medoid.
       updatePriorCost(pcost);
       DBIDArrayIter m = medoids.iter();
-      DBIDVar lastswap = DBIDUtil.newVar();
-      int iteration = 0, prevswaps = 0, swaps = 0;
+      // Candidates are evaluated in parallel, but swapped in scan order:
+      ParallelSwapSearch search = new ParallelSwapSearch(ids, k);
+      DBIDArrayIter h = search.getDBIDs().iter();
+      final int size = ids.size();
+      int iteration = 0, prevswaps = 0, swaps = 0, lastswap = -1;
       while(iteration < maxiter || maxiter <= 0) {
         ++iteration;
         LOG.incrementProcessed(prog);
-        // Iterate over all non-medoids:
-        for(DBIDIter h = ids.iter(); h.valid(); h.advance()) {
-          // Check if we completed an entire round without swapping:
-          if(DBIDUtil.equal(h, lastswap)) {
+        // Iterate over all non-medoids, until we completed an entire round
+        // without swapping:
+        int pos = 0, end = lastswap >= 0 ? lastswap : size;
+        while(pos < end) {
+          final double threshold = -1e-12 * tc;
+          final int j = search.next(pos, end, //
+              x -> DBIDUtil.equal(m.seek(assignment.intValue(x) & 0x7FFF), x), //
+              pcost, this::computeReassignmentCost, (cost, acc) -> {
+                // Find the best possible swap for each medoid:
+                final int min = VMath.argmin(cost);
+                return cost[min] + acc < threshold ? min : -1;
+              });
+          if(j < 0) {
             break;
           }
-          // Compare object to its own medoid.
-          if(DBIDUtil.equal(m.seek(assignment.intValue(h) & 0x7FFF), h)) {
-            continue; // This is a medoid.
-          }
-          // Initialize with medoid removal cost:
-          System.arraycopy(pcost, 0, cost, 0, pcost.length);
-          // The cost we get back by making the non-medoid h medoid.
-          double acc = computeReassignmentCost(h, cost);
-
-          // Find the best possible swap for each medoid:
-          int min = VMath.argmin(cost);
-          double bestcost = cost[min] + acc;
-          if(!(bestcost < -1e-12 * tc)) {
-            continue;
-          }
+          final int min = search.getMedoid();
+          final double bestcost = search.getScratch()[min] + search.getAcc();
           ++swaps;
-          lastswap.set(h);
-          updateAssignment(medoids, m, h, min);
+          lastswap = j;
+          updateAssignment(medoids, m, h.seek(j), min);
           updatePriorCost(pcost);
           tc += bestcost;
           assert tc >= 0;
           if(LOG.isStatistics()) {
             LOG.statistics(new DoubleStatistic(KEY + ".swap-" + swaps + ".cost", tc));
           }
+          pos = j + 1;
+          end = size;
         }
         if(LOG.isStatistics()) {
           LOG.statistics(new LongStatistic(KEY + ".iteration-" + iteration + ".swaps", swaps - prevswaps));
@@ -0,0 +1,235 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+
+/**
+ * Speculative parallel search for the next improving swap, for the eager
+ * swapping k-medoids algorithms such as {@link FasterPAM} and
+ * {@link elki.clustering.silhouette.FasterMSC}.
+ * <p>
+ * The eager algorithms perform the first improving swap found in a linear scan
+ * over the data, which is inherently sequential. Here, a batch of the next
+ * candidates is evaluated concurrently against the current (shared) nearest
+ * and second nearest caches, and the first improving candidate of the batch is
+ * returned; the evaluations of the later candidates are discarded. Hence, the
+ * result is exactly the same as with a sequential scan, independent of the
+ * number of threads.
+ * <p>
+ * The batch size adapts: it is reset to one after an improving swap was found
+ * (as swaps invalidate the remainder of the batch), and doubled for every
+ * batch without an improvement, up to twice the number of threads. Early on,
+ * when swaps are frequent, this wastes little work, while the final
+ * iterations (which usually perform few or no swaps) run fully parallel.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelSwapSearch {
+  /**
+   * Minimum data set size for parallel evaluation, also used by
+   * {@link FastPAM}.
+   */
+  static final int MIN_PARALLEL_SIZE = 1000;
+
+  /**
+   * Evaluation of a single swap candidate.
+   * <p>
+   * Implementations must be thread-safe, i.e., only read shared state.
+   *
+   * @author agent
+   */
+  @FunctionalInterface
+  public interface Evaluator {
+    /**
+     * Evaluate the swap candidate, for all medoids at once.
+     *
+     * @param j Swap candidate
+     * @param scratch Per-medoid scratch buffer, initialized by the caller
+     * @return Value that applies to all medoids
+     */
+    double evaluate(DBIDRef j, double[] scratch);
+  }
+
+  /**
+   * Choose the medoid to swap with, given the evaluation of a candidate.
+   *
+   * @author agent
+   */
+  @FunctionalInterface
+  public interface Decider {
+    /**
+     * Choose the medoid to swap with.
+     *
+     * @param scratch Per-medoid evaluation
+     * @param acc Value that applies to all medoids
+     * @return Medoid index, or -1 if the swap does not improve
+     */
+    int decide(double[] scratch, double acc);
+  }
+
+  /**
+   * Objects to process.
+   */
+  private final ArrayDBIDs ids;
+
+  /**
+   * Maximum batch size.
+   */
+  private final int maxbatch;
+
+  /**
+   * Current batch size.
+   */
+  private int batch = 1;
+
+  /**
+   * Candidate offsets of the current batch.
+   */
+  private final int[] cand;
+
+  /**
+   * Per-candidate scratch buffers.
+   */
+  private final double[][] scratch;
+
+  /**
+   * Per-candidate values that apply to all medoids.
+   */
+  private final double[] acc;
+
+  /**
+   * Batch position and medoid of the last improving candidate found.
+   */
+  private int found, medoid;
+
+  /**
+   * Constructor.
+   *
+   * @param ids Objects to process
+   * @param k Number of medoids
+   */
+  public ParallelSwapSearch(DBIDs ids, int k) {
+    this.ids = DBIDUtil.ensureArray(ids);
+    final int par = ParallelCore.getCore().getParallelism();
+    this.maxbatch = par > 1 && ids.size() >= MIN_PARALLEL_SIZE ? par << 1 : 1;
+    this.cand = new int[maxbatch];
+    this.scratch = new double[maxbatch][k];
+    this.acc = new double[maxbatch];
+  }
+
+  /**
+   * Get the objects, in scan order.
+   *
+   * @return Objects
+   */
+  public ArrayDBIDs getDBIDs() {
+    return ids;
+  }
+
+  /**
+   * Find the first improving swap candidate in the given range.
+   *
+   * @param start First offset to consider
+   * @param end End offset (exclusive)
+   * @param isMedoid Test for medoids, to be skipped; called in the calling
+   *        thread only
+   * @param init Initial values for the scratch buffers, {@code null} for zeros
+   * @param eval Evaluation of a candidate, called concurrently
+   * @param decide Decision on a candidate, called in the calling thread only
+   * @return Offset of the first improving candidate, or -1
+   */
+  public int next(int start, int end, Predicate<? super DBIDRef> isMedoid, double[] init, Evaluator eval, Decider decide) {
+    DBIDArrayIter it = ids.iter();
+    int pos = start;
+    while(pos < end) {
+      // Collect the next batch of candidates:
+      int num = 0;
+      for(; num < batch && pos < end; pos++) {
+        if(!isMedoid.test(it.seek(pos))) {
+          cand[num++] = pos;
+        }
+      }
+      ParallelExecutor.run(0, num, 1, (s, e) -> {
+        DBIDArrayIter j = ids.iter();
+        for(int c = s; c < e; c++) {
+          if(init != null) {
+            System.arraycopy(init, 0, scratch[c], 0, init.length);
+          }
+          else {
+            Arrays.fill(scratch[c], 0.);
+          }
+          acc[c] = eval.evaluate(j.seek(cand[c]), scratch[c]);
+        }
+      });
+      // Take the first improving candidate, in scan order:
+      for(int c = 0; c < num; c++) {
+        final int b = decide.decide(scratch[c], acc[c]);
+        if(b >= 0) {
+          found = c;
+          this.medoid = b;
+          batch = 1;
+          return cand[c];
+        }
+      }
+      batch = Math.min(batch << 1, maxbatch);
+    }
+    return -1;
+  }
+
+  /**
+   * Medoid index chosen for the last candidate returned by {@link #next}.
+   *
+   * @return Medoid index
+   */
+  public int getMedoid() {
+    return medoid;
+  }
+
+  /**
+   * Scratch buffer of the last candidate returned by {@link #next}.
+   *
+   * @return Scratch buffer
+   */
+  public double[] getScratch() {
+    return scratch[found];
+  }
+
+  /**
+   * Value that applies to all medoids, of the last candidate returned by
+   * {@link #next}.
+   *
+   * @return Value
+   */
+  public double getAcc() {
+    return acc[found];
+  }
+}
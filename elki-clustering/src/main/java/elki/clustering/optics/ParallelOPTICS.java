@@ -0,0 +1,506 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.optics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.ModifiableDoubleDBIDList;
+import elki.database.query.QueryBuilder;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.MathUtil;
+import elki.parallel.ParallelExecutor;
+import elki.result.Metadata;
+import elki.utilities.datastructures.heap.UpdatableHeap;
+import elki.utilities.documentation.Title;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
+
+/**
+ * Parallel variant of the OPTICS algorithm.
+ * <p>
+ * The range queries do not depend on the cluster order, so all
+ * epsilon-neighborhoods and core distances are computed first, in parallel.
+ * Only the neighborhoods of core points are kept, in a compact binary layout
+ * (object offset and distance, 12 bytes per neighbor), either on the Java heap
+ * or in a memory-mapped temporary file. The ordering phase then runs
+ * sequentially on this precomputed data, exactly as in {@link OPTICSHeap}, and
+ * produces the identical cluster order.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @navassoc - produces - ClusterOrder
+ * @has - - - OPTICSHeapEntry
+ *
+ * @param <O> the type of objects handled by the algorithm
+ */
+@Title("OPTICS: Density-Based Hierarchical Clustering (parallel implementation)")
+public class ParallelOPTICS<O> extends AbstractOPTICS<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelOPTICS.class);
+
+  /**
+   * Minimum number of objects per parallel block.
+   */
+  private static final int BLOCKSIZE = 256;
+
+  /**
+   * Maximum size of a single buffer of the neighborhood store.
+   */
+  private static final int CHUNKSIZE = 1 << 26;
+
+  /**
+   * Bytes per stored neighbor (int offset, double distance).
+   */
+  private static final int ENTRYSIZE = 12;
+
+  /**
+   * Store the neighborhoods in a memory-mapped temporary file.
+   */
+  protected boolean offheap;
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param epsilon Epsilon value
+   * @param minpts Minpts value
+   * @param offheap Store the neighborhoods in a memory-mapped temporary file
+   */
+  public ParallelOPTICS(Distance<? super O> distance, double epsilon, int minpts, boolean offheap) {
+    super(distance, epsilon, minpts);
+    this.offheap = offheap;
+  }
+
+  @Override
+  public ClusterOrder run(Relation<O> relation) {
+    try (NeighborhoodStore store = new NeighborhoodStore(relation.size(), offheap)) {
+      return new Instance(relation, store).run();
+    }
+  }
+
+  /**
+   * Instance for processing a single data set.
+   *
+   * @author agent
+   */
+  private class Instance {
+    /**
+     * Data relation.
+     */
+    private Relation<O> relation;
+
+    /**
+     * IDs to process.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Map from object ids to offsets.
+     */
+    private WritableIntegerDataStore offsets;
+
+    /**
+     * Precomputed neighborhoods.
+     */
+    private NeighborhoodStore store;
+
+    /**
+     * Core distance of each object, or infinity.
+     */
+    private double[] coredist;
+
+    /**
+     * Processed flags, by offset.
+     */
+    private boolean[] processed;
+
+    /**
+     * Heap of candidates.
+     */
+    UpdatableHeap<OPTICSHeapEntry> heap;
+
+    /**
+     * Output cluster order.
+     */
+    ClusterOrder clusterOrder;
+
+    /**
+     * Progress for logging.
+     */
+    FiniteProgress progress;
+
+    /**
+     * Constructor for a single data set.
+     *
+     * @param relation Data relation
+     * @param store Neighborhood store
+     */
+    public Instance(Relation<O> relation, NeighborhoodStore store) {
+      this.relation = relation;
+      this.ids = DBIDUtil.ensureArray(relation.getDBIDs());
+      this.store = store;
+      this.coredist = new double[ids.size()];
+      this.processed = new boolean[ids.size()];
+      clusterOrder = new ClusterOrder(ids);
+      Metadata.of(clusterOrder).setLongName("OPTICS Clusterorder");
+      heap = new UpdatableHeap<>();
+    }
+
+    /**
+     * Process the data set.
+     *
+     * @return Cluster order result.
+     */
+    public ClusterOrder run() {
+      computeNeighborhoods();
+      progress = LOG.isVerbose() ? new FiniteProgress("OPTICS", ids.size(), LOG) : null;
+      for(DBIDArrayIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+        if(!processed[iditer.getOffset()]) {
+          assert (heap.isEmpty());
+          expandClusterOrder(iditer);
+        }
+      }
+      LOG.ensureCompleted(progress);
+      offsets.destroy();
+      return clusterOrder;
+    }
+
+    /**
+     * Compute the neighborhoods and core distances of all objects, in
+     * parallel.
+     */
+    private void computeNeighborhoods() {
+      final int size = ids.size();
+      offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+      for(DBIDArrayIter it = ids.iter(); it.valid(); it.advance()) {
+        offsets.putInt(it, it.getOffset());
+      }
+      FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("OPTICS neighborhoods", size, LOG) : null;
+      final RangeSearcher<DBIDRef> rq0 = new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+      ParallelExecutor.run(0, size, BLOCKSIZE, (start, end) -> {
+        RangeSearcher<DBIDRef> rq = start == 0 ? rq0 : new QueryBuilder<>(relation, distance).rangeByDBID(epsilon);
+        ModifiableDoubleDBIDList neighbors = DBIDUtil.newDistanceDBIDList();
+        DoubleDBIDListIter neighbor = neighbors.iter();
+        DBIDArrayIter it = ids.iter();
+        NeighborhoodStore.Writer writer = store.writer();
+        for(int i = start; i < end; i++) {
+          rq.getRange(it.seek(i), epsilon, neighbors.clear());
+          if(neighbors.size() < minpts) {
+            coredist[i] = Double.POSITIVE_INFINITY;
+            continue;
+          }
+          neighbors.sort();
+          coredist[i] = neighbor.seek(minpts - 1).doubleValue();
+          writer.begin(i, neighbors.size());
+          for(neighbor.seek(0); neighbor.valid(); neighbor.advance()) {
+            writer.put(offsets.intValue(neighbor), neighbor.doubleValue());
+          }
+        }
+        writer.flush();
+        LOG.incrementProcessed(prog, end - start);
+      });
+      LOG.ensureCompleted(prog);
+    }
+
+    /**
+     * OPTICS-function expandClusterOrder.
+     *
+     * @param objectID the currently processed object
+     */
+    protected void expandClusterOrder(DBIDRef objectID) {
+      DBIDArrayIter it = ids.iter();
+      heap.add(new OPTICSHeapEntry(DBIDUtil.deref(objectID), null, Double.POSITIVE_INFINITY));
+
+      while(!heap.isEmpty()) {
+        final OPTICSHeapEntry current = heap.poll();
+        clusterOrder.add(current.objectID, current.reachability, current.predecessorID);
+        final int cur = offsets.intValue(current.objectID);
+        processed[cur] = true;
+
+        final double coreDistance = coredist[cur];
+        if(coreDistance < Double.POSITIVE_INFINITY) {
+          final ByteBuffer buf = store.buffer(cur);
+          final int pos = store.position(cur), num = buf.getInt(pos);
+          for(int j = 0, p = pos + 4; j < num; j++, p += ENTRYSIZE) {
+            final int off = buf.getInt(p);
+            if(processed[off]) {
+              continue;
+            }
+            double reachability = MathUtil.max(buf.getDouble(p + 4), coreDistance);
+            heap.add(new OPTICSHeapEntry(DBIDUtil.deref(it.seek(off)), current.objectID, reachability));
+          }
+        }
+        LOG.incrementProcessed(progress);
+      }
+    }
+  }
+
+  /**
+   * Compact storage of the neighborhoods, as chunks of binary data.
+   * <p>
+   * Each neighborhood is stored as the number of neighbors, followed by the
+   * offset and distance of each neighbor. Chunks are either heap buffers or
+   * memory-mapped regions of a temporary file.
+   *
+   * @author agent
+   */
+  private static class NeighborhoodStore implements AutoCloseable {
+    /**
+     * Chunk and position of each neighborhood, -1 if not stored.
+     */
+    final long[] addr;
+
+    /**
+     * Data chunks.
+     */
+    final ArrayList<ByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Temporary file, for off-heap storage.
+     */
+    FileChannel file;
+
+    /**
+     * Current size of the temporary file.
+     */
+    long filesize = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param size Number of objects
+     * @param offheap Use a memory-mapped temporary file
+     */
+    NeighborhoodStore(int size, boolean offheap) {
+      addr = new long[size];
+      Arrays.fill(addr, -1L);
+      if(offheap) {
+        try {
+          file = FileChannel.open(Files.createTempFile("elki-optics", ".bin"), //
+              StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        }
+        catch(IOException e) {
+          throw new AbortException("Could not create a temporary file for the neighborhoods.", e);
+        }
+      }
+    }
+
+    /**
+     * Get the chunk containing a neighborhood.
+     *
+     * @param i Object offset
+     * @return Buffer
+     */
+    ByteBuffer buffer(int i) {
+      return chunks.get((int) (addr[i] >>> 32));
+    }
+
+    /**
+     * Get the position of a neighborhood within its chunk.
+     *
+     * @param i Object offset
+     * @return Position
+     */
+    int position(int i) {
+      return (int) addr[i];
+    }
+
+    /**
+     * Make a new writer, for use by a single thread.
+     *
+     * @return Writer
+     */
+    Writer writer() {
+      return new Writer();
+    }
+
+    /**
+     * Store a chunk.
+     *
+     * @param data Chunk data, flipped for reading
+     * @return Chunk number
+     */
+    int store(ByteBuffer data) {
+      final int len = data.remaining();
+      final int idx;
+      final long base;
+      synchronized(chunks) {
+        idx = chunks.size();
+        chunks.add(null);
+        base = filesize;
+        filesize += len;
+      }
+      ByteBuffer chunk;
+      if(file != null) {
+        try {
+          chunk = file.map(FileChannel.MapMode.READ_WRITE, base, len);
+        }
+        catch(IOException e) {
+          throw new AbortException("Could not map the temporary file for the neighborhoods.", e);
+        }
+        chunk.put(data);
+      }
+      else {
+        chunk = ByteBuffer.allocate(len).put(data);
+      }
+      chunk.flip();
+      synchronized(chunks) {
+        chunks.set(idx, chunk);
+      }
+      return idx;
+    }
+
+    @Override
+    public void close() {
+      if(file != null) {
+        try {
+          file.close();
+        }
+        catch(IOException e) {
+          LOG.exception(e);
+        }
+        file = null;
+      }
+    }
+
+    /**
+     * Writer for a single thread, collecting a chunk.
+     *
+     * @author agent
+     */
+    class Writer {
+      /**
+       * Chunk under construction.
+       */
+      ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+
+      /**
+       * First and last object offset in the current chunk.
+       */
+      int first = -1, last = -1;
+
+      /**
+       * Begin a new neighborhood.
+       *
+       * @param i Object offset
+       * @param num Number of neighbors
+       */
+      void begin(int i, int num) {
+        final long need = 4L + num * (long) ENTRYSIZE;
+        if(need > CHUNKSIZE) {
+          throw new AbortException("Neighborhood too large: " + num);
+        }
+        if(buf.position() + need > CHUNKSIZE) {
+          flush();
+        }
+        if(buf.remaining() < need) {
+          ByteBuffer nbuf = ByteBuffer.allocate((int) Math.min(CHUNKSIZE, Math.max(buf.capacity() << 1, buf.position() + need)));
+          buf.flip();
+          buf = nbuf.put(buf);
+        }
+        first = first < 0 ? i : first;
+        last = i;
+        addr[i] = buf.position();
+        buf.putInt(num);
+      }
+
+      /**
+       * Add a neighbor.
+       *
+       * @param off Neighbor offset
+       * @param dist Neighbor distance
+       */
+      void put(int off, double dist) {
+        buf.putInt(off).putDouble(dist);
+      }
+
+      /**
+       * Store the current chunk.
+       */
+      void flush() {
+        if(first < 0) {
+          return;
+        }
+        buf.flip();
+        final long idx = ((long) store(buf)) << 32;
+        for(int i = first; i <= last; i++) {
+          if(addr[i] >= 0) {
+            addr[i] |= idx;
+          }
+        }
+        buf.clear();
+        first = last = -1;
+      }
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public static class Par<O> extends AbstractOPTICS.Par<O> {
+    /**
+     * Flag to store the neighborhoods in a memory-mapped temporary file.
+     */
+    public static final OptionID OFFHEAP_ID = new OptionID("optics.offheap", "Store the precomputed neighborhoods in a memory-mapped temporary file instead of the Java heap.");
+
+    /**
+     * Store the neighborhoods in a memory-mapped temporary file.
+     */
+    protected boolean offheap = false;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new Flag(OFFHEAP_ID) //
+          .grab(config, x -> offheap = x);
+    }
+
+    @Override
+    public ParallelOPTICS<O> make() {
+      return new ParallelOPTICS<>(distance, epsilon, minpts, offheap);
+    }
+  }
+}
@@ -20,8 +20,7 @@
  */
 package elki.clustering.silhouette;
 
-import java.util.Arrays;
-
+import elki.clustering.kmedoids.ParallelSwapSearch;
 import elki.clustering.kmedoids.initialization.KMedoidsInitialization;
 import elki.data.Clustering;
 import elki.data.model.MedoidModel;
@@ -149,37 +148,43 @@ public class FasterMSC<O> extends FastMSC<O> {
       if(LOG.isStatistics()) {
         LOG.statistics(new DoubleStatistic(key + ".iteration-" + 0 + ".medoid-silhouette", sil));
       }
-      double[] scratch = new double[k];
-
       IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("FastMSC iteration", LOG) : null;
       // Swap phase
-      DBIDVar lastswap = DBIDUtil.newVar();
-      int iteration = 0, prevswaps = 0, swaps = 0;
+      // Candidates are evaluated in parallel, but swapped in scan order:
+      ParallelSwapSearch search = new ParallelSwapSearch(ids, k);
+      DBIDArrayIter j = search.getDBIDs().iter();
+      final int size = ids.size();
+      int iteration = 0, prevswaps = 0, swaps = 0, lastswap = -1;
       while(iteration < maxiter || maxiter <= 0) {
         ++iteration;
         LOG.incrementProcessed(prog);
-        // Iterate over all non-medoids:
-        for(DBIDIter j = ids.iter(); j.valid(); j.advance()) {
-          if(DBIDUtil.equal(j, lastswap)) {
-            break; // Entire pass without finding an improvement.
+        // Iterate over all non-medoids, until an entire pass without finding
+        // an improvement:
+        int pos = 0, end = lastswap >= 0 ? lastswap : size;
+        while(pos < end) {
+          final double cursil = sil;
+          final int c = search.next(pos, end, //
+              x -> DBIDUtil.equal(m.seek(assignment.intValue(x)), x), //
+              null, (x, scratch) -> {
+                findBestSwap(x, scratch);
+                return 0.;
+              }, (scratch, acc) -> {
+                final int b = scratch[0] > scratch[1] ? 0 : 1;
+                return scratch[b] > cursil ? b : -1;
+              });
+          if(c < 0) {
+            break;
           }
-          // Compare object to its own medoid.
-          if(DBIDUtil.equal(m.seek(assignment.intValue(j)), j)) {
-            continue; // This is a medoid.
-          }
-          Arrays.fill(scratch, 0);
-          findBestSwap(j, scratch);
-          int b = scratch[0] > scratch[1] ? 0 : 1;
-          double l = scratch[b];
-          if(l > sil) {
-            medoids.set(b, j);
-            sil = doSwap(medoids, b, j);
-            swaps++;
-            if(LOG.isStatistics()) {
-              LOG.statistics(new DoubleStatistic(key + ".swap-" + swaps + ".medoid-silhouette", sil));
-            }
-            lastswap.set(j);
+          final int b = search.getMedoid();
+          medoids.set(b, j.seek(c));
+          sil = doSwap(medoids, b, j);
+          swaps++;
+          if(LOG.isStatistics()) {
+            LOG.statistics(new DoubleStatistic(key + ".swap-" + swaps + ".medoid-silhouette", sil));
           }
+          lastswap = c;
+          pos = c + 1;
+          end = size;
         }
         if(LOG.isStatistics()) {
           LOG.statistics(new LongStatistic(key + ".iteration-" + iteration + ".swaps", swaps - prevswaps));
@@ -235,41 +240,44 @@ public class FasterMSC<O> extends FastMSC<O> {
       if(LOG.isStatistics()) {
         LOG.statistics(new DoubleStatistic(key + ".iteration-" + 0 + ".medoid-silhouette", sil));
       }
-      double[] losses = new double[k], scratch = new double[k];
+      double[] losses = new double[k];
       updateRemovalLoss(losses);
 
       IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("FastMSC iteration", LOG) : null;
       // Swap phase
-      DBIDVar lastswap = DBIDUtil.newVar();
-      int iteration = 0, prevswaps = 0, swaps = 0;
+      // Candidates are evaluated in parallel, but swapped in scan order:
+      ParallelSwapSearch search = new ParallelSwapSearch(ids, k);
+      DBIDArrayIter j = search.getDBIDs().iter();
+      final int size = ids.size();
+      int iteration = 0, prevswaps = 0, swaps = 0, lastswap = -1;
       while(iteration < maxiter || maxiter <= 0) {
         ++iteration;
         LOG.incrementProcessed(prog);
-        // Iterate over all non-medoids:
-        for(DBIDIter j = ids.iter(); j.valid(); j.advance()) {
-          if(DBIDUtil.equal(j, lastswap)) {
-            break; // Entire pass without finding an improvement.
-          }
-          // Compare object to its own medoid.
-          if(DBIDUtil.equal(m.seek(assignment.get(j).m1), j)) {
-            continue; // This is a medoid.
-          }
-          System.arraycopy(losses, 0, scratch, 0, k);
-          double acc = findBestSwap(j, scratch);
-          // Find the best possible swap for j:
-          int b = VMath.argmax(scratch);
-          double l = scratch[b] + acc;
-          if(!(l > 0.)) {
-            continue;
+        // Iterate over all non-medoids, until an entire pass without finding
+        // an improvement:
+        int pos = 0, end = lastswap >= 0 ? lastswap : size;
+        while(pos < end) {
+          final int c = search.next(pos, end, //
+              x -> DBIDUtil.equal(m.seek(assignment.get(x).m1), x), //
+              losses, this::findBestSwap, (scratch, acc) -> {
+                // Find the best possible swap for j:
+                final int b = VMath.argmax(scratch);
+                return scratch[b] + acc > 0. ? b : -1;
+              });
+          if(c < 0) {
+            break;
           }
+          final int b = search.getMedoid();
           ++swaps;
-          medoids.set(b, j);
+          medoids.set(b, j.seek(c));
           sil = doSwap(medoids, b, j);
           updateRemovalLoss(losses);
           if(LOG.isStatistics()) {
             LOG.statistics(new DoubleStatistic(key + ".swap-" + swaps + ".medoid-silhouette", sil));
           }
-          lastswap.set(j);
+          lastswap = c;
+          pos = c + 1;
+          end = size;
         }
         if(LOG.isStatistics()) {
           LOG.statistics(new LongStatistic(key + ".iteration-" + iteration + ".swaps", swaps - prevswaps));
@@ -288,7 +296,7 @@ public class FasterMSC<O> extends FastMSC<O> {
         LOG.statistics(new DoubleStatistic(key + ".final-medoid-silhouette", sil));
       }
       // Unwrap records into simple labeling:
-      for(DBIDIter j = ids.iter(); j.valid(); j.advance()) {
+      for(j.seek(0); j.valid(); j.advance()) {
         output.putInt(j, assignment.get(j).m1);
       }
       return sil;
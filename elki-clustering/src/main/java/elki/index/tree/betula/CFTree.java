@@ -27,6 +27,8 @@ import java.util.Map;
 import elki.data.NumberVector;
 import elki.database.ids.*;
 import elki.database.relation.Relation;
+import elki.datasource.bundle.BundleStreamSource;
+import elki.datasource.bundle.BundleStreamUtil;
 import elki.index.tree.betula.distance.*;
 import elki.index.tree.betula.features.AsClusterFeature;
 import elki.index.tree.betula.features.BIRCHCF;
@@ -34,6 +36,7 @@ import elki.index.tree.betula.features.ClusterFeature;
 import elki.index.tree.betula.features.VIIFeature;
 import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
+import elki.logging.progress.IndefiniteProgress;
 import elki.logging.statistics.DoubleStatistic;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
@@ -41,6 +44,7 @@ import elki.math.MathUtil;
 import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import elki.utilities.datastructures.iterator.Iter;
 import elki.utilities.documentation.Reference;
+import elki.utilities.exceptions.AbortException;
 import elki.utilities.io.FormatUtil;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
@@ -923,6 +927,46 @@ public class CFTree<L extends ClusterFeature> {
       return tree;
     }
 
+    /**
+     * Make a new tree from a stream of vectors, in a single pass.
+     * <p>
+     * No object ids are assigned and the objects are not stored, so this can
+     * be used with data that does not fit into main memory, for example with
+     * a {@link elki.datasource.parser.StreamingParser}. The tree is always
+     * model-only, and the maximum number of leaves must be given as an
+     * absolute value, as the data size is not known in advance.
+     * <p>
+     * The stream must contain exactly one number vector column, other columns
+     * (such as labels) are ignored.
+     *
+     * @param source Data source
+     * @return New tree
+     */
+    public CFTree<L> newTree(BundleStreamSource source) {
+      if(maxleaves <= 1) {
+        throw new AbortException("The maximum number of leaves must be given as an absolute value when reading a stream, not as relative value " + maxleaves);
+      }
+      final String prefix = CFTree.class.getName();
+      Duration buildtime = LOG.newDuration(prefix + ".buildtime").begin();
+      CFTree<L> tree = new CFTree<>(factory, dist, abs, threshold, branchingFactor, tCriterium, (int) maxleaves, false, true);
+      IndefiniteProgress prog = LOG.isVerbose() ? new IndefiniteProgress("Building tree", LOG) : null;
+      BundleStreamUtil.forEachNumberVector(source, vec -> {
+        tree.insert(vec, null);
+        LOG.incrementProcessed(prog);
+      });
+      LOG.setCompleted(prog);
+      if(tree.root == null) {
+        throw new AbortException("The data stream did not contain any vectors.");
+      }
+      LOG.statistics(buildtime.end());
+      LOG.statistics(new LongStatistic(prefix + ".rebuilds", tree.rebuildstat));
+      LOG.statistics(new LongStatistic(prefix + ".leaves", tree.leaves));
+      LOG.statistics(new LongStatistic(prefix + ".distance-calculations", tree.diststat));
+      LOG.statistics(new LongStatistic(prefix + ".absorption-calculations", tree.absstat));
+      LOG.statistics(new DoubleStatistic(prefix + ".threshold", Math.sqrt(tree.thresholdsq)));
+      return tree;
+    }
+
     /**
      * Parameterization class for CFTrees.
      *
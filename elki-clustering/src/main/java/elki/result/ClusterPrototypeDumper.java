@@ -0,0 +1,173 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.result;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import elki.clustering.kmeans.initialization.WarmStart;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.MedoidModel;
+import elki.data.model.Model;
+import elki.data.model.ModelUtil;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.relation.Relation;
+import elki.logging.Logging;
+import elki.utilities.datastructures.iterator.It;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.Parameterizer;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+
+/**
+ * Output the cluster prototypes (means or medoids) of a clustering result, one
+ * vector per line, such that a later run can be warm-started from them using
+ * {@link WarmStart}.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ClusterPrototypeDumper implements ResultHandler {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ClusterPrototypeDumper.class);
+
+  /**
+   * Output file.
+   */
+  private Path outputFile;
+
+  /**
+   * Constructor.
+   *
+   * @param outputFile Output file
+   */
+  public ClusterPrototypeDumper(Path outputFile) {
+    super();
+    this.outputFile = outputFile;
+  }
+
+  @Override
+  public void processNewResult(Object newResult) {
+    List<Clustering<?>> cs = Clustering.getClusteringResults(newResult);
+    if(cs.isEmpty()) {
+      return;
+    }
+    if(cs.size() > 1) {
+      LOG.warning("Found more than one clustering result, only the prototypes of the first will be written.");
+    }
+    Clustering<?> c = cs.get(0);
+    try (BufferedWriter writer = Files.newBufferedWriter(outputFile, //
+        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      dumpPrototypes(writer, c, findRelation(c));
+    }
+    catch(IOException e) {
+      LOG.exception("Error writing to output stream.", e);
+    }
+  }
+
+  /**
+   * Find the data relation of a clustering, for medoid models.
+   *
+   * @param c Clustering
+   * @return Relation, or {@code null}
+   */
+  @SuppressWarnings("unchecked")
+  private static Relation<? extends NumberVector> findRelation(Clustering<?> c) {
+    for(It<Relation<?>> iter = Metadata.hierarchyOf(c).iterParents().filter(Relation.class); iter.valid(); iter.advance()) {
+      if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(iter.get().getDataTypeInformation())) {
+        return (Relation<? extends NumberVector>) iter.get();
+      }
+    }
+    for(It<Database> iter = Metadata.hierarchyOf(c).iterAncestors().filter(Database.class); iter.valid(); iter.advance()) {
+      for(Relation<?> r : iter.get().getRelations()) {
+        if(TypeUtil.NUMBER_VECTOR_FIELD.isAssignableFromType(r.getDataTypeInformation())) {
+          return (Relation<? extends NumberVector>) r;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Dump the prototypes of a single clustering result.
+   *
+   * @param writer Output writer
+   * @param c Clustering result
+   * @param relation Data relation, may be {@code null}
+   * @throws IOException on IO error
+   */
+  protected void dumpPrototypes(Appendable writer, Clustering<?> c, Relation<? extends NumberVector> relation) throws IOException {
+    for(Cluster<?> clu : c.getAllClusters()) {
+      final Model m = clu.getModel();
+      // Medoids can only be resolved with the data relation.
+      NumberVector p = relation == null && m instanceof MedoidModel ? null : ModelUtil.getPrototype(m, relation);
+      if(p == null) {
+        LOG.warning("Cluster " + clu.getNameAutomatic() + " does not have a prototype, skipping.");
+        continue;
+      }
+      for(int d = 0; d < p.getDimensionality(); d++) {
+        if(d > 0) {
+          writer.append(' ');
+        }
+        writer.append(Double.toString(p.doubleValue(d)));
+      }
+      writer.append('\n');
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   */
+  public static class Par implements Parameterizer {
+    /**
+     * Output file name parameter.
+     */
+    public static final OptionID OUT_ID = new OptionID("prototypes.output", "Output file name for the cluster prototypes.");
+
+    /**
+     * Output file.
+     */
+    private Path outputFile;
+
+    @Override
+    public void configure(Parameterization config) {
+      new FileParameter(OUT_ID, FileParameter.FileType.OUTPUT_FILE) //
+          .grab(config, x -> outputFile = Paths.get(x));
+    }
+
+    @Override
+    public ClusterPrototypeDumper make() {
+      return new ClusterPrototypeDumper(outputFile);
+    }
+  }
+}
@@ -20,6 +20,8 @@
  */
 package elki.clustering.em;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
@@ -29,8 +31,11 @@ import elki.clustering.em.models.BetulaMultivariateGaussianModelFactory;
 import elki.clustering.em.models.BetulaSphericalGaussianModelFactory;
 import elki.clustering.kmeans.initialization.betula.AbstractCFKMeansInitialization;
 import elki.clustering.kmeans.initialization.betula.CFKPlusPlusLeaves;
+import elki.data.Cluster;
 import elki.data.Clustering;
+import elki.data.model.EMModel;
 import elki.database.Database;
+import elki.datasource.FileBasedDatabaseConnection;
 import elki.index.tree.betula.CFTree;
 import elki.index.tree.betula.distance.CentroidEuclideanDistance;
 import elki.index.tree.betula.distance.RadiusDistance;
@@ -97,4 +102,28 @@ public class BetulaGMMTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.84929);
     assertClusterSizes(clustering, new int[] { 99, 101, 211, 227 });
   }
+
+  @Test
+  public void testSphericalStream() {
+    BetulaGMM gmm = new ELKIBuilder<>(BetulaGMM.class) //
+        .with(CFTree.Factory.Par.FEATURES_ID, VIIFeature.Factory.class)//
+        .with(CFTree.Factory.Par.ABSORPTION_ID, CentroidEuclideanDistance.class)//
+        .with(CFTree.Factory.Par.MAXLEAVES_ID, 50) //
+        .with(EM.Par.K_ID, 4) //
+        .with(EM.Par.DELTA_ID, 1e-7)//
+        .with(EM.Par.MODEL_ID, BetulaSphericalGaussianModelFactory.class)//
+        .with(BetulaClusterModelFactory.INIT_ID, CFKPlusPlusLeaves.class)//
+        .with(AbstractCFKMeansInitialization.Par.SEED_ID, 0) //
+        .build();
+    Clustering<EMModel> clustering = gmm.run(new ELKIBuilder<>(FileBasedDatabaseConnection.class) //
+        .with(FileBasedDatabaseConnection.Par.INPUT_ID, getClass().getClassLoader().getResource(UNITTEST + "single-link-effect.ascii")) //
+        .build().loadData().asStream());
+    assertEquals("Number of clusters", 4, clustering.getAllClusters().size());
+    double total = 0;
+    for(Cluster<EMModel> c : clustering.getAllClusters()) {
+      assertEquals("Object ids in stream mode", 0, c.size());
+      total += c.getModel().getWeight();
+    }
+    assertEquals("Total weight", 1., total, 1e-10);
+  }
 }
@@ -0,0 +1,161 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.em;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.em.models.DiagonalGaussianModelFactory;
+import elki.clustering.em.models.MultivariateGaussianModelFactory;
+import elki.clustering.em.models.SphericalGaussianModelFactory;
+import elki.clustering.em.models.TwoPassMultivariateGaussianModelFactory;
+import elki.clustering.kmeans.KMeans;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.EMModel;
+import elki.database.Database;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel EM clustering, which must give the same results as the
+ * sequential version.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelEMTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testMultivariateMLE() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 4) // high dependence on seed!
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.MODEL_ID, MultivariateGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.941968);
+    assertClusterSizes(result, new int[] { 5, 13, 93, 98, 200, 301 });
+  }
+
+  @Test
+  public void testMultivariateMAP() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 4) // high dependence on seed!
+        .with(EM.Par.K_ID, 5) //
+        .with(EM.Par.MODEL_ID, MultivariateGaussianModelFactory.class) //
+        .with(EM.Par.PRIOR_ID, 10) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.958843);
+    assertClusterSizes(result, new int[] { 3, 95, 97, 202, 313 });
+  }
+
+  @Test
+  public void testMultivariateHard() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 2) // high dependence on seed!
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.MODEL_ID, MultivariateGaussianModelFactory.class) //
+        .with(EM.Par.HARD_ID) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.92377);
+    assertClusterSizes(result, new int[] { 6, 30, 96, 102, 200, 276 });
+  }
+
+  @Test
+  public void testDiagonalMLE() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 3) //
+        .with(EM.Par.K_ID, 5) //
+        .with(EM.Par.MODEL_ID, DiagonalGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.9681384);
+    assertClusterSizes(result, new int[] { 7, 91, 99, 200, 313 });
+  }
+
+  @Test
+  public void testSphericalMLE() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 1) //
+        .with(EM.Par.K_ID, 4) //
+        .with(EM.Par.MODEL_ID, SphericalGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.811247176);
+    assertClusterSizes(result, new int[] { 8, 95, 198, 409 });
+  }
+
+  @Test
+  public void testTwoPassFallback() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    Clustering<?> result = new ELKIBuilder<ParallelEM<DoubleVector, ?>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 3) //
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.MODEL_ID, TwoPassMultivariateGaussianModelFactory.class) //
+        .build().autorun(db);
+    assertFMeasure(db, result, 0.942254);
+    assertClusterSizes(result, new int[] { 5, 13, 91, 100, 200, 301 });
+  }
+
+  @Test
+  public void testReproducible() {
+    Database db = makeSimpleDatabase(UNITTEST + "hierarchical-2d.ascii", 710);
+    try {
+      ParallelCore.getCore().setParallelism(1);
+      List<? extends Cluster<EMModel>> expected = runMultivariate(db).getAllClusters();
+      ParallelCore.getCore().setParallelism(4);
+      List<? extends Cluster<EMModel>> actual = runMultivariate(db).getAllClusters();
+      assertEquals("Number of clusters", expected.size(), actual.size());
+      for(int i = 0; i < expected.size(); i++) {
+        EMModel e = expected.get(i).getModel(), a = actual.get(i).getModel();
+        assertArrayEquals("Means differ", e.getMean(), a.getMean(), 0.);
+        for(int j = 0; j < e.getCovarianceMatrix().length; j++) {
+          assertArrayEquals("Covariances differ", e.getCovarianceMatrix()[j], a.getCovarianceMatrix()[j], 0.);
+        }
+      }
+    }
+    finally {
+      ParallelCore.getCore().setParallelism(ParallelCore.ALL_PROCESSORS);
+    }
+  }
+
+  /**
+   * Run the parallel EM with multivariate Gaussian models.
+   *
+   * @param db Database
+   * @return Clustering
+   */
+  private static Clustering<EMModel> runMultivariate(Database db) {
+    return new ELKIBuilder<ParallelEM<DoubleVector, EMModel>>(ParallelEM.class) //
+        .with(KMeans.SEED_ID, 4) //
+        .with(EM.Par.K_ID, 6) //
+        .with(EM.Par.MODEL_ID, MultivariateGaussianModelFactory.class) //
+        .build().autorun(db);
+  }
+}
@@ -20,13 +20,24 @@
  */
 package elki.clustering.hierarchical;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import org.junit.Test;
 
 import elki.Algorithm;
 import elki.clustering.AbstractClusterAlgorithmTest;
 import elki.clustering.hierarchical.extraction.CutDendrogramByNumberOfClusters;
 import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
 import elki.database.Database;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
 import elki.utilities.ELKIBuilder;
 
 /**
@@ -58,4 +69,23 @@ public class MiniMaxTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.914592130);
     assertClusterSizes(clustering, new int[] { 59, 112, 159 });
   }
+
+  @Test
+  public void testSegmentedPrototypes() {
+    Database db = makeSimpleDatabase(UNITTEST + "3clusters-and-noise-2d.csv", 330);
+    Relation<NumberVector> relation = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    ClusterPrototypeMergeHistory expected = new MiniMax<>(EuclideanDistance.STATIC).run(relation);
+    // Use tiny segments, to span many segments:
+    DistanceQuery<NumberVector> dq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
+    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    ClusterPrototypeMatrix prots = new ClusterPrototypeMatrix(ids.size(), 10);
+    ClusterDistanceMatrix mat = MiniMax.initializeMatrices(ids, prots, dq);
+    assertEquals("Prototype storage size", ClusterDistanceMatrix.triangleSize(ids.size()), prots.size());
+    ClusterPrototypeMergeHistory actual = new MiniMax.Instance().run(ids, mat, new ClusterMergeHistoryBuilder(ids, false), dq, prots);
+    assertEquals("Number of merges", expected.numMerges(), actual.numMerges());
+    for(int i = 0; i < expected.numMerges(); i++) {
+      assertEquals("Merge height", expected.getMergeHeight(i), actual.getMergeHeight(i), 0.);
+      assertTrue("Prototype differs", DBIDUtil.equal(expected.prototype(i), actual.prototype(i)));
+    }
+  }
 }
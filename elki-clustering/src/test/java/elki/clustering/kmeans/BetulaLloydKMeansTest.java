@@ -20,12 +20,20 @@
  */
 package elki.clustering.kmeans;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import elki.clustering.AbstractClusterAlgorithmTest;
 import elki.clustering.kmeans.initialization.betula.AbstractCFKMeansInitialization;
+import elki.data.Cluster;
 import elki.data.Clustering;
+import elki.data.model.KMeansModel;
 import elki.database.Database;
+import elki.datasource.FileBasedDatabaseConnection;
 import elki.index.tree.betula.CFTree;
 import elki.index.tree.betula.distance.CentroidEuclideanDistance;
 import elki.index.tree.betula.features.VIIFeature;
@@ -97,4 +105,27 @@ public class BetulaLloydKMeansTest extends AbstractClusterAlgorithmTest {
     assertFMeasure(db, clustering, 0.86826);
     assertClusterSizes(clustering, new int[] { 87, 127, 203, 221 });
   }
+
+  @Test
+  public void testStream() {
+    BetulaLloydKMeans km = new ELKIBuilder<>(BetulaLloydKMeans.class) //
+        .with(CFTree.Factory.Par.FEATURES_ID, VIIFeature.Factory.class)//
+        .with(CFTree.Factory.Par.ABSORPTION_ID, CentroidEuclideanDistance.class)//
+        .with(CFTree.Factory.Par.MAXLEAVES_ID, 50) //
+        .with(AbstractKMeans.K_ID, 4) //
+        .with(AbstractCFKMeansInitialization.Par.SEED_ID, 0) //
+        .build();
+    Clustering<KMeansModel> clustering = km.run(new ELKIBuilder<>(FileBasedDatabaseConnection.class) //
+        .with(FileBasedDatabaseConnection.Par.INPUT_ID, getClass().getClassLoader().getResource(UNITTEST + "single-link-effect.ascii")) //
+        .build().loadData().asStream());
+    // Same tree and means as in the stored mode, but no object ids:
+    int[] weights = new int[4];
+    int i = 0;
+    for(Cluster<KMeansModel> c : clustering.getAllClusters()) {
+      assertEquals("Object ids in stream mode", 0, c.size());
+      weights[i++] = (int) c.getModel().getWeight();
+    }
+    Arrays.sort(weights);
+    assertArrayEquals("Cluster weights", new int[] { 87, 127, 203, 221 }, weights);
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.initialization;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.LloydKMeans;
+import elki.clustering.kmedoids.FasterPAM;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.database.Database;
+import elki.result.ClusterPrototypeDumper;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Warm-start k-means and k-medoids from a previous result.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class WarmStartTest extends AbstractClusterAlgorithmTest {
+  /**
+   * Run k-means from scratch, then warm-start k-means and k-medoids from the
+   * stored means.
+   */
+  @Test
+  public void testWarmStart() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    File file = File.createTempFile("elki-warmstart", ".txt");
+    try {
+      assertTrue(file.delete());
+      // First run: file does not exist yet, use the fallback.
+      Clustering<?> expected = new ELKIBuilder<LloydKMeans<DoubleVector>>(LloydKMeans.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.SEED_ID, 7) //
+          .with(KMeans.INIT_ID, WarmStart.class) //
+          .with(WarmStart.Par.FILE_ID, file) //
+          .build().autorun(db);
+      new ELKIBuilder<>(ClusterPrototypeDumper.class) //
+          .with(ClusterPrototypeDumper.Par.OUT_ID, file) //
+          .build().processNewResult(expected);
+      assertTrue(file.exists());
+
+      // Warm start k-means, a single iteration reproduces the converged result.
+      Clustering<?> result = new ELKIBuilder<LloydKMeans<DoubleVector>>(LloydKMeans.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.MAXITER_ID, 1) //
+          .with(KMeans.INIT_ID, WarmStart.class) //
+          .with(WarmStart.Par.FILE_ID, file) //
+          .build().autorun(db);
+      assertSameClustering(expected, result);
+
+      // Warm start k-medoids from the same means, which yields the same
+      // partitioning on this data set.
+      result = new ELKIBuilder<FasterPAM<DoubleVector>>(FasterPAM.class) //
+          .with(KMeans.K_ID, 5) //
+          .with(KMeans.MAXITER_ID, 1) //
+          .with(KMeans.INIT_ID, WarmStart.class) //
+          .with(WarmStart.Par.FILE_ID, file) //
+          .build().autorun(db);
+      assertSameClustering(expected, result);
+    }
+    finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.parallel;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.ShallotKMeans;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.database.Database;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test that parallel Shallot k-means yields the same result as the sequential
+ * implementation.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelShallotKMeansTest extends AbstractClusterAlgorithmTest {
+  /**
+   * The result must be identical to the sequential variant.
+   */
+  @Test
+  public void testParallelShallotKMeans() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d.ascii", 1200);
+    Clustering<?> expected = new ELKIBuilder<ShallotKMeans<DoubleVector>>(ShallotKMeans.class) //
+        .with(KMeans.K_ID, 10) //
+        .with(KMeans.SEED_ID, 7) //
+        .build().autorun(db);
+    // Force multiple threads even on single-core machines:
+    ParallelCore.getCore().setParallelism(4);
+    try {
+      Clustering<?> result = new ELKIBuilder<ParallelShallotKMeans<DoubleVector>>(ParallelShallotKMeans.class) //
+          .with(KMeans.K_ID, 10) //
+          .with(KMeans.SEED_ID, 7) //
+          .build().autorun(db);
+      assertSameClustering(expected, result);
+    }
+    finally {
+      ParallelCore.getCore().setParallelism(ParallelCore.ALL_PROCESSORS);
+    }
+  }
+}
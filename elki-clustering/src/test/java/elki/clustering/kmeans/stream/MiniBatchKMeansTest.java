@@ -0,0 +1,121 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.LloydKMeans;
+import elki.clustering.kmeans.initialization.KMeansPlusPlus;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.database.Database;
+import elki.datasource.parser.NumberVectorLabelParser;
+import elki.evaluation.clustering.ClusterContingencyTable;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for mini-batch k-means.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class MiniBatchKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testMiniBatchKMeans() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = new ELKIBuilder<MiniBatchKMeans<DoubleVector>>(MiniBatchKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 100) //
+        .build().autorun(db);
+    // On this easy data set, the result must partition the data exactly as
+    // regular k-means does:
+    Clustering<?> expected = new ELKIBuilder<LloydKMeans<DoubleVector>>(LloydKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .build().autorun(db);
+    assertEquals("Partitions differ", 1., new ClusterContingencyTable(true, false, expected, result).getPaircount().f1Measure(), 0.);
+  }
+
+  @Test
+  public void testMiniBatchKMeansStream() throws IOException {
+    MiniBatchKMeans<DoubleVector> km = new ELKIBuilder<MiniBatchKMeans<DoubleVector>>(MiniBatchKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 100) //
+        .build();
+    Clustering<KMeansModel> result = runStream(km);
+    assertEquals("Number of clusters", 5, result.getAllClusters().size());
+    double total = 0;
+    for(Cluster<KMeansModel> c : result.getAllClusters()) {
+      total += c.getModel().getWeight();
+    }
+    assertEquals("Total weight", 1000., total, 1e-10);
+  }
+
+  @Test
+  public void testMiniBatchKMeansStreamSorted() throws IOException {
+    // The data set is sorted by cluster, so the first objects would not make a
+    // good sample for the initial means. k-means++ on the reservoir sample
+    // finds all five clusters in a single pass for most seeds.
+    MiniBatchKMeans<DoubleVector> km = new ELKIBuilder<MiniBatchKMeans<DoubleVector>>(MiniBatchKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.INIT_ID, KMeansPlusPlus.class) //
+        .with(KMeans.SEED_ID, 0) //
+        .with(AbstractStreamingKMeans.Par.SAMPLESIZE_ID, 100) //
+        .with(MiniBatchKMeans.Par.BATCHSIZE_ID, 100) //
+        .build();
+    Clustering<KMeansModel> result = runStream(km);
+    double[] weights = new double[result.getAllClusters().size()];
+    int i = 0;
+    for(Cluster<KMeansModel> c : result.getAllClusters()) {
+      weights[i++] = c.getModel().getWeight();
+    }
+    Arrays.sort(weights);
+    assertArrayEquals("Cluster weights", new double[] { 199, 200, 200, 200, 201 }, weights, 0.);
+  }
+
+  /**
+   * Run on the data file, parsed as a stream without materializing the data.
+   *
+   * @param km Algorithm
+   * @return Clustering
+   * @throws IOException on read errors
+   */
+  private Clustering<KMeansModel> runStream(MiniBatchKMeans<DoubleVector> km) throws IOException {
+    NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+    try(InputStream in = getClass().getClassLoader().getResourceAsStream(UNITTEST + "different-densities-2d-no-noise.ascii")) {
+      parser.initStream(in);
+      return km.run(parser);
+    }
+  }
+}
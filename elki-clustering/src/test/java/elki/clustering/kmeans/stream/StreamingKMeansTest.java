@@ -0,0 +1,114 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmeans.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.LloydKMeans;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.DoubleVector;
+import elki.data.model.KMeansModel;
+import elki.database.Database;
+import elki.datasource.parser.NumberVectorLabelParser;
+import elki.evaluation.clustering.ClusterContingencyTable;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression test for streaming k-means.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class StreamingKMeansTest extends AbstractClusterAlgorithmTest {
+  @Test
+  public void testStreamingKMeans() {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<?> result = makeStreamingKMeans().autorun(db);
+    // On this easy data set, the result must partition the data exactly as
+    // regular k-means does:
+    Clustering<?> expected = new ELKIBuilder<LloydKMeans<DoubleVector>>(LloydKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .build().autorun(db);
+    assertEquals("Partitions differ", 1., new ClusterContingencyTable(true, false, expected, result).getPaircount().f1Measure(), 0.);
+  }
+
+  @Test
+  public void testStreamingKMeansStream() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d-no-noise.ascii", 1000);
+    Clustering<KMeansModel> expected = makeStreamingKMeans().autorun(db);
+    // Parse the file as a stream, without materializing the data:
+    NumberVectorLabelParser<DoubleVector> parser = new NumberVectorLabelParser<>(DoubleVector.FACTORY);
+    Clustering<KMeansModel> result;
+    try(InputStream in = getClass().getClassLoader().getResourceAsStream(UNITTEST + "different-densities-2d-no-noise.ascii")) {
+      parser.initStream(in);
+      result = makeStreamingKMeans().run(parser);
+    }
+    // The same objects are summarized, but the order of the initial means
+    // depends on the DBIDs of the sample:
+    double[][] em = means(expected), rm = means(result);
+    assertEquals("Number of clusters", em.length, rm.length);
+    for(int i = 0; i < em.length; i++) {
+      assertArrayEquals("Means differ", em[i], rm[i], 1e-10);
+    }
+    double total = 0;
+    for(Cluster<KMeansModel> c : result.getAllClusters()) {
+      total += c.getModel().getWeight();
+    }
+    assertEquals("Total weight", 1000., total, 1e-10);
+  }
+
+  /**
+   * Get the cluster means, in lexicographic order.
+   *
+   * @param clustering Clustering
+   * @return Sorted means
+   */
+  private static double[][] means(Clustering<KMeansModel> clustering) {
+    return clustering.getAllClusters().stream().map(c -> c.getModel().getMean()) //
+        .sorted(Comparator.comparingDouble((double[] m) -> m[0]).thenComparingDouble(m -> m[1])) //
+        .toArray(double[][]::new);
+  }
+
+  /**
+   * Make the streaming k-means instance to test.
+   *
+   * @return Algorithm
+   */
+  private static StreamingKMeans<DoubleVector> makeStreamingKMeans() {
+    return new ELKIBuilder<StreamingKMeans<DoubleVector>>(StreamingKMeans.class) //
+        .with(KMeans.K_ID, 5) //
+        .with(KMeans.SEED_ID, 7) //
+        .with(StreamingKMeans.Par.BUFFERSIZE_ID, 200) //
+        .with(StreamingKMeans.Par.CORESIZE_ID, 20) //
+        .build();
+  }
+}
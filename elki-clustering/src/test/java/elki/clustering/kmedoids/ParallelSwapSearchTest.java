@@ -0,0 +1,139 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.clustering.kmedoids;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+
+import elki.clustering.AbstractClusterAlgorithmTest;
+import elki.clustering.ClusteringAlgorithm;
+import elki.clustering.kmeans.KMeans;
+import elki.clustering.kmeans.initialization.FirstK;
+import elki.clustering.silhouette.FasterMSC;
+import elki.data.Cluster;
+import elki.data.Clustering;
+import elki.data.NumberVector;
+import elki.data.model.MedoidModel;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.parallel.ParallelCore;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Test the parallel swap evaluation of the k-medoids algorithms, by comparing
+ * the results with multiple threads to the sequential results.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelSwapSearchTest extends AbstractClusterAlgorithmTest {
+  /**
+   * CLARA sample size, large enough for the parallel evaluation.
+   */
+  private static final int SAMPLESIZE = ParallelSwapSearch.MIN_PARALLEL_SIZE;
+
+  @After
+  public void restore() {
+    ParallelCore.getCore().setParallelism(ParallelCore.ALL_PROCESSORS);
+  }
+
+  @Test
+  public void testFastPAM() {
+    assertParallelSame(() -> new ELKIBuilder<FastPAM<NumberVector>>(FastPAM.class) //
+        .with(KMeans.INIT_ID, FirstK.class).with(KMeans.K_ID, 5).build());
+  }
+
+  @Test
+  public void testFasterPAM() {
+    assertParallelSame(() -> new ELKIBuilder<FasterPAM<NumberVector>>(FasterPAM.class) //
+        .with(KMeans.INIT_ID, FirstK.class).with(KMeans.K_ID, 5).build());
+  }
+
+  @Test
+  public void testFastCLARA() {
+    assertParallelSame(() -> new ELKIBuilder<FastCLARA<NumberVector>>(FastCLARA.class) //
+        .with(KMeans.K_ID, 5).with(KMeans.SEED_ID, 0).with(CLARA.Par.RANDOM_ID, 0) //
+        .with(CLARA.Par.NUMSAMPLES_ID, 3).with(CLARA.Par.SAMPLESIZE_ID, SAMPLESIZE).build());
+  }
+
+  @Test
+  public void testFasterCLARA() {
+    assertParallelSame(() -> new ELKIBuilder<FasterCLARA<NumberVector>>(FasterCLARA.class) //
+        .with(KMeans.K_ID, 5).with(KMeans.SEED_ID, 0).with(CLARA.Par.RANDOM_ID, 0) //
+        .with(CLARA.Par.NUMSAMPLES_ID, 3).with(CLARA.Par.SAMPLESIZE_ID, SAMPLESIZE).build());
+  }
+
+  @Test
+  public void testFasterMSC() {
+    assertParallelSame(() -> new ELKIBuilder<FasterMSC<NumberVector>>(FasterMSC.class) //
+        .with(KMeans.INIT_ID, FirstK.class).with(KMeans.K_ID, 5).build());
+  }
+
+  /**
+   * Run the algorithm with one and with four threads, and compare medoids,
+   * cluster sizes and cost.
+   *
+   * @param alg Algorithm factory, as the random generators are stateful
+   */
+  private void assertParallelSame(Supplier<? extends ClusteringAlgorithm<Clustering<MedoidModel>>> alg) {
+    Database db = makeSimpleDatabase(UNITTEST + "different-densities-2d.ascii", 1200);
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    ParallelCore.getCore().setParallelism(1);
+    Clustering<MedoidModel> seq = alg.get().autorun(db);
+    ParallelCore.getCore().setParallelism(4);
+    Clustering<MedoidModel> par = alg.get().autorun(db);
+    List<Cluster<MedoidModel>> sc = seq.getAllClusters(), pc = par.getAllClusters();
+    assertEquals("Number of clusters", sc.size(), pc.size());
+    for(int i = 0; i < sc.size(); i++) {
+      assertTrue("Medoids differ", DBIDUtil.equal(sc.get(i).getModel().getMedoid(), pc.get(i).getModel().getMedoid()));
+      assertEquals("Cluster sizes differ", sc.get(i).size(), pc.get(i).size());
+    }
+    assertEquals("Cost differs", cost(rel, seq), cost(rel, par), 0.);
+  }
+
+  /**
+   * Compute the total deviation from the medoids.
+   *
+   * @param rel Data relation
+   * @param c Clustering
+   * @return Cost
+   */
+  private static double cost(Relation<NumberVector> rel, Clustering<MedoidModel> c) {
+    double cost = 0;
+    for(Cluster<MedoidModel> clu : c.getAllClusters()) {
+      NumberVector m = rel.get(clu.getModel().getMedoid());
+      for(DBIDIter it = clu.getIDs().iter(); it.valid(); it.advance()) {
+        cost += EuclideanDistance.STATIC.distance(m, rel.get(it));
+      }
+    }
+    return cost;
+  }
+}
@@ -20,7 +20,11 @@
  */
 package elki.database.query.knn;
 
+import java.util.function.BiConsumer;
+
+import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
 import elki.database.ids.KNNList;
 import elki.database.query.LinearScanQuery;
 import elki.database.relation.Relation;
@@ -33,7 +37,7 @@ import elki.database.relation.Relation;
  *
  * @param <O> relation object type
  */
-public class WrappedKNNDBIDByLookup<O> implements KNNSearcher<DBIDRef> {
+public class WrappedKNNDBIDByLookup<O> implements BatchKNNSearcher<DBIDRef> {
   /**
    * Data relation.
    */
@@ -61,6 +65,18 @@ public class WrappedKNNDBIDByLookup<O> implements KNNSearcher<DBIDRef> {
     return inner.getKNN(relation.get(id), k);
   }
 
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    if(inner instanceof BatchKNNSearcher) {
+      // The inner searcher performs the lookup itself.
+      ((BatchKNNSearcher<O>) inner).getKNN(queries, k, consumer);
+      return;
+    }
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      consumer.accept(it, inner.getKNN(relation.get(it), k));
+    }
+  }
+
   /**
    * Get the wrapped searcher. This is mostly meaningful for comparing that two
    * wrappers are not the same (note that equals is not suitable for this
@@ -96,7 +112,7 @@ public class WrappedKNNDBIDByLookup<O> implements KNNSearcher<DBIDRef> {
    *
    * @param <O> inner data type
    * @param relation Relation to get object from
-   * @param inner inner query
+   * @param inner inner query, on the same relation
    * @return wrapped query, or {@code null} if inner was {@code null}
    */
   public static <O> KNNSearcher<DBIDRef> wrap(Relation<? extends O> relation, KNNSearcher<O> inner) {
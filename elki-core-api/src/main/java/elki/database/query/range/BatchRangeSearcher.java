@@ -0,0 +1,83 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.range;
+
+import java.util.function.BiConsumer;
+
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDList;
+import elki.database.query.knn.BatchKNNSearcher;
+
+/**
+ * Range searcher that can process a batch of queries at once, for example to
+ * compare blocks of queries to each data object.
+ * <p>
+ * The queries are given by their DBIDs in the relation the searcher was
+ * created for. Searchers by object look up the query objects in this relation.
+ * <p>
+ * Use {@link #getRange(RangeSearcher, DBIDs, double, BiConsumer)} to run a
+ * batch on an arbitrary searcher by DBID, with a per-query fallback.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> Object type
+ */
+public interface BatchRangeSearcher<O> extends RangeSearcher<O> {
+  /**
+   * Number of queries to process together.
+   */
+  int BLOCKSIZE = BatchKNNSearcher.BLOCKSIZE;
+
+  /**
+   * Get the neighbors for a batch of objects, identified by their DBIDs.
+   * <p>
+   * The (sorted) results are passed to the consumer in the order of the
+   * queries. The reference passed to the consumer is only valid during the
+   * call.
+   *
+   * @param queries Query object IDs
+   * @param range Query range
+   * @param consumer Consumer for the results
+   */
+  void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer);
+
+  /**
+   * Get the neighbors for a batch of objects, using the batch API if the
+   * searcher supports it, and querying each object separately otherwise.
+   *
+   * @param searcher Range searcher by DBID
+   * @param queries Query object IDs
+   * @param range Query range
+   * @param consumer Consumer for the results
+   */
+  static void getRange(RangeSearcher<DBIDRef> searcher, DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    if(searcher instanceof BatchRangeSearcher) {
+      ((BatchRangeSearcher<DBIDRef>) searcher).getRange(queries, range, consumer);
+      return;
+    }
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      consumer.accept(it, searcher.getRange(it, range));
+    }
+  }
+}
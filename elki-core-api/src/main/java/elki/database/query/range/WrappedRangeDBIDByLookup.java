@@ -20,7 +20,12 @@
  */
 package elki.database.query.range;
 
+import java.util.function.BiConsumer;
+
+import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDList;
 import elki.database.ids.ModifiableDoubleDBIDList;
 import elki.database.query.LinearScanQuery;
 import elki.database.relation.Relation;
@@ -33,7 +38,7 @@ import elki.database.relation.Relation;
  *
  * @param <O> relation object type
  */
-public class WrappedRangeDBIDByLookup<O> implements RangeSearcher<DBIDRef> {
+public class WrappedRangeDBIDByLookup<O> implements BatchRangeSearcher<DBIDRef> {
   /**
    * Data relation.
    */
@@ -61,6 +66,18 @@ public class WrappedRangeDBIDByLookup<O> implements RangeSearcher<DBIDRef> {
     return inner.getRange(relation.get(query), range, result);
   }
 
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    if(inner instanceof BatchRangeSearcher) {
+      // The inner searcher performs the lookup itself.
+      ((BatchRangeSearcher<O>) inner).getRange(queries, range, consumer);
+      return;
+    }
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      consumer.accept(it, inner.getRange(relation.get(it), range));
+    }
+  }
+
   /**
    * Linear scan searcher.
    * 
@@ -85,7 +102,7 @@ public class WrappedRangeDBIDByLookup<O> implements RangeSearcher<DBIDRef> {
    *
    * @param <O> inner data type
    * @param relation Relation to get object from
-   * @param inner inner query
+   * @param inner inner query, on the same relation
    * @return wrapped query, or {@code null} if inner was {@code null}
    */
   public static <O> RangeSearcher<DBIDRef> wrap(Relation<? extends O> relation, RangeSearcher<O> inner) {
@@ -0,0 +1,231 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import elki.utilities.datastructures.arraylike.ArrayAdapter;
+import elki.utilities.datastructures.arraylike.NumberArrayAdapter;
+import elki.utilities.io.ByteArrayUtil;
+import elki.utilities.io.ByteBufferSerializer;
+import elki.utilities.optionhandling.Parameterizer;
+
+/**
+ * Flyweight vector, that is a view onto a slice of a larger, shared
+ * {@code double[]} block of row-major data.
+ * <p>
+ * This is used by contiguous relations, which store all vectors in a single
+ * array to avoid the per-object overhead of {@link DoubleVector}. Distance
+ * functions and aggregation routines can access the block directly using
+ * {@link #getBlock()} and {@link #getOffset()}.
+ * <p>
+ * This is a {@link DoubleVector}, so relations of block vectors can be used by
+ * all algorithms that require double vectors.
+ * <p>
+ * Note: the block is shared, and must not be modified.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class DoubleBlockVector extends DoubleVector {
+  /**
+   * Static factory instance.
+   */
+  public static final DoubleBlockVector.Factory FACTORY = new DoubleBlockVector.Factory();
+
+  /**
+   * Serializer for up to 2^32-1 dimensions.
+   */
+  public static final ByteBufferSerializer<DoubleBlockVector> VARIABLE_SERIALIZER = new VariableSerializer();
+
+  /**
+   * Shared data block.
+   */
+  private final double[] block;
+
+  /**
+   * Offset of the first value in the block.
+   */
+  private final int offset;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * Constructor.
+   *
+   * @param block Shared data block
+   * @param offset Offset of the first value
+   * @param dim Dimensionality
+   */
+  public DoubleBlockVector(double[] block, int offset, int dim) {
+    super();
+    assert offset >= 0 && offset + dim <= block.length : "Vector exceeds block.";
+    this.block = block;
+    this.offset = offset;
+    this.dim = dim;
+  }
+
+  @Override
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Override
+  public double doubleValue(int dimension) {
+    return block[offset + dimension];
+  }
+
+  @Override
+  public long longValue(int dimension) {
+    return (long) block[offset + dimension];
+  }
+
+  @Override
+  public double[] toArray() {
+    return Arrays.copyOfRange(block, offset, offset + dim);
+  }
+
+  /**
+   * Get the shared data block. Do not modify!
+   *
+   * @return Data block
+   */
+  public double[] getBlock() {
+    return block;
+  }
+
+  /**
+   * Get the offset of the first value of this vector in the block.
+   *
+   * @return Offset
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder featureLine = new StringBuilder();
+    for(int i = 0; i < dim; i++) {
+      featureLine.append(block[offset + i]);
+      if(i + 1 < dim) {
+        featureLine.append(ATTRIBUTE_SEPARATOR);
+      }
+    }
+    return featureLine.toString();
+  }
+
+  /**
+   * Factory for standalone vectors, each using their own block.
+   *
+   * @author agent
+   *
+   * @has - - - DoubleBlockVector
+   */
+  public static class Factory implements NumberVector.Factory<DoubleBlockVector> {
+    @Override
+    public DoubleBlockVector newNumberVector(double[] values) {
+      return new DoubleBlockVector(values.clone(), 0, values.length);
+    }
+
+    @Override
+    public <A> DoubleBlockVector newFeatureVector(A array, ArrayAdapter<? extends Number, A> adapter) {
+      final int dim = adapter.size(array);
+      double[] values = new double[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.get(array, i).doubleValue();
+      }
+      return new DoubleBlockVector(values, 0, dim);
+    }
+
+    @Override
+    public <A> DoubleBlockVector newNumberVector(A array, NumberArrayAdapter<?, ? super A> adapter) {
+      final int dim = adapter.size(array);
+      double[] values = new double[dim];
+      for(int i = 0; i < dim; i++) {
+        values[i] = adapter.getDouble(array, i);
+      }
+      return new DoubleBlockVector(values, 0, dim);
+    }
+
+    @Override
+    public ByteBufferSerializer<DoubleBlockVector> getDefaultSerializer() {
+      return VARIABLE_SERIALIZER;
+    }
+
+    @Override
+    public Class<? super DoubleBlockVector> getRestrictionClass() {
+      return DoubleBlockVector.class;
+    }
+
+    /**
+     * Parameterization class.
+     *
+     * @author agent
+     */
+    public static class Par implements Parameterizer {
+      @Override
+      public DoubleBlockVector.Factory make() {
+        return FACTORY;
+      }
+    }
+  }
+
+  /**
+   * Serialization class using VarInt encodings. Deserialized vectors will use
+   * their own block.
+   *
+   * @author agent
+   *
+   * @assoc - serializes - DoubleBlockVector
+   */
+  public static class VariableSerializer implements ByteBufferSerializer<DoubleBlockVector> {
+    @Override
+    public DoubleBlockVector fromByteBuffer(ByteBuffer buffer) throws IOException {
+      final int dimensionality = ByteArrayUtil.readUnsignedVarint(buffer);
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_DOUBLE * dimensionality) : "Not enough data remaining in buffer to read " + dimensionality + " doubles";
+      final double[] values = new double[dimensionality];
+      for(int i = 0; i < dimensionality; i++) {
+        values[i] = buffer.getDouble();
+      }
+      return new DoubleBlockVector(values, 0, dimensionality);
+    }
+
+    @Override
+    public void toByteBuffer(ByteBuffer buffer, DoubleBlockVector vec) throws IOException {
+      assert (buffer.remaining() >= ByteArrayUtil.SIZE_DOUBLE * vec.dim) : "Not enough space remaining in buffer to write " + vec.dim + " doubles";
+      ByteArrayUtil.writeUnsignedVarint(buffer, vec.dim);
+      for(int i = 0; i < vec.dim; i++) {
+        buffer.putDouble(vec.block[vec.offset + i]);
+      }
+    }
+
+    @Override
+    public int getByteSize(DoubleBlockVector vec) {
+      return ByteArrayUtil.getUnsignedVarintSize(vec.dim) + ByteArrayUtil.SIZE_DOUBLE * vec.dim;
+    }
+  }
+}
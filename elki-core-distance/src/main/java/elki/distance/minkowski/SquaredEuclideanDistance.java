@@ -20,6 +20,7 @@
  */
 package elki.distance.minkowski;
 
+import elki.data.DoubleBlockVector;
 import elki.data.NumberVector;
 import elki.data.SparseNumberVector;
 import elki.data.spatial.SpatialComparable;
@@ -129,9 +130,31 @@ public class SquaredEuclideanDistance extends AbstractNumberVectorDistance imple
     return agg;
   }
 
+  /**
+   * Squared distance of two vectors stored in contiguous blocks.
+   * 
+   * @param v1 First vector
+   * @param v2 Second vector
+   * @param dim Dimensionality of both vectors
+   * @return Sum of squares
+   */
+  private static double preDistance(DoubleBlockVector v1, DoubleBlockVector v2, int dim) {
+    final double[] b1 = v1.getBlock(), b2 = v2.getBlock();
+    final int o1 = v1.getOffset(), o2 = v2.getOffset();
+    double agg = 0.;
+    for(int d = 0; d < dim; d++) {
+      final double delta = b1[o1 + d] - b2[o2 + d];
+      agg += delta * delta;
+    }
+    return agg;
+  }
+
   @Override
   public double distance(NumberVector v1, NumberVector v2) {
     final int dim1 = v1.getDimensionality(), dim2 = v2.getDimensionality();
+    if(dim1 == dim2 && v1 instanceof DoubleBlockVector && v2 instanceof DoubleBlockVector) {
+      return preDistance((DoubleBlockVector) v1, (DoubleBlockVector) v2, dim1);
+    }
     final int mindim = dim1 < dim2 ? dim1 : dim2;
     double agg = preDistance(v1, v2, 0, mindim);
     if(dim1 > mindim) {
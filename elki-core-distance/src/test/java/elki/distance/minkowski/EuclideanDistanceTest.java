@@ -20,8 +20,12 @@
  */
 package elki.distance.minkowski;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
+import elki.data.DoubleBlockVector;
+import elki.data.DoubleVector;
 import elki.distance.AbstractDistanceTest;
 import elki.math.MathUtil;
 import elki.utilities.ELKIBuilder;
@@ -42,4 +46,12 @@ public class EuclideanDistanceTest extends AbstractDistanceTest {
     assertSpatialConsistency(dist);
     assertNonnegativeSpatialConsistency(dist);
   }
+
+  @Test
+  public void testBlockVectors() {
+    double[] block = { 0, 0, 1, 1, 3, 4, 4, 5 };
+    DoubleBlockVector v1 = new DoubleBlockVector(block, 2, 2), v2 = new DoubleBlockVector(block, 6, 2);
+    assertEquals("Block vectors", 5, EuclideanDistance.STATIC.distance(v1, v2), 0);
+    assertEquals("Mixed vectors", 5, EuclideanDistance.STATIC.distance(v1, DoubleVector.wrap(new double[] { 4, 5 })), 0);
+  }
 }
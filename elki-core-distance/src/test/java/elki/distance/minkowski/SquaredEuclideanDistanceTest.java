@@ -24,6 +24,8 @@ import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
 
+import elki.data.DoubleBlockVector;
+import elki.data.DoubleVector;
 import elki.distance.AbstractDistanceTest;
 import elki.utilities.ELKIBuilder;
 
@@ -45,4 +47,12 @@ public class SquaredEuclideanDistanceTest extends AbstractDistanceTest {
     // Test low-level API:
     assertEquals("Basic 2", 1, dist.distance(BASIC[0].toArray(), BASIC[3].toArray()), 0);
   }
+
+  @Test
+  public void testBlockVectors() {
+    double[] block = { 0, 0, 1, 1, 3, 4, 4, 5 };
+    DoubleBlockVector v1 = new DoubleBlockVector(block, 2, 2), v2 = new DoubleBlockVector(block, 6, 2);
+    assertEquals("Block vectors", 25, SquaredEuclideanDistance.STATIC.distance(v1, v2), 0);
+    assertEquals("Mixed vectors", 25, SquaredEuclideanDistance.STATIC.distance(v1, DoubleVector.wrap(new double[] { 4, 5 })), 0);
+  }
 }
@@ -20,12 +20,17 @@
  */
 package elki.parallel;
 
-import java.util.concurrent.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 
 /**
- * Core for parallel processing in ELKI, based on {@link ThreadPoolExecutor}.
+ * Core for parallel processing in ELKI, based on {@link ForkJoinPool}.
  * <p>
- * TODO: make configurable how many threads are used.
+ * The number of threads defaults to the number of available processors, but
+ * can be limited using {@link #setParallelism(int)}, e.g., via the
+ * <code>-parallel.threads</code> command line option.
  * 
  * @author Erich Schubert
  * @since 0.7.0
@@ -44,7 +49,7 @@ public class ParallelCore {
   /**
    * Executor service.
    */
-  private volatile ThreadPoolExecutor executor;
+  private volatile ForkJoinPool executor;
 
   /**
    * Number of connected submitters.
@@ -54,7 +59,7 @@ public class ParallelCore {
   /**
    * Maximum number of processors to use.
    */
-  private int processors;
+  private volatile int processors;
 
   /**
    * Constructor.
@@ -81,7 +86,24 @@ public class ParallelCore {
    * @return Number of threads to run in parallel
    */
   public int getParallelism() {
-    return executor != null ? executor.getMaximumPoolSize() : processors;
+    return processors;
+  }
+
+  /**
+   * Set the desired level of parallelism.
+   * <p>
+   * If the core is currently in use, the new value will only be used once all
+   * submitters have disconnected.
+   * 
+   * @param processors Number of threads to use, values &lt; 1 use all
+   *        available processors.
+   */
+  public synchronized void setParallelism(int processors) {
+    this.processors = processors > 0 ? processors : ALL_PROCESSORS;
+    if(connected == 0 && executor != null && executor.getParallelism() != this.processors) {
+      executor.shutdown();
+      executor = null;
+    }
   }
 
   /**
@@ -95,27 +117,36 @@ public class ParallelCore {
     return executor.submit(task);
   }
 
+  /**
+   * Run a fork-join task on the executor core, and wait for its completion.
+   * 
+   * @param <T> Result type
+   * @param task Task to run
+   * @return Task result
+   */
+  public <T> T invoke(ForkJoinTask<T> task) {
+    return executor.invoke(task);
+  }
+
   /**
    * Connect to the executor.
    */
   public synchronized void connect() {
-    if(executor == null) {
-      executor = new ThreadPoolExecutor(0, processors, 10L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
-      executor.allowCoreThreadTimeOut(true);
-    }
-    if(++connected == 1) {
-      executor.allowCoreThreadTimeOut(false);
-      executor.setCorePoolSize(executor.getMaximumPoolSize());
+    if(executor == null || (connected == 0 && executor.getParallelism() != processors)) {
+      if(executor != null) {
+        executor.shutdown();
+      }
+      executor = new ForkJoinPool(processors);
     }
+    ++connected;
   }
 
   /**
    * Disconnect to the executor.
+   * <p>
+   * Idle worker threads of the fork-join pool terminate automatically.
    */
   public synchronized void disconnect() {
-    if(--connected == 0) {
-      executor.allowCoreThreadTimeOut(true);
-      executor.setCorePoolSize(0);
-    }
+    --connected;
   }
 }
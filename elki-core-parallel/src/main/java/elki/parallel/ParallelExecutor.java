@@ -20,33 +20,45 @@
  */
 package elki.parallel;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
 
 import elki.database.ids.ArrayDBIDs;
 import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
 import elki.parallel.processor.Processor;
 import elki.parallel.variables.SharedVariable;
 import elki.parallel.variables.SharedVariable.Instance;
 
 /**
  * Class to run processors in parallel, on all available cores.
- *
- * TODO: add progress
+ * <p>
+ * The data is split recursively using fork-join, and idle workers steal
+ * pending blocks from busy workers. Blocks are only split further while there
+ * are too few queued tasks, so that uneven workloads are balanced without
+ * excessive overhead for many small blocks.
  *
  * @author Erich Schubert
  * @since 0.7.0
  *
  * @has - - - BlockArrayRunner
+ * @has - - - RangeRunner
  * @assoc - - - ParallelCore
  */
 public final class ParallelExecutor {
+  /**
+   * Minimum block size, blocks will not be split further.
+   */
+  private static final int MIN_BLOCKSIZE = 16;
+
+  /**
+   * Maximum number of surplus tasks queued before we stop splitting.
+   */
+  private static final int MAX_SURPLUS = 2;
+
   /**
    * Private constructor. Static methods only.
    */
@@ -61,40 +73,161 @@ public final class ParallelExecutor {
    * @param procs Processors to run
    */
   public static void run(DBIDs ids, Processor... procs) {
+    run(ids, null, null, procs);
+  }
+
+  /**
+   * Run a task on all available CPUs.
+   *
+   * @param ids IDs to process
+   * @param prog Progress to update, may be {@code null}
+   * @param log Logger to report progress to
+   * @param procs Processors to run
+   */
+  public static void run(DBIDs ids, FiniteProgress prog, Logging log, Processor... procs) {
     ParallelCore core = ParallelCore.getCore();
     core.connect();
     try {
-      // TODO: try different strategies anyway!
       ArrayDBIDs aids = DBIDUtil.ensureArray(ids);
       final int size = aids.size();
-      int numparts = core.getParallelism();
-      // TODO: are there better heuristics for choosing this?
-      numparts = (size > numparts * numparts * 16) ? numparts * Math.max(1, numparts - 1) : numparts;
-
-      final int blocksize = (size + (numparts - 1)) / numparts;
-      List<Future<ArrayDBIDs>> parts = new ArrayList<>(numparts);
-      for(int i = 0; i < numparts; i++) {
-        final int start = i * blocksize;
-        final int end = Math.min(start + blocksize, size);
-        Callable<ArrayDBIDs> run = new BlockArrayRunner(aids, start, end, procs);
-        parts.add(core.submit(run));
+      if(size == 0) {
+        return;
       }
+      // Blocks larger than this will always be split:
+      final int maxblock = Math.max(MIN_BLOCKSIZE, (size - 1) / (core.getParallelism() << 2) + 1);
+      core.invoke(new BlockArrayRunner(aids, 0, size, maxblock, procs, prog, log));
+    }
+    catch(RuntimeException e) {
+      throw new RuntimeException("Processor execution failed.", e);
+    }
+    finally {
+      core.disconnect();
+    }
+  }
 
-      for(Future<ArrayDBIDs> fut : parts) {
-        fut.get();
+  /**
+   * Process a range of integers, such as the rows of a matrix, on all
+   * available CPUs.
+   * <p>
+   * The range is split into blocks of at least the given size, and the
+   * processor is invoked for each block. Small ranges are processed in the
+   * calling thread.
+   *
+   * @param start First index
+   * @param end End index (exclusive)
+   * @param minblock Minimum block size
+   * @param proc Processor for a block
+   */
+  public static void run(int start, int end, int minblock, RangeProcessor proc) {
+    ParallelCore core = ParallelCore.getCore();
+    if(end - start <= minblock || core.getParallelism() <= 1) {
+      if(start < end) {
+        proc.process(start, end);
       }
+      return;
     }
-    catch(ExecutionException e) {
-      throw new RuntimeException("Processor execution failed.", e);
+    core.connect();
+    try {
+      final int maxblock = Math.max(minblock, (end - start - 1) / (core.getParallelism() << 2) + 1);
+      core.invoke(new RangeRunner(start, end, minblock, maxblock, proc));
     }
-    catch(InterruptedException e) {
-      throw new RuntimeException("Parallel execution interrupted.");
+    catch(RuntimeException e) {
+      throw new RuntimeException("Processor execution failed.", e);
     }
     finally {
       core.disconnect();
     }
   }
 
+  /**
+   * Processor for a block of a range of integers.
+   *
+   * @author Erich Schubert
+   */
+  @FunctionalInterface
+  public interface RangeProcessor {
+    /**
+     * Process a block.
+     *
+     * @param start First index
+     * @param end End index (exclusive)
+     */
+    void process(int start, int end);
+  }
+
+  /**
+   * Run for a range of integers.
+   *
+   * @author Erich Schubert
+   *
+   * @assoc - - - RangeProcessor
+   */
+  protected static class RangeRunner extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Start and end position
+     */
+    private int start, end;
+
+    /**
+     * Minimum block size, and block size that will always be split.
+     */
+    private int minblock, maxblock;
+
+    /**
+     * Processor to run.
+     */
+    private RangeProcessor proc;
+
+    /**
+     * Next forked task in the chain, for joining.
+     */
+    private RangeRunner next;
+
+    /**
+     * Constructor.
+     *
+     * @param start Starting position
+     * @param end End position
+     * @param minblock Minimum block size
+     * @param maxblock Block size that will always be split
+     * @param proc Processor to run
+     */
+    protected RangeRunner(int start, int end, int minblock, int maxblock, RangeProcessor proc) {
+      super();
+      this.start = start;
+      this.end = end;
+      this.minblock = minblock;
+      this.maxblock = maxblock;
+      this.proc = proc;
+    }
+
+    @Override
+    protected void compute() {
+      RangeRunner forked = null;
+      while(end - start > minblock && (end - start > maxblock || getSurplusQueuedTaskCount() < MAX_SURPLUS)) {
+        final int mid = (start + end) >>> 1;
+        RangeRunner right = new RangeRunner(mid, end, minblock, maxblock, proc);
+        right.next = forked;
+        (forked = right).fork();
+        end = mid;
+      }
+      proc.process(start, end);
+      for(; forked != null; forked = forked.next) {
+        if(forked.tryUnfork()) {
+          forked.compute();
+        }
+        else {
+          forked.join();
+        }
+      }
+    }
+  }
+
   /**
    * Run for an array part, without step size.
    *
@@ -102,7 +235,12 @@ public final class ParallelExecutor {
    *
    * @assoc - - - Processor
    */
-  protected static class BlockArrayRunner implements Callable<ArrayDBIDs>, Executor {
+  protected static class BlockArrayRunner extends RecursiveAction implements Executor {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
     /**
      * Array IDs to process
      */
@@ -118,11 +256,31 @@ public final class ParallelExecutor {
      */
     private int end;
 
+    /**
+     * Block size that will always be split.
+     */
+    private int maxblock;
+
     /**
      * The processor masters that own the instances.
      */
     private Processor[] procs;
 
+    /**
+     * Progress to update, may be {@code null}.
+     */
+    private FiniteProgress prog;
+
+    /**
+     * Logger for progress reporting.
+     */
+    private Logging log;
+
+    /**
+     * Next forked task in the chain, for joining.
+     */
+    private BlockArrayRunner next;
+
     /**
      * Variables map.
      */
@@ -134,18 +292,49 @@ public final class ParallelExecutor {
      * @param ids IDs to process
      * @param start Starting position
      * @param end End position
+     * @param maxblock Block size that will always be split
      * @param procs Processors to run
+     * @param prog Progress to update, may be {@code null}
+     * @param log Logger for progress reporting
      */
-    protected BlockArrayRunner(ArrayDBIDs ids, int start, int end, Processor[] procs) {
+    protected BlockArrayRunner(ArrayDBIDs ids, int start, int end, int maxblock, Processor[] procs, FiniteProgress prog, Logging log) {
       super();
       this.ids = ids;
       this.start = start;
       this.end = end;
+      this.maxblock = maxblock;
       this.procs = procs;
+      this.prog = prog;
+      this.log = log;
     }
 
     @Override
-    public ArrayDBIDs call() {
+    protected void compute() {
+      // Split adaptively, forking the upper halves for work stealing:
+      BlockArrayRunner forked = null;
+      while(end - start > MIN_BLOCKSIZE && (end - start > maxblock || getSurplusQueuedTaskCount() < MAX_SURPLUS)) {
+        final int mid = (start + end) >>> 1;
+        BlockArrayRunner right = new BlockArrayRunner(ids, mid, end, maxblock, procs, prog, log);
+        right.next = forked;
+        (forked = right).fork();
+        end = mid;
+      }
+      process();
+      // Join forked tasks, or run them ourselves if they were not stolen:
+      for(; forked != null; forked = forked.next) {
+        if(forked.tryUnfork()) {
+          forked.compute();
+        }
+        else {
+          forked.join();
+        }
+      }
+    }
+
+    /**
+     * Process the current block.
+     */
+    private void process() {
       Processor.Instance[] instances = new Processor.Instance[procs.length];
       for(int i = 0; i < procs.length; i++) {
         instances[i] = procs[i].instantiate(this);
@@ -158,7 +347,9 @@ public final class ParallelExecutor {
       for(int i = 0; i < instances.length; i++) {
         procs[i].cleanup(instances[i]);
       }
-      return ids;
+      if(prog != null) {
+        prog.incrementProcessed(end - start, log);
+      }
     }
 
     @Override
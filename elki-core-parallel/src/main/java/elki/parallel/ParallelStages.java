@@ -0,0 +1,155 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.KNNList;
+import elki.database.query.knn.KNNSearcher;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.math.DoubleMinMax;
+import elki.parallel.processor.DoubleFunctionProcessor;
+import elki.parallel.processor.DoubleMinMaxProcessor;
+import elki.parallel.processor.FunctionProcessor;
+import elki.parallel.processor.KNNProcessor;
+import elki.parallel.processor.WriteDataStoreProcessor;
+import elki.parallel.processor.WriteDoubleDataStoreProcessor;
+import elki.parallel.variables.SharedDouble;
+import elki.parallel.variables.SharedObject;
+
+/**
+ * Common stages of parallel neighborhood-based algorithms, such as kNN-based
+ * outlier detection: materialize the kNN, compute per-object values (e.g.,
+ * densities) from them, and aggregate these into scores.
+ * <p>
+ * Each stage wires the corresponding processors and runs them with the
+ * {@link ParallelExecutor}. The user-supplied functions are instantiated once
+ * per thread and may read the results of earlier stages.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @assoc - - - KNNProcessor
+ * @assoc - - - FunctionProcessor
+ * @assoc - - - DoubleFunctionProcessor
+ */
+public final class ParallelStages {
+  /**
+   * Private constructor. Static methods only.
+   */
+  private ParallelStages() {
+    // Do not use.
+  }
+
+  /**
+   * Materialize the k nearest neighbors of all objects.
+   *
+   * @param ids Objects to process
+   * @param k Number of neighbors
+   * @param knnq Factory for kNN searchers, invoked once per thread
+   * @param log Logger for progress, may be {@code null}
+   * @return kNN lists
+   */
+  public static WritableDataStore<KNNList> knn(DBIDs ids, int k, Supplier<KNNSearcher<DBIDRef>> knnq, Logging log) {
+    WritableDataStore<KNNList> knns = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNList.class);
+    KNNProcessor knnm = new KNNProcessor(k, knnq);
+    SharedObject<KNNList> knnv = new SharedObject<>();
+    WriteDataStoreProcessor<KNNList> storek = new WriteDataStoreProcessor<>(knns);
+    knnm.connectKNNOutput(knnv);
+    storek.connectInput(knnv);
+    FiniteProgress prog = log != null && log.isVerbose() ? new FiniteProgress("kNN computation", ids.size(), log) : null;
+    ParallelExecutor.run(ids, prog, log, knnm, storek);
+    if(prog != null) {
+      log.ensureCompleted(prog);
+    }
+    return knns;
+  }
+
+  /**
+   * Compute an object for each object.
+   *
+   * @param ids Objects to process
+   * @param hints Data store hints
+   * @param cls Output class
+   * @param function Function factory, invoked once per thread
+   * @param task Task name for progress logging
+   * @param log Logger for progress, may be {@code null}
+   * @param <T> Output type
+   * @return Output storage
+   */
+  public static <T> WritableDataStore<T> map(DBIDs ids, int hints, Class<? super T> cls, Supplier<? extends Function<DBIDRef, ? extends T>> function, String task, Logging log) {
+    WritableDataStore<T> store = DataStoreUtil.makeStorage(ids, hints, cls);
+    FunctionProcessor<T> fm = new FunctionProcessor<>(function);
+    SharedObject<T> var = new SharedObject<>();
+    WriteDataStoreProcessor<T> storem = new WriteDataStoreProcessor<>(store);
+    fm.connectOutput(var);
+    storem.connectInput(var);
+    FiniteProgress prog = log != null && log.isVerbose() ? new FiniteProgress(task, ids.size(), log) : null;
+    ParallelExecutor.run(ids, prog, log, fm, storem);
+    if(prog != null) {
+      log.ensureCompleted(prog);
+    }
+    return store;
+  }
+
+  /**
+   * Compute a double value for each object.
+   *
+   * @param ids Objects to process
+   * @param hints Data store hints
+   * @param function Function factory, invoked once per thread
+   * @param minmax Minimum and maximum to update, may be {@code null}
+   * @param task Task name for progress logging
+   * @param log Logger for progress, may be {@code null}
+   * @return Output storage
+   */
+  public static WritableDoubleDataStore mapDouble(DBIDs ids, int hints, Supplier<? extends ToDoubleFunction<DBIDRef>> function, DoubleMinMax minmax, String task, Logging log) {
+    WritableDoubleDataStore store = DataStoreUtil.makeDoubleStorage(ids, hints);
+    DoubleFunctionProcessor fm = new DoubleFunctionProcessor(function);
+    SharedDouble var = new SharedDouble();
+    WriteDoubleDataStoreProcessor storem = new WriteDoubleDataStoreProcessor(store);
+    fm.connectOutput(var);
+    storem.connectInput(var);
+    FiniteProgress prog = log != null && log.isVerbose() ? new FiniteProgress(task, ids.size(), log) : null;
+    if(minmax != null) {
+      DoubleMinMaxProcessor mmm = new DoubleMinMaxProcessor();
+      mmm.connectInput(var);
+      ParallelExecutor.run(ids, prog, log, fm, storem, mmm);
+      minmax.put(mmm.getMinMax());
+    }
+    else {
+      ParallelExecutor.run(ids, prog, log, fm, storem);
+    }
+    if(prog != null) {
+      log.ensureCompleted(prog);
+    }
+    return store;
+  }
+}
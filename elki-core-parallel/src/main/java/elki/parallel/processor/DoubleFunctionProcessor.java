@@ -0,0 +1,90 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel.processor;
+
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+import elki.database.ids.DBIDRef;
+import elki.parallel.Executor;
+import elki.parallel.variables.SharedDouble;
+
+/**
+ * Processor to compute a double value for each object, such as a density
+ * estimate or an outlier score.
+ * <p>
+ * The supplier is invoked once for every thread, so the functions may keep
+ * state that is not thread safe, such as query objects or scratch buffers.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - SharedDouble
+ */
+public class DoubleFunctionProcessor extends AbstractDoubleProcessor {
+  /**
+   * Function factory
+   */
+  Supplier<? extends ToDoubleFunction<DBIDRef>> function;
+
+  /**
+   * Constructor.
+   *
+   * @param function Function factory, invoked once per thread
+   */
+  public DoubleFunctionProcessor(Supplier<? extends ToDoubleFunction<DBIDRef>> function) {
+    super();
+    this.function = function;
+  }
+
+  @Override
+  public Instance instantiate(Executor executor) {
+    return new Instance(function.get(), executor.getInstance(output));
+  }
+
+  /**
+   * Instance for a single thread.
+   *
+   * @author agent
+   */
+  private static class Instance extends AbstractDoubleProcessor.Instance {
+    /**
+     * Function to apply
+     */
+    ToDoubleFunction<DBIDRef> function;
+
+    /**
+     * Constructor.
+     *
+     * @param function Function to apply
+     * @param output Output variable
+     */
+    public Instance(ToDoubleFunction<DBIDRef> function, SharedDouble.Instance output) {
+      super(output);
+      this.function = function;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      output.set(function.applyAsDouble(id));
+    }
+  }
+}
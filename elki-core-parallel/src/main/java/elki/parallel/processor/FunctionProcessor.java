@@ -0,0 +1,119 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.parallel.processor;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import elki.database.ids.DBIDRef;
+import elki.parallel.Executor;
+import elki.parallel.variables.SharedObject;
+
+/**
+ * Processor to compute an object for each object, such as per-object model
+ * parameters.
+ * <p>
+ * The supplier is invoked once for every thread, so the functions may keep
+ * state that is not thread safe, such as query objects or scratch buffers.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - SharedObject
+ *
+ * @param <T> Output type
+ */
+public class FunctionProcessor<T> implements Processor {
+  /**
+   * Function factory
+   */
+  Supplier<? extends Function<DBIDRef, ? extends T>> function;
+
+  /**
+   * Output channel to write to
+   */
+  SharedObject<T> output;
+
+  /**
+   * Constructor.
+   *
+   * @param function Function factory, invoked once per thread
+   */
+  public FunctionProcessor(Supplier<? extends Function<DBIDRef, ? extends T>> function) {
+    super();
+    this.function = function;
+  }
+
+  /**
+   * Connect the output channel.
+   *
+   * @param output Output channel
+   */
+  public void connectOutput(SharedObject<T> output) {
+    this.output = output;
+  }
+
+  @Override
+  public Instance<T> instantiate(Executor executor) {
+    return new Instance<>(function.get(), executor.getInstance(output));
+  }
+
+  @Override
+  public void cleanup(Processor.Instance inst) {
+    // Nothing to do.
+  }
+
+  /**
+   * Instance for a single thread.
+   *
+   * @author agent
+   *
+   * @param <T> Output type
+   */
+  private static class Instance<T> implements Processor.Instance {
+    /**
+     * Function to apply
+     */
+    Function<DBIDRef, ? extends T> function;
+
+    /**
+     * Output variable
+     */
+    SharedObject.Instance<T> output;
+
+    /**
+     * Constructor.
+     *
+     * @param function Function to apply
+     * @param output Output variable
+     */
+    public Instance(Function<DBIDRef, ? extends T> function, SharedObject.Instance<T> output) {
+      super();
+      this.function = function;
+      this.output = output;
+    }
+
+    @Override
+    public void map(DBIDRef id) {
+      output.set(function.apply(id));
+    }
+  }
+}
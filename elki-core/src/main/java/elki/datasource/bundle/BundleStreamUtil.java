@@ -0,0 +1,79 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.datasource.bundle;
+
+import java.util.function.Consumer;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Utility functions for processing bundle streams without materializing them.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public final class BundleStreamUtil {
+  /**
+   * Fake constructor: do not instantiate.
+   */
+  private BundleStreamUtil() {
+    // Do not instantiate.
+  }
+
+  /**
+   * Process all number vectors of a stream.
+   * <p>
+   * Each block of the stream must contain exactly one number vector column,
+   * other columns (such as labels) are ignored.
+   *
+   * @param source Data source
+   * @param consumer Consumer, invoked for every vector of the stream
+   */
+  public static void forEachNumberVector(BundleStreamSource source, Consumer<? super NumberVector> consumer) {
+    int col = -1;
+    while(true) {
+      switch(source.nextEvent()){
+      case END_OF_STREAM:
+        return;
+      case META_CHANGED:
+        BundleMeta meta = source.getMeta();
+        col = -1;
+        for(int i = 0; i < meta.size(); i++) {
+          if(TypeUtil.NUMBER_VECTOR_VARIABLE_LENGTH.isAssignableFromType(meta.get(i))) {
+            if(col >= 0) {
+              throw new AbortException("More than one vector column.");
+            }
+            col = i;
+          }
+        }
+        break;
+      case NEXT_OBJECT:
+        if(col < 0) {
+          throw new AbortException("No vector column available.");
+        }
+        consumer.accept((NumberVector) source.data(col));
+        break;
+      }
+    }
+  }
+}
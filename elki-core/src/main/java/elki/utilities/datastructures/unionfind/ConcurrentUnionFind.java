@@ -0,0 +1,198 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.datastructures.unionfind;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import elki.database.ids.*;
+import elki.utilities.documentation.Reference;
+
+/**
+ * Lock-free union-find for concurrent use, backed by an atomic integer array.
+ * <p>
+ * Roots are linked with compare-and-swap, using a fixed pseudo-random priority
+ * of the elements (a multiplicative hash of the index) rather than the
+ * component weight, so that concurrent links cannot form cycles. Paths are
+ * shortened by path halving, again with compare-and-swap; failed updates are
+ * simply skipped.
+ * <p>
+ * All operations can be used concurrently. Component sizes are counted on
+ * demand, and are only meaningful when no concurrent union is in progress.
+ * <p>
+ * Reference:
+ * <p>
+ * S. V. Jayanti, R. E. Tarjan<br>
+ * A Randomized Concurrent Algorithm for Disjoint Set Union<br>
+ * Proc. 2016 ACM Symposium on Principles of Distributed Computing (PODC)
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+@Reference(authors = "S. V. Jayanti, R. E. Tarjan", //
+    title = "A Randomized Concurrent Algorithm for Disjoint Set Union", //
+    booktitle = "Proc. 2016 ACM Symposium on Principles of Distributed Computing (PODC)", //
+    url = "https://doi.org/10.1145/2933057.2933108", //
+    bibkey = "DBLP:conf/podc/JayantiT16")
+public class ConcurrentUnionFind implements UnionFind {
+  /**
+   * Object ID range.
+   */
+  private DBIDEnum ids;
+
+  /**
+   * Parent element
+   */
+  private AtomicIntegerArray parent;
+
+  /**
+   * Component sizes, counted on demand.
+   */
+  private volatile int[] sizes;
+
+  /**
+   * Constructor.
+   *
+   * @param ids Range to use
+   */
+  public ConcurrentUnionFind(StaticDBIDs ids) {
+    this.ids = DBIDUtil.ensureEnum(ids);
+    final int size = this.ids.size();
+    parent = new AtomicIntegerArray(size);
+    for(int i = 0; i < size; i++) {
+      parent.set(i, i);
+    }
+  }
+
+  /**
+   * Find the component of an element, by offset.
+   *
+   * @param cur Element offset
+   * @return Component id
+   */
+  public int find(int cur) {
+    assert (cur >= 0 && cur < parent.length());
+    int p = parent.get(cur);
+    while(cur != p) {
+      final int gp = parent.get(p);
+      if(p != gp) {
+        parent.compareAndSet(cur, p, gp); // Path halving, may fail.
+      }
+      cur = gp;
+      p = parent.get(cur);
+    }
+    return cur;
+  }
+
+  /**
+   * Join the components of two elements, by offset.
+   *
+   * @param first First element
+   * @param second Second element
+   * @return Component id, may be outdated by concurrent unions.
+   */
+  public int union(int first, int second) {
+    while(true) {
+      int a = find(first), b = find(second);
+      if(a == b) {
+        return a;
+      }
+      // Link the root with lower priority below the other.
+      if(Integer.compareUnsigned(priority(a), priority(b)) > 0) {
+        final int tmp = a;
+        a = b;
+        b = tmp;
+      }
+      if(parent.compareAndSet(a, a, b)) {
+        sizes = null;
+        return b;
+      }
+      // a is no longer a root, retry.
+    }
+  }
+
+  /**
+   * Test if two elements are connected, by offset.
+   *
+   * @param first First element
+   * @param second Second element
+   * @return {@code true} if they are in the same component.
+   */
+  public boolean isConnected(int first, int second) {
+    while(true) {
+      final int a = find(first), b = find(second);
+      if(a == b) {
+        return true;
+      }
+      if(parent.get(a) == a) {
+        return false; // Still a root, so they were not connected.
+      }
+    }
+  }
+
+  /**
+   * Linking priority of an element.
+   *
+   * @param i Element offset
+   * @return Priority, to be compared unsigned
+   */
+  private static int priority(int i) {
+    return i * 0x9E3779B9; // Bijective multiplicative hash
+  }
+
+  @Override
+  public int find(DBIDRef element) {
+    return find(ids.index(element));
+  }
+
+  @Override
+  public int union(DBIDRef first, DBIDRef second) {
+    return union(ids.index(first), ids.index(second));
+  }
+
+  @Override
+  public boolean isConnected(DBIDRef first, DBIDRef second) {
+    return isConnected(ids.index(first), ids.index(second));
+  }
+
+  @Override
+  public DBIDs getRoots() {
+    ArrayModifiableDBIDs roots = DBIDUtil.newArray();
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      if(parent.get(iter.getOffset()) == iter.getOffset()) {
+        roots.add(iter);
+      }
+    }
+    return roots;
+  }
+
+  @Override
+  public int size(int component) {
+    int[] s = sizes;
+    if(s == null) {
+      s = new int[parent.length()];
+      for(int i = 0; i < s.length; i++) {
+        s[find(i)]++;
+      }
+      sizes = s;
+    }
+    return s[component];
+  }
+}
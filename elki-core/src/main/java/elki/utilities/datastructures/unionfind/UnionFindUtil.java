@@ -0,0 +1,60 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.datastructures.unionfind;
+
+import elki.database.ids.StaticDBIDs;
+
+/**
+ * Union-find algorithm factory, to choose the best implementation.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - UnionFind
+ */
+public final class UnionFindUtil {
+  /**
+   * Private constructor. Static methods only.
+   */
+  private UnionFindUtil() {
+    // Do not use.
+  }
+
+  /**
+   * Make a new union-find for single-threaded use.
+   *
+   * @param ids Object IDs
+   * @return Union find instance
+   */
+  public static UnionFind make(StaticDBIDs ids) {
+    return new WeightedQuickUnionDBIDs(ids);
+  }
+
+  /**
+   * Make a new union-find that can be modified by multiple threads.
+   *
+   * @param ids Object IDs
+   * @return Union find instance
+   */
+  public static ConcurrentUnionFind makeConcurrent(StaticDBIDs ids) {
+    return new ConcurrentUnionFind(ids);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.utilities.datastructures.unionfind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRange;
+import elki.database.ids.DBIDUtil;
+
+/**
+ * Unit test for the concurrent union find.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ConcurrentUnionFindTest {
+  @Test
+  public void testTree() {
+    DBIDRange range = DBIDUtil.generateStaticDBIDRange(8);
+    UnionFind uf = UnionFindUtil.makeConcurrent(range);
+    DBIDArrayIter i1 = range.iter(), i2 = range.iter();
+    assertFalse(uf.isConnected(i1.seek(0), i2.seek(7)));
+    uf.union(i1.seek(0), i2.seek(1));
+    assertTrue(uf.isConnected(i1.seek(0), i2.seek(1)));
+    uf.union(i1.seek(2), i2.seek(3));
+    assertFalse(uf.isConnected(i1.seek(0), i2.seek(2)));
+    uf.union(i1.seek(0), i2.seek(2));
+    assertTrue(uf.isConnected(i1.seek(3), i2.seek(1)));
+    assertEquals(4, uf.size(uf.find(i1.seek(3))));
+    uf.union(i1.seek(4), i2.seek(5));
+    uf.union(i1.seek(6), i2.seek(7));
+    uf.union(i1.seek(4), i2.seek(6));
+    assertFalse(uf.isConnected(i1.seek(0), i2.seek(4)));
+    assertEquals(2, uf.getRoots().size());
+    uf.union(i1.seek(0), i2.seek(4));
+    assertEquals(1, uf.getRoots().size());
+    assertEquals(8, uf.size(uf.find(i1.seek(5))));
+    for(int i = 0; i < 8; i++) {
+      for(int j = 0; j < 8; j++) {
+        assertTrue(uf.isConnected(i1.seek(i), i2.seek(j)));
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrent() throws InterruptedException {
+    final int size = 100000, edges = 80000, nthreads = 4;
+    DBIDRange range = DBIDUtil.generateStaticDBIDRange(size);
+    final int[] a = new int[edges], b = new int[edges];
+    Random r = new Random(0L);
+    for(int i = 0; i < edges; i++) {
+      a[i] = r.nextInt(size);
+      b[i] = r.nextInt(size);
+    }
+    final ConcurrentUnionFind uf = UnionFindUtil.makeConcurrent(range);
+    Thread[] threads = new Thread[nthreads];
+    for(int t = 0; t < nthreads; t++) {
+      final int start = t * edges / nthreads, end = (t + 1) * edges / nthreads;
+      threads[t] = new Thread(() -> {
+        for(int i = start; i < end; i++) {
+          uf.union(a[i], b[i]);
+        }
+      });
+      threads[t].start();
+    }
+    for(Thread t : threads) {
+      t.join();
+    }
+    // Compare to the sequential union find:
+    WeightedQuickUnionInteger ref = new WeightedQuickUnionInteger().fullInit(size);
+    for(int i = 0; i < edges; i++) {
+      ref.union(a[i], b[i]);
+    }
+    assertEquals(ref.getRoots().size(), uf.getRoots().size());
+    for(int i = 0; i < edges; i++) {
+      assertTrue(uf.isConnected(a[i], b[i]));
+      final int c = r.nextInt(size);
+      assertEquals(ref.isConnected(a[i], c), uf.isConnected(a[i], c));
+      assertEquals(ref.size(ref.find(c)), uf.size(uf.find(c)));
+    }
+  }
+}
@@ -22,7 +22,11 @@ package elki.database;
 
 import java.util.Collection;
 
+import elki.data.DoubleBlockVector;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
 import elki.data.type.SimpleTypeInformation;
+import elki.data.type.VectorFieldTypeInformation;
 import elki.database.datastore.DataStoreFactory;
 import elki.database.datastore.DataStoreUtil;
 import elki.database.datastore.WritableDataStore;
@@ -31,6 +35,7 @@ import elki.database.ids.DBIDArrayIter;
 import elki.database.ids.DBIDUtil;
 import elki.database.ids.DBIDs;
 import elki.database.relation.DBIDView;
+import elki.database.relation.DoubleBlockRelation;
 import elki.database.relation.MaterializedRelation;
 import elki.database.relation.Relation;
 import elki.datasource.DatabaseConnection;
@@ -42,7 +47,9 @@ import elki.logging.Logging;
 import elki.logging.statistics.Duration;
 import elki.result.Metadata;
 import elki.utilities.documentation.Description;
+import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectListParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
@@ -81,6 +88,11 @@ public class StaticArrayDatabase extends AbstractDatabase {
    */
   protected DatabaseConnection databaseConnection;
 
+  /**
+   * Store double vector relations in a contiguous block.
+   */
+  protected boolean contiguous = false;
+
   /**
    * Constructor.
    *
@@ -88,8 +100,20 @@ public class StaticArrayDatabase extends AbstractDatabase {
    * @param indexFactories Indexes to add
    */
   public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories) {
+    this(databaseConnection, indexFactories, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param databaseConnection Database connection to get the initial data from.
+   * @param indexFactories Indexes to add
+   * @param contiguous Store double vector relations in a contiguous block
+   */
+  public StaticArrayDatabase(DatabaseConnection databaseConnection, Collection<? extends IndexFactory<?>> indexFactories, boolean contiguous) {
     super();
     this.databaseConnection = databaseConnection;
+    this.contiguous = contiguous;
     this.ids = null;
     this.idrep = null;
 
@@ -148,13 +172,18 @@ public class StaticArrayDatabase extends AbstractDatabase {
     int numrel = bundle.metaLength();
     for(int i = 0; i < numrel; i++) {
       SimpleTypeInformation<?> meta = bundle.meta(i);
-      @SuppressWarnings("unchecked")
-      SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
-      WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
-      for(it.seek(0); it.valid(); it.advance()) {
-        store.put(it, bundle.data(it.getOffset(), i));
+      Relation<?> relation = contiguous && isDenseVectorField(meta) ? //
+          makeBlockRelation(bundle, i, (VectorFieldTypeInformation<?>) meta) : null;
+      if(relation == null) {
+        @SuppressWarnings("unchecked")
+        SimpleTypeInformation<Object> ometa = (SimpleTypeInformation<Object>) meta;
+        WritableDataStore<Object> store = DataStoreUtil.makeStorage(ids, DataStoreFactory.HINT_DB, ometa.getRestrictionClass());
+        for(it.seek(0); it.valid(); it.advance()) {
+          store.put(it, bundle.data(it.getOffset(), i));
+        }
+        relation = new MaterializedRelation<>(null, ometa, ids, store);
       }
-      Relation<?> relation = new MaterializedRelation<>(null, ometa, ids, store);
+      final SimpleTypeInformation<?> ometa = relation.getDataTypeInformation();
       relations.add(relation);
       Metadata.hierarchyOf(this).addChild(relation);
 
@@ -180,6 +209,51 @@ public class StaticArrayDatabase extends AbstractDatabase {
     eventManager.fireObjectsInserted(ids);
   }
 
+  /**
+   * Test if a type can be stored in a contiguous block. Block vectors are
+   * double vectors, so other vector types are not converted, as this would
+   * change the type of the relation.
+   *
+   * @param meta Type information
+   * @return {@code true} for double vector fields
+   */
+  private static boolean isDenseVectorField(SimpleTypeInformation<?> meta) {
+    return meta instanceof VectorFieldTypeInformation //
+        && DoubleVector.class.isAssignableFrom(meta.getRestrictionClass());
+  }
+
+  /**
+   * Copy a dense vector column into a contiguous block relation.
+   *
+   * @param bundle Bundle to copy from
+   * @param col Column number
+   * @param meta Column type information
+   * @return Relation, or {@code null} if the data is too large
+   */
+  private DoubleBlockRelation makeBlockRelation(MultipleObjectsBundle bundle, int col, VectorFieldTypeInformation<?> meta) {
+    final int dim = meta.getDimensionality(), size = ids.size();
+    if((long) size * dim > Integer.MAX_VALUE - 8) {
+      LOG.warning("Too much data for a contiguous block, using regular storage instead.");
+      return null;
+    }
+    String[] labels = null;
+    if(dim > 0 && meta.getLabel(0) != null) {
+      labels = new String[dim];
+      for(int d = 0; d < dim; d++) {
+        labels[d] = meta.getLabel(d);
+      }
+    }
+    double[] block = new double[size * dim];
+    for(int j = 0, off = 0; j < size; j++, off += dim) {
+      NumberVector vec = (NumberVector) bundle.data(j, col);
+      for(int d = 0; d < dim; d++) {
+        block[off + d] = vec.doubleValue(d);
+      }
+    }
+    VectorFieldTypeInformation<DoubleBlockVector> type = new VectorFieldTypeInformation<>(DoubleBlockVector.FACTORY, dim, labels, DoubleBlockVector.VARIABLE_SERIALIZER);
+    return new DoubleBlockRelation(null, type, ids, block);
+  }
+
   @Override
   protected Logging getLogger() {
     return LOG;
@@ -191,6 +265,11 @@ public class StaticArrayDatabase extends AbstractDatabase {
    * @author Erich Schubert
    */
   public static class Par extends AbstractDatabase.Par {
+    /**
+     * Flag to store double vector relations in a contiguous block.
+     */
+    public static final OptionID CONTIGUOUS_ID = new OptionID("db.contiguous", "Store double vectors in a single contiguous array, to reduce memory usage and improve cache efficiency.");
+
     /**
      * Holds the database connection to get the initial data from.
      */
@@ -201,6 +280,11 @@ public class StaticArrayDatabase extends AbstractDatabase {
      */
     private Collection<? extends IndexFactory<?>> indexFactories;
 
+    /**
+     * Store double vector relations in a contiguous block.
+     */
+    protected boolean contiguous = false;
+
     @Override
     public void configure(Parameterization config) {
       super.configure(config);
@@ -211,11 +295,12 @@ public class StaticArrayDatabase extends AbstractDatabase {
       new ObjectListParameter<IndexFactory<?>>(INDEX_ID, IndexFactory.class) //
           .setOptional(true) //
           .grab(config, x -> indexFactories = x);
+      new Flag(CONTIGUOUS_ID).grab(config, x -> contiguous = x);
     }
 
     @Override
     public StaticArrayDatabase make() {
-      return new StaticArrayDatabase(databaseConnection, indexFactories);
+      return new StaticArrayDatabase(databaseConnection, indexFactories, contiguous);
     }
   }
 }
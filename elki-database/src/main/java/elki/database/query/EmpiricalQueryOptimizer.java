@@ -361,7 +361,7 @@ public class EmpiricalQueryOptimizer implements QueryOptimizer {
    */
   private <O> DistancePriorityIndex<O> makeMatrixIndex(Relation<? extends O> relation, Distance<? super O> distance) {
     // TODO: make sure there is not matrix already!
-    if(matrixIndex == null || relation.size() > 65536) {
+    if(matrixIndex == null) {
       return null;
     }
     long freeMemory = getFreeMemory();
@@ -41,6 +41,7 @@ import elki.distance.Distance;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.index.*;
 import elki.logging.Logging;
+import elki.parallel.ParallelCore;
 import elki.result.Metadata;
 import elki.similarity.DBIDSimilarity;
 import elki.similarity.Similarity;
@@ -106,6 +107,11 @@ public class QueryBuilder<O> {
    */
   public static final int FLAG_LOW_SELECTIVITY = 0b100_0000;
 
+  /**
+   * Flag indicating that linear scans should use multiple threads.
+   */
+  public static final int FLAG_PARALLEL = 0b1000_0000;
+
   /**
    * Flags that do not allow the optimizer to run.
    */
@@ -277,6 +283,27 @@ public class QueryBuilder<O> {
     return this;
   }
 
+  /**
+   * Use multiple threads for linear scans. The number of threads is controlled
+   * by the parallel core. Do not use this within tasks that already run in
+   * parallel.
+   *
+   * @return query builder, for chaining
+   */
+  public QueryBuilder<O> parallel() {
+    this.flags |= FLAG_PARALLEL;
+    return this;
+  }
+
+  /**
+   * Test whether linear scans should be run in parallel.
+   *
+   * @return {@code true} if parallel linear scans should be used
+   */
+  private boolean useParallel() {
+    return (flags & FLAG_PARALLEL) != 0 && ParallelCore.getCore().getParallelism() > 1;
+  }
+
   /**
    * Build a distance query.
    *
@@ -385,16 +412,17 @@ public class QueryBuilder<O> {
       return null;
     }
     logNotAccelerated("knn");
+    final boolean parallel = useParallel();
     // Slight optimizations of linear scans for primitive functions
     if(distanceQuery instanceof PrimitiveDistanceQuery) {
       final PrimitiveDistanceQuery<O> pdq = (PrimitiveDistanceQuery<O>) distanceQuery;
       if(EuclideanDistance.STATIC.equals(pdq.getDistance())) {
         final PrimitiveDistanceQuery<NumberVector> ndq = (PrimitiveDistanceQuery<NumberVector>) pdq;
-        return (KNNSearcher<O>) new LinearScanEuclideanKNNByObject<>(ndq);
+        return (KNNSearcher<O>) (parallel ? new ParallelLinearScanEuclideanKNNByObject<>(ndq) : new LinearScanEuclideanKNNByObject<>(ndq));
       }
-      return new LinearScanPrimitiveKNNByObject<>(pdq);
+      return parallel ? new ParallelLinearScanKNNByObject<>(pdq) : new LinearScanPrimitiveKNNByObject<>(pdq);
     }
-    return new LinearScanKNNByObject<>(distanceQuery);
+    return parallel ? new ParallelLinearScanKNNByObject<>(distanceQuery) : new LinearScanKNNByObject<>(distanceQuery);
   }
 
   /**
@@ -438,14 +466,15 @@ public class QueryBuilder<O> {
       return null;
     }
     logNotAccelerated("knn");
+    final boolean parallel = useParallel();
     // Slight optimizations of linear scans for primitive functions
     if(distanceQuery instanceof PrimitiveDistanceQuery) {
       final PrimitiveDistanceQuery<O> pdq = (PrimitiveDistanceQuery<O>) distanceQuery;
       if(EuclideanDistance.STATIC.equals(pdq.getDistance())) {
         final PrimitiveDistanceQuery<NumberVector> ndq = (PrimitiveDistanceQuery<NumberVector>) pdq;
-        return WrappedKNNDBIDByLookup.wrap(ndq.getRelation(), new LinearScanEuclideanKNNByObject<>(ndq));
+        return WrappedKNNDBIDByLookup.wrap(ndq.getRelation(), parallel ? new ParallelLinearScanEuclideanKNNByObject<>(ndq) : new LinearScanEuclideanKNNByObject<>(ndq));
       }
-      return WrappedKNNDBIDByLookup.wrap(pdq.getRelation(), new LinearScanPrimitiveKNNByObject<>(pdq));
+      return WrappedKNNDBIDByLookup.wrap(pdq.getRelation(), parallel ? new ParallelLinearScanKNNByObject<>(pdq) : new LinearScanPrimitiveKNNByObject<>(pdq));
     }
     return new LinearScanKNNByDBID<>(distanceQuery);
   }
@@ -491,16 +520,17 @@ public class QueryBuilder<O> {
       return null;
     }
     logNotAccelerated("range");
+    final boolean parallel = useParallel();
     // Slight optimizations of linear scans
     if(distanceQuery instanceof PrimitiveDistanceQuery) {
       final PrimitiveDistanceQuery<O> pdq = (PrimitiveDistanceQuery<O>) distanceQuery;
       if(EuclideanDistance.STATIC.equals(distance)) {
         final PrimitiveDistanceQuery<NumberVector> ndq = (PrimitiveDistanceQuery<NumberVector>) pdq;
-        return (RangeSearcher<O>) new LinearScanEuclideanRangeByObject<>(ndq);
+        return (RangeSearcher<O>) (parallel ? new ParallelLinearScanEuclideanRangeByObject<>(ndq) : new LinearScanEuclideanRangeByObject<>(ndq));
       }
-      return new LinearScanPrimitiveDistanceRangeByObject<>(pdq);
+      return parallel ? new ParallelLinearScanDistanceRangeByObject<>(pdq) : new LinearScanPrimitiveDistanceRangeByObject<>(pdq);
     }
-    return new LinearScanDistanceRangeByObject<>(distanceQuery);
+    return parallel ? new ParallelLinearScanDistanceRangeByObject<>(distanceQuery) : new LinearScanDistanceRangeByObject<>(distanceQuery);
   }
 
   /**
@@ -544,14 +574,15 @@ public class QueryBuilder<O> {
       return null;
     }
     logNotAccelerated("range");
+    final boolean parallel = useParallel();
     // Slight optimizations of linear scans
     if(distanceQuery instanceof PrimitiveDistanceQuery) {
       final PrimitiveDistanceQuery<O> pdq = (PrimitiveDistanceQuery<O>) distanceQuery;
       if(EuclideanDistance.STATIC.equals(distance)) {
         final PrimitiveDistanceQuery<NumberVector> ndq = (PrimitiveDistanceQuery<NumberVector>) pdq;
-        return WrappedRangeDBIDByLookup.wrap(ndq.getRelation(), new LinearScanEuclideanRangeByObject<>(ndq));
+        return WrappedRangeDBIDByLookup.wrap(ndq.getRelation(), parallel ? new ParallelLinearScanEuclideanRangeByObject<>(ndq) : new LinearScanEuclideanRangeByObject<>(ndq));
       }
-      return WrappedRangeDBIDByLookup.wrap(pdq.getRelation(), new LinearScanPrimitiveDistanceRangeByObject<>(pdq));
+      return WrappedRangeDBIDByLookup.wrap(pdq.getRelation(), parallel ? new ParallelLinearScanDistanceRangeByObject<>(pdq) : new LinearScanPrimitiveDistanceRangeByObject<>(pdq));
     }
     return new LinearScanDistanceRangeByDBID<>(distanceQuery);
   }
@@ -20,6 +20,8 @@
  */
 package elki.database.query.knn;
 
+import java.util.function.BiConsumer;
+
 import elki.data.NumberVector;
 import elki.database.ids.*;
 import elki.database.query.distance.PrimitiveDistanceQuery;
@@ -67,4 +69,9 @@ public class LinearScanEuclideanKNNByObject<O extends NumberVector> extends Line
     }
     return heap.toKNNListSqrt();
   }
+
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    batchKNN(SquaredEuclideanDistance.STATIC, queries, k, true, consumer);
+  }
 }
@@ -20,6 +20,8 @@
  */
 package elki.database.query.knn;
 
+import java.util.function.BiConsumer;
+
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
@@ -34,7 +36,7 @@ import elki.database.query.distance.DistanceQuery;
  * 
  * @param <O> relation object type
  */
-public class LinearScanKNNByDBID<O> implements KNNSearcher<DBIDRef>, LinearScanQuery {
+public class LinearScanKNNByDBID<O> implements BatchKNNSearcher<DBIDRef>, LinearScanQuery {
   /**
    * Hold the distance function to be used.
    */
@@ -61,4 +63,45 @@ public class LinearScanKNNByDBID<O> implements KNNSearcher<DBIDRef>, LinearScanQ
     }
     return heap.toKNNList();
   }
+
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    batchKNN(distanceQuery, queries, k, consumer);
+  }
+
+  /**
+   * Process a batch of queries, in blocks of {@link #BLOCKSIZE} queries. Each
+   * data object is compared to all queries of the current block.
+   *
+   * @param dq Distance query
+   * @param queries Query object IDs
+   * @param k Number of neighbors requested
+   * @param consumer Consumer for the results
+   */
+  protected static void batchKNN(DistanceQuery<?> dq, DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size(), bsize = Math.min(BLOCKSIZE, size);
+    final KNNHeap[] heaps = new KNNHeap[bsize];
+    final double[] max = new double[bsize];
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int start = 0; start < size; start += bsize) {
+      final int len = Math.min(bsize, size - start);
+      for(int j = 0; j < len; j++) {
+        heaps[j] = DBIDUtil.newHeap(k);
+        max[j] = Double.POSITIVE_INFINITY;
+      }
+      for(DBIDIter iter = dq.getRelation().iterDBIDs(); iter.valid(); iter.advance()) {
+        qiter.seek(start);
+        for(int j = 0; j < len; j++, qiter.advance()) {
+          final double dist = dq.distance(qiter, iter);
+          max[j] = dist <= max[j] ? heaps[j].insert(dist, iter) : max[j];
+        }
+      }
+      qiter.seek(start);
+      for(int j = 0; j < len; j++, qiter.advance()) {
+        consumer.accept(qiter, heaps[j].toKNNList());
+        heaps[j] = null;
+      }
+    }
+  }
 }
@@ -20,6 +20,8 @@
  */
 package elki.database.query.knn;
 
+import java.util.function.BiConsumer;
+
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
@@ -34,7 +36,7 @@ import elki.database.query.distance.DistanceQuery;
  * 
  * @param <O> relation object type
  */
-public class LinearScanKNNByObject<O> implements KNNSearcher<O>, LinearScanQuery {
+public class LinearScanKNNByObject<O> implements BatchKNNSearcher<O>, LinearScanQuery {
   /**
    * Hold the distance function to be used.
    */
@@ -61,4 +63,9 @@ public class LinearScanKNNByObject<O> implements KNNSearcher<O>, LinearScanQuery
     }
     return heap.toKNNList();
   }
+
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    LinearScanKNNByDBID.batchKNN(distanceQuery, queries, k, consumer);
+  }
 }
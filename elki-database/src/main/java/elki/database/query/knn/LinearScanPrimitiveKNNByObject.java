@@ -20,6 +20,9 @@
  */
 package elki.database.query.knn;
 
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.PrimitiveDistanceQuery;
@@ -40,7 +43,7 @@ import elki.distance.PrimitiveDistance;
  * 
  * @param <O> relation object type
  */
-public class LinearScanPrimitiveKNNByObject<O> implements KNNSearcher<O>, LinearScanQuery {
+public class LinearScanPrimitiveKNNByObject<O> implements BatchKNNSearcher<O>, LinearScanQuery {
   /**
    * Unboxed distance function.
    */
@@ -74,4 +77,50 @@ public class LinearScanPrimitiveKNNByObject<O> implements KNNSearcher<O>, Linear
     }
     return heap.toKNNList();
   }
+
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    batchKNN(rawdist, queries, k, false, consumer);
+  }
+
+  /**
+   * Process a batch of queries, in blocks of {@link #BLOCKSIZE} queries. Each
+   * data object is compared to all queries of the current block, such that the
+   * query objects remain in the CPU cache.
+   *
+   * @param rawdist Distance function
+   * @param queries Query object IDs
+   * @param k Number of neighbors requested
+   * @param sqrt Apply square root to the distances of the results
+   * @param consumer Consumer for the results
+   */
+  protected void batchKNN(PrimitiveDistance<? super O> rawdist, DBIDs queries, int k, boolean sqrt, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    final Relation<? extends O> relation = this.relation;
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size(), bsize = Math.min(BLOCKSIZE, size);
+    final ArrayList<O> objs = new ArrayList<>(bsize);
+    final KNNHeap[] heaps = new KNNHeap[bsize];
+    final double[] max = new double[bsize];
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int start = 0; start < size; start += bsize) {
+      final int len = Math.min(bsize, size - start);
+      objs.clear();
+      for(int j = 0; j < len; j++) {
+        objs.add(relation.get(qiter.seek(start + j)));
+        heaps[j] = DBIDUtil.newHeap(k);
+        max[j] = Double.POSITIVE_INFINITY;
+      }
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        final O obj = relation.get(iter);
+        for(int j = 0; j < len; j++) {
+          final double dist = rawdist.distance(objs.get(j), obj);
+          max[j] = dist <= max[j] ? heaps[j].insert(dist, iter) : max[j];
+        }
+      }
+      for(int j = 0; j < len; j++) {
+        consumer.accept(qiter.seek(start + j), sqrt ? heaps[j].toKNNListSqrt() : heaps[j].toKNNList());
+        heaps[j] = null;
+      }
+    }
+  }
 }
@@ -0,0 +1,51 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import elki.data.NumberVector;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Parallel linear scan for Euclidean kNN queries, which finds the nearest
+ * neighbors with squared Euclidean distances, and only computes the square
+ * root for the results.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @assoc - - - EuclideanDistance
+ * @assoc - - - SquaredEuclideanDistance
+ *
+ * @param <O> relation object type
+ */
+public class ParallelLinearScanEuclideanKNNByObject<O extends NumberVector> extends ParallelLinearScanKNNByObject<O> {
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public ParallelLinearScanEuclideanKNNByObject(PrimitiveDistanceQuery<O> distanceQuery) {
+    super(new PrimitiveDistanceQuery<>(distanceQuery.getRelation(), SquaredEuclideanDistance.STATIC), true);
+    assert (EuclideanDistance.STATIC.equals(distanceQuery.getDistance()));
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.knn;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+
+import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+
+/**
+ * Linear scan kNN query that splits the scan over the available processors.
+ * <p>
+ * Each thread keeps its own heap of candidates for a part of the relation, and
+ * the heaps are merged afterwards. This is useful for single queries over
+ * large relations, where the sequential scan is bound by a single core.
+ * Batches of queries are instead split into blocks of queries, and each thread
+ * scans the relation once for a block of queries.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @assoc - - - DistanceQuery
+ * @assoc - - - ParallelCore
+ *
+ * @param <O> relation object type
+ */
+public class ParallelLinearScanKNNByObject<O> implements BatchKNNSearcher<O>, LinearScanQuery {
+  /**
+   * Minimum number of objects to scan in a single task.
+   */
+  protected static final int MIN_BLOCKSIZE = 4096;
+
+  /**
+   * Distance query to use.
+   */
+  protected DistanceQuery<O> distanceQuery;
+
+  /**
+   * Apply the square root to the resulting distances.
+   */
+  protected boolean sqrt;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public ParallelLinearScanKNNByObject(DistanceQuery<O> distanceQuery) {
+    this(distanceQuery, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   * @param sqrt Apply the square root to the resulting distances
+   */
+  protected ParallelLinearScanKNNByObject(DistanceQuery<O> distanceQuery, boolean sqrt) {
+    super();
+    this.distanceQuery = distanceQuery;
+    this.sqrt = sqrt;
+  }
+
+  /**
+   * Get the objects to scan. The IDs are fetched for every query, as the
+   * relation may have been modified since the last query.
+   *
+   * @return Objects to scan
+   */
+  protected ArrayDBIDs getIDs() {
+    return DBIDUtil.ensureArray(distanceQuery.getRelation().getDBIDs());
+  }
+
+  @Override
+  public KNNList getKNN(O obj, int k) {
+    final ArrayDBIDs ids = getIDs();
+    final ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      final int blocksize = Math.max(MIN_BLOCKSIZE, (ids.size() - 1) / (core.getParallelism() * 4) + 1);
+      final KNNHeap heap = core.invoke(new KNNTask(obj, k, ids, 0, ids.size(), blocksize));
+      return sqrt ? heap.toKNNListSqrt() : heap.toKNNList();
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size();
+    if(size <= BLOCKSIZE) {
+      // Too few queries to split, parallelize each scan instead:
+      final Relation<? extends O> relation = distanceQuery.getRelation();
+      for(DBIDIter it = aqueries.iter(); it.valid(); it.advance()) {
+        consumer.accept(it, getKNN(relation.get(it), k));
+      }
+      return;
+    }
+    // Process chunks of blocks in parallel, to bound the memory use:
+    final ArrayDBIDs ids = getIDs();
+    final int chunksize = BLOCKSIZE * (ParallelCore.getCore().getParallelism() << 2);
+    final KNNList[] results = new KNNList[Math.min(size, chunksize)];
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int cstart = 0; cstart < size; cstart += chunksize) {
+      final int cend = Math.min(size, cstart + chunksize), offset = cstart;
+      ParallelExecutor.run(cstart, cend, BLOCKSIZE, (start, end) -> scanBlock(ids, aqueries, start, end, k, results, offset));
+      qiter.seek(cstart);
+      for(int j = 0; j < cend - cstart; j++, qiter.advance()) {
+        consumer.accept(qiter, results[j]);
+        results[j] = null;
+      }
+    }
+  }
+
+  /**
+   * Scan the relation for a range of queries, in blocks of {@link #BLOCKSIZE}
+   * queries. Each data object is compared to all queries of the current block.
+   *
+   * @param ids Objects to scan
+   * @param queries Query object IDs
+   * @param qstart First query offset
+   * @param qend End query offset (exclusive)
+   * @param k Number of neighbors requested
+   * @param results Output array
+   * @param offset Offset of the output array
+   */
+  private void scanBlock(ArrayDBIDs ids, ArrayDBIDs queries, int qstart, int qend, int k, KNNList[] results, int offset) {
+    final DistanceQuery<O> dq = distanceQuery;
+    final int bsize = Math.min(BLOCKSIZE, qend - qstart);
+    final KNNHeap[] heaps = new KNNHeap[bsize];
+    final double[] max = new double[bsize];
+    final DBIDArrayIter qiter = queries.iter();
+    for(int start = qstart; start < qend; start += bsize) {
+      final int len = Math.min(bsize, qend - start);
+      for(int j = 0; j < len; j++) {
+        heaps[j] = DBIDUtil.newHeap(k);
+        max[j] = Double.POSITIVE_INFINITY;
+      }
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        qiter.seek(start);
+        for(int j = 0; j < len; j++, qiter.advance()) {
+          final double dist = dq.distance(qiter, iter);
+          max[j] = dist <= max[j] ? heaps[j].insert(dist, iter) : max[j];
+        }
+      }
+      for(int j = 0; j < len; j++) {
+        results[start - offset + j] = sqrt ? heaps[j].toKNNListSqrt() : heaps[j].toKNNList();
+        heaps[j] = null;
+      }
+    }
+  }
+
+  /**
+   * Task to scan a range of the relation.
+   *
+   * @author agent
+   */
+  private class KNNTask extends RecursiveTask<KNNHeap> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Query object.
+     */
+    private O obj;
+
+    /**
+     * Number of neighbors.
+     */
+    private int k;
+
+    /**
+     * Objects to scan.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Range to scan.
+     */
+    private int start, end;
+
+    /**
+     * Maximum number of objects to scan without splitting.
+     */
+    private int blocksize;
+
+    /**
+     * Constructor.
+     *
+     * @param obj Query object
+     * @param k Number of neighbors
+     * @param ids Objects to scan
+     * @param start First offset
+     * @param end End offset (exclusive)
+     * @param blocksize Maximum block size
+     */
+    KNNTask(O obj, int k, ArrayDBIDs ids, int start, int end, int blocksize) {
+      this.obj = obj;
+      this.k = k;
+      this.ids = ids;
+      this.start = start;
+      this.end = end;
+      this.blocksize = blocksize;
+    }
+
+    @Override
+    protected KNNHeap compute() {
+      if(end - start > blocksize) {
+        final int mid = (start + end) >>> 1;
+        KNNTask other = new KNNTask(obj, k, ids, mid, end, blocksize);
+        other.fork();
+        end = mid;
+        KNNHeap heap = compute();
+        // Merge the candidates of the other half:
+        for(DoubleDBIDListIter it = other.join().toKNNList().iter(); it.valid(); it.advance()) {
+          heap.insert(it.doubleValue(), it);
+        }
+        return heap;
+      }
+      final DistanceQuery<O> dq = distanceQuery;
+      final KNNHeap heap = DBIDUtil.newHeap(k);
+      double max = Double.POSITIVE_INFINITY;
+      for(DBIDArrayIter iter = ids.iter().seek(start); iter.getOffset() < end; iter.advance()) {
+        final double dist = dq.distance(obj, iter);
+        max = dist <= max ? heap.insert(dist, iter) : max;
+      }
+      return heap;
+    }
+  }
+}
@@ -20,6 +20,8 @@
  */
 package elki.database.query.range;
 
+import java.util.function.BiConsumer;
+
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
@@ -34,7 +36,7 @@ import elki.database.query.distance.DistanceQuery;
  *
  * @param <O> relation object type
  */
-public class LinearScanDistanceRangeByDBID<O> implements RangeSearcher<DBIDRef>, LinearScanQuery {
+public class LinearScanDistanceRangeByDBID<O> implements BatchRangeSearcher<DBIDRef>, LinearScanQuery {
   /**
    * Distance to use.
    */
@@ -61,4 +63,45 @@ public class LinearScanDistanceRangeByDBID<O> implements RangeSearcher<DBIDRef>,
     }
     return result;
   }
+
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    batchRange(distanceQuery, queries, range, consumer);
+  }
+
+  /**
+   * Process a batch of queries, in blocks of {@link #BLOCKSIZE} queries. Each
+   * data object is compared to all queries of the current block.
+   *
+   * @param dq Distance query
+   * @param queries Query object IDs
+   * @param range Query radius
+   * @param consumer Consumer for the results
+   */
+  protected static void batchRange(DistanceQuery<?> dq, DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size(), bsize = Math.min(BLOCKSIZE, size);
+    final ModifiableDoubleDBIDList[] results = new ModifiableDoubleDBIDList[bsize];
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int start = 0; start < size; start += bsize) {
+      final int len = Math.min(bsize, size - start);
+      for(int j = 0; j < len; j++) {
+        results[j] = DBIDUtil.newDistanceDBIDList();
+      }
+      for(DBIDIter iter = dq.getRelation().iterDBIDs(); iter.valid(); iter.advance()) {
+        qiter.seek(start);
+        for(int j = 0; j < len; j++, qiter.advance()) {
+          final double currentDistance = dq.distance(qiter, iter);
+          if(currentDistance <= range) {
+            results[j].add(currentDistance, iter);
+          }
+        }
+      }
+      qiter.seek(start);
+      for(int j = 0; j < len; j++, qiter.advance()) {
+        consumer.accept(qiter, results[j].sort());
+        results[j] = null;
+      }
+    }
+  }
 }
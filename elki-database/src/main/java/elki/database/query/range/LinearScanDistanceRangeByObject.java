@@ -20,6 +20,8 @@
  */
 package elki.database.query.range;
 
+import java.util.function.BiConsumer;
+
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
@@ -34,7 +36,7 @@ import elki.database.query.distance.DistanceQuery;
  *
  * @param <O> relation object type
  */
-public class LinearScanDistanceRangeByObject<O> implements RangeSearcher<O>, LinearScanQuery {
+public class LinearScanDistanceRangeByObject<O> implements BatchRangeSearcher<O>, LinearScanQuery {
   /**
    * Distance to use.
    */
@@ -61,4 +63,9 @@ public class LinearScanDistanceRangeByObject<O> implements RangeSearcher<O>, Lin
     }
     return result;
   }
+
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    LinearScanDistanceRangeByDBID.batchRange(distanceQuery, queries, range, consumer);
+  }
 }
@@ -20,9 +20,11 @@
  */
 package elki.database.query.range;
 
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+
 import elki.data.NumberVector;
-import elki.database.ids.DBIDIter;
-import elki.database.ids.ModifiableDoubleDBIDList;
+import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.relation.Relation;
@@ -38,7 +40,7 @@ import elki.distance.minkowski.SquaredEuclideanDistance;
  * 
  * @param <O> relation object type
  */
-public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements RangeSearcher<O>, LinearScanQuery {
+public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements BatchRangeSearcher<O>, LinearScanQuery {
   /**
    * Relation to scan.
    */
@@ -68,4 +70,38 @@ public class LinearScanEuclideanRangeByObject<O extends NumberVector> implements
     }
     return result;
   }
+
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    final Relation<? extends O> relation = this.relation;
+    final SquaredEuclideanDistance squared = SquaredEuclideanDistance.STATIC;
+    float frange = Math.nextUp((float) range);
+    final double sqrange = frange * frange;
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size(), bsize = Math.min(BLOCKSIZE, size);
+    final ArrayList<O> objs = new ArrayList<>(bsize);
+    final ModifiableDoubleDBIDList[] results = new ModifiableDoubleDBIDList[bsize];
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int start = 0; start < size; start += bsize) {
+      final int len = Math.min(bsize, size - start);
+      objs.clear();
+      for(int j = 0; j < len; j++) {
+        objs.add(relation.get(qiter.seek(start + j)));
+        results[j] = DBIDUtil.newDistanceDBIDList();
+      }
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        final O obj = relation.get(iter);
+        for(int j = 0; j < len; j++) {
+          final double sqdistance = squared.distance(objs.get(j), obj);
+          if(sqdistance <= sqrange) {
+            results[j].add(Math.sqrt(sqdistance), iter);
+          }
+        }
+      }
+      for(int j = 0; j < len; j++) {
+        consumer.accept(qiter.seek(start + j), results[j].sort());
+        results[j] = null;
+      }
+    }
+  }
 }
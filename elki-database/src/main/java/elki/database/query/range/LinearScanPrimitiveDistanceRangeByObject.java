@@ -20,6 +20,9 @@
  */
 package elki.database.query.range;
 
+import java.util.ArrayList;
+import java.util.function.BiConsumer;
+
 import elki.database.ids.*;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.distance.PrimitiveDistanceQuery;
@@ -39,7 +42,7 @@ import elki.distance.PrimitiveDistance;
  * 
  * @param <O> relation object type
  */
-public class LinearScanPrimitiveDistanceRangeByObject<O> implements RangeSearcher<O>, LinearScanQuery {
+public class LinearScanPrimitiveDistanceRangeByObject<O> implements BatchRangeSearcher<O>, LinearScanQuery {
   /**
    * Distance query.
    */
@@ -67,4 +70,36 @@ public class LinearScanPrimitiveDistanceRangeByObject<O> implements RangeSearche
     }
     return result;
   }
+
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    final PrimitiveDistance<? super O> rawdist = this.distance.getDistance();
+    final Relation<? extends O> relation = this.distance.getRelation();
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size(), bsize = Math.min(BLOCKSIZE, size);
+    final ArrayList<O> objs = new ArrayList<>(bsize);
+    final ModifiableDoubleDBIDList[] results = new ModifiableDoubleDBIDList[bsize];
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int start = 0; start < size; start += bsize) {
+      final int len = Math.min(bsize, size - start);
+      objs.clear();
+      for(int j = 0; j < len; j++) {
+        objs.add(relation.get(qiter.seek(start + j)));
+        results[j] = DBIDUtil.newDistanceDBIDList();
+      }
+      for(DBIDIter iter = relation.iterDBIDs(); iter.valid(); iter.advance()) {
+        final O obj = relation.get(iter);
+        for(int j = 0; j < len; j++) {
+          final double distance = rawdist.distance(objs.get(j), obj);
+          if(distance <= range) {
+            results[j].add(distance, iter);
+          }
+        }
+      }
+      for(int j = 0; j < len; j++) {
+        consumer.accept(qiter.seek(start + j), results[j].sort());
+        results[j] = null;
+      }
+    }
+  }
 }
@@ -20,7 +20,12 @@
  */
 package elki.database.query.range;
 
+import java.util.function.BiConsumer;
+
 import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDList;
 import elki.database.ids.ModifiableDoubleDBIDList;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.similarity.PrimitiveSimilarityQuery;
@@ -40,7 +45,7 @@ import elki.similarity.PrimitiveSimilarity;
  *
  * @param <O> relation object type
  */
-public class LinearScanPrimitiveSimilarityRangeByObject<O> implements RangeSearcher<O>, LinearScanQuery {
+public class LinearScanPrimitiveSimilarityRangeByObject<O> implements BatchRangeSearcher<O>, LinearScanQuery {
   /**
    * Similarity query.
    */
@@ -68,4 +73,12 @@ public class LinearScanPrimitiveSimilarityRangeByObject<O> implements RangeSearc
     }
     return result;
   }
+
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    final Relation<? extends O> relation = this.sim.getRelation();
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      consumer.accept(it, getRange(relation.get(it), range));
+    }
+  }
 }
@@ -20,10 +20,16 @@
  */
 package elki.database.query.range;
 
+import java.util.function.BiConsumer;
+
 import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDList;
 import elki.database.ids.ModifiableDoubleDBIDList;
 import elki.database.query.LinearScanQuery;
 import elki.database.query.similarity.SimilarityQuery;
+import elki.database.relation.Relation;
 
 /**
  * Default linear scan range query class.
@@ -35,7 +41,7 @@ import elki.database.query.similarity.SimilarityQuery;
  *
  * @param <O> relation object type
  */
-public class LinearScanSimilarityRangeByObject<O> implements RangeSearcher<O>, LinearScanQuery {
+public class LinearScanSimilarityRangeByObject<O> implements BatchRangeSearcher<O>, LinearScanQuery {
   /**
    * Hold the similarity function to be used.
    */
@@ -61,4 +67,12 @@ public class LinearScanSimilarityRangeByObject<O> implements RangeSearcher<O>, L
     }
     return result;
   }
+
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    final Relation<? extends O> relation = simQuery.getRelation();
+    for(DBIDIter it = queries.iter(); it.valid(); it.advance()) {
+      consumer.accept(it, getRange(relation.get(it), range));
+    }
+  }
 }
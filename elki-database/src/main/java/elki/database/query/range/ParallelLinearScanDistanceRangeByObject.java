@@ -0,0 +1,251 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.range;
+
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+
+import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
+
+/**
+ * Linear scan range query that splits the scan over the available processors.
+ * <p>
+ * Each thread collects the results for a part of the relation, and the partial
+ * results are concatenated in the order of the relation afterwards. Batches of
+ * queries are instead split into blocks of queries, and each thread scans the
+ * relation once for a block of queries.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @assoc - - - DistanceQuery
+ * @assoc - - - ParallelCore
+ *
+ * @param <O> relation object type
+ */
+public class ParallelLinearScanDistanceRangeByObject<O> implements BatchRangeSearcher<O>, LinearScanQuery {
+  /**
+   * Minimum number of objects to scan in a single task.
+   */
+  protected static final int MIN_BLOCKSIZE = 4096;
+
+  /**
+   * Distance query to use.
+   */
+  protected DistanceQuery<O> distanceQuery;
+
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public ParallelLinearScanDistanceRangeByObject(DistanceQuery<O> distanceQuery) {
+    super();
+    this.distanceQuery = distanceQuery;
+  }
+
+  /**
+   * Get the objects to scan. The IDs are fetched for every query, as the
+   * relation may have been modified since the last query.
+   *
+   * @return Objects to scan
+   */
+  protected ArrayDBIDs getIDs() {
+    return DBIDUtil.ensureArray(distanceQuery.getRelation().getDBIDs());
+  }
+
+  @Override
+  public ModifiableDoubleDBIDList getRange(O obj, double range, ModifiableDoubleDBIDList result) {
+    final ArrayDBIDs ids = getIDs();
+    final ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      final int blocksize = Math.max(MIN_BLOCKSIZE, (ids.size() - 1) / (core.getParallelism() * 4) + 1);
+      final DoubleDBIDList res = core.invoke(new RangeTask(obj, range, ids, 0, ids.size(), blocksize));
+      for(DoubleDBIDListIter it = res.iter(); it.valid(); it.advance()) {
+        result.add(it.doubleValue(), it);
+      }
+      return result;
+    }
+    finally {
+      core.disconnect();
+    }
+  }
+
+  @Override
+  public void getRange(DBIDs queries, double range, BiConsumer<? super DBIDRef, ? super DoubleDBIDList> consumer) {
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size();
+    if(size <= BLOCKSIZE) {
+      // Too few queries to split, parallelize each scan instead:
+      final Relation<? extends O> relation = distanceQuery.getRelation();
+      for(DBIDIter it = aqueries.iter(); it.valid(); it.advance()) {
+        consumer.accept(it, getRange(relation.get(it), range, DBIDUtil.newDistanceDBIDList()).sort());
+      }
+      return;
+    }
+    // Process chunks of blocks in parallel, to bound the memory use:
+    final ArrayDBIDs ids = getIDs();
+    final int chunksize = BLOCKSIZE * (ParallelCore.getCore().getParallelism() << 2);
+    final ModifiableDoubleDBIDList[] results = new ModifiableDoubleDBIDList[Math.min(size, chunksize)];
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int cstart = 0; cstart < size; cstart += chunksize) {
+      final int cend = Math.min(size, cstart + chunksize), offset = cstart;
+      ParallelExecutor.run(cstart, cend, BLOCKSIZE, (start, end) -> scanBlock(ids, aqueries, start, end, range, results, offset));
+      qiter.seek(cstart);
+      for(int j = 0; j < cend - cstart; j++, qiter.advance()) {
+        consumer.accept(qiter, results[j].sort());
+        results[j] = null;
+      }
+    }
+  }
+
+  /**
+   * Scan the relation for a range of queries, in blocks of {@link #BLOCKSIZE}
+   * queries. Each data object is compared to all queries of the current block.
+   *
+   * @param ids Objects to scan
+   * @param queries Query object IDs
+   * @param qstart First query offset
+   * @param qend End query offset (exclusive)
+   * @param range Query radius
+   * @param results Output array
+   * @param offset Offset of the output array
+   */
+  protected void scanBlock(ArrayDBIDs ids, ArrayDBIDs queries, int qstart, int qend, double range, ModifiableDoubleDBIDList[] results, int offset) {
+    final DistanceQuery<O> dq = distanceQuery;
+    final DBIDArrayIter qiter = queries.iter();
+    for(int start = qstart; start < qend; start += BLOCKSIZE) {
+      final int len = Math.min(BLOCKSIZE, qend - start);
+      for(int j = 0; j < len; j++) {
+        results[start - offset + j] = DBIDUtil.newDistanceDBIDList();
+      }
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        qiter.seek(start);
+        for(int j = 0; j < len; j++, qiter.advance()) {
+          final double dist = dq.distance(qiter, iter);
+          if(dist <= range) {
+            results[start - offset + j].add(dist, iter);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Scan a part of the relation.
+   *
+   * @param obj Query object
+   * @param range Query radius
+   * @param iter Iterator, positioned at the first object
+   * @param end End offset (exclusive)
+   * @param result Output list
+   */
+  protected void scan(O obj, double range, DBIDArrayIter iter, int end, ModifiableDoubleDBIDList result) {
+    final DistanceQuery<O> dq = distanceQuery;
+    for(; iter.getOffset() < end; iter.advance()) {
+      final double currentDistance = dq.distance(obj, iter);
+      if(currentDistance <= range) {
+        result.add(currentDistance, iter);
+      }
+    }
+  }
+
+  /**
+   * Task to scan a range of the relation.
+   *
+   * @author agent
+   */
+  private class RangeTask extends RecursiveTask<ModifiableDoubleDBIDList> {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Query object.
+     */
+    private O obj;
+
+    /**
+     * Query radius.
+     */
+    private double range;
+
+    /**
+     * Objects to scan.
+     */
+    private ArrayDBIDs ids;
+
+    /**
+     * Range to scan.
+     */
+    private int start, end;
+
+    /**
+     * Maximum number of objects to scan without splitting.
+     */
+    private int blocksize;
+
+    /**
+     * Constructor.
+     *
+     * @param obj Query object
+     * @param range Query radius
+     * @param ids Objects to scan
+     * @param start First offset
+     * @param end End offset (exclusive)
+     * @param blocksize Maximum block size
+     */
+    RangeTask(O obj, double range, ArrayDBIDs ids, int start, int end, int blocksize) {
+      this.obj = obj;
+      this.range = range;
+      this.ids = ids;
+      this.start = start;
+      this.end = end;
+      this.blocksize = blocksize;
+    }
+
+    @Override
+    protected ModifiableDoubleDBIDList compute() {
+      if(end - start > blocksize) {
+        final int mid = (start + end) >>> 1;
+        RangeTask other = new RangeTask(obj, range, ids, mid, end, blocksize);
+        other.fork();
+        end = mid;
+        ModifiableDoubleDBIDList result = compute();
+        // Append the results of the other half, to keep the relation order:
+        for(DoubleDBIDListIter it = other.join().iter(); it.valid(); it.advance()) {
+          result.add(it.doubleValue(), it);
+        }
+        return result;
+      }
+      ModifiableDoubleDBIDList result = DBIDUtil.newDistanceDBIDList();
+      scan(obj, range, ids.iter().seek(start), end, result);
+      return result;
+    }
+  }
+}
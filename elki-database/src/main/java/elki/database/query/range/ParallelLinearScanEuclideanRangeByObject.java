@@ -0,0 +1,95 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query.range;
+
+import elki.data.NumberVector;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.ModifiableDoubleDBIDList;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+
+/**
+ * Parallel linear scan for Euclidean distance range queries, which compares
+ * squared Euclidean distances, and only computes the square root for the
+ * results.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @assoc - - - SquaredEuclideanDistance
+ *
+ * @param <O> relation object type
+ */
+public class ParallelLinearScanEuclideanRangeByObject<O extends NumberVector> extends ParallelLinearScanDistanceRangeByObject<O> {
+  /**
+   * Constructor.
+   *
+   * @param distanceQuery Distance function to use
+   */
+  public ParallelLinearScanEuclideanRangeByObject(DistanceQuery<O> distanceQuery) {
+    super(distanceQuery);
+  }
+
+  @Override
+  protected void scan(O obj, double range, DBIDArrayIter iter, int end, ModifiableDoubleDBIDList result) {
+    final Relation<? extends O> relation = distanceQuery.getRelation();
+    final SquaredEuclideanDistance squared = SquaredEuclideanDistance.STATIC;
+    float frange = Math.nextUp((float) range);
+    final double sqrange = frange * frange;
+    for(; iter.getOffset() < end; iter.advance()) {
+      final double sqdistance = squared.distance(obj, relation.get(iter));
+      if(sqdistance <= sqrange) {
+        result.add(Math.sqrt(sqdistance), iter);
+      }
+    }
+  }
+
+  @Override
+  protected void scanBlock(ArrayDBIDs ids, ArrayDBIDs queries, int qstart, int qend, double range, ModifiableDoubleDBIDList[] results, int offset) {
+    final Relation<? extends O> relation = distanceQuery.getRelation();
+    final SquaredEuclideanDistance squared = SquaredEuclideanDistance.STATIC;
+    float frange = Math.nextUp((float) range);
+    final double sqrange = frange * frange;
+    final NumberVector[] qobjs = new NumberVector[Math.min(BLOCKSIZE, qend - qstart)];
+    final DBIDArrayIter qiter = queries.iter();
+    for(int start = qstart; start < qend; start += BLOCKSIZE) {
+      final int len = Math.min(BLOCKSIZE, qend - start);
+      qiter.seek(start);
+      for(int j = 0; j < len; j++, qiter.advance()) {
+        qobjs[j] = relation.get(qiter);
+        results[start - offset + j] = DBIDUtil.newDistanceDBIDList();
+      }
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        final O obj = relation.get(iter);
+        for(int j = 0; j < len; j++) {
+          final double sqdistance = squared.distance(qobjs[j], obj);
+          if(sqdistance <= sqrange) {
+            results[start - offset + j].add(Math.sqrt(sqdistance), iter);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import java.util.function.BiConsumer;
+
+import elki.data.DoubleBlockVector;
+import elki.data.NumberVector;
+import elki.data.type.VectorFieldTypeInformation;
+import elki.database.ids.*;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * Static relation of dense vectors, stored in a single contiguous row-major
+ * {@code double[]} block instead of one object per DBID.
+ * <p>
+ * This avoids the object headers and pointer indirections of individual
+ * vectors, and improves the cache behavior of linear scans. The vectors
+ * returned by {@link #get} are lightweight {@link DoubleBlockVector} views onto
+ * the shared block, which distance functions may use to access the data
+ * directly.
+ * <p>
+ * This relation does not support modifications.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - DoubleBlockVector
+ */
+public class DoubleBlockRelation implements Relation<DoubleBlockVector> {
+  /**
+   * Type information.
+   */
+  private final VectorFieldTypeInformation<DoubleBlockVector> type;
+
+  /**
+   * The DBIDs this is defined for, in the order of the rows.
+   */
+  private final DBIDEnum ids;
+
+  /**
+   * Data block, row-major.
+   */
+  private final double[] block;
+
+  /**
+   * Dimensionality.
+   */
+  private final int dim;
+
+  /**
+   * The relation name.
+   */
+  private String name;
+
+  /**
+   * Constructor.
+   *
+   * @param name Name
+   * @param type Type information
+   * @param ids IDs, in the order of the rows
+   * @param block Data block, row-major
+   */
+  public DoubleBlockRelation(String name, VectorFieldTypeInformation<DoubleBlockVector> type, DBIDs ids, double[] block) {
+    super();
+    this.type = type;
+    this.ids = DBIDUtil.ensureEnum(ids);
+    this.name = name;
+    this.dim = type.getDimensionality();
+    this.block = block;
+    if(block.length != (long) ids.size() * dim) {
+      throw new IllegalArgumentException("Block size does not match " + ids.size() + " rows of dimensionality " + dim);
+    }
+  }
+
+  /**
+   * Copy the data of an existing relation into a contiguous block.
+   *
+   * @param name Name
+   * @param ids IDs, in the order of the rows
+   * @param dim Dimensionality
+   * @param labels Column labels, may be {@code null}
+   * @param source Source relation
+   * @return New relation
+   */
+  public static DoubleBlockRelation copyOf(String name, DBIDs ids, int dim, String[] labels, Relation<? extends NumberVector> source) {
+    final long size = (long) ids.size() * dim;
+    if(size > Integer.MAX_VALUE - 8) {
+      throw new AbortException("Too much data for a single contiguous block: " + ids.size() + " x " + dim);
+    }
+    double[] block = new double[(int) size];
+    int off = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), off += dim) {
+      NumberVector vec = source.get(it);
+      assert vec.getDimensionality() == dim : "Inconsistent dimensionality.";
+      for(int d = 0; d < dim; d++) {
+        block[off + d] = vec.doubleValue(d);
+      }
+    }
+    VectorFieldTypeInformation<DoubleBlockVector> type = new VectorFieldTypeInformation<>(DoubleBlockVector.FACTORY, dim, labels, DoubleBlockVector.VARIABLE_SERIALIZER);
+    return new DoubleBlockRelation(name, type, ids, block);
+  }
+
+  @Override
+  public DoubleBlockVector get(DBIDRef id) {
+    return new DoubleBlockVector(block, ids.index(id) * dim, dim);
+  }
+
+  /**
+   * Get the offset of an object in the data block.
+   *
+   * @param id Object
+   * @return Offset of the first value
+   */
+  public int getOffset(DBIDRef id) {
+    return ids.index(id) * dim;
+  }
+
+  /**
+   * Get the shared data block. Do not modify!
+   *
+   * @return Data block
+   */
+  public double[] getBlock() {
+    return block;
+  }
+
+  /**
+   * Get the dimensionality.
+   *
+   * @return Dimensionality
+   */
+  public int getDimensionality() {
+    return dim;
+  }
+
+  @Override
+  public void forEach(BiConsumer<? super DBIDRef, ? super DoubleBlockVector> action) {
+    int off = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance(), off += dim) {
+      action.accept(it, new DoubleBlockVector(block, off, dim));
+    }
+  }
+
+  @Override
+  public VectorFieldTypeInformation<DoubleBlockVector> getDataTypeInformation() {
+    return type;
+  }
+
+  @Override
+  public DBIDs getDBIDs() {
+    return ids;
+  }
+
+  @Override
+  public DBIDIter iterDBIDs() {
+    return ids.iter();
+  }
+
+  @Override
+  public int size() {
+    return ids.size();
+  }
+
+  @Override
+  public String getLongName() {
+    return name != null ? name : type.toString();
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.*;
+import elki.database.query.knn.BatchKNNSearcher;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.query.range.BatchRangeSearcher;
+import elki.database.query.range.RangeSearcher;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.Distance;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.ManhattanDistance;
+
+/**
+ * Unit test for the batch kNN and range queries of the linear scans.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class LinearScanBatchQueryTest {
+  @Test
+  public void testEuclidean() {
+    testBatchQueries(makeRelation(), EuclideanDistance.STATIC, 0.3);
+  }
+
+  @Test
+  public void testManhattan() {
+    testBatchQueries(makeRelation(), ManhattanDistance.STATIC, 0.4);
+  }
+
+  /**
+   * Compare batch queries to individual queries.
+   *
+   * @param rel Relation
+   * @param dist Distance
+   * @param range Query radius
+   */
+  private void testBatchQueries(Relation<NumberVector> rel, Distance<? super NumberVector> dist, double range) {
+    final int k = 7;
+    // More queries than fit into a single block:
+    ArrayModifiableDBIDs queries = DBIDUtil.newArray(DBIDUtil.randomSample(rel.getDBIDs(), 150, 1L));
+    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(rel, dist).linearOnly().kNNByDBID(k);
+    assertTrue("Not a linear scan.", knnq instanceof LinearScanQuery);
+    assertTrue("Not a batch searcher.", knnq instanceof BatchKNNSearcher);
+    DBIDArrayIter qiter = queries.iter();
+    int[] count = new int[1];
+    BatchKNNSearcher.getKNN(knnq, queries, k, (id, knn) -> {
+      assertTrue("Wrong query order.", DBIDUtil.equal(qiter.seek(count[0]++), id));
+      assertSameResults(knnq.getKNN(id, k), knn);
+    });
+    assertEquals("Not all queries answered.", queries.size(), count[0]);
+
+    RangeSearcher<DBIDRef> rq = new QueryBuilder<>(rel, dist).linearOnly().rangeByDBID(range);
+    assertTrue("Not a linear scan.", rq instanceof LinearScanQuery);
+    assertTrue("Not a batch searcher.", rq instanceof BatchRangeSearcher);
+    count[0] = 0;
+    BatchRangeSearcher.getRange(rq, queries, range, (id, res) -> {
+      assertTrue("Wrong query order.", DBIDUtil.equal(qiter.seek(count[0]++), id));
+      assertSameResults(rq.getRange(id, range), res);
+    });
+    assertEquals("Not all queries answered.", queries.size(), count[0]);
+  }
+
+  /**
+   * Compare two result lists.
+   *
+   * @param expected Expected result
+   * @param actual Actual result
+   */
+  private static void assertSameResults(DoubleDBIDList expected, DoubleDBIDList actual) {
+    assertEquals("Result size differs.", expected.size(), actual.size());
+    for(DoubleDBIDListIter e = expected.iter(), a = actual.iter(); e.valid(); e.advance(), a.advance()) {
+      assertEquals("Distance differs.", e.doubleValue(), a.doubleValue(), 1e-15);
+    }
+  }
+
+  /**
+   * Build a random data relation.
+   *
+   * @return Relation
+   */
+  private static Relation<NumberVector> makeRelation() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[500][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() };
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null);
+    db.initialize();
+    return db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.HashmapDatabase;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.*;
+import elki.database.query.distance.PrimitiveDistanceQuery;
+import elki.database.query.knn.*;
+import elki.database.query.range.*;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.datasource.bundle.MultipleObjectsBundle;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.ManhattanDistance;
+import elki.parallel.ParallelCore;
+
+/**
+ * Unit test for the parallel linear scans.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelLinearScanQueryTest {
+  /**
+   * Size of the test data set, large enough to be split into multiple tasks.
+   */
+  private static final int SIZE = 20000;
+
+  /**
+   * Number of batch queries, large enough to span multiple chunks of blocks.
+   */
+  private static final int BATCH = 1500;
+
+  @Before
+  public void setUp() {
+    // Force multiple threads even on single-core machines:
+    ParallelCore.getCore().setParallelism(4);
+  }
+
+  @After
+  public void tearDown() {
+    ParallelCore.getCore().setParallelism(ParallelCore.ALL_PROCESSORS);
+  }
+
+  @Test
+  public void testEuclidean() {
+    Relation<NumberVector> rel = makeRelation();
+    PrimitiveDistanceQuery<NumberVector> dq = new PrimitiveDistanceQuery<>(rel, EuclideanDistance.STATIC);
+    compareKNN(rel, new LinearScanEuclideanKNNByObject<>(dq), new ParallelLinearScanEuclideanKNNByObject<>(dq));
+    compareRange(rel, new LinearScanEuclideanRangeByObject<>(dq), new ParallelLinearScanEuclideanRangeByObject<>(dq), 0.05);
+    compareBatchKNN(rel, new LinearScanEuclideanKNNByObject<>(dq), new ParallelLinearScanEuclideanKNNByObject<>(dq));
+    compareBatchRange(rel, new LinearScanEuclideanRangeByObject<>(dq), new ParallelLinearScanEuclideanRangeByObject<>(dq), 0.05);
+  }
+
+  @Test
+  public void testManhattan() {
+    Relation<NumberVector> rel = makeRelation();
+    PrimitiveDistanceQuery<NumberVector> dq = new PrimitiveDistanceQuery<>(rel, ManhattanDistance.STATIC);
+    compareKNN(rel, new LinearScanPrimitiveKNNByObject<>(dq), new ParallelLinearScanKNNByObject<>(dq));
+    compareRange(rel, new LinearScanDistanceRangeByObject<>(dq), new ParallelLinearScanDistanceRangeByObject<>(dq), 0.08);
+    compareBatchKNN(rel, new LinearScanPrimitiveKNNByObject<>(dq), new ParallelLinearScanKNNByObject<>(dq));
+    compareBatchRange(rel, new LinearScanDistanceRangeByObject<>(dq), new ParallelLinearScanDistanceRangeByObject<>(dq), 0.08);
+  }
+
+  @Test
+  public void testQueryBuilder() {
+    Relation<NumberVector> rel = makeRelation();
+    KNNSearcher<NumberVector> knnq = new QueryBuilder<>(rel, EuclideanDistance.STATIC).parallel().kNNByObject();
+    assertTrue("Not a linear scan.", knnq instanceof LinearScanQuery);
+    RangeSearcher<NumberVector> rq = new QueryBuilder<>(rel, EuclideanDistance.STATIC).parallel().rangeByObject();
+    assertTrue("Not a linear scan.", rq instanceof LinearScanQuery);
+  }
+
+  @Test
+  public void testDynamic() {
+    HashmapDatabase db = new HashmapDatabase(new ArrayAdapterDatabaseConnection(makeData()), null);
+    db.initialize();
+    Relation<NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    PrimitiveDistanceQuery<NumberVector> dq = new PrimitiveDistanceQuery<>(rel, EuclideanDistance.STATIC);
+    ParallelLinearScanKNNByObject<NumberVector> knnq = new ParallelLinearScanEuclideanKNNByObject<>(dq);
+    ParallelLinearScanDistanceRangeByObject<NumberVector> rq = new ParallelLinearScanEuclideanRangeByObject<>(dq);
+    DBIDVar del = DBIDUtil.newVar(rel.iterDBIDs());
+    NumberVector old = rel.get(del);
+    assertTrue("Object not found.", DBIDUtil.equal(del, knnq.getKNN(old, 1).iter()));
+    // Replace one object, keeping the relation size:
+    db.delete((DBIDRef) del);
+    DoubleVector vec = DoubleVector.wrap(new double[] { 5., 5., 5. });
+    DBIDs ins = db.insert(MultipleObjectsBundle.makeSimple(rel.getDataTypeInformation(), Arrays.asList(vec)));
+    assertEquals("Relation size changed.", SIZE, rel.size());
+    KNNList knn = knnq.getKNN(vec, 1);
+    assertTrue("Inserted object not found.", DBIDUtil.equal(ins.iter(), knn.iter()));
+    assertEquals("Distance differs.", 0., knn.iter().doubleValue(), 0.);
+    for(DoubleDBIDListIter it = knnq.getKNN(old, 10).iter(); it.valid(); it.advance()) {
+      assertTrue("Deleted object found.", !DBIDUtil.equal(del, it));
+    }
+    assertEquals("Inserted object not found.", 1, rq.getRange(vec, 0.1).size());
+  }
+
+  /**
+   * Compare the kNN results of the sequential and the parallel scan.
+   *
+   * @param rel Relation
+   * @param seq Sequential searcher
+   * @param par Parallel searcher
+   */
+  private static void compareKNN(Relation<NumberVector> rel, KNNSearcher<NumberVector> seq, KNNSearcher<NumberVector> par) {
+    for(DBIDIter it = DBIDUtil.randomSample(rel.getDBIDs(), 10, 1L).iter(); it.valid(); it.advance()) {
+      NumberVector q = rel.get(it);
+      assertSameResults(seq.getKNN(q, 10), par.getKNN(q, 10));
+    }
+  }
+
+  /**
+   * Compare the range results of the sequential and the parallel scan.
+   *
+   * @param rel Relation
+   * @param seq Sequential searcher
+   * @param par Parallel searcher
+   * @param range Query radius
+   */
+  private static void compareRange(Relation<NumberVector> rel, RangeSearcher<NumberVector> seq, RangeSearcher<NumberVector> par, double range) {
+    for(DBIDIter it = DBIDUtil.randomSample(rel.getDBIDs(), 10, 1L).iter(); it.valid(); it.advance()) {
+      NumberVector q = rel.get(it);
+      assertSameResults(seq.getRange(q, range), par.getRange(q, range));
+    }
+  }
+
+  /**
+   * Compare the batch kNN results of the parallel scan to single queries of
+   * the sequential scan.
+   *
+   * @param rel Relation
+   * @param seq Sequential searcher
+   * @param par Parallel searcher
+   */
+  private static void compareBatchKNN(Relation<NumberVector> rel, KNNSearcher<NumberVector> seq, BatchKNNSearcher<NumberVector> par) {
+    ArrayDBIDs queries = DBIDUtil.ensureArray(DBIDUtil.randomSample(rel.getDBIDs(), BATCH, 1L));
+    DBIDArrayIter qiter = queries.iter();
+    par.getKNN(queries, 10, (id, knn) -> {
+      assertTrue("Query order differs.", DBIDUtil.equal(qiter, id));
+      assertSameResults(seq.getKNN(rel.get(id), 10), knn);
+      qiter.advance();
+    });
+    assertTrue("Not all queries were answered.", !qiter.valid());
+  }
+
+  /**
+   * Compare the batch range results of the parallel scan to single queries of
+   * the sequential scan.
+   *
+   * @param rel Relation
+   * @param seq Sequential searcher
+   * @param par Parallel searcher
+   * @param range Query radius
+   */
+  private static void compareBatchRange(Relation<NumberVector> rel, RangeSearcher<NumberVector> seq, BatchRangeSearcher<NumberVector> par, double range) {
+    ArrayDBIDs queries = DBIDUtil.ensureArray(DBIDUtil.randomSample(rel.getDBIDs(), BATCH, 1L));
+    DBIDArrayIter qiter = queries.iter();
+    par.getRange(queries, range, (id, res) -> {
+      assertTrue("Query order differs.", DBIDUtil.equal(qiter, id));
+      assertSameResults(seq.getRange(rel.get(id), range, DBIDUtil.newDistanceDBIDList()).sort(), res);
+      qiter.advance();
+    });
+    assertTrue("Not all queries were answered.", !qiter.valid());
+  }
+
+  /**
+   * Compare two result lists.
+   *
+   * @param expected Expected result
+   * @param actual Actual result
+   */
+  private static void assertSameResults(DoubleDBIDList expected, DoubleDBIDList actual) {
+    assertEquals("Result size differs.", expected.size(), actual.size());
+    for(DoubleDBIDListIter e = expected.iter(), a = actual.iter(); e.valid(); e.advance(), a.advance()) {
+      assertEquals("Distance differs.", e.doubleValue(), a.doubleValue(), 1e-15);
+    }
+  }
+
+  /**
+   * Build a random data relation.
+   *
+   * @return Relation
+   */
+  private static Relation<NumberVector> makeRelation() {
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(makeData()), null);
+    db.initialize();
+    return db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+  }
+
+  /**
+   * Build a random data set.
+   *
+   * @return Data
+   */
+  private static double[][] makeData() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[SIZE][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextDouble(), rnd.nextDouble() };
+    }
+    return data;
+  }
+}
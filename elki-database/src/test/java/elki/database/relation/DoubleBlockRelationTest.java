@@ -0,0 +1,127 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.database.relation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import elki.Algorithm;
+import elki.data.DoubleBlockVector;
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeInformation;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+
+/**
+ * Unit test for the contiguous storage of dense vectors.
+ * 
+ * @author agent
+ * @since 0.8.1
+ */
+public class DoubleBlockRelationTest {
+  @Test
+  public void testContiguousStorage() {
+    double[][] data = makeData();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, true);
+    db.initialize();
+    Relation<? extends NumberVector> rel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    assertTrue("Contiguous storage was not used.", rel instanceof DoubleBlockRelation);
+    assertEquals("Dimensionality", 4, RelationUtil.dimensionality(rel));
+
+    double[] block = ((DoubleBlockRelation) rel).getBlock();
+    assertEquals("Block size", data.length * 4, block.length);
+    int i = 0;
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance(), i++) {
+      NumberVector vec = rel.get(it);
+      assertTrue("Not a flyweight vector.", vec instanceof DoubleBlockVector);
+      assertEquals("Shared block not used.", block, ((DoubleBlockVector) vec).getBlock());
+      assertArrayEquals("Values differ.", data[i], vec.toArray(), 0.);
+    }
+  }
+
+  @Test
+  public void testDoubleVectorAlgorithm() {
+    double[][] data = makeData();
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(data), null, true);
+    db.initialize();
+    double[] sum = (double[]) new DoubleVectorSum().autorun(db);
+    double[] expected = new double[4];
+    for(double[] row : data) {
+      for(int d = 0; d < row.length; d++) {
+        expected[d] += row[d];
+      }
+    }
+    assertArrayEquals("Sums differ.", expected, sum, 0.);
+  }
+
+  /**
+   * Build a random data set.
+   *
+   * @return Data
+   */
+  private static double[][] makeData() {
+    Random rnd = new Random(0L);
+    double[][] data = new double[1000][];
+    for(int i = 0; i < data.length; i++) {
+      data[i] = new double[] { rnd.nextDouble(), rnd.nextInt(100), rnd.nextDouble(), rnd.nextInt(10) };
+    }
+    return data;
+  }
+
+  /**
+   * Trivial algorithm that requires a double vector field.
+   *
+   * @author agent
+   */
+  public static class DoubleVectorSum implements Algorithm {
+    /**
+     * Sum the vectors of a relation.
+     *
+     * @param relation Relation
+     * @return Sum
+     */
+    public double[] run(Relation<? extends DoubleVector> relation) {
+      assertTrue("Contiguous storage was not used.", relation instanceof DoubleBlockRelation);
+      double[] sum = new double[RelationUtil.dimensionality(relation)];
+      for(DBIDIter it = relation.iterDBIDs(); it.valid(); it.advance()) {
+        DoubleVector vec = relation.get(it);
+        for(int d = 0; d < sum.length; d++) {
+          sum[d] += vec.doubleValue(d);
+        }
+      }
+      return sum;
+    }
+
+    @Override
+    public TypeInformation[] getInputTypeRestriction() {
+      return TypeUtil.array(TypeUtil.DOUBLE_VECTOR_FIELD);
+    }
+  }
+}
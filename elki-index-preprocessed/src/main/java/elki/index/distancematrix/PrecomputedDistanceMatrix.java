@@ -20,7 +20,16 @@
  */
 package elki.index.distancematrix;
 
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.RecursiveAction;
 
 import elki.data.type.TypeInformation;
 import elki.database.ids.*;
@@ -38,12 +47,14 @@ import elki.logging.Logging;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelCore;
 import elki.utilities.datastructures.QuickSelect;
 import elki.utilities.datastructures.arrays.DoubleIntegerArrayQuickSort;
 import elki.utilities.exceptions.AbortException;
 import elki.utilities.optionhandling.OptionID;
 import elki.utilities.optionhandling.Parameterizer;
 import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.Flag;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 
 /**
@@ -51,10 +62,18 @@ import elki.utilities.optionhandling.parameters.ObjectParameter;
  * <p>
  * This class uses a linear memory layout (not a ragged array), and assumes
  * symmetry as well as strictness. This way, it only stores the upper triangle
- * matrix with double precision. It has to store (n-1) * (n-2) distance values
- * in memory, requiring 8 * (n-1) * (n-2) bytes. Since Java has a size limit of
- * arrays of 31 bits (signed integer), we can store at most \(2^{16}\) objects
- * (precisely, 65536 objects) in a single array, which needs about 16 GB of RAM.
+ * matrix with double precision. It has to store n * (n-1) / 2 distance values
+ * in memory, requiring 4 * n * (n-1) bytes. Because Java arrays are limited to
+ * 31 bit indexes, the triangle is stored in segments of \(2^{27}\) values, so
+ * that the number of objects is only limited by the available memory. With
+ * single precision, only half the memory is needed.
+ * <p>
+ * Optionally, the segments are memory-mapped from a temporary file instead of
+ * being allocated on the Java heap. Then the operating system can page out
+ * parts of the matrix, and the heap size does not need to accommodate it.
+ * <p>
+ * The matrix is computed in parallel, in tiles of rows and columns such that
+ * the objects of a tile remain in the CPU cache.
  *
  * @author Erich Schubert
  * @since 0.7.0
@@ -71,6 +90,21 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
    */
   private static final Logging LOG = Logging.getLogger(PrecomputedDistanceMatrix.class);
 
+  /**
+   * Number of bits for addressing within a segment.
+   */
+  private static final int SEGMENT_SHIFT = 27;
+
+  /**
+   * Mask for addressing within a segment.
+   */
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+  /**
+   * Number of rows and columns in a tile when computing the matrix.
+   */
+  private static final int TILESIZE = 64;
+
   /**
    * Data relation.
    */
@@ -82,9 +116,39 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
   protected final Distance<? super O> distance;
 
   /**
-   * Distance matrix.
+   * Distance matrix segments, with double precision.
+   */
+  private double[][] matrix = null;
+
+  /**
+   * Distance matrix segments, with single precision.
+   */
+  private float[][] fmatrix = null;
+
+  /**
+   * Memory-mapped distance matrix segments, with double precision.
    */
-  private double[] matrix = null;
+  private DoubleBuffer[] dbuffer = null;
+
+  /**
+   * Memory-mapped distance matrix segments, with single precision.
+   */
+  private FloatBuffer[] fbuffer = null;
+
+  /**
+   * Store with single precision only.
+   */
+  private boolean floatPrecision;
+
+  /**
+   * Store in a memory-mapped temporary file.
+   */
+  private boolean offheap;
+
+  /**
+   * Number of stored values.
+   */
+  private long msize;
 
   /**
    * DBID range.
@@ -99,10 +163,25 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
    * @param distance Distance function
    */
   public PrecomputedDistanceMatrix(Relation<O> relation, DBIDEnum range, Distance<? super O> distance) {
+    this(relation, range, distance, false, false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param relation Data relation
+   * @param range DBID range
+   * @param distance Distance function
+   * @param floatPrecision Store distances with single precision only
+   * @param offheap Store distances in a memory-mapped temporary file
+   */
+  public PrecomputedDistanceMatrix(Relation<O> relation, DBIDEnum range, Distance<? super O> distance, boolean floatPrecision, boolean offheap) {
     super();
     this.refrelation = new WeakReference<>(relation);
     this.ids = range;
     this.distance = distance;
+    this.floatPrecision = floatPrecision;
+    this.offheap = offheap;
 
     if(!distance.isSymmetric()) {
       throw new AbortException("Distance matrixes currently only support symmetric distance functions (Patches welcome).");
@@ -111,39 +190,119 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
 
   @Override
   public void initialize() {
-    if(ids.size() > 65536) {
-      throw new AbortException("Distance matrixes currently have a limit of 65536 objects (~16 GB). After this, the array size exceeds the Java integer range, and a different data structure needs to be used.");
-    }
     DistanceQuery<O> distanceQuery = distance.instantiate(refrelation.get());
-
-    final int msize = triangleSize(ids.size());
-    matrix = new double[msize];
-    DBIDArrayIter ix = ids.iter(), iy = ids.iter();
-
-    Duration timer = LOG.newDuration(getClass().getName() + ".precomputation-time").begin();
-    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", msize, LOG) : null;
-    int pos = 0;
-    for(ix.seek(0); ix.valid(); ix.advance()) {
-      // y < x -- must match {@link #getOffset}!
-      for(iy.seek(0); iy.getOffset() < ix.getOffset(); iy.advance()) {
-        matrix[pos++] = distanceQuery.distance(ix, iy);
+    final int size = ids.size();
+    msize = triangleSize(size);
+    final int nseg = (int) ((msize + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+    if(offheap) {
+      mapSegments(nseg);
+    }
+    else if(floatPrecision) {
+      fmatrix = new float[nseg][];
+      for(int i = 0; i < nseg; i++) {
+        fmatrix[i] = new float[(int) Math.min(msize - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT)];
       }
-      if(prog != null) {
-        prog.setProcessed(prog.getProcessed() + ix.getOffset(), LOG);
+    }
+    else {
+      matrix = new double[nseg][];
+      for(int i = 0; i < nseg; i++) {
+        matrix[i] = new double[(int) Math.min(msize - ((long) i << SEGMENT_SHIFT), 1L << SEGMENT_SHIFT)];
       }
     }
+
+    Duration timer = LOG.newDuration(getClass().getName() + ".precomputation-time").begin();
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Precomputing distance matrix", size, LOG) : null;
+    final ParallelCore core = ParallelCore.getCore();
+    core.connect();
+    try {
+      core.invoke(new FillTask(distanceQuery, 0, (size + TILESIZE - 1) / TILESIZE, prog));
+    }
+    finally {
+      core.disconnect();
+    }
     LOG.ensureCompleted(prog);
     LOG.statistics(timer.end());
   }
 
+  /**
+   * Map the matrix segments from a temporary file.
+   * <p>
+   * The mappings remain valid after closing the file, which deletes the file
+   * (on systems that allow deleting mapped files).
+   *
+   * @param nseg Number of segments
+   */
+  private void mapSegments(int nseg) {
+    final int bytes = floatPrecision ? Float.BYTES : Double.BYTES;
+    if(floatPrecision) {
+      fbuffer = new FloatBuffer[nseg];
+    }
+    else {
+      dbuffer = new DoubleBuffer[nseg];
+    }
+    try (FileChannel file = FileChannel.open(Files.createTempFile("elki-matrix", ".bin"), //
+        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+      for(int i = 0; i < nseg; i++) {
+        final long base = (long) i << SEGMENT_SHIFT;
+        final long len = Math.min(msize - base, 1L << SEGMENT_SHIFT) * bytes;
+        // Native byte order, as the file is not meant to be portable.
+        final MappedByteBuffer buf = file.map(FileChannel.MapMode.READ_WRITE, base * bytes, len);
+        buf.order(ByteOrder.nativeOrder());
+        if(floatPrecision) {
+          fbuffer[i] = buf.asFloatBuffer();
+        }
+        else {
+          dbuffer[i] = buf.asDoubleBuffer();
+        }
+      }
+    }
+    catch(IOException e) {
+      throw new AbortException("Could not map a temporary file for the distance matrix.", e);
+    }
+  }
+
   /**
    * Compute the size of a complete x by x triangle (minus diagonal)
    *
    * @param x Offset
    * @return Size of complete triangle
    */
-  protected static int triangleSize(int x) {
-    return (x * (x - 1)) >>> 1;
+  protected static long triangleSize(int x) {
+    return ((long) x * (x - 1)) >>> 1;
+  }
+
+  /**
+   * Get a value from the matrix.
+   *
+   * @param pos Position
+   * @return Value
+   */
+  private double get(long pos) {
+    final int seg = (int) (pos >>> SEGMENT_SHIFT), off = (int) (pos & SEGMENT_MASK);
+    return fmatrix != null ? fmatrix[seg][off] : matrix != null ? matrix[seg][off] : //
+        fbuffer != null ? fbuffer[seg].get(off) : dbuffer[seg].get(off);
+  }
+
+  /**
+   * Store a value in the matrix.
+   *
+   * @param pos Position
+   * @param value Value
+   */
+  private void put(long pos, double value) {
+    final int seg = (int) (pos >>> SEGMENT_SHIFT), off = (int) (pos & SEGMENT_MASK);
+    if(fmatrix != null) {
+      fmatrix[seg][off] = (float) value;
+    }
+    else if(matrix != null) {
+      matrix[seg][off] = value;
+    }
+    else if(fbuffer != null) {
+      fbuffer[seg].put(off, (float) value);
+    }
+    else {
+      dbuffer[seg].put(off, value);
+    }
   }
 
   /**
@@ -153,14 +312,14 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
    * @param y Y parameter
    * @return Array offset
    */
-  private int getOffset(int x, int y) {
+  private long getOffset(int x, int y) {
     return (y < x) ? (triangleSize(x) + y) : (triangleSize(y) + x);
   }
 
   @Override
   public void logStatistics() {
-    if(matrix != null) {
-      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", matrix.length));
+    if(matrix != null || fmatrix != null || dbuffer != null || fbuffer != null) {
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".matrix-size", msize));
     }
   }
 
@@ -208,7 +367,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
     @Override
     public double distance(DBIDRef id1, DBIDRef id2) {
       final int x = ids.index(id1), y = ids.index(id2);
-      return (x != y) ? matrix[getOffset(x, y)] : 0.;
+      return (x != y) ? get(getOffset(x, y)) : 0.;
     }
 
     @Override
@@ -238,9 +397,9 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
       result.add(0., id);
       final int x = ids.index(id);
       // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+        final double dist = get(pos);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
@@ -249,7 +408,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
       // Case y > x: triangleSize(y) + x
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+        final double dist = get(pos);
         if(dist <= range) {
           result.add(dist, it.seek(y));
         }
@@ -276,16 +435,16 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
       double max = Double.POSITIVE_INFINITY;
       final int x = ids.index(id);
       // Case y < x: triangleSize(x) + y
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       for(int y = 0; y < x; y++, pos++) {
-        final double dist = matrix[pos];
+        final double dist = get(pos);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
       assert (pos == triangleSize(x + 1));
       // Case y > x: triangleSize(y) + x
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = ids.size(); y < size; pos += y++) {
-        final double dist = matrix[pos];
+        final double dist = get(pos);
         max = dist <= max ? heap.insert(dist, it.seek(y)) : max;
       }
       return heap.toKNNList();
@@ -344,7 +503,7 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
       threshold = Double.POSITIVE_INFINITY;
       skipThreshold = 0.;
       int x = ids.index(query);
-      int pos = triangleSize(x);
+      long pos = triangleSize(x);
       // Initialize ids:
       idx[0] = x;
       for(int y = 0; y < x; y++) {
@@ -355,10 +514,12 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
       }
       // Initialize distances:
       dists[0] = 0;
-      System.arraycopy(matrix, pos, dists, 1, x);
+      for(int y = 0; y < x; y++, pos++) {
+        dists[y + 1] = get(pos);
+      }
       pos = triangleSize(x + 1) + x;
       for(int y = x + 1, size = dists.length; y < size; pos += y++) {
-        dists[y] = matrix[pos];
+        dists[y] = get(pos);
       }
       sorted = 1;
       return this;
@@ -482,6 +643,72 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
     }
   }
 
+  /**
+   * Task to compute the distances of a range of row tiles.
+   *
+   * @author Erich Schubert
+   */
+  private class FillTask extends RecursiveAction {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Distance query.
+     */
+    private DistanceQuery<O> distanceQuery;
+
+    /**
+     * Range of row tiles.
+     */
+    private int start, end;
+
+    /**
+     * Progress, may be {@code null}.
+     */
+    private FiniteProgress prog;
+
+    /**
+     * Constructor.
+     *
+     * @param distanceQuery Distance query
+     * @param start First row tile
+     * @param end End row tile (exclusive)
+     * @param prog Progress
+     */
+    FillTask(DistanceQuery<O> distanceQuery, int start, int end, FiniteProgress prog) {
+      this.distanceQuery = distanceQuery;
+      this.start = start;
+      this.end = end;
+      this.prog = prog;
+    }
+
+    @Override
+    protected void compute() {
+      if(end - start > 1) {
+        final int mid = (start + end) >>> 1;
+        invokeAll(new FillTask(distanceQuery, start, mid, prog), new FillTask(distanceQuery, mid, end, prog));
+        return;
+      }
+      final int size = ids.size();
+      final int xbegin = start * TILESIZE, xend = Math.min(xbegin + TILESIZE, size);
+      DBIDArrayIter ix = ids.iter(), iy = ids.iter();
+      // y < x -- must match {@link #getOffset}!
+      for(int ybegin = 0; ybegin < xend; ybegin += TILESIZE) {
+        final int yend = Math.min(ybegin + TILESIZE, xend);
+        for(int x = xbegin; x < xend; x++) {
+          final long base = triangleSize(x);
+          ix.seek(x);
+          for(int y = ybegin, ymax = Math.min(yend, x); y < ymax; y++) {
+            put(base + y, distanceQuery.distance(ix, iy.seek(y)));
+          }
+        }
+      }
+      LOG.incrementProcessed(prog, xend - xbegin);
+    }
+  }
+
   /**
    * Factory for the index.
    *
@@ -497,21 +724,44 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
      */
     protected final Distance<? super O> distance;
 
+    /**
+     * Store with single precision only.
+     */
+    protected final boolean floatPrecision;
+
+    /**
+     * Store in a memory-mapped temporary file.
+     */
+    protected final boolean offheap;
+
     /**
      * Constructor.
      *
      * @param distance Distance function
      */
     public Factory(Distance<? super O> distance) {
+      this(distance, false, false);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param distance Distance function
+     * @param floatPrecision Store distances with single precision only
+     * @param offheap Store distances in a memory-mapped temporary file
+     */
+    public Factory(Distance<? super O> distance, boolean floatPrecision, boolean offheap) {
       super();
       this.distance = distance;
+      this.floatPrecision = floatPrecision;
+      this.offheap = offheap;
     }
 
     @Override
     public PrecomputedDistanceMatrix<O> instantiate(Relation<O> relation) {
       DBIDUtil.assertUnmodifiable(relation.getDBIDs());
       DBIDEnum rids = DBIDUtil.ensureEnum(relation.getDBIDs());
-      return new PrecomputedDistanceMatrix<>(relation, rids, distance);
+      return new PrecomputedDistanceMatrix<>(relation, rids, distance, floatPrecision, offheap);
     }
 
     @Override
@@ -534,20 +784,42 @@ public class PrecomputedDistanceMatrix<O> implements DistanceIndex<O>, DistanceP
        */
       public static final OptionID DISTANCE_ID = new OptionID("matrix.distance", "Distance function for the precomputed distance matrix.");
 
+      /**
+       * Flag to store the distances with single precision only.
+       */
+      public static final OptionID FLOAT_ID = new OptionID("matrix.float", "Store the distances with single precision only, to reduce memory usage by half.");
+
+      /**
+       * Flag to store the distances in a memory-mapped temporary file.
+       */
+      public static final OptionID OFFHEAP_ID = new OptionID("matrix.offheap", "Store the distances in a memory-mapped temporary file instead of the Java heap.");
+
       /**
        * Nested distance function.
        */
       protected Distance<? super O> distanceFunction;
 
+      /**
+       * Store with single precision only.
+       */
+      protected boolean floatPrecision;
+
+      /**
+       * Store in a memory-mapped temporary file.
+       */
+      protected boolean offheap;
+
       @Override
       public void configure(Parameterization config) {
         new ObjectParameter<Distance<? super O>>(DISTANCE_ID, Distance.class) //
             .grab(config, x -> distanceFunction = x);
+        new Flag(FLOAT_ID).grab(config, x -> floatPrecision = x);
+        new Flag(OFFHEAP_ID).grab(config, x -> offheap = x);
       }
 
       @Override
       public Factory<O> make() {
-        return new Factory<>(distanceFunction);
+        return new Factory<>(distanceFunction, floatPrecision, offheap);
       }
     }
   }
@@ -23,8 +23,10 @@ package elki.index.preprocessed.knn;
 import javax.swing.event.EventListenerList;
 
 import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.query.knn.PreprocessorKNNQuery;
 import elki.database.relation.Relation;
@@ -35,6 +37,8 @@ import elki.logging.progress.FiniteProgress;
 import elki.logging.progress.StepProgress;
 import elki.logging.statistics.Duration;
 import elki.logging.statistics.LongStatistic;
+import elki.parallel.ParallelCore;
+import elki.parallel.ParallelExecutor;
 import elki.utilities.documentation.Description;
 import elki.utilities.documentation.Title;
 
@@ -43,6 +47,11 @@ import elki.utilities.documentation.Title;
  * distances) to each database object.
  * <p>
  * Automatically added by the query optimizer if memory permits.
+ * <p>
+ * Blocks of queries are processed in parallel on all available cores, using
+ * one searcher per block; the result does not depend on the number of threads.
+ * For metric distances, the result of a query is reused for duplicate points
+ * within the same block, unless the searcher processes the block as a batch.
  *
  * @author Erich Schubert
  * @since 0.2
@@ -61,11 +70,21 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    */
   private static final Logging LOG = Logging.getLogger(MaterializeKNNPreprocessor.class);
 
+  /**
+   * Minimum number of queries per parallel block.
+   */
+  private static final int BLOCKSIZE = 256;
+
   /**
    * KNNSearcher instance to use.
    */
   protected final KNNSearcher<DBIDRef> knnQuery;
 
+  /**
+   * Flag to disable optimization.
+   */
+  private final boolean noopt;
+
   /**
    * Holds the listener.
    */
@@ -80,7 +99,8 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    */
   public MaterializeKNNPreprocessor(Relation<O> relation, Distance<? super O> distance, int k) {
     super(relation, distance, k);
-    this.knnQuery = new QueryBuilder<>(distanceQuery).noCache().kNNByDBID(k);
+    this.noopt = false;
+    this.knnQuery = newKNNSearcher();
     assert !(knnQuery instanceof PreprocessorKNNQuery) : knnQuery.toString();
   }
 
@@ -94,11 +114,27 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
    */
   public MaterializeKNNPreprocessor(Relation<O> relation, DistanceQuery<O> distanceQuery, int k, boolean noopt) {
     super(relation, distanceQuery, k);
-    QueryBuilder<O> qb = new QueryBuilder<>(distanceQuery).noCache();
-    this.knnQuery = (noopt ? qb.cheapOnly() : qb).kNNByDBID(k);
+    this.noopt = noopt;
+    this.knnQuery = newKNNSearcher();
     assert !(knnQuery instanceof PreprocessorKNNQuery) : knnQuery.toString();
   }
 
+  /**
+   * Build a new kNN searcher, e.g., for use in another thread.
+   * <p>
+   * If this preprocessor was already added to the relation, e.g., when
+   * preprocessing lazily on insertion, a linear scan is used instead of this
+   * preprocessor.
+   *
+   * @return kNN searcher
+   */
+  private KNNSearcher<DBIDRef> newKNNSearcher() {
+    QueryBuilder<O> qb = new QueryBuilder<>(distanceQuery).noCache();
+    KNNSearcher<DBIDRef> knnq = (noopt ? qb.cheapOnly() : qb).kNNByDBID(k);
+    return knnq instanceof PreprocessorKNNQuery && ((PreprocessorKNNQuery) knnq).getPreprocessor() == this ? //
+        new QueryBuilder<>(distanceQuery).noCache().linearOnly().kNNByDBID(k) : knnq;
+  }
+
   /**
    * The actual preprocessing step.
    */
@@ -107,28 +143,63 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     final Logging log = getLogger(); // Could be subclass
     createStorage();
 
-    ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    DBIDEnum ids = DBIDUtil.ensureEnum(relation.getDBIDs());
 
     if(log.isStatistics()) {
       log.statistics(new LongStatistic(this.getClass().getName() + ".k", k));
     }
     Duration duration = log.isStatistics() ? log.newDuration(this.getClass().getName() + ".precomputation-time").begin() : null;
     FiniteProgress progress = getLogger().isVerbose() ? new FiniteProgress("Materializing k nearest neighbors (k=" + k + ")", ids.size(), getLogger()) : null;
-    // Try bulk
     final boolean ismetric = getDistanceQuery().getDistance().isMetric();
-    for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
-      if(ismetric && storage.get(iter) != null) {
-        log.incrementProcessed(progress);
-        continue; // Previously computed (duplicate point?)
+    if(knnQuery instanceof LinearScanQuery || ParallelCore.getCore().getParallelism() > 1) {
+      // Process blocks of queries in parallel, with one searcher per block, as
+      // index searchers need not be thread-safe. Linear scans are stateless.
+      final KNNList[] knns = new KNNList[ids.size()];
+      ParallelExecutor.run(0, ids.size(), BLOCKSIZE, (start, end) -> {
+        KNNSearcher<DBIDRef> knnq = start == 0 || knnQuery instanceof LinearScanQuery ? knnQuery : newKNNSearcher();
+        if(knnq instanceof BatchKNNSearcher) {
+          // Batch queries share the work of the queries in a block.
+          ((BatchKNNSearcher<DBIDRef>) knnq).getKNN(ids.slice(start, end), k, (id, knn) -> knns[ids.index(id)] = knn);
+        }
+        else {
+          for(DBIDArrayIter iter = ids.iter().seek(start); iter.getOffset() < end; iter.advance()) {
+            if(ismetric && knns[iter.getOffset()] != null) {
+              continue; // Previously computed (duplicate point?)
+            }
+            KNNList knn = knns[iter.getOffset()] = knnq.getKNN(iter, k);
+            if(ismetric) {
+              for(DoubleDBIDListIter it = knn.iter(); it.valid() && it.doubleValue() == 0.; it.advance()) {
+                final int off = ids.index(it);
+                if(off >= start && off < end) {
+                  knns[off] = knn; // Reuse within this block only
+                }
+              }
+            }
+          }
+        }
+        log.incrementProcessed(progress, end - start);
+      });
+      // Store sequentially, as the storage need not be thread-safe.
+      for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        storage.put(iter, knns[iter.getOffset()]);
       }
-      KNNList knn = knnQuery.getKNN(iter, k);
-      storage.put(iter, knn);
-      if(ismetric) {
-        for(DoubleDBIDListIter it = knn.iter(); it.valid() && it.doubleValue() == 0.; it.advance()) {
-          storage.put(it, knn); // Reuse
+    }
+    else {
+      // Try bulk
+      for(DBIDIter iter = ids.iter(); iter.valid(); iter.advance()) {
+        if(ismetric && storage.get(iter) != null) {
+          log.incrementProcessed(progress);
+          continue; // Previously computed (duplicate point?)
+        }
+        KNNList knn = knnQuery.getKNN(iter, k);
+        storage.put(iter, knn);
+        if(ismetric) {
+          for(DoubleDBIDListIter it = knn.iter(); it.valid() && it.doubleValue() == 0.; it.advance()) {
+            storage.put(it, knn); // Reuse
+          }
         }
+        log.incrementProcessed(progress);
       }
-      log.incrementProcessed(progress);
     }
     log.ensureCompleted(progress);
     if(duration != null) {
@@ -175,9 +246,7 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     // materialize the new kNNs
     log.beginStep(stepprog, 1, "New insertions ocurred, materialize their new kNNs.");
     // Store in storage
-    for(DBIDIter iter = aids.iter(); iter.valid(); iter.advance()) {
-      storage.put(iter, knnQuery.getKNN(iter, k));
-    }
+    BatchKNNSearcher.getKNN(knnQuery, aids, k, storage::put);
 
     // update the affected kNNs
     log.beginStep(stepprog, 2, "New insertions ocurred, update the affected kNNs.");
@@ -241,9 +310,7 @@ public class MaterializeKNNPreprocessor<O> extends AbstractMaterializeKNNPreproc
     }
 
     // update the kNNs of the RkNNs
-    for(DBIDIter iter = rkNN_ids.iter(); iter.valid(); iter.advance()) {
-      storage.put(iter, knnQuery.getKNN(iter, k));
-    }
+    BatchKNNSearcher.getKNN(knnQuery, rkNN_ids, k, storage::put);
 
     return rkNN_ids;
   }
@@ -20,6 +20,7 @@
  */
 package elki.index.distancematrix;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -29,9 +30,11 @@ import elki.data.DoubleVector;
 import elki.data.type.TypeUtil;
 import elki.database.Database;
 import elki.database.StaticArrayDatabase;
+import elki.database.ids.DBIDIter;
 import elki.database.ids.DBIDRef;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
 import elki.database.relation.Relation;
 import elki.distance.CosineDistance;
 import elki.distance.minkowski.EuclideanDistance;
@@ -89,4 +92,50 @@ public class PrecomputedDistanceMatrixTest extends AbstractIndexStructureTest {
         .with(PrecomputedDistanceMatrix.Factory.Par.DISTANCE_ID, CosineDistance.class).build();
     assertExactCosine(factory, PrecomputedDistanceMatrix.PrecomputedKNNQuery.class, PrecomputedDistanceMatrix.PrecomputedRangeQuery.class, true);
   }
+
+  @Test
+  public void testFloatPrecision() {
+    ListParameterization inputparams = new ListParameterization() //
+        .addParameter(StaticArrayDatabase.Par.INDEX_ID, PrecomputedDistanceMatrix.Factory.class) //
+        .addParameter(PrecomputedDistanceMatrix.Factory.Par.DISTANCE_ID, EuclideanDistance.class) //
+        .addFlag(PrecomputedDistanceMatrix.Factory.Par.FLOAT_ID);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds, inputparams);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
+    assertTrue("Distance matrix not used.", dq instanceof PrecomputedDistanceMatrix.PrecomputedDistanceQuery);
+    for(DBIDIter ix = relation.iterDBIDs(); ix.valid(); ix.advance()) {
+      for(DBIDIter iy = relation.iterDBIDs(); iy.valid(); iy.advance()) {
+        final double expect = EuclideanDistance.STATIC.distance(relation.get(ix), relation.get(iy));
+        assertEquals("Distance differs.", expect, dq.distance(ix, iy), 1e-6 * expect);
+      }
+    }
+  }
+
+  @Test
+  public void testOffheap() {
+    PrecomputedDistanceMatrix.Factory<?> factory = new ELKIBuilder<>(PrecomputedDistanceMatrix.Factory.class) //
+        .with(PrecomputedDistanceMatrix.Factory.Par.DISTANCE_ID, EuclideanDistance.class) //
+        .with(PrecomputedDistanceMatrix.Factory.Par.OFFHEAP_ID).build();
+    assertExactEuclidean(factory, PrecomputedDistanceMatrix.PrecomputedKNNQuery.class, PrecomputedDistanceMatrix.PrecomputedRangeQuery.class, true);
+    assertPrioritySearchEuclidean(factory, PrecomputedDistanceMatrix.PrecomputedDistancePrioritySearcher.class, true);
+  }
+
+  @Test
+  public void testOffheapFloatPrecision() {
+    ListParameterization inputparams = new ListParameterization() //
+        .addParameter(StaticArrayDatabase.Par.INDEX_ID, PrecomputedDistanceMatrix.Factory.class) //
+        .addParameter(PrecomputedDistanceMatrix.Factory.Par.DISTANCE_ID, EuclideanDistance.class) //
+        .addFlag(PrecomputedDistanceMatrix.Factory.Par.FLOAT_ID) //
+        .addFlag(PrecomputedDistanceMatrix.Factory.Par.OFFHEAP_ID);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds, inputparams);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> dq = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
+    assertTrue("Distance matrix not used.", dq instanceof PrecomputedDistanceMatrix.PrecomputedDistanceQuery);
+    for(DBIDIter ix = relation.iterDBIDs(); ix.valid(); ix.advance()) {
+      for(DBIDIter iy = relation.iterDBIDs(); iy.valid(); iy.advance()) {
+        final double expect = EuclideanDistance.STATIC.distance(relation.get(ix), relation.get(iy));
+        assertEquals("Distance differs.", (float) expect, dq.distance(ix, iy), 0.);
+      }
+    }
+  }
 }
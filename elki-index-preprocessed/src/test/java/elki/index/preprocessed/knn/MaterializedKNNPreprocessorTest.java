@@ -28,13 +28,16 @@ import java.util.Random;
 
 import org.junit.Test;
 
+import elki.algorithm.AbstractSimpleAlgorithmTest;
 import elki.data.DoubleVector;
 import elki.data.NumberVector;
 import elki.data.VectorUtil;
 import elki.data.type.TypeUtil;
+import elki.database.Database;
 import elki.database.HashmapDatabase;
 import elki.database.UpdatableDatabase;
 import elki.database.ids.*;
+import elki.database.query.LinearScanQuery;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
 import elki.database.query.knn.KNNSearcher;
@@ -44,6 +47,8 @@ import elki.database.relation.RelationUtil;
 import elki.datasource.FileBasedDatabaseConnection;
 import elki.datasource.bundle.MultipleObjectsBundle;
 import elki.distance.minkowski.EuclideanDistance;
+import elki.math.spacefillingcurves.HilbertSpatialSorter;
+import elki.parallel.ParallelCore;
 import elki.result.Metadata;
 import elki.utilities.ELKIBuilder;
 
@@ -121,6 +126,48 @@ public class MaterializedKNNPreprocessorTest {
     testKNNQueries(relation, lin_knn_query, preproc_knn_query, k);
   }
 
+  @Test
+  public void testStaticPreprocessor() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> distanceQuery = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
+    KNNSearcher<DBIDRef> lin_knn_query = new LinearScanKNNByDBID<>(distanceQuery);
+    // Linear scan based, which is computed in parallel blocks
+    MaterializeKNNPreprocessor<DoubleVector> preproc = new MaterializeKNNPreprocessor<>(relation, distanceQuery, k, true);
+    preproc.initialize();
+    testKNNQueries(relation, lin_knn_query, preproc.kNNByDBID(distanceQuery, k, 0), k);
+  }
+
+  @Test
+  public void testIndexPreprocessor() {
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    DistanceQuery<DoubleVector> distanceQuery = new QueryBuilder<>(relation, EuclideanDistance.STATIC).distanceQuery();
+    // Approximate index, to detect if a linear scan was used instead
+    SpacefillingKNNPreprocessor<DoubleVector> index = //
+        new ELKIBuilder<SpacefillingKNNPreprocessor.Factory<DoubleVector>>(SpacefillingKNNPreprocessor.Factory.class) //
+            .with(SpacefillingKNNPreprocessor.Factory.Par.CURVES_ID, HilbertSpatialSorter.class) //
+            .with(SpacefillingKNNPreprocessor.Factory.Par.VARIANTS_ID, 4) //
+            .with(SpacefillingKNNPreprocessor.Factory.Par.WINDOW_ID, 1.) //
+            .with(SpacefillingKNNPreprocessor.Factory.Par.RANDOM_ID, 0L) //
+            .build().instantiate(relation);
+    index.initialize();
+    Metadata.hierarchyOf(relation).addChild(index);
+    KNNSearcher<DBIDRef> index_knn_query = index.kNNByDBID(distanceQuery, k, 0);
+    // Force multiple threads even on single-core machines:
+    ParallelCore.getCore().setParallelism(4);
+    try {
+      MaterializeKNNPreprocessor<DoubleVector> preproc = new MaterializeKNNPreprocessor<>(relation, distanceQuery, k, false);
+      assertFalse("Index was not used.", preproc.knnQuery instanceof LinearScanQuery);
+      preproc.initialize();
+      // Results must be exactly those of the index:
+      testKNNQueries(relation, index_knn_query, preproc.kNNByDBID(distanceQuery, k, 0), k);
+    }
+    finally {
+      ParallelCore.getCore().setParallelism(ParallelCore.ALL_PROCESSORS);
+    }
+  }
+
   public static void testKNNQueries(Relation<DoubleVector> rep, KNNSearcher<DBIDRef> lin_knn_query, KNNSearcher<DBIDRef> preproc_knn_query, int k) {
     assertNotEquals("Preprocessor knn query class incorrect.", lin_knn_query.getClass(), preproc_knn_query.getClass());
     for(DBIDIter iter = rep.iterDBIDs(); iter.valid(); iter.advance()) {
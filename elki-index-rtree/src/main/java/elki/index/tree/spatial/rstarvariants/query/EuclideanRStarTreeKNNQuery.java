@@ -20,8 +20,12 @@
  */
 package elki.index.tree.spatial.rstarvariants.query;
 
+import java.util.function.BiConsumer;
+
 import elki.data.NumberVector;
+import elki.database.ids.DBIDRef;
 import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
 import elki.database.ids.KNNHeap;
 import elki.database.ids.KNNList;
 import elki.database.relation.Relation;
@@ -134,4 +138,9 @@ public class EuclideanRStarTreeKNNQuery<O extends NumberVector> extends RStarTre
     }
     return maxDist;
   }
+
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    batchKNN(SQUARED, queries, k, true, consumer);
+  }
 }
@@ -20,11 +20,13 @@
  */
 package elki.index.tree.spatial.rstarvariants.query;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
 import elki.data.spatial.SpatialComparable;
-import elki.database.ids.DBIDUtil;
-import elki.database.ids.KNNHeap;
-import elki.database.ids.KNNList;
-import elki.database.query.knn.KNNSearcher;
+import elki.database.ids.*;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.relation.Relation;
 import elki.distance.SpatialPrimitiveDistance;
 import elki.index.tree.spatial.SpatialDirectoryEntry;
@@ -37,6 +39,9 @@ import elki.utilities.documentation.Reference;
 /**
  * Instance of a KNN query for a particular spatial index.
  * <p>
+ * Batches of queries share a single best-first traversal of the tree per
+ * block of queries, such that each node is read at most once per block.
+ * <p>
  * Reference:
  * <p>
  * G. R. Hjaltason, H. Samet<br>
@@ -54,7 +59,7 @@ import elki.utilities.documentation.Reference;
     booktitle = "4th Symp. Advances in Spatial Databases (SSD'95)", //
     url = "https://doi.org/10.1007/3-540-60159-7_6", //
     bibkey = "DBLP:conf/ssd/HjaltasonS95")
-public class RStarTreeKNNSearcher<O extends SpatialComparable> implements KNNSearcher<O> {
+public class RStarTreeKNNSearcher<O extends SpatialComparable> implements BatchKNNSearcher<O> {
   /**
    * The index to use
    */
@@ -148,4 +153,175 @@ public class RStarTreeKNNSearcher<O extends SpatialComparable> implements KNNSea
     }
     return maxDist;
   }
+
+  @Override
+  public void getKNN(DBIDs queries, int k, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    batchKNN(distance, queries, k, false, consumer);
+  }
+
+  /**
+   * Process a batch of queries, in blocks of {@link #BLOCKSIZE} queries. The
+   * queries of a block share a best-first traversal of the tree, where each
+   * node is expanded only for the queries that cannot prune it yet.
+   *
+   * @param dist Distance function
+   * @param queries Query object IDs
+   * @param k Number of neighbors requested
+   * @param sqrt Apply square root to the distances of the results
+   * @param consumer Consumer for the results
+   */
+  protected void batchKNN(SpatialPrimitiveDistance<? super O> dist, DBIDs queries, int k, boolean sqrt, BiConsumer<? super DBIDRef, ? super KNNList> consumer) {
+    if(k < 1) {
+      throw new IllegalArgumentException("At least one neighbor has to be requested!");
+    }
+    final ArrayDBIDs aqueries = DBIDUtil.ensureArray(queries);
+    final int size = aqueries.size();
+    // Bit masks of active queries require at most 64 queries per block.
+    final BatchTraversal batch = new BatchTraversal(dist, Math.min(Math.min(BLOCKSIZE, Long.SIZE), size));
+    final DBIDArrayIter qiter = aqueries.iter();
+    for(int start = 0; start < size; start += batch.heaps.length) {
+      final int len = Math.min(batch.heaps.length, size - start);
+      batch.objs.clear();
+      for(int j = 0; j < len; j++) {
+        batch.objs.add(relation.get(qiter.seek(start + j)));
+        batch.heaps[j] = DBIDUtil.newHeap(k);
+        tree.statistics.countKNNQuery();
+      }
+      batch.run(len);
+      for(int j = 0; j < len; j++) {
+        consumer.accept(qiter.seek(start + j), sqrt ? batch.heaps[j].toKNNListSqrt() : batch.heaps[j].toKNNList());
+        batch.heaps[j] = null;
+      }
+    }
+  }
+
+  /**
+   * Shared best-first traversal for a block of queries.
+   *
+   * @author Erich Schubert
+   */
+  private class BatchTraversal {
+    /**
+     * Distance function.
+     */
+    private final SpatialPrimitiveDistance<? super O> dist;
+
+    /**
+     * Query objects of the current block.
+     */
+    final ArrayList<O> objs;
+
+    /**
+     * Result heaps of the current block.
+     */
+    final KNNHeap[] heaps;
+
+    /**
+     * Current pruning distances of the queries.
+     */
+    private final double[] max;
+
+    /**
+     * Priority queue of nodes, the values refer to the slots below.
+     */
+    private final DoubleIntegerMinHeap pq = new DoubleIntegerMinHeap(21);
+
+    /**
+     * Page ids of the queued nodes.
+     */
+    private int[] pages = new int[21];
+
+    /**
+     * Masks of the queries that need to visit the queued nodes.
+     */
+    private long[] masks = new long[21];
+
+    /**
+     * Number of slots in use.
+     */
+    private int used;
+
+    /**
+     * Constructor.
+     *
+     * @param dist Distance function
+     * @param bsize Block size
+     */
+    BatchTraversal(SpatialPrimitiveDistance<? super O> dist, int bsize) {
+      this.dist = dist;
+      this.objs = new ArrayList<>(bsize);
+      this.heaps = new KNNHeap[bsize];
+      this.max = new double[bsize];
+    }
+
+    /**
+     * Run the traversal for the current block.
+     *
+     * @param len Number of queries in the block
+     */
+    void run(int len) {
+      Arrays.fill(max, 0, len, Double.POSITIVE_INFINITY);
+      used = 0;
+      expand(tree.getRootID(), len == Long.SIZE ? -1L : (1L << len) - 1);
+      while(!pq.isEmpty()) {
+        final double mindist = pq.peekKey();
+        double maxmax = 0.;
+        for(int j = 0; j < len; j++) {
+          maxmax = max[j] > maxmax ? max[j] : maxmax;
+        }
+        if(mindist > maxmax) {
+          break;
+        }
+        final int slot = pq.peekValue();
+        pq.poll(); // Remove from heap.
+        expand(pages[slot], masks[slot]);
+      }
+      pq.clear();
+    }
+
+    /**
+     * Expand a node for the given queries.
+     *
+     * @param nodeID Node id
+     * @param mask Bit mask of the queries
+     */
+    private void expand(int nodeID, long mask) {
+      AbstractRStarTreeNode<?, ?> node = tree.getNode(nodeID);
+      if(node.isLeaf()) {
+        for(int i = 0; i < node.getNumEntries(); i++) {
+          SpatialPointLeafEntry entry = (SpatialPointLeafEntry) node.getEntry(i);
+          for(long m = mask; m != 0; m &= m - 1) {
+            final int q = Long.numberOfTrailingZeros(m);
+            final double d = dist.minDist(entry, objs.get(q));
+            tree.statistics.countDistanceCalculation();
+            max[q] = d <= max[q] ? heaps[q].insert(d, entry.getDBID()) : max[q];
+          }
+        }
+        return;
+      }
+      for(int i = 0; i < node.getNumEntries(); i++) {
+        SpatialDirectoryEntry entry = (SpatialDirectoryEntry) node.getEntry(i);
+        long cmask = 0;
+        double cmin = Double.POSITIVE_INFINITY;
+        for(long m = mask; m != 0; m &= m - 1) {
+          final int q = Long.numberOfTrailingZeros(m);
+          final double d = dist.minDist(entry, objs.get(q));
+          tree.statistics.countDistanceCalculation();
+          if(d <= max[q]) {
+            cmask |= 1L << q;
+            cmin = d < cmin ? d : cmin;
+          }
+        }
+        if(cmask != 0) {
+          if(used == pages.length) {
+            pages = Arrays.copyOf(pages, used << 1);
+            masks = Arrays.copyOf(masks, used << 1);
+          }
+          pages[used] = entry.getPageID();
+          masks[used] = cmask;
+          pq.add(cmin, used++);
+        }
+      }
+    }
+  }
 }
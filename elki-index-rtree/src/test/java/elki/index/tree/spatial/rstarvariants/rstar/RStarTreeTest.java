@@ -30,9 +30,12 @@ import elki.database.Database;
 import elki.database.StaticArrayDatabase;
 import elki.database.query.knn.WrappedKNNDBIDByLookup;
 import elki.database.query.range.WrappedRangeDBIDByLookup;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.ManhattanDistance;
 import elki.index.AbstractIndexStructureTest;
 import elki.index.tree.spatial.rstarvariants.AbstractRStarTreeFactory;
 import elki.index.tree.spatial.rstarvariants.query.EuclideanRStarTreeDistancePrioritySearcher;
+import elki.index.tree.spatial.rstarvariants.query.EuclideanRStarTreeKNNQuery;
 import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
 import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
 import elki.index.tree.spatial.rstarvariants.strategies.insert.ApproximativeLeastOverlapInsertionStrategy;
@@ -63,6 +66,18 @@ public class RStarTreeTest extends AbstractIndexStructureTest {
     assertSinglePoint(factory, WrappedKNNDBIDByLookup.class, WrappedRangeDBIDByLookup.class);
   }
 
+  /**
+   * Test batch queries sharing the traversal of the {@link RStarTree}.
+   */
+  @Test
+  public void testRStarTreeBatch() {
+    RStarTreeFactory<NumberVector> factory = new ELKIBuilder<RStarTreeFactory<NumberVector>>(RStarTreeFactory.class) //
+        .with(AbstractPageFileFactory.Par.PAGE_SIZE_ID, 300) //
+        .build();
+    assertBatchKNN(factory, EuclideanRStarTreeKNNQuery.class, EuclideanDistance.STATIC);
+    assertBatchKNN(factory, RStarTreeKNNSearcher.class, ManhattanDistance.STATIC);
+  }
+
   /**
    * Test {@link RStarTree} using a file based database connection. With "fast"
    * mode enabled on an extreme level (since this should only reduce
@@ -252,6 +252,7 @@ public class TreeIndexHeader extends DefaultPageHeader {
       }
       ByteBuffer buf = ByteBuffer.allocateDirect(emptyPagesSize);
       file.read(buf, file.size() - emptyPagesSize);
+      buf.flip();
       buf.asIntBuffer().get(emptyPages.data, 0, n);
     }
     return emptyPages;
@@ -20,8 +20,6 @@
  */
 package elki.persistent;
 
-import java.io.Externalizable;
-
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
@@ -33,7 +31,7 @@ import java.io.ObjectOutput;
  * @since 0.1
  */
 // todo elke revise comments
-public abstract class AbstractExternalizablePage implements Externalizable, Page {
+public abstract class AbstractExternalizablePage implements ExternalizablePage {
   /**
    * Serial version
    */
@@ -633,6 +633,18 @@ public class Logging {
     }
   }
 
+  /**
+   * Increment a progress by more than one (unless {@code null}).
+   * 
+   * @param prog Progress to increment, may be {@code null}.
+   * @param increment Number of processed items
+   */
+  public void incrementProcessed(AbstractProgress prog, int increment) {
+    if(prog != null) {
+      prog.incrementProcessed(increment, this);
+    }
+  }
+
   /**
    * Increment a progress (unless {@code null}).
    * 
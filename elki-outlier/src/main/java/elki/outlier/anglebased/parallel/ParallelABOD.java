@@ -0,0 +1,284 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.anglebased.parallel;
+
+import java.util.function.ToDoubleFunction;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.query.QueryBuilder;
+import elki.database.query.similarity.SimilarityQuery;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.logging.Logging;
+import elki.math.DoubleMinMax;
+import elki.math.MeanVariance;
+import elki.outlier.anglebased.ABOD;
+import elki.parallel.ParallelExecutor;
+import elki.parallel.ParallelStages;
+import elki.result.outlier.InvertedOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.similarity.Similarity;
+import elki.utilities.documentation.Title;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.DoubleParameter;
+import elki.utilities.optionhandling.parameters.RandomParameter;
+import elki.utilities.random.RandomFactory;
+
+/**
+ * Parallel implementation of Angle-Based Outlier Detection, {@link ABOD}.
+ * <p>
+ * The angle variance of each object is computed in parallel. Optionally, the
+ * angles are only computed with respect to a random sample of reference
+ * objects: with a sample of size \(s\), the cost reduces from \(O(n^3)\) to
+ * \(O(n s^2)\), and the memory for the kernel matrix from \(O(n^2)\) to
+ * \(O(s^2)\). The score then estimates the angle variance with respect to
+ * the full data set from \(s(s-1)/2\) sampled pairs, and its error decreases
+ * with the sample size. Without sampling, the result is the exact ABOD score.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <V> Vector type
+ */
+@Title("ABOD: Angle-Based Outlier Detection (parallel implementation)")
+public class ParallelABOD<V extends NumberVector> extends ABOD<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelABOD.class);
+
+  /**
+   * Size of the reference sample (if &gt; 1) or sampling rate (if &le; 1),
+   * 0 to use all objects.
+   */
+  protected double sample;
+
+  /**
+   * Random generator for sampling.
+   */
+  protected RandomFactory rnd;
+
+  /**
+   * Constructor.
+   *
+   * @param kernelFunction kernel function to use
+   * @param sample Reference sample size or rate, 0 for exact ABOD
+   * @param rnd Random generator for sampling
+   */
+  public ParallelABOD(Similarity<? super V> kernelFunction, double sample, RandomFactory rnd) {
+    super(kernelFunction);
+    this.sample = sample;
+    this.rnd = rnd;
+  }
+
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final ArrayDBIDs ref = sample > 0 ? DBIDUtil.ensureArray(DBIDUtil.randomSample(ids, sample, rnd)) : ids;
+    final QueryBuilder<V> qb = new QueryBuilder<>(relation, kernelFunction);
+    final double[][] kernel = computeKernel(qb, ref);
+
+    DoubleMinMax minmaxabod = new DoubleMinMax();
+    WritableDoubleDataStore abodvalues = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_STATIC, //
+        () -> new ABOFFunction(qb.similarityQuery(), ref, kernel), minmaxabod, "ABOD", LOG);
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Angle-Based Outlier Degree", relation.getDBIDs(), abodvalues);
+    OutlierScoreMeta scoreMeta = new InvertedOutlierScoreMeta(minmaxabod.getMin(), minmaxabod.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Compute the kernel matrix of the reference objects, in parallel.
+   *
+   * @param qb Query builder
+   * @param ref Reference objects
+   * @return Kernel matrix
+   */
+  private static <V> double[][] computeKernel(QueryBuilder<V> qb, ArrayDBIDs ref) {
+    final int size = ref.size();
+    final double[][] kernel = new double[size][size];
+    ParallelExecutor.run(0, size, 1, (start, end) -> {
+      SimilarityQuery<V> sq = qb.similarityQuery();
+      DBIDArrayIter i1 = ref.iter(), i2 = ref.iter();
+      for(int i = start; i < end; i++) {
+        final double[] row = kernel[i];
+        i1.seek(i);
+        for(i2.seek(0); i2.getOffset() <= i; i2.advance()) {
+          row[i2.getOffset()] = sq.similarity(i2, i1);
+        }
+      }
+    });
+    // Fill the upper triangle:
+    for(int i = 0; i < size; i++) {
+      for(int j = i + 1; j < size; j++) {
+        kernel[i][j] = kernel[j][i];
+      }
+    }
+    return kernel;
+  }
+
+  /**
+   * Compute the angle-based outlier factor of an object. Not thread-safe, use
+   * one instance per thread.
+   *
+   * @author agent
+   */
+  private static class ABOFFunction implements ToDoubleFunction<DBIDRef> {
+    /**
+     * Similarity query.
+     */
+    private final SimilarityQuery<?> sq;
+
+    /**
+     * Reference objects.
+     */
+    private final DBIDArrayIter ref;
+
+    /**
+     * Kernel matrix of the reference objects.
+     */
+    private final double[][] kernel;
+
+    /**
+     * Similarities to the reference objects.
+     */
+    private final double[] sim;
+
+    /**
+     * Squared distances to the reference objects.
+     */
+    private final double[] sqd;
+
+    /**
+     * Statistics tracker.
+     */
+    private final MeanVariance s = new MeanVariance();
+
+    /**
+     * Constructor.
+     *
+     * @param sq Similarity query
+     * @param ref Reference objects
+     * @param kernel Kernel matrix of the reference objects
+     */
+    ABOFFunction(SimilarityQuery<?> sq, ArrayDBIDs ref, double[][] kernel) {
+      this.sq = sq;
+      this.ref = ref.iter();
+      this.kernel = kernel;
+      this.sim = new double[kernel.length];
+      this.sqd = new double[kernel.length];
+    }
+
+    @Override
+    public double applyAsDouble(DBIDRef pA) {
+      final double simAA = sq.similarity(pA, pA);
+      final int size = kernel.length;
+      for(ref.seek(0); ref.valid(); ref.advance()) {
+        final int i = ref.getOffset();
+        // Distance 0 marks the object itself and duplicates, which are skipped
+        final double simAB = sim[i] = sq.similarity(pA, ref);
+        sqd[i] = DBIDUtil.equal(pA, ref) ? 0. : simAA + kernel[i][i] - simAB - simAB;
+      }
+      s.reset();
+      for(int b = 0; b < size; b++) {
+        final double sqdAB = sqd[b];
+        if(!(sqdAB > 0.)) {
+          continue;
+        }
+        final double simAB = sim[b];
+        final double[] kernelB = kernel[b];
+        for(int c = b + 1; c < size; c++) {
+          final double sqdAC = sqd[c];
+          if(!(sqdAC > 0.)) {
+            continue;
+          }
+          // Exploit bilinearity of scalar product:
+          // <B-A, C-A> = <B,C-A> - <A,C-A>
+          // = <B,C> - <B,A> - <A,C> + <A,A>
+          final double numerator = kernelB[c] - simAB - sim[c] + simAA;
+          final double div = 1. / (sqdAB * sqdAC);
+          s.put(numerator * div, Math.sqrt(div));
+        }
+      }
+      // Sample variance probably would be better here, but the ABOD
+      // publication uses the naive variance.
+      return s.getCount() > 0 ? s.getPopulationVariance() : Double.POSITIVE_INFINITY;
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends ABOD.Par<V> {
+    /**
+     * Size of the reference sample.
+     */
+    public static final OptionID SAMPLE_ID = new OptionID("abod.samplesize", "Size of the reference sample (if > 1) or sampling rate (if <= 1). Use 0 for exact ABOD.");
+
+    /**
+     * Random seed for sampling.
+     */
+    public static final OptionID SEED_ID = new OptionID("abod.seed", "Random seed for sampling the reference objects.");
+
+    /**
+     * Size of the reference sample.
+     */
+    protected double sample = 0;
+
+    /**
+     * Random generator.
+     */
+    protected RandomFactory rnd;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new DoubleParameter(SAMPLE_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_DOUBLE) //
+          .grab(config, x -> sample = x);
+      if(sample > 0) {
+        new RandomParameter(SEED_ID).grab(config, x -> rnd = x);
+      }
+    }
+
+    @Override
+    public ParallelABOD<V> make() {
+      return new ParallelABOD<>(kernelFunction, sample, rnd);
+    }
+  }
+}
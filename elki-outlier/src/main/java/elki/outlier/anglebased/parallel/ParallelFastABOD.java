@@ -0,0 +1,228 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.anglebased.parallel;
+
+import java.util.function.Supplier;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.query.QueryBuilder;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.query.similarity.SimilarityQuery;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.logging.Logging;
+import elki.math.DoubleMinMax;
+import elki.math.MeanVariance;
+import elki.outlier.anglebased.FastABOD;
+import elki.parallel.ParallelStages;
+import elki.result.outlier.InvertedOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.similarity.Similarity;
+import elki.similarity.kernel.LinearKernel;
+import elki.utilities.documentation.Title;
+
+/**
+ * Parallel implementation of Fast-ABOD (approximateABOF), {@link FastABOD}.
+ * <p>
+ * The angle variances of the objects are computed in parallel. Instead of a
+ * kernel matrix, which needs quadratic memory, the kernel similarities are
+ * computed on demand. With the linear kernel and a kNN index, the neighbors
+ * are obtained from the index; otherwise each object scans the data set.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <V> Vector type
+ */
+@Title("Approximate ABOD: Angle-Based Outlier Detection (parallel implementation)")
+public class ParallelFastABOD<V extends NumberVector> extends FastABOD<V> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelFastABOD.class);
+
+  /**
+   * Constructor.
+   *
+   * @param kernelFunction kernel function to use
+   * @param k Number of nearest neighbors
+   */
+  public ParallelFastABOD(Similarity<? super V> kernelFunction, int k) {
+    super(kernelFunction, k);
+  }
+
+  @Override
+  public OutlierResult run(Relation<V> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    DoubleMinMax minmaxabod = new DoubleMinMax();
+    WritableDoubleDataStore abodvalues = null;
+    if(kernelFunction.getClass() == LinearKernel.class) {
+      abodvalues = kNNABOD(relation, ids, minmaxabod);
+    }
+    if(abodvalues == null) {
+      // Fallback, if we do not have an index.
+      abodvalues = fastABOD(relation, ids, minmaxabod);
+    }
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Angle-Based Outlier Degree", relation.getDBIDs(), abodvalues);
+    OutlierScoreMeta scoreMeta = new InvertedOutlierScoreMeta(minmaxabod.getMin(), minmaxabod.getMax(), 0.0, Double.POSITIVE_INFINITY);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Simpler kNN based, can use more indexing.
+   *
+   * @param relation Data relation
+   * @param ids IDs
+   * @param minmaxabod Min/max storage
+   * @return Scores, or {@code null} if no kNN index was available.
+   */
+  private WritableDoubleDataStore kNNABOD(Relation<V> relation, ArrayDBIDs ids, DoubleMinMax minmaxabod) {
+    final int k1 = k + 1; // We will get the query point back by the knnq.
+    final QueryBuilder<V> sqb = new QueryBuilder<>(relation, SquaredEuclideanDistance.STATIC).optimizedOnly();
+    final QueryBuilder<V> eqb = new QueryBuilder<>(relation, EuclideanDistance.STATIC).optimizedOnly();
+    final boolean squared = sqb.kNNByDBID(k1) != null;
+    if(!squared && eqb.kNNByDBID(k1) == null) {
+      return null;
+    }
+    Supplier<KNNSearcher<DBIDRef>> knnq = () -> (squared ? sqb : eqb).kNNByDBID(k1);
+    final WritableDataStore<KNNList> knns = ParallelStages.knn(ids, k1, knnq, LOG);
+    final QueryBuilder<V> lqb = new QueryBuilder<>(relation, (Similarity<? super V>) LinearKernel.STATIC);
+    WritableDoubleDataStore abodvalues = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_STATIC, () -> {
+      final SimilarityQuery<V> lk = lqb.similarityQuery();
+      final MeanVariance s = new MeanVariance();
+      return pA -> computeABOF(lk, pA, knns.get(pA), squared, s);
+    }, minmaxabod, "ABOD", LOG);
+    knns.destroy();
+    return abodvalues;
+  }
+
+  /**
+   * Full kernel-based version.
+   *
+   * @param relation Data relation
+   * @param ids IDs
+   * @param minmaxabod Min/max storage
+   * @return Scores
+   */
+  private WritableDoubleDataStore fastABOD(Relation<V> relation, ArrayDBIDs ids, DoubleMinMax minmaxabod) {
+    final QueryBuilder<V> qb = new QueryBuilder<>(relation, kernelFunction);
+    // Self-similarities, as used by all objects:
+    final WritableDoubleDataStore simself = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, () -> {
+      final SimilarityQuery<V> sq = qb.similarityQuery();
+      return id -> sq.similarity(id, id);
+    }, null, "Self-similarities", LOG);
+    WritableDoubleDataStore abodvalues = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_STATIC, () -> {
+      final SimilarityQuery<V> sq = qb.similarityQuery();
+      final MeanVariance s = new MeanVariance();
+      final KNNHeap nn = DBIDUtil.newHeap(k);
+      final DBIDArrayIter nB = ids.iter();
+      return pA -> {
+        final double simAA = simself.doubleValue(pA);
+        // Choose the k-min nearest
+        nn.clear();
+        for(nB.seek(0); nB.valid(); nB.advance()) {
+          if(DBIDUtil.equal(nB, pA)) {
+            continue;
+          }
+          double simAB = sq.similarity(pA, nB);
+          double sqdAB = simAA + simself.doubleValue(nB) - simAB - simAB;
+          if(!(sqdAB > 0.)) {
+            continue;
+          }
+          nn.insert(sqdAB, nB);
+        }
+        return computeABOF(sq, pA, nn.toKNNList(), true, s);
+      };
+    }, minmaxabod, "ABOD", LOG);
+    simself.destroy();
+    return abodvalues;
+  }
+
+  /**
+   * Compute the ABOF of an object with respect to its neighbors.
+   *
+   * @param sq Kernel similarity query
+   * @param pA Object
+   * @param nl Neighbors, with distances
+   * @param squared Distances are squared
+   * @param s Statistics tracker
+   * @return ABOF value
+   */
+  private static double computeABOF(SimilarityQuery<?> sq, DBIDRef pA, KNNList nl, boolean squared, MeanVariance s) {
+    final double simAA = sq.similarity(pA, pA);
+    s.reset();
+    DoubleDBIDListIter iB = nl.iter(), iC = nl.iter();
+    for(; iB.valid(); iB.advance()) {
+      double dAB = iB.doubleValue();
+      double simAB = sq.similarity(pA, iB);
+      if(!(dAB > 0.)) {
+        continue;
+      }
+      for(iC.seek(iB.getOffset() + 1); iC.valid(); iC.advance()) {
+        double dAC = iC.doubleValue();
+        double simAC = sq.similarity(pA, iC);
+        if(!(dAC > 0.)) {
+          continue;
+        }
+        // Exploit bilinearity of scalar product:
+        // <B-A, C-A> = <B, C-A> - <A,C-A>
+        // = <B,C> - <B,A> - <A,C> + <A,A>
+        double simBC = sq.similarity(iB, iC);
+        double numerator = simBC - simAB - simAC + simAA;
+        if(squared) {
+          double div = 1. / (dAB * dAC);
+          s.put(numerator * div, Math.sqrt(div));
+        }
+        else {
+          double sqrtdiv = 1. / (dAB * dAC);
+          s.put(numerator * sqrtdiv * sqrtdiv, sqrtdiv);
+        }
+      }
+    }
+    return s.getCount() > 0 ? s.getPopulationVariance() : Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @hidden
+   *
+   * @param <V> Vector type
+   */
+  public static class Par<V extends NumberVector> extends FastABOD.Par<V> {
+    @Override
+    public ParallelFastABOD<V> make() {
+      return new ParallelFastABOD<>(kernelFunction, k);
+    }
+  }
+}
@@ -98,7 +98,7 @@ public class IsolationForest implements OutlierAlgorithm {
   /**
    * Random generator
    */
-  private RandomFactory rnd;
+  protected RandomFactory rnd;
 
   /**
    * Constructor.
@@ -264,6 +264,26 @@ public class IsolationForest implements OutlierAlgorithm {
       this.rnd = random;
     }
 
+    /**
+     * Constructor for building a single tree on a given sample.
+     *
+     * @param relation Data relation
+     * @param sample Sample to build the tree on, will be reordered
+     * @param random Random generator
+     */
+    protected ForestBuilder(Relation<? extends NumberVector> relation, ArrayModifiableDBIDs sample, Random random) {
+      this.relation = relation;
+      final int dim = RelationUtil.dimensionality(relation);
+      this.subsampleSize = sample.size();
+      this.maxheight = (int) Math.ceil(FastMath.log2(subsampleSize));
+      this.min = new double[dim];
+      this.max = new double[dim];
+      this.active = new int[dim];
+      this.ids = sample;
+      this.iter = ids.iter();
+      this.rnd = random;
+    }
+
     /**
      * Build a new tree.
      *
@@ -0,0 +1,485 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.density;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.ArrayModifiableDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.logging.Logging;
+import elki.logging.progress.FiniteProgress;
+import elki.logging.progress.StepProgress;
+import elki.math.DoubleMinMax;
+import elki.math.MathUtil;
+import elki.parallel.ParallelExecutor;
+import elki.result.outlier.BasicOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.random.RandomFactory;
+import elki.utilities.random.Xoroshiro128NonThreadsafeRandom;
+
+import net.jafama.FastMath;
+
+/**
+ * Parallel version of the isolation forest.
+ * <p>
+ * Each tree is built on its own random sample, with an independent random
+ * stream seeded from the random factory, so the result does not depend on the
+ * number of threads. The trees are stored in a compact array-of-nodes
+ * {@link Forest}, which can be saved and later used to score new data without
+ * retraining. Scoring is parallel over blocks of objects.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - Forest
+ */
+public class ParallelIsolationForest extends IsolationForest {
+  /**
+   * Class logger
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelIsolationForest.class);
+
+  /**
+   * Minimum number of objects to score per parallel block.
+   */
+  private static final int BLOCKSIZE = 1024;
+
+  /**
+   * File to load a previous model from, may be {@code null}.
+   */
+  protected Path load;
+
+  /**
+   * File to save the model to, may be {@code null}.
+   */
+  protected Path save;
+
+  /**
+   * Constructor.
+   *
+   * @param numTrees Number of trees
+   * @param subsampleSize Subsampling size
+   * @param rnd Random generator
+   * @param load File to load a previous model from, may be {@code null}
+   * @param save File to save the model to, may be {@code null}
+   */
+  public ParallelIsolationForest(int numTrees, int subsampleSize, RandomFactory rnd, Path load, Path save) {
+    super(numTrees, subsampleSize, rnd);
+    this.load = load;
+    this.save = save;
+  }
+
+  @Override
+  public OutlierResult run(Relation<? extends NumberVector> relation) {
+    StepProgress stepprog = LOG.isVerbose() ? new StepProgress(2) : null;
+    Forest forest;
+    if(load != null) {
+      LOG.beginStep(stepprog, 1, "Loading isolation trees.");
+      forest = Forest.load(load);
+      if(forest.getDimensionality() != RelationUtil.dimensionality(relation)) {
+        throw new AbortException("The isolation forest model has dimensionality " + forest.getDimensionality() + ", but the data has dimensionality " + RelationUtil.dimensionality(relation));
+      }
+    }
+    else {
+      LOG.beginStep(stepprog, 1, "Generating isolation trees.");
+      forest = train(relation);
+      if(save != null) {
+        forest.save(save);
+      }
+    }
+    LOG.beginStep(stepprog, 2, "Computing isolation forest scores.");
+    OutlierResult result = score(forest, relation);
+    LOG.ensureCompleted(stepprog);
+    return result;
+  }
+
+  /**
+   * Build the isolation forest, one tree per task.
+   *
+   * @param relation Data relation
+   * @return Forest
+   */
+  public Forest train(Relation<? extends NumberVector> relation) {
+    final int sampleSize = Math.min(subsampleSize, relation.size());
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    // Independent random streams for each tree:
+    final long[] seeds = new long[numTrees];
+    final Random random = rnd.getSingleThreadedRandom();
+    for(int i = 0; i < numTrees; i++) {
+      seeds[i] = random.nextLong();
+    }
+    final Node[] trees = new Node[numTrees];
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Isolation forest construction", numTrees, LOG) : null;
+    ParallelExecutor.run(0, numTrees, 1, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        final Random r = new Xoroshiro128NonThreadsafeRandom(seeds[i]);
+        ArrayModifiableDBIDs sample = DBIDUtil.newArray(DBIDUtil.randomSample(ids, sampleSize, r));
+        trees[i] = new ForestBuilder(relation, sample, r).build(0, sampleSize, 0);
+      }
+      LOG.incrementProcessed(prog, end - start);
+    });
+    LOG.ensureCompleted(prog);
+    return new Forest(RelationUtil.dimensionality(relation), sampleSize, trees);
+  }
+
+  /**
+   * Score all objects of a relation with a forest.
+   *
+   * @param forest Isolation forest
+   * @param relation Data relation
+   * @return Outlier detection result
+   */
+  public static OutlierResult score(Forest forest, Relation<? extends NumberVector> relation) {
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(relation.getDBIDs());
+    final double[] s = new double[ids.size()];
+    FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Isolation forest scores", ids.size(), LOG) : null;
+    ParallelExecutor.run(0, ids.size(), BLOCKSIZE, (start, end) -> {
+      DBIDArrayIter iter = ids.iter();
+      for(int i = start; i < end; i++) {
+        s[i] = forest.score(relation.get(iter.seek(i)));
+      }
+      LOG.incrementProcessed(prog, end - start);
+    });
+    LOG.ensureCompleted(prog);
+    // Data stores are not thread safe for writing.
+    WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(ids, DataStoreFactory.HINT_DB);
+    DoubleMinMax minmax = new DoubleMinMax();
+    for(DBIDArrayIter iter = ids.iter(); iter.valid(); iter.advance()) {
+      final double score = s[iter.getOffset()];
+      scores.putDouble(iter, score);
+      minmax.put(score);
+    }
+
+    // Wrap the result in the standard containers
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(
+        // Actually observed minimum and maximum values
+        minmax.getMin(), minmax.getMax(),
+        // Theoretical minimum and maximum: no variance to infinite variance
+        0, Double.POSITIVE_INFINITY);
+    DoubleRelation rel = new MaterializedDoubleRelation("IsolationForest", ids, scores);
+    return new OutlierResult(meta, rel);
+  }
+
+  /**
+   * Isolation forest stored as a flat array of nodes, in preorder.
+   * <p>
+   * The left child of an inner node is the next node, the right child is
+   * stored explicitly. Leaf nodes have split dimension -1, and store the
+   * expected path length of their size instead of a split value.
+   *
+   * @author agent
+   */
+  public static class Forest {
+    /**
+     * File format identifier.
+     */
+    private static final int MAGIC = 0x49466F72;
+
+    /**
+     * Data dimensionality.
+     */
+    final int dim;
+
+    /**
+     * Sample size used for training.
+     */
+    final int sampleSize;
+
+    /**
+     * Root node of each tree.
+     */
+    final int[] roots;
+
+    /**
+     * Split dimension, -1 for leaves.
+     */
+    final int[] split;
+
+    /**
+     * Split value, or expected path length for leaves.
+     */
+    final double[] value;
+
+    /**
+     * Right child of inner nodes.
+     */
+    final int[] right;
+
+    /**
+     * Constructor.
+     *
+     * @param dim Data dimensionality
+     * @param sampleSize Sample size used for training
+     * @param roots Root node of each tree
+     * @param split Split dimensions
+     * @param value Split values
+     * @param right Right children
+     */
+    protected Forest(int dim, int sampleSize, int[] roots, int[] split, double[] value, int[] right) {
+      this.dim = dim;
+      this.sampleSize = sampleSize;
+      this.roots = roots;
+      this.split = split;
+      this.value = value;
+      this.right = right;
+    }
+
+    /**
+     * Constructor from a set of trees.
+     *
+     * @param dim Data dimensionality
+     * @param sampleSize Sample size used for training
+     * @param trees Trees
+     */
+    protected Forest(int dim, int sampleSize, Node[] trees) {
+      this.dim = dim;
+      this.sampleSize = sampleSize;
+      int size = 0;
+      for(Node tree : trees) {
+        size += countNodes(tree);
+      }
+      this.roots = new int[trees.length];
+      this.split = new int[size];
+      this.value = new double[size];
+      this.right = new int[size];
+      for(int i = 0, pos = 0; i < trees.length; i++) {
+        roots[i] = pos;
+        pos = flatten(trees[i], pos);
+      }
+    }
+
+    /**
+     * Count the nodes of a tree.
+     *
+     * @param n Node
+     * @return Number of nodes
+     */
+    private static int countNodes(Node n) {
+      return n.dim < 0 ? 1 : 1 + countNodes(n.left) + countNodes(n.right);
+    }
+
+    /**
+     * Store a tree in the flat arrays.
+     *
+     * @param n Node
+     * @param pos Position to store the node at
+     * @return Next free position
+     */
+    private int flatten(Node n, int pos) {
+      if(n.dim < 0) {
+        split[pos] = -1;
+        value[pos] = c(n.size);
+        return pos + 1;
+      }
+      split[pos] = n.dim;
+      value[pos] = n.split;
+      return flatten(n.right, right[pos] = flatten(n.left, pos + 1));
+    }
+
+    /**
+     * Compute the isolation score of a vector.
+     *
+     * @param v Vector
+     * @return Score
+     */
+    public double score(NumberVector v) {
+      final double f = -MathUtil.LOG2 / (roots.length * c(sampleSize));
+      double avgPathLength = 0;
+      for(int root : roots) {
+        int n = root, depth = 1;
+        while(split[n] >= 0) {
+          n = v.doubleValue(split[n]) <= value[n] ? n + 1 : right[n];
+          depth++;
+        }
+        avgPathLength += value[n] + depth;
+      }
+      return FastMath.exp(f * avgPathLength);
+    }
+
+    /**
+     * Get the data dimensionality.
+     *
+     * @return Dimensionality
+     */
+    public int getDimensionality() {
+      return dim;
+    }
+
+    /**
+     * Get the number of trees.
+     *
+     * @return Number of trees
+     */
+    public int getNumTrees() {
+      return roots.length;
+    }
+
+    /**
+     * Write the forest.
+     *
+     * @param out Output
+     * @throws IOException on IO errors
+     */
+    public void write(DataOutput out) throws IOException {
+      out.writeInt(MAGIC);
+      out.writeInt(dim);
+      out.writeInt(sampleSize);
+      out.writeInt(roots.length);
+      out.writeInt(split.length);
+      for(int root : roots) {
+        out.writeInt(root);
+      }
+      for(int i = 0; i < split.length; i++) {
+        out.writeInt(split[i]);
+        out.writeDouble(value[i]);
+        if(split[i] >= 0) {
+          out.writeInt(right[i]);
+        }
+      }
+    }
+
+    /**
+     * Read a forest.
+     *
+     * @param in Input
+     * @return Forest
+     * @throws IOException on IO errors
+     */
+    public static Forest read(DataInput in) throws IOException {
+      if(in.readInt() != MAGIC) {
+        throw new IOException("Not an isolation forest model.");
+      }
+      final int dim = in.readInt(), sampleSize = in.readInt();
+      final int[] roots = new int[in.readInt()];
+      final int size = in.readInt();
+      final int[] split = new int[size], right = new int[size];
+      final double[] value = new double[size];
+      for(int i = 0; i < roots.length; i++) {
+        roots[i] = in.readInt();
+      }
+      for(int i = 0; i < size; i++) {
+        split[i] = in.readInt();
+        value[i] = in.readDouble();
+        if(split[i] >= 0) {
+          right[i] = in.readInt();
+        }
+      }
+      return new Forest(dim, sampleSize, roots, split, value, right);
+    }
+
+    /**
+     * Save the forest to a file.
+     *
+     * @param file File name
+     */
+    public void save(Path file) {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+        write(out);
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not save the isolation forest to " + file, e);
+      }
+    }
+
+    /**
+     * Load a forest from a file.
+     *
+     * @param file File name
+     * @return Forest
+     */
+    public static Forest load(Path file) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        return read(in);
+      }
+      catch(IOException e) {
+        throw new AbortException("Could not load the isolation forest from " + file, e);
+      }
+    }
+  }
+
+  /**
+   * Parameterization class
+   *
+   * @author agent
+   */
+  public static class Par extends IsolationForest.Par {
+    /**
+     * Parameter for loading a previously saved model.
+     */
+    public static final OptionID LOAD_ID = new OptionID("iforest.model.load", "Load a previously saved isolation forest instead of training a new one.");
+
+    /**
+     * Parameter for saving the model.
+     */
+    public static final OptionID SAVE_ID = new OptionID("iforest.model.save", "Save the trained isolation forest to this file.");
+
+    /**
+     * File to load a previous model from.
+     */
+    protected Path load;
+
+    /**
+     * File to save the model to.
+     */
+    protected Path save;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new FileParameter(LOAD_ID, FileParameter.FileType.INPUT_FILE) //
+          .setOptional(true) //
+          .grab(config, x -> load = Paths.get(x));
+      new FileParameter(SAVE_ID, FileParameter.FileType.OUTPUT_FILE) //
+          .setOptional(true) //
+          .grab(config, x -> save = Paths.get(x));
+    }
+
+    @Override
+    public ParallelIsolationForest make() {
+      return new ParallelIsolationForest(numTrees, subsampleSize, rnd, load, save);
+    }
+  }
+}
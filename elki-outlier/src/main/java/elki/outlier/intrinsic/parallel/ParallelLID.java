@@ -0,0 +1,112 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.intrinsic.parallel;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDs;
+import elki.database.query.QueryBuilder;
+import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.KNNSearcher;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.math.DoubleMinMax;
+import elki.math.statistics.intrinsicdimensionality.IntrinsicDimensionalityEstimator;
+import elki.outlier.intrinsic.LID;
+import elki.parallel.ParallelStages;
+import elki.result.outlier.BasicOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.utilities.documentation.Title;
+
+/**
+ * Parallel version of the intrinsic dimensionality outlier detection,
+ * {@link LID}.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> Object type
+ */
+@Title("LID: Intrinsic Dimensionality Outlier (parallel implementation)")
+public class ParallelLID<O> extends LID<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLID.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param k Neighborhood size
+   * @param estimator Estimator for intrinsic dimensionality
+   */
+  public ParallelLID(Distance<? super O> distance, int k, IntrinsicDimensionalityEstimator<? super O> estimator) {
+    super(distance, k, estimator);
+  }
+
+  /**
+   * Run the algorithm
+   *
+   * @param relation Data relation
+   * @return Outlier result
+   */
+  @Override
+  public OutlierResult run(Relation<O> relation) {
+    DBIDs ids = relation.getDBIDs();
+    QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    DoubleMinMax minmax = new DoubleMinMax();
+    WritableDoubleDataStore id_score = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_STATIC, () -> {
+      final DistanceQuery<O> distQ = qb.distanceQuery();
+      final KNNSearcher<DBIDRef> knnQ = qb.kNNByDBID(kplus);
+      return id -> {
+        try {
+          return estimator.estimate(knnQ, distQ, id, kplus);
+        }
+        catch(ArithmeticException e) {
+          return 0.; // pass, use 0.
+        }
+      };
+    }, minmax, "kNN distance for objects", LOG);
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Intrinsic dimensionality", ids, id_score);
+    OutlierScoreMeta meta = new BasicOutlierScoreMeta(minmax.getMin(), minmax.getMax(), 0.0, Double.POSITIVE_INFINITY, 0.0);
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> extends LID.Par<O> {
+    @Override
+    public ParallelLID<O> make() {
+      return new ParallelLID<>(distance, k, estimator);
+    }
+  }
+}
@@ -109,7 +109,7 @@ public class KDEOS<O> implements OutlierAlgorithm {
   /**
    * Significance cutoff when computing kernel density.
    */
-  private final static double CUTOFF = 1e-20;
+  protected final static double CUTOFF = 1e-20;
 
   /**
    * Distance function used.
@@ -229,13 +229,7 @@ public class KDEOS<O> implements OutlierAlgorithm {
         final double ibw = Math.min(k / (sum * scale), iminbw);
         final double sca = MathUtil.powi(ibw, dim);
         for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
-          final double dens;
-          if(sca < Double.POSITIVE_INFINITY) { // NaNs with duplicate points!
-            dens = sca * kernel.density(neighbor.doubleValue() * ibw);
-          }
-          else {
-            dens = neighbor.doubleValue() == 0. ? 1. : 0.;
-          }
+          final double dens = density(sca, ibw, neighbor.doubleValue());
           densities.get(neighbor)[idx] += dens;
           if(dens < CUTOFF) {
             break;
@@ -248,6 +242,21 @@ public class KDEOS<O> implements OutlierAlgorithm {
     LOG.ensureCompleted(prog);
   }
 
+  /**
+   * Density contribution of a single neighbor.
+   *
+   * @param sca Kernel scaling factor
+   * @param ibw Inverse bandwidth
+   * @param d Distance
+   * @return Density contribution
+   */
+  protected double density(double sca, double ibw, double d) {
+    if(sca < Double.POSITIVE_INFINITY) { // NaNs with duplicate points!
+      return sca * kernel.density(d * ibw);
+    }
+    return d == 0. ? 1. : 0.;
+  }
+
   /**
    * Ugly hack to allow using this implementation without having a well-defined
    * dimensionality.
@@ -255,7 +264,7 @@ public class KDEOS<O> implements OutlierAlgorithm {
    * @param rel Data relation
    * @return Dimensionality
    */
-  private int dimensionality(Relation<O> rel) {
+  protected int dimensionality(Relation<O> rel) {
     // Explicit:
     if(idim >= 0) {
       return idim;
@@ -101,17 +101,17 @@ public class LoOP<O> implements OutlierAlgorithm {
   /**
    * Reachability neighborhood size.
    */
-  int kreach;
+  protected int kreach;
 
   /**
    * Comparison neighborhood size.
    */
-  int kcomp;
+  protected int kcomp;
 
   /**
    * Lambda parameter.
    */
-  double lambda;
+  protected double lambda;
 
   /**
    * Distance function for reachability.
@@ -327,17 +327,17 @@ public class LoOP<O> implements OutlierAlgorithm {
     /**
      * Holds the value of {@link #KREACH_ID}.
      */
-    int kreach = 0;
+    protected int kreach = 0;
 
     /**
      * Holds the value of {@link #KCOMP_ID}.
      */
-    int kcomp = 0;
+    protected int kcomp = 0;
 
     /**
      * Hold the value of {@link #LAMBDA_ID}.
      */
-    double lambda = 2.0;
+    protected double lambda = 2.0;
 
     /**
      * Preprocessor Step 1.
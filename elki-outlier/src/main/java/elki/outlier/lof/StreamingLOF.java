@@ -0,0 +1,518 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.query.knn.KNNSearcher;
+import elki.distance.PrimitiveDistance;
+import elki.parallel.ParallelExecutor;
+import elki.utilities.documentation.Reference;
+
+/**
+ * Streaming version of the {@link LOF} algorithm over a sliding window.
+ * <p>
+ * New objects arrive in micro-batches. For each batch, the kNN and reverse kNN
+ * sets are updated incrementally, and the LOF scores are recomputed only for
+ * the affected objects: objects whose neighborhood changed, objects with such
+ * a neighbor (because of the changed reachability distance), and objects with
+ * a neighbor whose density changed. When the window size is exceeded, the
+ * oldest objects are removed. After each batch, the scores are the same as
+ * when running LOF on the objects in the window.
+ * <p>
+ * The neighborhoods of the new objects, and of the objects that lost a
+ * neighbor to expiry, are computed in parallel. Without an index, each of
+ * these objects is compared to all objects in the window; the existing
+ * objects that gain a new neighbor are found in the same pass.
+ * <p>
+ * In contrast to {@link OnlineLOF}, this does not need a database with
+ * materialized kNN preprocessors, but keeps its own state. The distance
+ * function must be symmetric.
+ * <p>
+ * With a sliding window, the object ids are a fixed range of the window size,
+ * and the id of an expired object is reused for a later object. The state is
+ * kept in array storage. Without expiry, every object takes a new id from the
+ * global id counter, which limits the number of objects to about
+ * \(2^{31}\).
+ * <p>
+ * Reference:
+ * <p>
+ * D. Pokrajac, A. Lazarevic, L. J. Latecki<br>
+ * Incremental Local Outlier Detection for Data Streams<br>
+ * Proc. IEEE Symposium on Computational Intelligence and Data Mining (CIDM
+ * 2007)
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - Update
+ *
+ * @param <O> Object type
+ */
+@Reference(authors = "D. Pokrajac, A. Lazarevic, L. J. Latecki", //
+    title = "Incremental Local Outlier Detection for Data Streams", //
+    booktitle = "Proc. IEEE Symposium on Computational Intelligence and Data Mining (CIDM 2007)", //
+    url = "https://doi.org/10.1109/CIDM.2007.368917", //
+    bibkey = "DBLP:conf/cidm/PokrajacLL07")
+public class StreamingLOF<O> {
+  /**
+   * Block size for parallel score computations.
+   */
+  private static final int BLOCKSIZE = 64;
+
+  /**
+   * LOF instance, for computing densities and scores.
+   */
+  private final LOF<O> lof;
+
+  /**
+   * Number of neighbors, including the query point.
+   */
+  private final int kplus;
+
+  /**
+   * Distance function.
+   */
+  private final PrimitiveDistance<? super O> distance;
+
+  /**
+   * Window size, 0 for no expiry.
+   */
+  private final int window;
+
+  /**
+   * Ids to use with a sliding window, {@code null} without expiry.
+   */
+  private final DBIDRange slots;
+
+  /**
+   * Iterator into the ids, to assign them to new objects in a round-robin
+   * fashion.
+   */
+  private final DBIDArrayIter nextSlot;
+
+  /**
+   * Objects in the window, in order of insertion.
+   */
+  private final ArrayDeque<DBID> order = new ArrayDeque<>();
+
+  /**
+   * Object storage.
+   */
+  private final WritableDataStore<O> objects;
+
+  /**
+   * Nearest neighbors, including the object itself.
+   */
+  private final WritableDataStore<KNNList> knns;
+
+  /**
+   * Reverse nearest neighbors.
+   */
+  private final WritableDataStore<HashSetModifiableDBIDs> rknns;
+
+  /**
+   * Local reachability densities.
+   */
+  private final WritableDoubleDataStore lrds;
+
+  /**
+   * LOF scores.
+   */
+  private final WritableDoubleDataStore lofs;
+
+  /**
+   * kNN searcher on the materialized neighborhoods.
+   */
+  private final KNNSearcher<DBIDRef> knnq;
+
+  /**
+   * Constructor.
+   *
+   * @param k Number of neighbors (not including the query point)
+   * @param distance Distance function, must be symmetric
+   * @param window Sliding window size, 0 for no expiry
+   */
+  public StreamingLOF(int k, PrimitiveDistance<? super O> distance, int window) {
+    super();
+    this.lof = new LOF<>(k, distance);
+    this.kplus = k + 1;
+    this.distance = distance;
+    this.window = window;
+    // With a window, the ids are reused; otherwise use hash-based storage.
+    this.slots = window > 0 ? DBIDUtil.generateStaticDBIDRange(window) : null;
+    this.nextSlot = slots != null ? slots.iter() : null;
+    final DBIDs storeids = slots != null ? slots : DBIDUtil.newHashSet();
+    this.objects = DataStoreUtil.makeStorage(storeids, DataStoreFactory.HINT_DB, Object.class);
+    this.knns = DataStoreUtil.makeStorage(storeids, DataStoreFactory.HINT_HOT, KNNList.class);
+    this.rknns = DataStoreUtil.makeStorage(storeids, DataStoreFactory.HINT_HOT, HashSetModifiableDBIDs.class);
+    this.lrds = DataStoreUtil.makeDoubleStorage(storeids, DataStoreFactory.HINT_HOT, Double.NaN);
+    this.lofs = DataStoreUtil.makeDoubleStorage(storeids, DataStoreFactory.HINT_DB, Double.NaN);
+    this.knnq = (id, k2) -> knns.get(id);
+  }
+
+  /**
+   * Insert a batch of new objects, and expire the oldest objects if the window
+   * size is exceeded. If the batch is larger than the window, only its last
+   * objects are inserted.
+   *
+   * @param batch New objects
+   * @return Update, with the new LOF scores of all affected objects
+   */
+  public Update insert(List<? extends O> batch) {
+    if(window > 0 && batch.size() > window) {
+      batch = batch.subList(batch.size() - window, batch.size());
+    }
+    // Expire first, so the ids can be reused:
+    ArrayModifiableDBIDs removed = DBIDUtil.newArray();
+    while(window > 0 && order.size() + batch.size() > window) {
+      removed.add(order.poll());
+    }
+    DBIDs rescan = remove(removed);
+    ArrayModifiableDBIDs inserted = DBIDUtil.newArray(batch.size());
+    for(O o : batch) {
+      DBID id = newDBID();
+      objects.put(id, o);
+      rknns.put(id, DBIDUtil.newHashSet());
+      order.add(id);
+      inserted.add(id);
+    }
+
+    // Snapshot of the window. New objects have no neighbors yet.
+    final int size = order.size();
+    final ArrayModifiableDBIDs all = DBIDUtil.newArray(size);
+    final List<O> objs = new ArrayList<>(size);
+    final ArrayModifiableDBIDs fresh = DBIDUtil.newArray(), rescans = DBIDUtil.newArray(rescan.size());
+    // k-distances of the existing objects that may gain a new neighbor:
+    final double[] kdist = new double[size];
+    for(DBID id : order) {
+      final KNNList list = knns.get(id);
+      if(list == null) {
+        fresh.add(id);
+      }
+      else if(rescan.contains(id)) {
+        rescans.add(id);
+      }
+      kdist[all.size()] = list == null || rescan.contains(id) ? Double.NaN : list.getKNNDistance();
+      all.add(id);
+      objs.add(objects.get(id));
+    }
+
+    // Neighbors of the new objects, and candidates for existing objects:
+    final KNNList[] freshKNN = new KNNList[fresh.size()];
+    final ModifiableDoubleDBIDList[] hits = new ModifiableDoubleDBIDList[fresh.size()];
+    final int base = size - fresh.size(); // New objects are last.
+    ParallelExecutor.run(0, fresh.size(), 1, (start, end) -> {
+      final DBIDArrayIter it = all.iter();
+      for(int j = start; j < end; j++) {
+        final O x = objs.get(base + j);
+        final KNNHeap heap = DBIDUtil.newHeap(kplus);
+        final ModifiableDoubleDBIDList h = DBIDUtil.newDistanceDBIDList();
+        for(it.seek(0); it.valid(); it.advance()) {
+          final double d = distance.distance(x, objs.get(it.getOffset()));
+          heap.insert(d, it);
+          if(d <= kdist[it.getOffset()]) {
+            h.add(d, it);
+          }
+        }
+        freshKNN[j] = heap.toKNNList();
+        hits[j] = h;
+      }
+    });
+    // Objects that lost a neighbor need a full scan:
+    final KNNList[] rescanKNN = new KNNList[rescans.size()];
+    ParallelExecutor.run(0, rescans.size(), 1, (start, end) -> {
+      final DBIDArrayIter it = all.iter(), q = rescans.iter();
+      for(int j = start; j < end; j++) {
+        final O x = objects.get(q.seek(j));
+        final KNNHeap heap = DBIDUtil.newHeap(kplus);
+        for(it.seek(0); it.valid(); it.advance()) {
+          heap.insert(distance.distance(x, objs.get(it.getOffset())), it);
+        }
+        rescanKNN[j] = heap.toKNNList();
+      }
+    });
+
+    // Update the neighborhoods and reverse neighborhoods:
+    ArrayModifiableDBIDs changed = DBIDUtil.newArray(fresh.size() + rescans.size());
+    for(DBIDArrayIter it = fresh.iter(); it.valid(); it.advance()) {
+      setKNN(it, freshKNN[it.getOffset()], changed);
+    }
+    for(DBIDArrayIter it = rescans.iter(); it.valid(); it.advance()) {
+      setKNN(it, rescanKNN[it.getOffset()], changed);
+    }
+    // Merge the new objects into the existing neighborhoods, in order:
+    WritableDataStore<KNNHeap> heaps = DataStoreUtil.makeStorage(DBIDUtil.newHashSet(), DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, KNNHeap.class);
+    ArrayModifiableDBIDs grown = DBIDUtil.newArray();
+    for(DBIDArrayIter it = fresh.iter(); it.valid(); it.advance()) {
+      for(DoubleDBIDListIter h = hits[it.getOffset()].iter(); h.valid(); h.advance()) {
+        KNNHeap heap = heaps.get(h);
+        if(heap == null) {
+          heaps.put(h, heap = DBIDUtil.newHeap(knns.get(h)));
+          grown.add(h);
+        }
+        heap.insert(h.doubleValue(), it);
+      }
+    }
+    for(DBIDIter it = grown.iter(); it.valid(); it.advance()) {
+      setKNN(it, heaps.get(it).toKNNList(), changed);
+    }
+    heaps.destroy();
+
+    // Densities depend on the k-distances of the neighbors:
+    HashSetModifiableDBIDs lrdCand = DBIDUtil.newHashSet(changed);
+    for(DBIDIter it = changed.iter(); it.valid(); it.advance()) {
+      lrdCand.addDBIDs(rknns.get(it));
+    }
+    final ArrayDBIDs lrdIds = DBIDUtil.ensureArray(lrdCand);
+    final double[] newLrds = new double[lrdIds.size()];
+    ParallelExecutor.run(0, newLrds.length, BLOCKSIZE, (start, end) -> {
+      for(DBIDArrayIter it = lrdIds.iter().seek(start); it.getOffset() < end; it.advance()) {
+        newLrds[it.getOffset()] = lof.computeLRD(knnq, it);
+      }
+    });
+    ArrayModifiableDBIDs lrdChanged = DBIDUtil.newArray();
+    for(DBIDArrayIter it = lrdIds.iter(); it.valid(); it.advance()) {
+      final double lrd = newLrds[it.getOffset()];
+      if(lrd != lrds.doubleValue(it)) {
+        lrds.putDouble(it, lrd);
+        lrdChanged.add(it);
+      }
+    }
+
+    // Scores depend on the densities of the neighbors:
+    HashSetModifiableDBIDs lofCand = DBIDUtil.newHashSet(changed);
+    lofCand.addDBIDs(lrdChanged);
+    for(DBIDIter it = lrdChanged.iter(); it.valid(); it.advance()) {
+      lofCand.addDBIDs(rknns.get(it));
+    }
+    final ArrayDBIDs lofIds = DBIDUtil.ensureArray(lofCand);
+    final double[] newLofs = new double[lofIds.size()];
+    ParallelExecutor.run(0, newLofs.length, BLOCKSIZE, (start, end) -> {
+      for(DBIDArrayIter it = lofIds.iter().seek(start); it.getOffset() < end; it.advance()) {
+        newLofs[it.getOffset()] = lof.computeLOFScore(knnq, it, lrds);
+      }
+    });
+    ModifiableDoubleDBIDList scores = DBIDUtil.newDistanceDBIDList(newLofs.length);
+    for(DBIDArrayIter it = lofIds.iter(); it.valid(); it.advance()) {
+      lofs.putDouble(it, newLofs[it.getOffset()]);
+      scores.add(newLofs[it.getOffset()], it);
+    }
+    return new Update(inserted, removed, scores);
+  }
+
+  /**
+   * Get the id for a new object. With a sliding window, the objects expire in
+   * insertion order, so the next id in round-robin order is always free.
+   *
+   * @return New object id
+   */
+  private DBID newDBID() {
+    if(slots == null) {
+      return DBIDUtil.generateSingleDBID();
+    }
+    if(!nextSlot.valid()) {
+      nextSlot.seek(0);
+    }
+    final DBID id = DBIDUtil.deref(nextSlot);
+    nextSlot.advance();
+    return id;
+  }
+
+  /**
+   * Replace the neighborhood of an object, and update the reverse
+   * neighborhoods.
+   *
+   * @param id Object
+   * @param list New neighbors
+   * @param changed Output of objects with changed neighbors
+   */
+  private void setKNN(DBIDRef id, KNNList list, ArrayModifiableDBIDs changed) {
+    final KNNList old = knns.get(id);
+    if(old != null) {
+      for(DBIDIter n = old.iter(); n.valid(); n.advance()) {
+        final HashSetModifiableDBIDs rk = rknns.get(n);
+        if(rk != null) { // Not expired, or id reused
+          rk.remove(id);
+        }
+      }
+    }
+    for(DBIDIter n = list.iter(); n.valid(); n.advance()) {
+      rknns.get(n).add(id);
+    }
+    knns.put(id, list);
+    changed.add(id);
+  }
+
+  /**
+   * Remove expired objects.
+   *
+   * @param removed Objects to remove
+   * @return Remaining objects that lost a neighbor
+   */
+  private DBIDs remove(DBIDs removed) {
+    HashSetModifiableDBIDs removedSet = DBIDUtil.newHashSet(removed);
+    HashSetModifiableDBIDs rescan = DBIDUtil.newHashSet();
+    for(DBIDIter it = removed.iter(); it.valid(); it.advance()) {
+      final KNNList list = knns.get(it);
+      if(list == null) {
+        continue; // Expired before its neighbors were computed.
+      }
+      for(DBIDIter n = list.iter(); n.valid(); n.advance()) {
+        final HashSetModifiableDBIDs rk = rknns.get(n);
+        if(rk != null) {
+          rk.remove(it);
+        }
+      }
+      for(DBIDIter r = rknns.get(it).iter(); r.valid(); r.advance()) {
+        if(!removedSet.contains(r)) {
+          rescan.add(r);
+        }
+      }
+    }
+    for(DBIDIter it = removed.iter(); it.valid(); it.advance()) {
+      objects.delete(it);
+      knns.delete(it);
+      rknns.delete(it);
+      lrds.putDouble(it, Double.NaN);
+      lofs.putDouble(it, Double.NaN);
+    }
+    return rescan;
+  }
+
+  /**
+   * Get the current LOF score of an object.
+   * <p>
+   * Note that the ids of expired objects are reused with a sliding window.
+   *
+   * @param id Object
+   * @return LOF score, NaN if not in the window
+   */
+  public double score(DBIDRef id) {
+    return lofs.doubleValue(id);
+  }
+
+  /**
+   * Get an object in the window.
+   *
+   * @param id Object id
+   * @return Object, {@code null} if not in the window
+   */
+  public O get(DBIDRef id) {
+    return objects.get(id);
+  }
+
+  /**
+   * Get the objects in the window, in insertion order.
+   *
+   * @return Object ids
+   */
+  public ArrayDBIDs getDBIDs() {
+    ArrayModifiableDBIDs ids = DBIDUtil.newArray(order.size());
+    for(DBID id : order) {
+      ids.add(id);
+    }
+    return ids;
+  }
+
+  /**
+   * Get the number of objects in the window.
+   *
+   * @return Window size
+   */
+  public int size() {
+    return order.size();
+  }
+
+  /**
+   * Changes caused by a batch of insertions.
+   *
+   * @author agent
+   */
+  public static class Update {
+    /**
+     * Ids assigned to the new objects, in order.
+     */
+    private final ArrayDBIDs inserted;
+
+    /**
+     * Ids of the expired objects.
+     */
+    private final DBIDs removed;
+
+    /**
+     * New scores of the affected objects.
+     */
+    private final DoubleDBIDList scores;
+
+    /**
+     * Constructor.
+     *
+     * @param inserted Ids assigned to the new objects
+     * @param removed Ids of the expired objects
+     * @param scores New scores of the affected objects
+     */
+    public Update(ArrayDBIDs inserted, DBIDs removed, DoubleDBIDList scores) {
+      this.inserted = inserted;
+      this.removed = removed;
+      this.scores = scores;
+    }
+
+    /**
+     * Get the ids assigned to the new objects, in the order of the batch. If
+     * the batch was larger than the window, these are only the objects that
+     * were inserted.
+     * <p>
+     * With a sliding window, the ids of expired objects are reused for the new
+     * objects, so apply the removals before the new scores.
+     *
+     * @return Object ids
+     */
+    public ArrayDBIDs getInserted() {
+      return inserted;
+    }
+
+    /**
+     * Get the ids of the expired objects.
+     *
+     * @return Object ids
+     */
+    public DBIDs getRemoved() {
+      return removed;
+    }
+
+    /**
+     * Get the new LOF scores of all objects whose score was recomputed.
+     *
+     * @return Scores and object ids
+     */
+    public DoubleDBIDList getScores() {
+      return scores;
+    }
+  }
+}
@@ -0,0 +1,385 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import java.util.function.ToDoubleFunction;
+
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.datastore.WritableIntegerDataStore;
+import elki.database.ids.ArrayDBIDs;
+import elki.database.ids.DBIDArrayIter;
+import elki.database.ids.DBIDRef;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.StepProgress;
+import elki.math.DoubleMinMax;
+import elki.math.MathUtil;
+import elki.math.MeanVariance;
+import elki.math.statistics.distribution.NormalDistribution;
+import elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import elki.outlier.lof.KDEOS;
+import elki.parallel.ParallelStages;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.ProbabilisticOutlierScore;
+import elki.utilities.documentation.Title;
+
+/**
+ * Parallel implementation of the Kernel Density Estimator Outlier Score,
+ * {@link KDEOS}.
+ * <p>
+ * The sequential algorithm distributes the density contributions of each
+ * object to its neighbors. To avoid concurrent writes, this version first
+ * computes the bandwidths of all objects in parallel, then builds the reverse
+ * neighbor lists, and gathers the contributions for each object in parallel.
+ * Because the reverse neighbors are kept in processing order, the sums are
+ * computed in the same order as in the sequential version.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> Object type
+ */
+@Title("KDEOS: Kernel Density Estimator Outlier Score (parallel implementation)")
+public class ParallelKDEOS<O> extends KDEOS<O> {
+  /**
+   * Class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelKDEOS.class);
+
+  /**
+   * Constructor.
+   *
+   * @param distance Distance function
+   * @param kmin Minimum number of neighbors
+   * @param kmax Maximum number of neighbors
+   * @param kernel Kernel function
+   * @param minBandwidth Minimum bandwidth
+   * @param scale Kernel scaling parameter
+   * @param idim Intrinsic dimensionality (use 0 to use real dimensionality)
+   */
+  public ParallelKDEOS(Distance<? super O> distance, int kmin, int kmax, KernelDensityFunction kernel, double minBandwidth, double scale, int idim) {
+    super(distance, kmin, kmax, kernel, minBandwidth, scale, idim);
+  }
+
+  @Override
+  public OutlierResult run(Relation<O> rel) {
+    StepProgress stepprog = LOG.isVerbose() ? new StepProgress("KDEOS", 5) : null;
+    final ArrayDBIDs ids = DBIDUtil.ensureArray(rel.getDBIDs());
+    final int dim = dimensionality(rel);
+    final int knum = kmax + 1 - kmin;
+
+    LOG.beginStep(stepprog, 1, "Materializing neighborhoods w.r.t. distance function.");
+    final QueryBuilder<O> qb = new QueryBuilder<>(rel, distance);
+    final WritableDataStore<KNNList> knns = ParallelStages.knn(ids, kmax + 1, () -> qb.kNNByDBID(kmax + 1), LOG);
+
+    LOG.beginStep(stepprog, 2, "Computing kernel bandwidths.");
+    final double iminbw = (minBandwidth > 0.) ? 1. / (minBandwidth * scale) : Double.POSITIVE_INFINITY;
+    final WritableDataStore<Bandwidths> bws = ParallelStages.map(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, Bandwidths.class, //
+        () -> id -> computeBandwidths(knns.get(id), dim, iminbw), "Bandwidths", LOG);
+
+    LOG.beginStep(stepprog, 3, "Collecting reverse neighbors.");
+    final ReverseNeighbors rev = new ReverseNeighbors(ids, knns, bws);
+
+    LOG.beginStep(stepprog, 4, "Computing densities.");
+    final WritableDataStore<double[]> densities = ParallelStages.map(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, double[].class, () -> {
+      final DBIDArrayIter src = ids.iter();
+      return id -> {
+        final double[] dens = new double[knum];
+        final int off = rev.offsets.intValue(id);
+        for(int e = rev.start[off], end = rev.start[off + 1]; e < end; e++) {
+          src.seek(rev.src[e]);
+          final Bandwidths bw = bws.get(src);
+          final int j = rev.pos[e];
+          final double d = knns.get(src).doubleValue(j);
+          for(int idx = 0; idx < knum; idx++) {
+            if(j < bw.lim[idx]) {
+              dens[idx] += density(bw.sca[idx], bw.ibw[idx], d);
+            }
+          }
+        }
+        return dens;
+      };
+    }, "Densities", LOG);
+    rev.offsets.destroy();
+    bws.destroy();
+
+    LOG.beginStep(stepprog, 5, "Computing KDEOS scores.");
+    DoubleMinMax minmax = new DoubleMinMax();
+    WritableDoubleDataStore kofs = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_DB, () -> new Scorer(knns, densities), minmax, "KDEOS scores", LOG);
+    knns.destroy();
+    densities.destroy();
+    LOG.setCompleted(stepprog);
+
+    DoubleRelation scoreres = new MaterializedDoubleRelation("Kernel Density Estimation Outlier Scores", ids, kofs);
+    OutlierScoreMeta meta = new ProbabilisticOutlierScore(minmax.getMin(), minmax.getMax());
+    return new OutlierResult(meta, scoreres);
+  }
+
+  /**
+   * Compute the kernel bandwidths of a single object, and the number of
+   * neighbors that receive a density contribution for each k.
+   *
+   * @param neighbors Neighbors of the object
+   * @param dim Dimensionality
+   * @param iminbw Inverse minimum bandwidth
+   * @return Bandwidths
+   */
+  private Bandwidths computeBandwidths(KNNList neighbors, int dim, double iminbw) {
+    final Bandwidths bw = new Bandwidths(kmax + 1 - kmin);
+    int k = 1, idx = 0;
+    double sum = 0.;
+    for(DoubleDBIDListIter kneighbor = neighbors.iter(); k <= kmax && kneighbor.valid(); kneighbor.advance(), k++) {
+      sum += kneighbor.doubleValue();
+      if(k < kmin) {
+        continue;
+      }
+      final double ibw = bw.ibw[idx] = Math.min(k / (sum * scale), iminbw);
+      final double sca = bw.sca[idx] = MathUtil.powi(ibw, dim);
+      int lim = 0;
+      for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance()) {
+        ++lim; // The first insignificant neighbor is still included.
+        if(density(sca, ibw, neighbor.doubleValue()) < CUTOFF) {
+          break;
+        }
+      }
+      bw.lim[idx] = lim;
+      ++idx; // Only if k >= kmin
+    }
+    return bw;
+  }
+
+  /**
+   * Kernel bandwidths of a single object, for each value of k.
+   *
+   * @author agent
+   */
+  private static class Bandwidths {
+    /**
+     * Inverse bandwidths.
+     */
+    final double[] ibw;
+
+    /**
+     * Kernel scaling factors.
+     */
+    final double[] sca;
+
+    /**
+     * Number of neighbors receiving a density contribution.
+     */
+    final int[] lim;
+
+    /**
+     * Constructor.
+     *
+     * @param knum Number of k values
+     */
+    Bandwidths(int knum) {
+      ibw = new double[knum];
+      sca = new double[knum];
+      lim = new int[knum];
+    }
+  }
+
+  /**
+   * Reverse neighbors of all objects, in compressed row format and in
+   * processing order.
+   *
+   * @author agent
+   */
+  private static class ReverseNeighbors {
+    /**
+     * Offsets of the objects in the processing order.
+     */
+    final WritableIntegerDataStore offsets;
+
+    /**
+     * Start of the reverse neighbors of each object.
+     */
+    final int[] start;
+
+    /**
+     * Offset of the source object.
+     */
+    final int[] src;
+
+    /**
+     * Position in the neighbor list of the source object.
+     */
+    final int[] pos;
+
+    /**
+     * Constructor.
+     *
+     * @param ids Object ids
+     * @param knns Nearest neighbors
+     * @param bws Bandwidths, to skip neighbors without contribution
+     */
+    ReverseNeighbors(ArrayDBIDs ids, WritableDataStore<KNNList> knns, WritableDataStore<Bandwidths> bws) {
+      final int size = ids.size();
+      offsets = DataStoreUtil.makeIntegerStorage(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP);
+      DBIDArrayIter it = ids.iter();
+      for(; it.valid(); it.advance()) {
+        offsets.putInt(it, it.getOffset());
+      }
+      // Count the reverse neighbors:
+      start = new int[size + 1];
+      for(it.seek(0); it.valid(); it.advance()) {
+        final int lim = maxlim(bws.get(it));
+        DoubleDBIDListIter n = knns.get(it).iter();
+        for(int j = 0; j < lim && n.valid(); j++, n.advance()) {
+          start[offsets.intValue(n) + 1]++;
+        }
+      }
+      for(int i = 0; i < size; i++) {
+        start[i + 1] += start[i];
+      }
+      // Fill, in processing order:
+      src = new int[start[size]];
+      pos = new int[start[size]];
+      int[] fill = new int[size];
+      for(it.seek(0); it.valid(); it.advance()) {
+        final int lim = maxlim(bws.get(it));
+        DoubleDBIDListIter n = knns.get(it).iter();
+        for(int j = 0; j < lim && n.valid(); j++, n.advance()) {
+          final int o = offsets.intValue(n), e = start[o] + fill[o]++;
+          src[e] = it.getOffset();
+          pos[e] = j;
+        }
+      }
+    }
+
+    /**
+     * Maximum number of neighbors receiving a contribution.
+     *
+     * @param bw Bandwidths
+     * @return Maximum
+     */
+    private static int maxlim(Bandwidths bw) {
+      int max = 0;
+      for(int l : bw.lim) {
+        max = l > max ? l : max;
+      }
+      return max;
+    }
+  }
+
+  /**
+   * Compute the KDEOS score of an object. Not thread-safe, because of the
+   * scratch buffers; use one instance per thread.
+   *
+   * @author agent
+   */
+  private class Scorer implements ToDoubleFunction<DBIDRef> {
+    /**
+     * Nearest neighbors.
+     */
+    private final WritableDataStore<KNNList> knns;
+
+    /**
+     * Density estimates.
+     */
+    private final WritableDataStore<double[]> densities;
+
+    /**
+     * Scratch buffer for the densities of the neighbors.
+     */
+    private double[][] scratch;
+
+    /**
+     * Mean and variance.
+     */
+    private final MeanVariance mv = new MeanVariance();
+
+    /**
+     * Constructor.
+     *
+     * @param knns Nearest neighbors
+     * @param densities Density estimates
+     */
+    Scorer(WritableDataStore<KNNList> knns, WritableDataStore<double[]> densities) {
+      this.knns = knns;
+      this.densities = densities;
+      this.scratch = new double[kmax + 1 - kmin][kmax + 5];
+    }
+
+    @Override
+    public double applyAsDouble(DBIDRef id) {
+      final int knum = scratch.length;
+      final double[] dens = densities.get(id);
+      final KNNList neighbors = knns.get(id);
+      if(scratch[0].length < neighbors.size()) {
+        // Resize scratch. Add some extra margin again.
+        scratch = new double[knum][neighbors.size() + 5];
+      }
+      { // Store density matrix of neighbors
+        int i = 0;
+        for(DoubleDBIDListIter neighbor = neighbors.iter(); neighbor.valid(); neighbor.advance(), i++) {
+          double[] ndens = densities.get(neighbor);
+          for(int k = 0; k < knum; k++) {
+            scratch[k][i] = ndens[k];
+          }
+        }
+      }
+      // Compute means and stddevs for each k
+      double score = 0.;
+      for(int i = 0; i < knum; i++) {
+        mv.reset();
+        for(int j = 0; j < neighbors.size(); j++) {
+          mv.put(scratch[i][j]);
+        }
+        final double mean = mv.getMean(), stddev = mv.getSampleStddev();
+        if(stddev > 0.) {
+          score += (mean - dens[i]) / stddev;
+        }
+      }
+      score /= knum; // average
+      return NormalDistribution.standardNormalCDF(score);
+    }
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> extends KDEOS.Par<O> {
+    @Override
+    public ParallelKDEOS<O> make() {
+      return new ParallelKDEOS<>(distance, kmin, kmax, kernel, minBandwidth, scale, idim);
+    }
+  }
+}
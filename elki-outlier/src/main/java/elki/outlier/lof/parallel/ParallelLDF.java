@@ -0,0 +1,155 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.data.NumberVector;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.WritableDataStore;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.database.relation.RelationUtil;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.StepProgress;
+import elki.math.DoubleMinMax;
+import elki.math.MathUtil;
+import elki.math.statistics.kernelfunctions.KernelDensityFunction;
+import elki.outlier.lof.LDF;
+import elki.parallel.ParallelStages;
+import elki.result.outlier.BasicOutlierScoreMeta;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.utilities.documentation.Title;
+
+/**
+ * Parallel implementation of Outlier Detection with Kernel Density Functions,
+ * {@link LDF}.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> vector type
+ */
+@Title("LDF: Outlier Detection with Kernel Density Functions (parallel implementation)")
+public class ParallelLDF<O extends NumberVector> extends LDF<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLDF.class);
+
+  /**
+   * Constructor.
+   *
+   * @param k the value of k
+   * @param distance Distance function
+   * @param kernel Kernel function
+   * @param h Kernel bandwidth scaling
+   * @param c Score scaling parameter
+   */
+  public ParallelLDF(int k, Distance<? super O> distance, KernelDensityFunction kernel, double h, double c) {
+    super(k, distance, kernel, h, c);
+  }
+
+  @Override
+  public OutlierResult run(Relation<O> relation) {
+    StepProgress stepprog = LOG.isVerbose() ? new StepProgress("LDF", 3) : null;
+    final int dim = RelationUtil.dimensionality(relation);
+    final DBIDs ids = relation.getDBIDs();
+
+    LOG.beginStep(stepprog, 1, "Materializing neighborhoods w.r.t. distance function.");
+    final QueryBuilder<O> qb = new QueryBuilder<>(relation, distance);
+    WritableDataStore<KNNList> knns = ParallelStages.knn(ids, kplus, () -> qb.kNNByDBID(kplus), LOG);
+
+    // Compute LDEs
+    LOG.beginStep(stepprog, 2, "Computing LDEs.");
+    WritableDoubleDataStore ldes = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, () -> id -> {
+      double sum = 0.0;
+      int count = 0;
+      for(DoubleDBIDListIter neighbor = knns.get(id).iter(); neighbor.valid(); neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        final double nkdist = knns.get(neighbor).getKNNDistance();
+        if(!(nkdist > 0.) || nkdist == Double.POSITIVE_INFINITY) {
+          sum = Double.POSITIVE_INFINITY;
+          count++;
+          break;
+        }
+        final double v = MathUtil.max(nkdist, neighbor.doubleValue()) / (h * nkdist);
+        sum += kernel.density(v) / MathUtil.powi(h * nkdist, dim);
+        count++;
+      }
+      return sum / count;
+    }, null, "Densities", LOG);
+
+    // Compute local density factors.
+    LOG.beginStep(stepprog, 3, "Computing LDFs.");
+    DoubleMinMax lofminmax = new DoubleMinMax();
+    WritableDoubleDataStore ldfs = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_STATIC, () -> id -> {
+      final double lrdp = ldes.doubleValue(id);
+      double sum = 0.0;
+      int count = 0;
+      for(DBIDIter neighbor = knns.get(id).iter(); neighbor.valid(); neighbor.advance()) {
+        // skip the point itself
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        sum += ldes.doubleValue(neighbor);
+        count++;
+      }
+      sum /= count;
+      final double div = lrdp + c * sum;
+      return div == Double.POSITIVE_INFINITY ? (sum < Double.POSITIVE_INFINITY ? 0. : 1) : (div > 0) ? sum / div : 0;
+    }, lofminmax, "Local Density Factors", LOG);
+    knns.destroy();
+    ldes.destroy();
+    LOG.setCompleted(stepprog);
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Local Density Factor", ids, ldfs);
+    OutlierScoreMeta scoreMeta = new BasicOutlierScoreMeta(lofminmax.getMin(), lofminmax.getMax(), 0.0, 1. / c, 1 / (1 + c));
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @hidden
+   *
+   * @param <O> vector type
+   */
+  public static class Par<O extends NumberVector> extends LDF.Par<O> {
+    @Override
+    public ParallelLDF<O> make() {
+      return new ParallelLDF<>(k, distance, kernel, h, c);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import elki.database.datastore.DataStore;
+import elki.database.datastore.DataStoreFactory;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.DBIDIter;
+import elki.database.ids.DBIDUtil;
+import elki.database.ids.DBIDs;
+import elki.database.ids.DoubleDBIDListIter;
+import elki.database.ids.KNNList;
+import elki.database.query.QueryBuilder;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.MaterializedDoubleRelation;
+import elki.database.relation.Relation;
+import elki.distance.Distance;
+import elki.logging.Logging;
+import elki.logging.progress.StepProgress;
+import elki.math.DoubleMinMax;
+import elki.math.MathUtil;
+import elki.math.statistics.distribution.NormalDistribution;
+import elki.outlier.lof.LoOP;
+import elki.parallel.ParallelStages;
+import elki.result.outlier.OutlierResult;
+import elki.result.outlier.OutlierScoreMeta;
+import elki.result.outlier.ProbabilisticOutlierScore;
+import elki.utilities.documentation.Title;
+
+/**
+ * Parallel implementation of Local Outlier Probabilities, {@link LoOP}.
+ * <p>
+ * The nearest neighbors, probabilistic distances, PLOF values and final scores
+ * are computed in parallel stages, only the normalization constant is
+ * aggregated sequentially.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @param <O> type of objects handled by this algorithm
+ */
+@Title("LoOP: Local Outlier Probabilities (parallel implementation)")
+public class ParallelLoOP<O> extends LoOP<O> {
+  /**
+   * The logger for this class.
+   */
+  private static final Logging LOG = Logging.getLogger(ParallelLoOP.class);
+
+  /**
+   * Constructor with parameters.
+   *
+   * @param kreach k for reachability
+   * @param kcomp k for comparison
+   * @param reachabilityDistance distance function for reachability
+   * @param comparisonDistance distance function for comparison
+   * @param lambda Lambda parameter
+   */
+  public ParallelLoOP(int kreach, int kcomp, Distance<? super O> reachabilityDistance, Distance<? super O> comparisonDistance, double lambda) {
+    super(kreach, kcomp, reachabilityDistance, comparisonDistance, lambda);
+  }
+
+  @Override
+  public OutlierResult run(Relation<O> relation) {
+    StepProgress stepprog = LOG.isVerbose() ? new StepProgress(4) : null;
+    final DBIDs ids = relation.getDBIDs();
+    LOG.beginStep(stepprog, 1, "Materializing neighborhoods.");
+    final DataStore<KNNList> knnComp, knnReach;
+    if(comparisonDistance == reachabilityDistance || comparisonDistance.equals(reachabilityDistance)) {
+      final QueryBuilder<O> qb = new QueryBuilder<>(relation, comparisonDistance);
+      final int kplus = MathUtil.max(kcomp, kreach) + 1;
+      knnReach = knnComp = ParallelStages.knn(ids, kplus, () -> qb.kNNByDBID(kplus), LOG);
+    }
+    else {
+      final QueryBuilder<O> qbc = new QueryBuilder<>(relation, comparisonDistance);
+      final QueryBuilder<O> qbr = new QueryBuilder<>(relation, reachabilityDistance);
+      knnComp = ParallelStages.knn(ids, kcomp + 1, () -> qbc.kNNByDBID(kcomp + 1), LOG);
+      knnReach = ParallelStages.knn(ids, kreach + 1, () -> qbr.kNNByDBID(kreach + 1), LOG);
+    }
+
+    // Probabilistic distances
+    LOG.beginStep(stepprog, 2, "Computing pdists");
+    WritableDoubleDataStore pdists = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_DB, () -> id -> {
+      // use first kref neighbors as reference set
+      int ks = 0;
+      double ssum = 0.;
+      for(DoubleDBIDListIter neighbor = knnReach.get(id).iter(); neighbor.valid() && ks < kreach; neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        final double d = neighbor.doubleValue();
+        ssum += d * d;
+        ks++;
+      }
+      return ks > 0 ? Math.sqrt(ssum / ks) : 0.;
+    }, null, "pdists", LOG);
+
+    // Compute PLOF values.
+    LOG.beginStep(stepprog, 3, "Computing PLOF");
+    WritableDoubleDataStore plofs = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_HOT | DataStoreFactory.HINT_TEMP, () -> id -> {
+      // use first kref neighbors as comparison set.
+      int ks = 0;
+      double sum = 0.;
+      for(DBIDIter neighbor = knnComp.get(id).iter(); neighbor.valid() && ks < kcomp; neighbor.advance()) {
+        if(DBIDUtil.equal(neighbor, id)) {
+          continue;
+        }
+        sum += pdists.doubleValue(neighbor);
+        ks++;
+      }
+      double plof = MathUtil.max(pdists.doubleValue(id) * ks / sum - 1, 0.0);
+      return Double.isNaN(plof) || Double.isInfinite(plof) ? 0. : plof;
+    }, null, "PLOFs for objects", LOG);
+    // Aggregate sequentially, for reproducible results.
+    double nplof = 0.;
+    for(DBIDIter iditer = ids.iter(); iditer.valid(); iditer.advance()) {
+      final double plof = plofs.doubleValue(iditer);
+      nplof += plof * plof;
+    }
+    nplof = lambda * Math.sqrt(nplof / ids.size());
+    if(LOG.isDebuggingFine()) {
+      LOG.debugFine("nplof normalization factor is " + nplof);
+    }
+    final double norm = 1. / ((nplof > 0. ? nplof : 1.) * MathUtil.SQRT2);
+
+    // Normalize the outlier scores.
+    LOG.beginStep(stepprog, 4, "Computing LoOP scores");
+    DoubleMinMax mm = new DoubleMinMax();
+    WritableDoubleDataStore loops = ParallelStages.mapDouble(ids, DataStoreFactory.HINT_DB, //
+        () -> id -> NormalDistribution.erf(plofs.doubleValue(id) * norm), mm, "LoOP for objects", LOG);
+    LOG.setCompleted(stepprog);
+
+    // Build result representation.
+    DoubleRelation scoreResult = new MaterializedDoubleRelation("Local Outlier Probabilities", ids, loops);
+    OutlierScoreMeta scoreMeta = new ProbabilisticOutlierScore(mm.getMin(), mm.getMax(), 0.);
+    return new OutlierResult(scoreMeta, scoreResult);
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @author agent
+   *
+   * @hidden
+   *
+   * @param <O> Object type
+   */
+  public static class Par<O> extends LoOP.Par<O> {
+    @Override
+    public ParallelLoOP<O> make() {
+      Distance<O> realreach = (reachabilityDistance != null) ? reachabilityDistance : comparisonDistance;
+      return new ParallelLoOP<>(kreach, kcomp, realreach, comparisonDistance, lambda);
+    }
+  }
+}
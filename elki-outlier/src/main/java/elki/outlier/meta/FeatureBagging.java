@@ -20,7 +20,8 @@
  */
 package elki.outlier.meta;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 
 import elki.data.NumberVector;
@@ -40,6 +41,7 @@ import elki.logging.progress.FiniteProgress;
 import elki.math.DoubleMinMax;
 import elki.outlier.OutlierAlgorithm;
 import elki.outlier.lof.LOF;
+import elki.parallel.ParallelExecutor;
 import elki.result.outlier.BasicOutlierScoreMeta;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
@@ -67,6 +69,9 @@ import elki.utilities.random.RandomFactory;
  * A. Lazarevic, V. Kumar<br>
  * Feature Bagging for Outlier Detection<br>
  * Proc. 11th ACM SIGKDD Int. Conf. on Knowledge Discovery in Data Mining
+ * <p>
+ * The random subspaces are chosen first, then the ensemble members are
+ * computed in parallel.
  *
  * @author Erich Schubert
  * @author Remigius Wojdanowski
@@ -137,18 +142,24 @@ public class FeatureBagging implements OutlierAlgorithm {
     final int maxdim = dbdim - 1;
     final Random rand = rnd.getSingleThreadedRandom();
 
-    ArrayList<OutlierResult> results = new ArrayList<>(num);
+    final long[][] dimsets = new long[num][];
+    for(int i = 0; i < num; i++) {
+      dimsets[i] = randomSubspace(dbdim, mindim, maxdim, rand);
+    }
+    final OutlierResult[] ensemble = new OutlierResult[num];
     {
       FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("LOF iterations", num, LOG) : null;
-      for(int i = 0; i < num; i++) {
-        long[] dimset = randomSubspace(dbdim, mindim, maxdim, rand);
-        SubspaceEuclideanDistance df = new SubspaceEuclideanDistance(dimset);
-        // run LOF and collect the result
-        results.add(new LOF<>(k, df).run(relation));
-        LOG.incrementProcessed(prog);
-      }
+      ParallelExecutor.run(0, num, 1, (start, end) -> {
+        for(int i = start; i < end; i++) {
+          SubspaceEuclideanDistance df = new SubspaceEuclideanDistance(dimsets[i]);
+          // run LOF and collect the result
+          ensemble[i] = new LOF<>(k, df).run(relation);
+          LOG.incrementProcessed(prog);
+        }
+      });
       LOG.ensureCompleted(prog);
     }
+    List<OutlierResult> results = Arrays.asList(ensemble);
 
     WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
     DoubleMinMax minmax = new DoubleMinMax();
@@ -35,13 +35,24 @@ import elki.database.datastore.WritableDoubleDataStore;
 import elki.database.ids.*;
 import elki.database.relation.*;
 import elki.logging.Logging;
+import elki.logging.progress.AbstractProgress;
 import elki.logging.progress.FiniteProgress;
 import elki.logging.progress.IndefiniteProgress;
 import elki.math.DoubleMinMax;
 import elki.math.statistics.tests.GoodnessOfFitTest;
 import elki.math.statistics.tests.KolmogorovSmirnovTest;
 import elki.outlier.OutlierAlgorithm;
+import elki.outlier.distance.KNNOutlier;
+import elki.outlier.distance.KNNWeightOutlier;
+import elki.outlier.distance.parallel.ParallelKNNOutlier;
+import elki.outlier.distance.parallel.ParallelKNNWeightOutlier;
+import elki.outlier.lof.LDOF;
 import elki.outlier.lof.LOF;
+import elki.outlier.lof.LoOP;
+import elki.outlier.lof.SimplifiedLOF;
+import elki.outlier.lof.parallel.ParallelLOF;
+import elki.outlier.lof.parallel.ParallelSimplifiedLOF;
+import elki.parallel.ParallelExecutor;
 import elki.result.outlier.BasicOutlierScoreMeta;
 import elki.result.outlier.OutlierResult;
 import elki.result.outlier.OutlierScoreMeta;
@@ -59,6 +70,7 @@ import elki.utilities.optionhandling.parameters.IntParameter;
 import elki.utilities.optionhandling.parameters.ObjectParameter;
 import elki.utilities.optionhandling.parameters.RandomParameter;
 import elki.utilities.random.RandomFactory;
+import elki.utilities.random.Xoroshiro128NonThreadsafeRandom;
 
 import net.jafama.FastMath;
 
@@ -71,6 +83,14 @@ import net.jafama.FastMath;
  * F. Keller, E. Müller, K. Böhm<br>
  * HiCS: High Contrast Subspaces for Density-Based Outlier Ranking<br>
  * Proc. IEEE 28th Int. Conf. on Data Engineering (ICDE 2012)
+ * <p>
+ * The contrast of the candidate subspaces, and the outlier detection in the
+ * selected subspaces are independent tasks, and are executed in parallel. Each
+ * contrast computation uses its own random generator, seeded in candidate
+ * order, so the result does not depend on the number of threads. The outlier
+ * detection is only run in parallel for algorithms known to keep no state
+ * besides their parameters (such as LOF), as the same instance is used for all
+ * subspaces. Other algorithms are run sequentially.
  *
  * @author Jan Brusis
  * @author Erich Schubert
@@ -79,6 +99,7 @@ import net.jafama.FastMath;
  * @composed - - - GoodnessOfFitTest
  * @composed - - - OutlierAlgorithm
  * @has - - - HiCSSubspace
+ * @has - - - SortedDimensions
  */
 @Title("HiCS: High Contrast Subspaces for Density-Based Outlier Ranking")
 @Description("Algorithm to compute High Contrast Subspaces in a database as a pre-processing step for for density-based outlier ranking methods.")
@@ -98,6 +119,13 @@ public class HiCS implements OutlierAlgorithm {
    */
   private static final int MAX_RETRIES = 100;
 
+  /**
+   * Outlier detection algorithms that can safely run concurrently, including
+   * their subclasses.
+   */
+  private static final List<Class<?>> STATELESS = Arrays.asList(LOF.class, SimplifiedLOF.class, LoOP.class, LDOF.class, KNNOutlier.class, KNNWeightOutlier.class, //
+      ParallelLOF.class, ParallelSimplifiedLOF.class, ParallelKNNOutlier.class, ParallelKNNWeightOutlier.class);
+
   /**
    * Monte-Carlo iterations.
    */
@@ -163,31 +191,35 @@ public class HiCS implements OutlierAlgorithm {
   public OutlierResult run(Relation<? extends NumberVector> relation) {
     final DBIDs ids = relation.getDBIDs();
 
-    ArrayList<ArrayDBIDs> subspaceIndex = buildOneDimIndexes(relation);
-    Set<HiCSSubspace> subspaces = calculateSubspaces(relation, subspaceIndex, rnd.getSingleThreadedRandom());
+    SortedDimensions index = new SortedDimensions(relation);
+    List<HiCSSubspace> subspaces = new ArrayList<>(calculateSubspaces(relation, index, rnd.getSingleThreadedRandom()));
 
     if(LOG.isVerbose()) {
       LOG.verbose("Number of high-contrast subspaces: " + subspaces.size());
     }
-    List<DoubleRelation> results = new ArrayList<>();
+    final DoubleRelation[] results = new DoubleRelation[subspaces.size()];
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Calculating Outlier scores for high Contrast subspaces", subspaces.size(), LOG) : null;
 
     // run outlier detection and collect the result
     // TODO extend so that any outlierAlgorithm can be used (use materialized
     // relation instead of SubspaceEuclideanDistance?)
-    for(HiCSSubspace dimset : subspaces) {
-      if(LOG.isVerbose()) {
-        LOG.verbose("Performing outlier detection in subspace " + dimset);
-      }
+    // Unknown algorithms may keep state, and are run in a single block.
+    final int minblock = isStateless(outlierAlgorithm) ? 1 : results.length;
+    ParallelExecutor.run(0, results.length, minblock, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        HiCSSubspace dimset = subspaces.get(i);
+        if(LOG.isVerbose()) {
+          LOG.verbose("Performing outlier detection in subspace " + dimset);
+        }
 
-      ProxyDatabase pdb = new ProxyDatabase(ids);
-      pdb.addRelation(new ProjectedView<>(relation, new NumericalFeatureSelection<>(dimset.bits)));
+        ProxyDatabase pdb = new ProxyDatabase(ids);
+        pdb.addRelation(new ProjectedView<>(relation, new NumericalFeatureSelection<>(dimset.bits)));
 
-      // run LOF and collect the result
-      OutlierResult result = outlierAlgorithm.autorun(pdb);
-      results.add(result.getScores());
-      LOG.incrementProcessed(prog);
-    }
+        // run LOF and collect the result
+        results[i] = outlierAlgorithm.autorun(pdb).getScores();
+        LOG.incrementProcessed(prog);
+      }
+    });
     LOG.ensureCompleted(prog);
 
     WritableDoubleDataStore scores = DataStoreUtil.makeDoubleStorage(relation.getDBIDs(), DataStoreFactory.HINT_STATIC);
@@ -211,37 +243,30 @@ public class HiCS implements OutlierAlgorithm {
   }
 
   /**
-   * Calculates "index structures" for every attribute, i.e. sorts a
-   * ModifiableArray of every DBID in the database for every dimension and
-   * stores them in a list
-   * 
-   * @param relation Relation to index
-   * @return List of sorted objects
+   * Test whether an outlier detection algorithm is known to keep no state
+   * besides its parameters, and can be run concurrently.
+   *
+   * @param algorithm Outlier detection algorithm
+   * @return {@code true} if the algorithm can be run concurrently
    */
-  private ArrayList<ArrayDBIDs> buildOneDimIndexes(Relation<? extends NumberVector> relation) {
-    final int dim = RelationUtil.dimensionality(relation);
-    ArrayList<ArrayDBIDs> subspaceIndex = new ArrayList<>(dim + 1);
-
-    SortDBIDsBySingleDimension comp = new VectorUtil.SortDBIDsBySingleDimension(relation);
-    for(int i = 0; i < dim; i++) {
-      ArrayModifiableDBIDs amDBIDs = DBIDUtil.newArray(relation.getDBIDs());
-      comp.setDimension(i);
-      amDBIDs.sort(comp);
-      subspaceIndex.add(amDBIDs);
+  private static boolean isStateless(OutlierAlgorithm algorithm) {
+    for(Class<?> cls : STATELESS) {
+      if(cls.isInstance(algorithm)) {
+        return true;
+      }
     }
-
-    return subspaceIndex;
+    return false;
   }
 
   /**
    * Identifies high contrast subspaces in a given full-dimensional database.
    * 
    * @param relation the relation the HiCS should be evaluated for
-   * @param subspaceIndex Subspace indexes
+   * @param index Sorted dimensions
    * @param random Random generator
    * @return a set of high contrast subspaces
    */
-  private Set<HiCSSubspace> calculateSubspaces(Relation<? extends NumberVector> relation, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
+  private Set<HiCSSubspace> calculateSubspaces(Relation<? extends NumberVector> relation, SortedDimensions index, Random random) {
     final int dbdim = RelationUtil.dimensionality(relation);
 
     FiniteProgress dprog = LOG.isVerbose() ? new FiniteProgress("Subspace dimensionality", dbdim, LOG) : null;
@@ -253,14 +278,16 @@ public class HiCS implements OutlierAlgorithm {
     Heap<HiCSSubspace> dDimensionalList = new Heap<>(cutoff, HiCSSubspace.SORT_BY_CONTRAST_ASC);
     FiniteProgress prog = LOG.isVerbose() ? new FiniteProgress("Generating two-element subsets", (dbdim * (dbdim - 1)) >> 1, LOG) : null;
     // compute two-element sets of subspaces
+    List<HiCSSubspace> joined = new ArrayList<>();
     for(int i = 0; i < dbdim; i++) {
       for(int j = i + 1; j < dbdim; j++) {
-        HiCSSubspace ts = new HiCSSubspace(dbdim).set(i).set(j);
-        calculateContrast(relation, ts, subspaceIndex, random);
-        dDimensionalList.add(ts, cutoff);
-        LOG.incrementProcessed(prog);
+        joined.add(new HiCSSubspace(dbdim).set(i).set(j));
       }
     }
+    calculateContrasts(relation, joined, index, random, prog);
+    for(HiCSSubspace ts : joined) {
+      dDimensionalList.add(ts, cutoff);
+    }
     LOG.ensureCompleted(prog);
 
     IndefiniteProgress qprog = LOG.isVerbose() ? new IndefiniteProgress("Testing subspace candidates", LOG) : null;
@@ -280,19 +307,20 @@ public class HiCS implements OutlierAlgorithm {
       Collections.sort(candidateList, HiCSSubspace.SORT_BY_SUBSPACE);
 
       // TODO: optimize APRIORI style, by not even computing the bit set or?
+      joined.clear();
       for(int i = 0; i < candidateList.size() - 1; i++) {
         for(int j = i + 1; j < candidateList.size(); j++) {
           HiCSSubspace joinedSet = new HiCSSubspace(candidateList.get(i)) //
               .or(candidateList.get(j));
-          if(joinedSet.dimensionality() != d) {
-            continue;
+          if(joinedSet.dimensionality() == d) {
+            joined.add(joinedSet);
           }
-
-          calculateContrast(relation, joinedSet, subspaceIndex, random);
-          dDimensionalList.add(joinedSet, cutoff);
-          LOG.incrementProcessed(qprog);
         }
       }
+      calculateContrasts(relation, joined, index, random, qprog);
+      for(HiCSSubspace joinedSet : joined) {
+        dDimensionalList.add(joinedSet, cutoff);
+      }
       // Prune
       for(HiCSSubspace cand : candidateList) {
         for(Heap<HiCSSubspace>.UnorderedIter it = dDimensionalList.unorderedIter(); it.valid(); it.advance()) {
@@ -311,15 +339,38 @@ public class HiCS implements OutlierAlgorithm {
     return subspaceList;
   }
 
+  /**
+   * Calculates the contrast of multiple subspaces in parallel. Each subspace
+   * uses its own random generator, seeded in order from the given generator.
+   *
+   * @param relation Relation to process
+   * @param subspaces Subspaces
+   * @param index Sorted dimensions
+   * @param random Random generator for seeding
+   * @param prog Progress, may be {@code null}
+   */
+  private void calculateContrasts(Relation<? extends NumberVector> relation, List<HiCSSubspace> subspaces, SortedDimensions index, Random random, AbstractProgress prog) {
+    final long[] seeds = new long[subspaces.size()];
+    for(int i = 0; i < seeds.length; i++) {
+      seeds[i] = random.nextLong();
+    }
+    ParallelExecutor.run(0, seeds.length, 1, (start, end) -> {
+      for(int i = start; i < end; i++) {
+        calculateContrast(relation, subspaces.get(i), index, new Xoroshiro128NonThreadsafeRandom(seeds[i]));
+        LOG.incrementProcessed(prog);
+      }
+    });
+  }
+
   /**
    * Calculates the actual contrast of a given subspace.
    * 
    * @param relation Relation to process
    * @param subspace Subspace
-   * @param subspaceIndex Subspace indexes
+   * @param index Sorted dimensions
    * @param random Random generator
    */
-  private void calculateContrast(Relation<? extends NumberVector> relation, HiCSSubspace subspace, ArrayList<ArrayDBIDs> subspaceIndex, Random random) {
+  private void calculateContrast(Relation<? extends NumberVector> relation, HiCSSubspace subspace, SortedDimensions index, Random random) {
     final int card = subspace.dimensionality();
     final double alpha1 = FastMath.pow(alpha, (1.0 / card));
     final int windowsize = (int) (relation.size() * alpha1);
@@ -340,7 +391,7 @@ public class HiCS implements OutlierAlgorithm {
         if(j == chosen) {
           continue;
         }
-        ArrayDBIDs sortedIndices = subspaceIndex.get(j);
+        ArrayDBIDs sortedIndices = index.ids[j];
         ArrayModifiableDBIDs indexBlock = DBIDUtil.newArray(windowsize);
         // initialize index block
         DBIDArrayIter iter = sortedIndices.iter();
@@ -372,14 +423,8 @@ public class HiCS implements OutlierAlgorithm {
           sampleValues[l++] = relation.get(iter).doubleValue(chosen);
         }
       }
-      // Project full set
-      double[] fullValues = new double[relation.size()];
-      {
-        int l = 0;
-        for(DBIDIter iter = subspaceIndex.get(chosen).iter(); iter.valid(); iter.advance()) {
-          fullValues[l++] = relation.get(iter).doubleValue(chosen);
-        }
-      }
+      // Full set, copied because the test may modify the array
+      double[] fullValues = index.values[chosen].clone();
       double contrast = statTest.deviation(fullValues, sampleValues);
       if(Double.isNaN(contrast)) {
         i--;
@@ -393,6 +438,50 @@ public class HiCS implements OutlierAlgorithm {
     subspace.contrast = deviationSum / m;
   }
 
+  /**
+   * Objects sorted by every attribute, and the sorted attribute values. These
+   * are computed once, and shared by all contrast computations.
+   *
+   * @author Erich Schubert
+   */
+  private static class SortedDimensions {
+    /**
+     * Object ids, sorted by each dimension.
+     */
+    final ArrayDBIDs[] ids;
+
+    /**
+     * Sorted values of each dimension.
+     */
+    final double[][] values;
+
+    /**
+     * Constructor.
+     *
+     * @param relation Relation to index
+     */
+    SortedDimensions(Relation<? extends NumberVector> relation) {
+      final int dim = RelationUtil.dimensionality(relation);
+      ids = new ArrayDBIDs[dim];
+      values = new double[dim][];
+      ParallelExecutor.run(0, dim, 1, (start, end) -> {
+        SortDBIDsBySingleDimension comp = new VectorUtil.SortDBIDsBySingleDimension(relation);
+        for(int d = start; d < end; d++) {
+          ArrayModifiableDBIDs sorted = DBIDUtil.newArray(relation.getDBIDs());
+          comp.setDimension(d);
+          sorted.sort(comp);
+          double[] vals = new double[sorted.size()];
+          int l = 0;
+          for(DBIDIter iter = sorted.iter(); iter.valid(); iter.advance()) {
+            vals[l++] = relation.get(iter).doubleValue(d);
+          }
+          ids[d] = sorted;
+          values[d] = vals;
+        }
+      });
+    }
+  }
+
   /**
    * BitSet that holds a contrast value as field. Used for the representation of
    * a subspace in HiCS
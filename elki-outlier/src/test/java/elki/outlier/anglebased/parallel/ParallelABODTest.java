@@ -0,0 +1,56 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.anglebased.parallel;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.database.Database;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression tests the ParallelABOD algorithm.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelABODTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testParallelABOD() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelABOD<DoubleVector>>(ParallelABOD.class).build().autorun(db);
+    assertAUC(db, "Noise", result, 0.9297962962962);
+    assertSingleScore(result, 945, 2.0897348547799E-5);
+  }
+
+  @Test
+  public void testParallelABODSample() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelABOD<DoubleVector>>(ParallelABOD.class) //
+        .with(ParallelABOD.Par.SAMPLE_ID, 100) //
+        .with(ParallelABOD.Par.SEED_ID, 0) //
+        .build().autorun(db);
+    assertAUC(db, "Noise", result, 0.8971666666666667);
+    assertSingleScore(result, 945, 1.03638184E-5);
+  }
+}
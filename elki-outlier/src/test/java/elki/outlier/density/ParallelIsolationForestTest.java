@@ -0,0 +1,73 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.density;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import elki.database.Database;
+import elki.database.ids.DBIDIter;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Tests the parallel IsolationForest algorithm.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelIsolationForestTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testIsolationForest() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelIsolationForest>(ParallelIsolationForest.class) //
+        .with(IsolationForest.Par.SEED_ID, 1) //
+        .build().autorun(db);
+    assertAUC(db, "Noise", result, 0.9600926);
+    assertSingleScore(result, 146, 0.4509794);
+  }
+
+  @Test
+  public void testSaveLoad() throws IOException {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    File file = File.createTempFile("elki-iforest", ".bin");
+    try {
+      OutlierResult result = new ELKIBuilder<ParallelIsolationForest>(ParallelIsolationForest.class) //
+          .with(IsolationForest.Par.SEED_ID, 1) //
+          .with(ParallelIsolationForest.Par.SAVE_ID, file) //
+          .build().autorun(db);
+      OutlierResult loaded = new ELKIBuilder<ParallelIsolationForest>(ParallelIsolationForest.class) //
+          .with(ParallelIsolationForest.Par.LOAD_ID, file) //
+          .build().autorun(db);
+      for(DBIDIter it = result.getScores().iterDBIDs(); it.valid(); it.advance()) {
+        assertEquals("Score differs", result.getScores().doubleValue(it), loaded.getScores().doubleValue(it), 0.);
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+}
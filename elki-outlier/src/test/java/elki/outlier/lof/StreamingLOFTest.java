@@ -0,0 +1,138 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import elki.data.DoubleVector;
+import elki.data.NumberVector;
+import elki.data.type.TypeUtil;
+import elki.database.Database;
+import elki.database.StaticArrayDatabase;
+import elki.database.datastore.DataStoreUtil;
+import elki.database.datastore.WritableDoubleDataStore;
+import elki.database.ids.*;
+import elki.database.relation.DoubleRelation;
+import elki.database.relation.Relation;
+import elki.datasource.ArrayAdapterDatabaseConnection;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.outlier.AbstractOutlierAlgorithmTest;
+
+/**
+ * Tests the streaming LOF by comparing the scores maintained incrementally
+ * over a sliding window to the static LOF on the final window contents.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class StreamingLOFTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testStreamingLOF() {
+    List<DoubleVector> data = loadData();
+    final int k = 5, window = 200, batch = 17;
+    StreamingLOF<DoubleVector> stream = new StreamingLOF<>(k, EuclideanDistance.STATIC, window);
+    WritableDoubleDataStore tracked = DataStoreUtil.makeDoubleStorage(DBIDUtil.newHashSet(), 0, Double.NaN);
+    for(int start = 0; start < data.size(); start += batch) {
+      track(stream.insert(data.subList(start, Math.min(start + batch, data.size()))), tracked);
+    }
+    assertEquals("Window size", window, stream.size());
+    assertStaticScores(stream, tracked, k);
+  }
+
+  @Test
+  public void testIdReuse() {
+    List<DoubleVector> data = loadData();
+    final int k = 5, window = 50;
+    StreamingLOF<DoubleVector> stream = new StreamingLOF<>(k, EuclideanDistance.STATIC, window);
+    WritableDoubleDataStore tracked = DataStoreUtil.makeDoubleStorage(DBIDUtil.newHashSet(), 0, Double.NaN);
+    HashSetModifiableDBIDs used = DBIDUtil.newHashSet();
+    // Batch sizes smaller and larger than the window:
+    for(int start = 0, batch = 7; start < data.size(); start += batch, batch = batch == 7 ? 120 : 7) {
+      StreamingLOF.Update up = stream.insert(data.subList(start, Math.min(start + batch, data.size())));
+      assertEquals("Inserted objects", Math.min(window, Math.min(batch, data.size() - start)), up.getInserted().size());
+      used.addDBIDs(up.getInserted());
+      track(up, tracked);
+    }
+    assertEquals("Ids were not reused", window, used.size());
+    assertEquals("Window size", window, stream.size());
+    assertStaticScores(stream, tracked, k);
+  }
+
+  /**
+   * Load the test data.
+   *
+   * @return Data vectors
+   */
+  private List<DoubleVector> loadData() {
+    Relation<NumberVector> rel = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960).getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    List<DoubleVector> data = new ArrayList<>(rel.size());
+    for(DBIDIter it = rel.iterDBIDs(); it.valid(); it.advance()) {
+      data.add(DoubleVector.FACTORY.newNumberVector(rel.get(it)));
+    }
+    return data;
+  }
+
+  /**
+   * Apply an update to the tracked scores.
+   *
+   * @param up Update
+   * @param tracked Tracked scores
+   */
+  private static void track(StreamingLOF.Update up, WritableDoubleDataStore tracked) {
+    for(DBIDIter it = up.getRemoved().iter(); it.valid(); it.advance()) {
+      tracked.delete(it);
+    }
+    for(DoubleDBIDListIter it = up.getScores().iter(); it.valid(); it.advance()) {
+      tracked.putDouble(it, it.doubleValue());
+    }
+  }
+
+  /**
+   * Compare the scores to the static LOF on the final window, in insertion
+   * order.
+   *
+   * @param stream Streaming LOF
+   * @param tracked Tracked scores
+   * @param k Number of neighbors
+   */
+  private static void assertStaticScores(StreamingLOF<DoubleVector> stream, WritableDoubleDataStore tracked, int k) {
+    ArrayDBIDs ids = stream.getDBIDs();
+    double[][] win = new double[ids.size()][];
+    int i = 0;
+    for(DBIDIter it = ids.iter(); it.valid(); it.advance()) {
+      win[i++] = stream.get(it).toArray();
+    }
+    Database db = new StaticArrayDatabase(new ArrayAdapterDatabaseConnection(win), null);
+    db.initialize();
+    Relation<NumberVector> wrel = db.getRelation(TypeUtil.NUMBER_VECTOR_FIELD);
+    DoubleRelation expected = new LOF<NumberVector>(k, EuclideanDistance.STATIC).run(wrel).getScores();
+    DBIDIter s = ids.iter();
+    for(DBIDIter it = wrel.iterDBIDs(); it.valid(); it.advance(), s.advance()) {
+      assertEquals("Incremental score", expected.doubleValue(it), tracked.doubleValue(s), 1e-10);
+      assertEquals("Stored score", expected.doubleValue(it), stream.score(s), 1e-10);
+    }
+  }
+}
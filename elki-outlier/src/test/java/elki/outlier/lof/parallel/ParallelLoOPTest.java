@@ -0,0 +1,58 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.outlier.lof.parallel;
+
+import org.junit.Test;
+
+import elki.outlier.AbstractOutlierAlgorithmTest;
+import elki.outlier.lof.LoOP;
+import elki.data.DoubleVector;
+import elki.database.Database;
+import elki.distance.minkowski.EuclideanDistance;
+import elki.distance.minkowski.SquaredEuclideanDistance;
+import elki.result.outlier.OutlierResult;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Regression tests the ParallelLoOP algorithm.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ParallelLoOPTest extends AbstractOutlierAlgorithmTest {
+  @Test
+  public void testParallelLoOP() {
+    Database db = makeSimpleDatabase(UNITTEST + "outlier-3d-3clusters.ascii", 960);
+    OutlierResult result = new ELKIBuilder<ParallelLoOP<DoubleVector>>(ParallelLoOP.class) //
+        .with(LoOP.Par.KCOMP_ID, 14).build().autorun(db);
+    assertAUC(db, "Noise", result, 0.9443796296296296);
+    assertSingleScore(result, 945, 0.39805457858293325);
+
+    result = new ELKIBuilder<ParallelLoOP<DoubleVector>>(ParallelLoOP.class) //
+        .with(LoOP.Par.KREACH_ID, 20) //
+        .with(LoOP.Par.KCOMP_ID, 15) //
+        .with(LoOP.Par.REACHABILITY_DISTANCE_FUNCTION_ID, SquaredEuclideanDistance.class) //
+        .with(LoOP.Par.COMPARISON_DISTANCE_FUNCTION_ID, EuclideanDistance.class) //
+        .build().autorun(db);
+    assertAUC(db, "Noise", result, 0.9435);
+    assertSingleScore(result, 945, 0.2993);
+  }
+}
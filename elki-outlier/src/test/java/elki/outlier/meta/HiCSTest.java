@@ -59,7 +59,11 @@ public class HiCSTest extends AbstractOutlierAlgorithmTest {
         .with(HiCS.Par.SEED_ID, 5) //
         .with(HiCS.Par.TEST_ID, WelchTTest.STATIC) //
         .build().autorun(db);
-    assertAUC(db, "Noise", result, 0.88036);
-    assertSingleScore(result, 1293, 3.7432);
+    // The random subspace samples depend on the seed, and the AUC on this data
+    // set is either about 0.63 or about 0.85. With the per-candidate random
+    // generators, this seed now yields the low value; the average over 100
+    // seeds is unchanged (0.78).
+    assertAUC(db, "Noise", result, 0.6255238);
+    assertSingleScore(result, 1293, 2.5422729);
   }
 }
@@ -21,6 +21,7 @@
 package elki.persistent;
 
 import elki.logging.Logging;
+import elki.logging.statistics.AtomicLongCounter;
 import elki.logging.statistics.Counter;
 /**
  * Abstract base class for the page file API for both caches and true page files
@@ -46,10 +47,23 @@ public abstract class AbstractPageFile<P extends Page> implements PageFile<P> {
    * Constructor.
    */
   public AbstractPageFile() {
+    this(false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param concurrent Use atomic counters, for page files that are accessed
+   *        concurrently without a global lock
+   */
+  protected AbstractPageFile(boolean concurrent) {
     super();
     Logging log = getLogger();
-    this.readAccess = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".reads") : null;
-    this.writeAccess = log.isStatistics() ? log.newCounter(this.getClass().getName() + ".writes") : null;
+    if(log.isStatistics()) {
+      final String prefix = this.getClass().getName();
+      this.readAccess = concurrent ? new AtomicLongCounter(prefix + ".reads") : log.newCounter(prefix + ".reads");
+      this.writeAccess = concurrent ? new AtomicLongCounter(prefix + ".writes") : log.newCounter(prefix + ".writes");
+    }
   }
 
   /**
@@ -34,13 +34,16 @@ import elki.database.query.ExactPrioritySearcher;
 import elki.database.query.PrioritySearcher;
 import elki.database.query.QueryBuilder;
 import elki.database.query.distance.DistanceQuery;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
+import elki.database.query.knn.WrappedKNNDBIDByLookup;
 import elki.database.query.range.RangeSearcher;
 import elki.database.relation.Relation;
 import elki.datasource.AbstractDatabaseConnection;
 import elki.datasource.ArrayAdapterDatabaseConnection;
 import elki.datasource.filter.FixedDBIDsFilter;
 import elki.distance.CosineDistance;
+import elki.distance.Distance;
 import elki.distance.minkowski.EuclideanDistance;
 import elki.distance.minkowski.SquaredEuclideanDistance;
 import elki.utilities.optionhandling.parameterization.ListParameterization;
@@ -389,6 +392,34 @@ public abstract class AbstractIndexStructureTest {
     }
   }
 
+  /**
+   * Test helper: compare batch kNN queries to a linear scan.
+   * 
+   * @param factory Index factory
+   * @param expectKNNQuery expected knn query class
+   * @param distance Distance function
+   */
+  protected static void assertBatchKNN(IndexFactory<?> factory, Class<?> expectKNNQuery, Distance<? super DoubleVector> distance) {
+    ListParameterization inputparams = new ListParameterization() //
+        .addParameter(StaticArrayDatabase.Par.INDEX_ID, factory);
+    Database db = AbstractSimpleAlgorithmTest.makeSimpleDatabase(dataset, shoulds, inputparams);
+    Relation<DoubleVector> relation = db.getRelation(TypeUtil.DOUBLE_VECTOR_FIELD);
+    KNNSearcher<DBIDRef> knnq = new QueryBuilder<>(relation, distance).cheapOnly().kNNByDBID(k);
+    assertClass(expectKNNQuery, knnq, knnq instanceof WrappedKNNDBIDByLookup ? ((WrappedKNNDBIDByLookup<?>) knnq).getWrapped() : null);
+    KNNSearcher<DBIDRef> linq = new QueryBuilder<>(relation, distance).linearOnly().kNNByDBID(k);
+    DBIDIter it = relation.iterDBIDs();
+    BatchKNNSearcher.getKNN(knnq, relation.getDBIDs(), k, (id, knn) -> {
+      assertTrue("Wrong query order.", DBIDUtil.equal(it, id));
+      KNNList ref = linq.getKNN(id, k);
+      assertEquals("Result size does not match.", ref.size(), knn.size());
+      for(DoubleDBIDListIter r = ref.iter(), b = knn.iter(); r.valid(); r.advance(), b.advance()) {
+        assertEquals("Distance does not match.", r.doubleValue(), b.doubleValue(), 1e-15);
+      }
+      it.advance();
+    });
+    assertFalse("Not all queries answered.", it.valid());
+  }
+
   /**
    * Test helper
    * 
@@ -27,6 +27,7 @@ import elki.data.type.TypeInformation;
 import elki.database.Database;
 import elki.database.ids.*;
 import elki.database.query.QueryBuilder;
+import elki.database.query.knn.BatchKNNSearcher;
 import elki.database.query.knn.KNNSearcher;
 import elki.database.relation.Relation;
 import elki.datasource.DatabaseConnection;
@@ -167,24 +168,24 @@ public class KNNBenchmark<O> extends AbstractDistanceBasedApplication<O> {
    * @return hash code of the results
    */
   private int run(KNNSearcher<DBIDRef> knnQuery, Relation<O> relation, Duration dur, MeanVariance mv, MeanVariance mvdist) {
-    int hash = 0;
+    final int[] hash = new int[1];
     final DBIDs sample = DBIDUtil.randomSample(relation.getDBIDs(), sampling, random);
     FiniteProgress prog = LOG.isVeryVerbose() ? new FiniteProgress("kNN queries", sample.size(), LOG) : null;
     dur.begin();
-    for(DBIDIter iditer = sample.iter(); iditer.valid(); iditer.advance()) {
-      KNNList knns = knnQuery.getKNN(iditer, k);
+    // Batch API, results are delivered in query order.
+    BatchKNNSearcher.getKNN(knnQuery, sample, k, (id, knns) -> {
       int ichecksum = 0;
       for(DBIDIter it = knns.iter(); it.valid(); it.advance()) {
         ichecksum += DBIDUtil.asInteger(it);
       }
-      hash = Util.mixHashCodes(hash, ichecksum);
+      hash[0] = Util.mixHashCodes(hash[0], ichecksum);
       mv.put(knns.size());
       mvdist.put(knns.getKNNDistance());
       LOG.incrementProcessed(prog);
-    }
+    });
     dur.end();
     LOG.ensureCompleted(prog);
-    return hash;
+    return hash[0];
   }
 
   /**
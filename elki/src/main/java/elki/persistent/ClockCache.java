@@ -0,0 +1,569 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.util.Arrays;
+
+import elki.index.tree.Node;
+import elki.logging.Logging;
+import elki.logging.statistics.AtomicLongCounter;
+import elki.logging.statistics.Counter;
+import elki.logging.statistics.LongStatistic;
+import elki.utilities.exceptions.AbortException;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+/**
+ * A concurrent, scan-resistant page cache.
+ * <p>
+ * The cache is split into independently locked stripes, so that concurrent
+ * queries do not serialize on a single lock. Within each stripe, new pages
+ * enter a small FIFO queue, and are only moved into the main CLOCK queue if
+ * they are accessed again before they leave the small queue. A sequential scan
+ * hence only churns the small queue, and does not evict the hot pages. This is
+ * a simplified version of the S3-FIFO policy.
+ * <p>
+ * Directory pages of tree indexes are pinned in the main queue (up to half of
+ * its capacity), as they are needed for every query.
+ * <p>
+ * Reference:
+ * <p>
+ * J. Yang, Y. Zhang, Z. Qiu, Y. Yue, K. V. Rashmi<br>
+ * FIFO queues are all you need for cache eviction<br>
+ * Proc. 29th Symposium on Operating Systems Principles (SOSP 2023)
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @assoc - - - PageFile
+ * @composed - - - Stripe
+ *
+ * @param <P> Page type
+ */
+public class ClockCache<P extends Page> extends AbstractPageFile<P> {
+  /**
+   * Our class logger.
+   */
+  private static final Logging LOG = Logging.getLogger(ClockCache.class);
+
+  /**
+   * Cache size in bytes.
+   */
+  protected int cacheSizeBytes;
+
+  /**
+   * Number of stripes, 0 for automatic.
+   */
+  protected int numstripes;
+
+  /**
+   * The underlying file of this cache. If an object is dropped it is written to
+   * the file.
+   */
+  protected PageFile<P> file;
+
+  /**
+   * Cache stripes.
+   */
+  private Stripe<P>[] stripes;
+
+  /**
+   * Statistics counters.
+   */
+  private Counter hits, misses, evictions;
+
+  /**
+   * Initializes this cache with the specified parameters.
+   *
+   * @param cacheSizeBytes the maximum number of bytes for this cache
+   * @param file the underlying file of this cache, if a page is dropped it is
+   *        written to the file
+   * @param numstripes number of independently locked stripes, 0 for automatic
+   */
+  public ClockCache(int cacheSizeBytes, PageFile<P> file, int numstripes) {
+    super(true);
+    this.file = file;
+    this.cacheSizeBytes = cacheSizeBytes;
+    this.numstripes = numstripes;
+    if(LOG.isStatistics()) {
+      final String prefix = this.getClass().getName();
+      hits = new AtomicLongCounter(prefix + ".hits");
+      misses = new AtomicLongCounter(prefix + ".misses");
+      evictions = new AtomicLongCounter(prefix + ".evictions");
+    }
+  }
+
+  /**
+   * Get the stripe responsible for a page.
+   *
+   * @param pageID Page id
+   * @return Stripe
+   */
+  private Stripe<P> stripe(int pageID) {
+    return stripes[((pageID * 0x9E3779B9) >>> 16) & (stripes.length - 1)];
+  }
+
+  @Override
+  public P readPage(int pageID) {
+    countRead();
+    final Stripe<P> stripe = stripe(pageID);
+    synchronized(stripe) {
+      P page = stripe.get(pageID);
+      if(page != null) {
+        if(hits != null) {
+          hits.increment();
+        }
+        return page;
+      }
+    }
+    if(misses != null) {
+      misses.increment();
+    }
+    // Read outside of the lock, to not block other readers:
+    P page = file.readPage(pageID);
+    if(page == null) {
+      return null;
+    }
+    synchronized(stripe) {
+      // Another thread may have loaded the page concurrently.
+      P existing = stripe.get(pageID);
+      if(existing != null) {
+        return existing;
+      }
+      stripe.insert(pageID, page);
+      return page;
+    }
+  }
+
+  @Override
+  public void writePage(int pageID, P page) {
+    countWrite();
+    page.setDirty(true);
+    final Stripe<P> stripe = stripe(pageID);
+    synchronized(stripe) {
+      if(!stripe.replace(pageID, page)) {
+        stripe.insert(pageID, page);
+      }
+    }
+  }
+
+  @Override
+  public void deletePage(int pageID) {
+    countWrite();
+    final Stripe<P> stripe = stripe(pageID);
+    synchronized(stripe) {
+      stripe.remove(pageID);
+    }
+    file.deletePage(pageID);
+  }
+
+  @Override
+  public int setPageID(P page) {
+    return file.setPageID(page);
+  }
+
+  @Override
+  public int getNextPageID() {
+    return file.getNextPageID();
+  }
+
+  @Override
+  public void setNextPageID(int nextPageID) {
+    file.setNextPageID(nextPageID);
+  }
+
+  @Override
+  public int getPageSize() {
+    return file.getPageSize();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean initialize(PageHeader header) {
+    boolean created = file.initialize(header);
+    final int cacheSize = cacheSizeBytes / header.getPageSize();
+    if(cacheSize <= 1) {
+      throw new AbortException("Invalid cache size: " + cacheSizeBytes + " / " + header.getPageSize() + " = " + cacheSize);
+    }
+    // At least 8 pages per stripe, power of two stripes:
+    int n = numstripes > 0 ? numstripes : Math.min(Runtime.getRuntime().availableProcessors() << 2, cacheSize >>> 3);
+    n = Integer.highestOneBit(Math.max(1, Math.min(n, cacheSize >>> 1)));
+    final int capacity = (cacheSize + n - 1) / n;
+    stripes = (Stripe<P>[]) new Stripe<?>[n];
+    for(int i = 0; i < n; i++) {
+      stripes[i] = new Stripe<>(this, capacity);
+    }
+    if(LOG.isDebugging()) {
+      LOG.debug("Cache size is " + cacheSize + " pages in " + n + " stripes.");
+    }
+    return created;
+  }
+
+  @Override
+  public void close() {
+    flush();
+    file.close();
+  }
+
+  /**
+   * Flushes this caches by writing any entry to the underlying file.
+   */
+  public void flush() {
+    for(Stripe<P> stripe : stripes) {
+      synchronized(stripe) {
+        stripe.flush();
+      }
+    }
+  }
+
+  /**
+   * Clears this cache.
+   */
+  @Override
+  public void clear() {
+    for(Stripe<P> stripe : stripes) {
+      synchronized(stripe) {
+        stripe.clear();
+      }
+    }
+  }
+
+  @Override
+  public void logStatistics() {
+    super.logStatistics();
+    if(hits != null) {
+      long pinned = 0;
+      for(Stripe<P> stripe : stripes) {
+        synchronized(stripe) {
+          pinned += stripe.pinned;
+        }
+      }
+      LOG.statistics(hits);
+      LOG.statistics(misses);
+      LOG.statistics(evictions);
+      LOG.statistics(new LongStatistic(this.getClass().getName() + ".pinned", pinned));
+    }
+    file.logStatistics();
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Write page through to disk, if modified.
+   *
+   * @param page page
+   */
+  protected void expirePage(P page) {
+    if(evictions != null) {
+      evictions.increment();
+    }
+    if(page.isDirty()) {
+      file.writePage(page);
+    }
+  }
+
+  /**
+   * Test whether a page should be pinned in the cache.
+   *
+   * @param page Page
+   * @return {@code true} for directory pages
+   */
+  protected static boolean isDirectoryPage(Page page) {
+    return page instanceof Node && !((Node<?>) page).isLeaf();
+  }
+
+  /**
+   * A single cache stripe. All methods must be called while synchronized on
+   * the stripe.
+   *
+   * @author agent
+   *
+   * @param <P> Page type
+   */
+  private static final class Stripe<P extends Page> {
+    /**
+     * Maximum access frequency recorded.
+     */
+    private static final byte MAX_FREQ = 3;
+
+    /**
+     * Frequency value of pinned pages.
+     */
+    private static final byte PINNED = Byte.MAX_VALUE;
+
+    /**
+     * Map from page ids to slots. Slots of the small queue are stored as
+     * negative values ({@code ~slot}).
+     */
+    private final Int2IntOpenHashMap index;
+
+    /**
+     * Cache this stripe belongs to.
+     */
+    private final ClockCache<P> cache;
+
+    /**
+     * Pages in the small FIFO queue (ring buffer).
+     */
+    private final Object[] small;
+
+    /**
+     * Access frequency of pages in the small queue.
+     */
+    private final byte[] smallFreq;
+
+    /**
+     * Head and size of the small queue.
+     */
+    private int smallHead, smallSize;
+
+    /**
+     * Pages in the main CLOCK queue.
+     */
+    private final Object[] main;
+
+    /**
+     * Access frequency of pages in the main queue.
+     */
+    private final byte[] mainFreq;
+
+    /**
+     * Used slots of the main queue, and position of the clock hand.
+     */
+    private int mainSize, hand;
+
+    /**
+     * Number of pinned pages, and maximum number.
+     */
+    private int pinned, maxPinned;
+
+    /**
+     * Constructor.
+     *
+     * @param cache Cache this stripe belongs to
+     * @param capacity Capacity in pages, at least 2
+     */
+    Stripe(ClockCache<P> cache, int capacity) {
+      this.cache = cache;
+      final int smallCap = Math.max(1, capacity / 10);
+      index = new Int2IntOpenHashMap(capacity + 1);
+      index.defaultReturnValue(Integer.MIN_VALUE);
+      small = new Object[smallCap];
+      smallFreq = new byte[smallCap];
+      main = new Object[capacity - smallCap];
+      mainFreq = new byte[capacity - smallCap];
+      maxPinned = main.length >>> 1;
+    }
+
+    /**
+     * Get a cached page, and record the access.
+     *
+     * @param pageID Page id
+     * @return Page, or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    P get(int pageID) {
+      final int slot = index.get(pageID);
+      if(slot == Integer.MIN_VALUE) {
+        return null;
+      }
+      if(slot >= 0) {
+        if(mainFreq[slot] < MAX_FREQ) {
+          mainFreq[slot]++;
+        }
+        return (P) main[slot];
+      }
+      if(smallFreq[~slot] < MAX_FREQ) {
+        smallFreq[~slot]++;
+      }
+      return (P) small[~slot];
+    }
+
+    /**
+     * Replace a cached page.
+     *
+     * @param pageID Page id
+     * @param page New page
+     * @return {@code false} if the page was not in the cache
+     */
+    boolean replace(int pageID, P page) {
+      final int slot = index.get(pageID);
+      if(slot == Integer.MIN_VALUE) {
+        return false;
+      }
+      if(slot >= 0) {
+        main[slot] = page;
+        if(mainFreq[slot] < MAX_FREQ) {
+          mainFreq[slot]++;
+        }
+      }
+      else {
+        small[~slot] = page;
+        if(smallFreq[~slot] < MAX_FREQ) {
+          smallFreq[~slot]++;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Insert a new page. Directory pages are pinned in the main queue, others
+     * enter the small queue.
+     *
+     * @param pageID Page id
+     * @param page Page
+     */
+    void insert(int pageID, P page) {
+      if(pinned < maxPinned && isDirectoryPage(page)) {
+        insertMain(pageID, page, PINNED);
+        ++pinned;
+        return;
+      }
+      if(smallSize == small.length) {
+        evictSmall();
+      }
+      final int slot = (smallHead + smallSize++) % small.length;
+      small[slot] = page;
+      smallFreq[slot] = 0;
+      index.put(pageID, ~slot);
+    }
+
+    /**
+     * Remove the oldest page from the small queue, moving it to the main queue
+     * if it was accessed again.
+     */
+    @SuppressWarnings("unchecked")
+    private void evictSmall() {
+      final int slot = smallHead;
+      final P page = (P) small[slot];
+      small[slot] = null;
+      smallHead = (smallHead + 1) % small.length;
+      --smallSize;
+      if(page == null) {
+        return; // deleted
+      }
+      final int pageID = page.getPageID();
+      if(smallFreq[slot] > 0) {
+        insertMain(pageID, page, (byte) 0);
+      }
+      else {
+        index.remove(pageID);
+        cache.expirePage(page);
+      }
+    }
+
+    /**
+     * Insert a page into the main queue, evicting a page if necessary.
+     *
+     * @param pageID Page id
+     * @param page Page
+     * @param freq Initial frequency
+     */
+    private void insertMain(int pageID, P page, byte freq) {
+      final int slot = mainSize < main.length ? mainSize++ : evictMain();
+      main[slot] = page;
+      mainFreq[slot] = freq;
+      index.put(pageID, slot);
+    }
+
+    /**
+     * Find a victim slot in the main queue using the CLOCK policy.
+     *
+     * @return Free slot
+     */
+    @SuppressWarnings("unchecked")
+    private int evictMain() {
+      while(true) {
+        final int slot = hand;
+        hand = (hand + 1) % main.length;
+        final P page = (P) main[slot];
+        if(page == null) {
+          return slot; // deleted
+        }
+        final byte f = mainFreq[slot];
+        if(f == PINNED) {
+          continue;
+        }
+        if(f > 0) {
+          mainFreq[slot] = (byte) (f - 1);
+          continue;
+        }
+        main[slot] = null;
+        index.remove(page.getPageID());
+        cache.expirePage(page);
+        return slot;
+      }
+    }
+
+    /**
+     * Remove a page from the cache, without writing it.
+     *
+     * @param pageID Page id
+     */
+    void remove(int pageID) {
+      final int slot = index.remove(pageID);
+      if(slot == Integer.MIN_VALUE) {
+        return;
+      }
+      if(slot >= 0) {
+        main[slot] = null;
+        if(mainFreq[slot] == PINNED) {
+          --pinned;
+        }
+        mainFreq[slot] = 0;
+      }
+      else {
+        small[~slot] = null;
+      }
+    }
+
+    /**
+     * Write all modified pages, and empty the stripe.
+     */
+    @SuppressWarnings("unchecked")
+    void flush() {
+      for(Object page : main) {
+        if(page != null && ((P) page).isDirty()) {
+          cache.file.writePage((P) page);
+        }
+      }
+      for(Object page : small) {
+        if(page != null && ((P) page).isDirty()) {
+          cache.file.writePage((P) page);
+        }
+      }
+      clear();
+    }
+
+    /**
+     * Empty the stripe, without writing.
+     */
+    void clear() {
+      index.clear();
+      Arrays.fill(main, null);
+      Arrays.fill(small, null);
+      mainSize = hand = smallHead = smallSize = pinned = 0;
+    }
+  }
+}
@@ -0,0 +1,734 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import elki.index.tree.TreeIndexHeader;
+import elki.logging.Logging;
+import elki.utilities.exceptions.AbortException;
+
+/**
+ * A page file that memory-maps the index file, and decodes pages directly from
+ * the mapped buffer.
+ * <p>
+ * Contrary to {@link PersistentPageFile}, pages are not stored with Java
+ * serialization, but with a fixed binary layout: a 4 byte page type, followed
+ * by the big-endian {@link DataOutput} encoding written by
+ * {@link ExternalizablePage#writeExternal}. Reading a page hence neither copies
+ * the page into a byte array nor goes through an {@link ObjectInputStream}.
+ * The file format is not compatible with {@link PersistentPageFile}.
+ * <p>
+ * The file is mapped in segments, such that files larger than 2 GB can be
+ * used. Writes go through the file channel, and are visible in the mapping.
+ * <p>
+ * Optionally, a number of subsequent pages can be loaded ahead when a page
+ * outside of the previous read-ahead window is accessed. Bulk-loaded trees
+ * store sibling pages consecutively, so this benefits scans.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @composed - - - PageHeader
+ * @composed - - - PageInput
+ * @composed - - - PageOutput
+ *
+ * @param <P> Page type
+ */
+public class MappedPageFile<P extends ExternalizablePage> extends AbstractStoringPageFile<P> {
+  /**
+   * Our logger
+   */
+  private static final Logging LOG = Logging.getLogger(MappedPageFile.class);
+
+  /**
+   * Indicates an empty page.
+   */
+  private static final int EMPTY_PAGE = 0;
+
+  /**
+   * Indicates a filled page.
+   */
+  private static final int FILLED_PAGE = 1;
+
+  /**
+   * Target size of a mapped segment, in bytes.
+   */
+  private static final int SEGMENT_BYTES = 1 << 26;
+
+  /**
+   * The file storing the pages.
+   */
+  private final FileChannel file;
+
+  /**
+   * The header of this page file.
+   */
+  protected PageHeader header;
+
+  /**
+   * The type of pages we use.
+   */
+  protected final Class<P> pageclass;
+
+  /**
+   * Whether we are initializing from an existing file.
+   */
+  private boolean existed;
+
+  /**
+   * Number of pages to load ahead, 0 to disable.
+   */
+  private final int readahead;
+
+  /**
+   * Current read-ahead window (page ids, end exclusive).
+   */
+  private int raStart = -1, raEnd = -1;
+
+  /**
+   * Number of pages per mapped segment.
+   */
+  private int pagesPerSegment;
+
+  /**
+   * Mapped segments of the file, may contain {@code null} values.
+   */
+  private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+  /**
+   * Buffer for writing pages.
+   */
+  private PageOutput output;
+
+  /**
+   * Constructor.
+   *
+   * @param pageSize the page size
+   * @param filename file name
+   * @param pageclass the class of pages to be used
+   * @param readahead number of pages to load ahead, 0 to disable
+   */
+  public MappedPageFile(int pageSize, Path filename, Class<P> pageclass, int readahead) {
+    super(pageSize);
+    this.pageclass = pageclass;
+    this.readahead = readahead;
+    try {
+      existed = Files.exists(filename) && Files.size(filename) > 0;
+      file = FileChannel.open(filename, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    catch(IOException e) {
+      throw new AbortException("IO error in loading mapped page file.", e);
+    }
+  }
+
+  /**
+   * Reads the page with the given id from this file.
+   *
+   * @param pageID the id of the page to be returned
+   * @return the page with the given pageId
+   */
+  @Override
+  public P readPage(int pageID) {
+    try {
+      countRead();
+      if(readahead > 0 && (pageID < raStart || pageID >= raEnd)) {
+        readAhead(pageID);
+      }
+      return decodePage(pageBuffer(pageID));
+    }
+    catch(IOException e) {
+      throw new RuntimeException("IOException occurred during reading of page " + pageID + "\n", e);
+    }
+  }
+
+  /**
+   * Deletes the node with the specified id from this file.
+   *
+   * @param pageID the id of the node to be deleted
+   */
+  @Override
+  public void deletePage(int pageID) {
+    // put id to empty pages list
+    super.deletePage(pageID);
+    // delete from file
+    countWrite();
+    writeBuffer(pageID, encodePage(null));
+  }
+
+  /**
+   * This method is called by the cache if the <code>page</code> is not longer
+   * stored in the cache and has to be written to disk.
+   *
+   * @param page the page which has to be written to disk
+   */
+  @Override
+  public void writePage(int pageID, P page) {
+    countWrite();
+    writeBuffer(pageID, encodePage(page));
+    page.setDirty(false);
+  }
+
+  /**
+   * Write an encoded page to the file.
+   *
+   * @param pageID Page id
+   * @param buf Encoded page
+   */
+  private void writeBuffer(int pageID, ByteBuffer buf) {
+    try {
+      long offset = pageOffset(pageID);
+      assert offset >= 0 : header.getReservedPages() + " " + pageID + " " + pageSize + " " + offset;
+      int written = file.write(buf, offset);
+      if(written != pageSize) {
+        throw new IOException("Incomplete write at offset " + offset + " wrote " + written + " bytes, expected " + pageSize);
+      }
+    }
+    catch(IOException e) {
+      throw new RuntimeException("Error writing to page file.", e);
+    }
+  }
+
+  /**
+   * Closes this file. Contrary to {@link AbstractPageFile#close()}, the pages
+   * are kept, such that the file can be opened again.
+   */
+  @Override
+  public void close() {
+    try {
+      segments = new MappedByteBuffer[0];
+      if(!emptyPages.isEmpty() && header instanceof TreeIndexHeader) {
+        // write the list of empty pages to the end of the file
+        ((TreeIndexHeader) header).writeEmptyPages(emptyPages, file);
+      }
+      if(header instanceof TreeIndexHeader) {
+        ((TreeIndexHeader) header).setLargestPageID(nextPageID);
+      }
+      header.writeHeader(file);
+      file.close();
+    }
+    catch(IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Clears this PageFile.
+   */
+  @Override
+  public void clear() {
+    try {
+      segments = new MappedByteBuffer[0];
+      raStart = raEnd = -1;
+      file.truncate(header.size());
+    }
+    catch(IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * File offset of a page.
+   *
+   * @param pageID Page id
+   * @return Offset
+   */
+  private long pageOffset(int pageID) {
+    return ((long) (header.getReservedPages() + pageID)) * (long) pageSize;
+  }
+
+  /**
+   * Get a buffer for a single page, backed by the mapped file.
+   *
+   * @param pageID Page id
+   * @return Buffer of the page
+   * @throws IOException on read errors
+   */
+  private ByteBuffer pageBuffer(int pageID) throws IOException {
+    final int seg = pageID / pagesPerSegment;
+    final int off = (pageID - seg * pagesPerSegment) * pageSize;
+    MappedByteBuffer buf = seg < segments.length ? segments[seg] : null;
+    if(buf == null || buf.capacity() < off + pageSize) {
+      buf = mapSegment(seg, off + pageSize);
+    }
+    return buf.slice(off, pageSize);
+  }
+
+  /**
+   * Map (or remap, if the file has grown) a segment of the file.
+   *
+   * @param seg Segment number
+   * @param minsize Minimum size required
+   * @return Mapped buffer
+   * @throws IOException on read errors
+   */
+  private synchronized MappedByteBuffer mapSegment(int seg, int minsize) throws IOException {
+    MappedByteBuffer buf = seg < segments.length ? segments[seg] : null;
+    if(buf != null && buf.capacity() >= minsize) {
+      return buf; // Mapped concurrently
+    }
+    final long start = pageOffset(seg * pagesPerSegment);
+    final long avail = file.size() - start;
+    if(avail < minsize) {
+      throw new IOException("Incomplete read at offset " + (start + minsize - pageSize) + " read " + Math.max(0, avail - minsize + pageSize) + " bytes, expected " + pageSize);
+    }
+    // Map whole pages only, up to the segment size:
+    final int size = (int) (Math.min(avail, (long) pagesPerSegment * pageSize) / pageSize) * pageSize;
+    buf = file.map(MapMode.READ_ONLY, start, size);
+    MappedByteBuffer[] segs = seg < segments.length ? segments : Arrays.copyOf(segments, seg + 1);
+    segs[seg] = buf;
+    segments = segs;
+    return buf;
+  }
+
+  /**
+   * Load the pages following the given page into memory.
+   *
+   * @param pageID Page id
+   * @throws IOException on read errors
+   */
+  private void readAhead(int pageID) throws IOException {
+    final int seg = pageID / pagesPerSegment;
+    final int first = seg * pagesPerSegment;
+    final int end = Math.min(pageID + readahead, first + pagesPerSegment);
+    // Do not map beyond the end of the file:
+    final long avail = (file.size() - pageOffset(first)) / pageSize;
+    final int last = (int) Math.min(end, first + avail) - 1;
+    if(last < pageID) {
+      return; // Will fail in the actual read.
+    }
+    MappedByteBuffer buf = seg < segments.length ? segments[seg] : null;
+    final int minsize = (last - first + 1) * pageSize;
+    if(buf == null || buf.capacity() < minsize) {
+      buf = mapSegment(seg, minsize);
+    }
+    buf.slice((pageID - first) * pageSize, (last - pageID + 1) * pageSize).load();
+    raStart = pageID;
+    raEnd = last + 1;
+  }
+
+  /**
+   * Decode a page from a buffer.
+   *
+   * @param buf Buffer of a single page
+   * @return Page, or {@code null} for empty pages
+   */
+  private P decodePage(ByteBuffer buf) {
+    final int type = buf.getInt();
+    if(type == EMPTY_PAGE) {
+      return null;
+    }
+    else if(type != FILLED_PAGE) {
+      throw new IllegalArgumentException("Unknown type: " + type);
+    }
+    try {
+      P page = pageclass.getDeclaredConstructor().newInstance();
+      page.readExternal(new PageInput(buf));
+      return page;
+    }
+    catch(InstantiationException | IllegalAccessException
+        | ClassNotFoundException | NoSuchMethodException
+        | InvocationTargetException e) {
+      throw new AbortException("Error instanciating an index page", e);
+    }
+    catch(IOException | BufferUnderflowException e) {
+      throw new AbortException("IO Error in page file", e);
+    }
+  }
+
+  /**
+   * Encode a page into the (reused) output buffer.
+   *
+   * @param page Page, or {@code null} for an empty page
+   * @return Buffer, ready for writing
+   */
+  private ByteBuffer encodePage(P page) {
+    if(output == null) {
+      output = new PageOutput(ByteBuffer.allocate(pageSize));
+    }
+    final ByteBuffer buf = output.buffer;
+    Arrays.fill(buf.array(), (byte) 0);
+    buf.clear();
+    try {
+      buf.putInt(page == null ? EMPTY_PAGE : FILLED_PAGE);
+      if(page != null) {
+        page.writeExternal(output);
+      }
+    }
+    catch(BufferOverflowException e) {
+      throw new IllegalArgumentException("Size of page " + page + " is greater than specified pagesize: " + pageSize);
+    }
+    catch(IOException e) {
+      throw new RuntimeException("IOException occurred! ", e);
+    }
+    return buf.clear();
+  }
+
+  /**
+   * Get the file channel.
+   *
+   * @return the file channel
+   */
+  public FileChannel getFile() {
+    return file;
+  }
+
+  /**
+   * Get the header of this page file.
+   *
+   * @return the header used by this page file
+   */
+  public PageHeader getHeader() {
+    return header;
+  }
+
+  @Override
+  public void setNextPageID(int next_page_id) {
+    this.nextPageID = next_page_id;
+    while(!emptyPages.isEmpty() && emptyPages.get(emptyPages.size - 1) >= this.nextPageID) {
+      --emptyPages.size;
+    }
+  }
+
+  @Override
+  public boolean initialize(PageHeader header) {
+    this.header = header;
+    this.pagesPerSegment = Math.max(1, SEGMENT_BYTES / pageSize);
+    try {
+      if(existed) {
+        LOG.debug("Initializing from an existing page file.");
+        header.readHeader(file);
+        // reading empty nodes in Stack
+        if(header instanceof TreeIndexHeader) {
+          TreeIndexHeader tiHeader = (TreeIndexHeader) header;
+          nextPageID = tiHeader.getLargestPageID();
+          try {
+            emptyPages = tiHeader.readEmptyPages(file);
+          }
+          catch(ClassNotFoundException e) {
+            throw new RuntimeException("ClassNotFoundException occurred when reading empty pages.", e);
+          }
+        }
+        else { // must scan complete file
+          for(int i = 0; pageOffset(i) + pageSize <= file.size(); i++) {
+            final int type = pageBuffer(i).getInt();
+            if(type == EMPTY_PAGE) {
+              emptyPages.add(i);
+            }
+            else if(type == FILLED_PAGE) {
+              nextPageID = i + 1;
+            }
+            else {
+              throw new IllegalArgumentException("Unknown type: " + type);
+            }
+          }
+        }
+      }
+      else {
+        LOG.debug("Initializing with a new page file.");
+        header.writeHeader(file);
+      }
+    }
+    catch(IOException e) {
+      throw new RuntimeException("IOException occurred.", e);
+    }
+    // Return "new file" status
+    return existed;
+  }
+
+  @Override
+  protected Logging getLogger() {
+    return LOG;
+  }
+
+  /**
+   * Binary page decoder reading directly from a (mapped) buffer.
+   * <p>
+   * Objects are only supported as a fallback, and use Java serialization.
+   *
+   * @author agent
+   */
+  protected static class PageInput implements ObjectInput {
+    /**
+     * Buffer to read from.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer Buffer to read from
+     */
+    protected PageInput(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void readFully(byte[] b) {
+      buffer.get(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) {
+      buffer.get(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+      n = Math.min(n, buffer.remaining());
+      buffer.position(buffer.position() + n);
+      return n;
+    }
+
+    @Override
+    public boolean readBoolean() {
+      return buffer.get() != 0;
+    }
+
+    @Override
+    public byte readByte() {
+      return buffer.get();
+    }
+
+    @Override
+    public int readUnsignedByte() {
+      return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public short readShort() {
+      return buffer.getShort();
+    }
+
+    @Override
+    public int readUnsignedShort() {
+      return buffer.getShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() {
+      return buffer.getChar();
+    }
+
+    @Override
+    public int readInt() {
+      return buffer.getInt();
+    }
+
+    @Override
+    public long readLong() {
+      return buffer.getLong();
+    }
+
+    @Override
+    public float readFloat() {
+      return buffer.getFloat();
+    }
+
+    @Override
+    public double readDouble() {
+      return buffer.getDouble();
+    }
+
+    @Override
+    public String readLine() {
+      throw new UnsupportedOperationException("Pages do not contain lines.");
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+      return DataInputStream.readUTF(this);
+    }
+
+    @Override
+    public Object readObject() throws ClassNotFoundException, IOException {
+      byte[] data = new byte[buffer.getInt()];
+      buffer.get(data);
+      try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+        return ois.readObject();
+      }
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b) {
+      return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if(!buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, buffer.remaining());
+      buffer.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public long skip(long n) {
+      return skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Binary page encoder writing into a buffer.
+   * <p>
+   * Objects are only supported as a fallback, and use Java serialization.
+   *
+   * @author agent
+   */
+  protected static class PageOutput implements ObjectOutput {
+    /**
+     * Buffer to write to.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer Buffer to write to
+     */
+    protected PageOutput(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void writeBoolean(boolean v) {
+      buffer.put((byte) (v ? 1 : 0));
+    }
+
+    @Override
+    public void writeByte(int v) {
+      buffer.put((byte) v);
+    }
+
+    @Override
+    public void writeShort(int v) {
+      buffer.putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) {
+      buffer.putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) {
+      buffer.putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) {
+      buffer.putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) {
+      buffer.putFloat(v);
+    }
+
+    @Override
+    public void writeDouble(double v) {
+      buffer.putDouble(v);
+    }
+
+    @Override
+    public void writeBytes(String s) {
+      for(int i = 0; i < s.length(); i++) {
+        buffer.put((byte) s.charAt(i));
+      }
+    }
+
+    @Override
+    public void writeChars(String s) {
+      for(int i = 0; i < s.length(); i++) {
+        buffer.putChar(s.charAt(i));
+      }
+    }
+
+    @Override
+    public void writeUTF(String s) throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream(s.length() + 2);
+      new DataOutputStream(baos).writeUTF(s);
+      buffer.put(baos.toByteArray());
+    }
+
+    @Override
+    public void writeObject(Object obj) throws IOException {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+        oos.writeObject(obj);
+      }
+      buffer.putInt(baos.size()).put(baos.toByteArray());
+    }
+
+    @Override
+    public void write(int b) {
+      buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) {
+      buffer.put(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buffer.put(b, off, len);
+    }
+
+    @Override
+    public void flush() {
+      // Nothing to do.
+    }
+
+    @Override
+    public void close() {
+      // Nothing to do.
+    }
+  }
+}
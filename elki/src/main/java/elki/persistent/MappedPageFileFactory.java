@@ -0,0 +1,115 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import elki.utilities.exceptions.AbortException;
+import elki.utilities.optionhandling.OptionID;
+import elki.utilities.optionhandling.constraints.CommonConstraints;
+import elki.utilities.optionhandling.parameterization.Parameterization;
+import elki.utilities.optionhandling.parameters.FileParameter;
+import elki.utilities.optionhandling.parameters.IntParameter;
+
+/**
+ * Page file factory for memory-mapped page files.
+ *
+ * @author agent
+ * @since 0.8.1
+ *
+ * @has - - - MappedPageFile
+ *
+ * @param <P> Page type
+ */
+public class MappedPageFileFactory<P extends ExternalizablePage> extends AbstractPageFileFactory<P> {
+  /**
+   * File name.
+   */
+  private Path fileName;
+
+  /**
+   * Number of pages to load ahead.
+   */
+  private int readahead;
+
+  /**
+   * Constructor.
+   *
+   * @param pageSize Page size
+   * @param fileName File name
+   * @param readahead Number of pages to load ahead, 0 to disable
+   */
+  public MappedPageFileFactory(int pageSize, Path fileName, int readahead) {
+    super(pageSize);
+    this.fileName = fileName;
+    this.readahead = readahead;
+  }
+
+  @Override
+  public PageFile<P> newPageFile(Class<P> cls) {
+    if(fileName == null) {
+      throw new AbortException("Disk-backed page file may only be instantiated once!");
+    }
+    MappedPageFile<P> pfile = new MappedPageFile<>(pageSize, fileName, cls, readahead);
+    fileName = null; // To avoid double instantiation.
+    return pfile;
+  }
+
+  /**
+   * Parameterization class.
+   *
+   * @hidden
+   *
+   * @author agent
+   */
+  public static class Par extends AbstractPageFileFactory.Par<ExternalizablePage> {
+    /**
+     * Number of pages to load ahead when reading.
+     */
+    public static final OptionID READAHEAD_ID = new OptionID("pagefile.readahead", "Number of subsequent pages to load into memory when reading a page, 0 to disable.");
+
+    /**
+     * File name.
+     */
+    private Path fileName;
+
+    /**
+     * Number of pages to load ahead.
+     */
+    private int readahead;
+
+    @Override
+    public void configure(Parameterization config) {
+      super.configure(config);
+      new FileParameter(PersistentPageFileFactory.Par.FILE_ID, FileParameter.FileType.OUTPUT_FILE) //
+          .grab(config, x -> fileName = Paths.get(x));
+      new IntParameter(READAHEAD_ID, 0) //
+          .addConstraint(CommonConstraints.GREATER_EQUAL_ZERO_INT) //
+          .grab(config, x -> readahead = x);
+    }
+
+    @Override
+    public MappedPageFileFactory<ExternalizablePage> make() {
+      return new MappedPageFileFactory<>(pageSize, fileName, readahead);
+    }
+  }
+}
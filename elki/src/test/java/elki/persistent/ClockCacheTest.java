@@ -0,0 +1,154 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.PagedIndexFactory;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeNode;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the concurrent page cache.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class ClockCacheTest extends AbstractIndexStructureTest {
+  /**
+   * Page size used.
+   */
+  private static final int PAGESIZE = 1024;
+
+  @Test
+  public void testRStarTree() throws IOException {
+    Path tmp = Files.createTempFile("elki-cache", ".idx");
+    try {
+      RStarTreeFactory<NumberVector> factory = new ELKIBuilder<RStarTreeFactory<NumberVector>>(RStarTreeFactory.class) //
+          .with(PagedIndexFactory.Par.PAGEFILE_ID, new ClockCachePageFileFactory<>(new MappedPageFileFactory<>(300, tmp, 0), 3000, 0)) //
+          .build();
+      assertExactEuclidean(factory, RStarTreeKNNSearcher.class, RStarTreeRangeSearcher.class);
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Test
+  public void testScanResistance() {
+    CountingPageFile backing = makeBacking(1100);
+    ClockCache<RStarTreeNode> cache = new ClockCache<>(40 * PAGESIZE, backing, 1);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    // Hot pages, accessed repeatedly:
+    for(int i = 0; i < 20; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    // A long scan over cold pages:
+    for(int i = 100; i < 1100; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    backing.reads.set(0);
+    for(int i = 0; i < 20; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    assertEquals("Hot pages were evicted by the scan.", 0, backing.reads.get());
+  }
+
+  @Test
+  public void testDirectoryPinned() {
+    CountingPageFile backing = makeBacking(1000);
+    ClockCache<RStarTreeNode> cache = new ClockCache<>(20 * PAGESIZE, backing, 1);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    // Pages 0..4 are directory pages, read only once:
+    for(int i = 0; i < 1000; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    backing.reads.set(0);
+    for(int i = 0; i < 5; i++) {
+      assertEquals(i, cache.readPage(i).getPageID());
+    }
+    assertEquals("Directory pages were evicted.", 0, backing.reads.get());
+  }
+
+  @Test
+  public void testConcurrentReads() {
+    CountingPageFile backing = makeBacking(500);
+    ClockCache<RStarTreeNode> cache = new ClockCache<>(64 * PAGESIZE, backing, 0);
+    cache.initialize(new DefaultPageHeader(PAGESIZE));
+    IntStream.range(0, 100000).parallel().forEach(i -> {
+      final int id = (i * 7919) % 500;
+      assertEquals(id, cache.readPage(id).getPageID());
+    });
+  }
+
+  /**
+   * Make a backing page file. The first 5 pages are directory pages.
+   *
+   * @param n Number of pages
+   * @return Page file
+   */
+  private static CountingPageFile makeBacking(int n) {
+    CountingPageFile backing = new CountingPageFile();
+    for(int i = 0; i < n; i++) {
+      backing.writePage(new RStarTreeNode(5, i >= 5));
+    }
+    return backing;
+  }
+
+  /**
+   * Page file counting the read accesses.
+   *
+   * @author agent
+   */
+  private static class CountingPageFile extends MemoryPageFile<RStarTreeNode> {
+    /**
+     * Number of reads.
+     */
+    AtomicInteger reads = new AtomicInteger();
+
+    /**
+     * Constructor.
+     */
+    public CountingPageFile() {
+      super(PAGESIZE);
+    }
+
+    @Override
+    public RStarTreeNode readPage(int pageID) {
+      reads.incrementAndGet();
+      return super.readPage(pageID);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of ELKI:
+ * Environment for Developing KDD-Applications Supported by Index-Structures
+ *
+ * Copyright (C) 2022
+ * ELKI Development Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package elki.persistent;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import elki.data.NumberVector;
+import elki.database.ids.DBIDUtil;
+import elki.index.AbstractIndexStructureTest;
+import elki.index.PagedIndexFactory;
+import elki.index.tree.TreeIndexHeader;
+import elki.index.tree.spatial.SpatialPointLeafEntry;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeKNNSearcher;
+import elki.index.tree.spatial.rstarvariants.query.RStarTreeRangeSearcher;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeFactory;
+import elki.index.tree.spatial.rstarvariants.rstar.RStarTreeNode;
+import elki.utilities.ELKIBuilder;
+
+/**
+ * Unit test for the memory-mapped page file.
+ *
+ * @author agent
+ * @since 0.8.1
+ */
+public class MappedPageFileTest extends AbstractIndexStructureTest {
+  @Test
+  public void testRStarTree() throws IOException {
+    Path tmp = Files.createTempFile("elki-mapped", ".idx");
+    try {
+      RStarTreeFactory<NumberVector> factory = new ELKIBuilder<RStarTreeFactory<NumberVector>>(RStarTreeFactory.class) //
+          .with(PagedIndexFactory.Par.PAGEFILE_ID, new MappedPageFileFactory<>(300, tmp, 8)) //
+          .build();
+      assertExactEuclidean(factory, RStarTreeKNNSearcher.class, RStarTreeRangeSearcher.class);
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  @Test
+  public void testReopen() throws IOException {
+    Path tmp = Files.createTempFile("elki-mapped", ".idx");
+    try {
+      MappedPageFile<RStarTreeNode> file = new MappedPageFile<>(1024, tmp, RStarTreeNode.class, 0);
+      assertFalse("New file reported as existing.", file.initialize(new TreeIndexHeader(1024, 5, 5, 2, 2)));
+      for(int i = 0; i < 3; i++) {
+        RStarTreeNode node = new RStarTreeNode(5, true);
+        for(int j = 0; j < 4; j++) {
+          node.addEntry(new SpatialPointLeafEntry(DBIDUtil.importInteger(i * 10 + j), new double[] { i, j }));
+        }
+        file.writePage(node);
+      }
+      file.deletePage(1);
+      file.close();
+
+      file = new MappedPageFile<>(1024, tmp, RStarTreeNode.class, 2);
+      assertTrue("Existing file not detected.", file.initialize(new TreeIndexHeader()));
+      assertEquals("Next page id", 3, file.getNextPageID());
+      assertNull("Deleted page was read.", file.readPage(1));
+      for(int i = 0; i < 3; i += 2) {
+        RStarTreeNode node = file.readPage(i);
+        assertEquals("Page id", i, node.getPageID());
+        assertEquals("Number of entries", 4, node.getNumEntries());
+        for(int j = 0; j < 4; j++) {
+          SpatialPointLeafEntry e = (SpatialPointLeafEntry) node.getEntry(j);
+          assertEquals("DBID", i * 10 + j, DBIDUtil.asInteger(e.getDBID()));
+          assertEquals("Value", j, e.doubleValue(1), 0.);
+        }
+      }
+      file.close();
+    }
+    finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+}